@@ -0,0 +1,152 @@
+package com.github.xsluck;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * 增量签名的条目摘要缓存
+ * 记录上一次签名时每个条目的 (CRC32, 原始大小, 压缩后大小) 与 SM3 摘要的对应关系，
+ * 下一次签名时这三项都未变化的条目直接复用摘要（不解压），只有变化的条目重新计算
+ *
+ * 缓存文件为 UTF-8 文本，每行: CRC32 \t 大小 \t 压缩后大小 \t 摘要(Base64) \t 条目名称
+ */
+public class IncrementalDigestCache {
+
+    private static final String HEADER = "# sm2-jar-sign digest cache v1";
+
+    /**
+     * 缓存的条目信息
+     */
+    private static class Entry {
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final byte[] digest;
+
+        Entry(long crc, long size, long compressedSize, byte[] digest) {
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.digest = digest;
+        }
+
+        boolean matches(ZipEntry entry) {
+            return entry.getCrc() != -1 && entry.getCrc() == crc && entry.getSize() == size
+                    && entry.getCompressedSize() == compressedSize;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> previous = new HashMap<>();
+    private final Map<String, Entry> current = new LinkedHashMap<>();
+    private int hits;
+    private int misses;
+
+    private IncrementalDigestCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 加载缓存文件，文件不存在或格式不正确时返回空缓存
+     */
+    public static IncrementalDigestCache load(File file, Log log) {
+        IncrementalDigestCache cache = new IncrementalDigestCache(file);
+        if (!file.isFile()) {
+            log.info("摘要缓存不存在，将在本次签名后创建: " + file.getAbsolutePath());
+            return cache;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                log.warn("摘要缓存格式不正确，已忽略: " + file.getAbsolutePath());
+                return cache;
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    continue;
+                }
+                cache.previous.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2]), Base64.getDecoder().decode(fields[3])));
+            }
+            log.info("已加载摘要缓存（" + cache.previous.size() + " 个条目）: " + file.getAbsolutePath());
+        } catch (Exception e) {
+            log.warn("读取摘要缓存失败，已忽略: " + e.getMessage());
+            cache.previous.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * 查找条目的摘要，CRC32、大小和压缩后大小都与上次一致时命中
+     *
+     * @return 摘要，未命中时返回 null
+     */
+    public byte[] lookup(ZipEntry entry) {
+        Entry cached = previous.get(entry.getName());
+        if (cached != null && cached.matches(entry)) {
+            hits++;
+            return cached.digest;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * 记录本次签名时条目的摘要（保存时只保留本次记录的条目）
+     */
+    public void put(ZipEntry entry, byte[] digest) {
+        if (entry.getCrc() != -1) {
+            current.put(entry.getName(),
+                    new Entry(entry.getCrc(), entry.getSize(), entry.getCompressedSize(), digest));
+        }
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * 保存缓存（先写临时文件再替换）
+     */
+    public void save() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            try (BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(Files.newOutputStream(temp.toPath()), StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.write('\n');
+                for (Map.Entry<String, Entry> cached : current.entrySet()) {
+                    Entry entry = cached.getValue();
+                    writer.write(entry.crc + "\t" + entry.size + "\t" + entry.compressedSize + "\t"
+                            + Base64.getEncoder().encodeToString(entry.digest) + "\t" + cached.getKey());
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
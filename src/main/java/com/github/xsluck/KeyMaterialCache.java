@@ -0,0 +1,100 @@
+package com.github.xsluck;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+import com.github.xsluck.utils.SM3Digester;
+
+/**
+ * 构建会话范围内的私钥、证书链和证书链验证结果缓存
+ * 多模块构建（包括 mvn -T 并行构建）中，每个模块签名时不再重复解析 PEM、执行 PBKDF2 解密私钥和验证证书链；
+ * 同一个键同时只有一个线程加载，其他线程等待其结果，加载失败的结果不缓存
+ *
+ * 缓存保存在 Maven 会话的 RepositorySystemSession 数据中，随会话结束而释放；
+ * 键包含文件的规范路径、修改时间、大小和内容的 SM3 摘要，文件变化后自动失效
+ */
+public class KeyMaterialCache {
+
+    private final ConcurrentMap<String, Future<Object>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 获取会话的缓存，没有会话时（例如直接调用 Mojo）返回不共享的新缓存
+     */
+    public static KeyMaterialCache forSession(MavenSession session) {
+        if (session == null || session.getRepositorySession() == null) {
+            return new KeyMaterialCache();
+        }
+        // 以类对象为键：不同版本的插件使用不同的类加载器，各自拥有独立的缓存
+        SessionData data = session.getRepositorySession().getData();
+        while (true) {
+            Object cache = data.get(KeyMaterialCache.class);
+            if (cache != null) {
+                return (KeyMaterialCache) cache;
+            }
+            KeyMaterialCache created = new KeyMaterialCache();
+            if (data.set(KeyMaterialCache.class, null, created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * 缓存键：类型、文件的规范路径、修改时间、大小以及文件内容（和附加数据，如私钥密码）的 SM3 摘要
+     *
+     * @param kind  缓存的内容类型
+     * @param file  密钥或证书链文件
+     * @param extra 参与摘要的附加数据，可以为 null
+     */
+    public static String key(String kind, File file, String extra) throws IOException {
+        SM3Digester digester = new SM3Digester();
+        byte[] content = Files.readAllBytes(file.toPath());
+        digester.update(content, 0, content.length);
+        if (extra != null) {
+            byte[] data = extra.getBytes(StandardCharsets.UTF_8);
+            digester.update(new byte[] { 0 }, 0, 1);
+            digester.update(data, 0, data.length);
+        }
+        return kind + "|" + file.getCanonicalPath() + "|" + file.lastModified() + "|" + content.length + "|"
+                + Base64.getEncoder().encodeToString(digester.digest());
+    }
+
+    /**
+     * 获取缓存的值，不存在时调用 loader 加载（同一个键并发调用时只加载一次）
+     *
+     * @param loaded 输出：本次调用是否执行了加载（可以为 null）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Callable<T> loader, boolean[] loaded) throws Exception {
+        FutureTask<Object> task = new FutureTask<>((Callable<Object>) loader);
+        Future<Object> future = entries.putIfAbsent(key, task);
+        if (future == null) {
+            future = task;
+            task.run();
+        }
+        if (loaded != null) {
+            loaded[0] = future == task;
+        }
+        try {
+            return (T) future.get();
+        } catch (ExecutionException e) {
+            entries.remove(key, future);
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,1233 @@
+package com.github.xsluck;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.github.xsluck.utils.BatchSignature;
+import com.github.xsluck.utils.CertificateChainUtil;
+import com.github.xsluck.utils.ChunkedDigest;
+import com.github.xsluck.utils.CmsSignatureBlock;
+import com.github.xsluck.utils.DetachedSignature;
+import com.github.xsluck.utils.DeterministicSM2Signer;
+import com.github.xsluck.utils.DigestIndex;
+import com.github.xsluck.utils.JarDigestEngine;
+import com.github.xsluck.utils.JarSignatureVerifier;
+import com.github.xsluck.utils.ManifestSections;
+import com.github.xsluck.utils.MerkleIndex;
+import com.github.xsluck.utils.SM3Digester;
+import com.github.xsluck.utils.SignatureBlock;
+import com.github.xsluck.utils.SignerProvider;
+import com.github.xsluck.utils.ZipArchiveReader;
+import com.github.xsluck.utils.ZipArchiveWriter;
+
+/**
+ * 流式 JAR 签名引擎
+ * 直接读取输入 JAR 的条目计算 SM3 摘要，并把签名后的 JAR 直接写入输出文件，不再解压到临时目录
+ */
+public class SM2JarSigner {
+
+    static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    static final String CREATED_BY = "SM2 JAR Sign Maven Plugin";
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    /** 签名块格式：自定义 v2 格式 */
+    public static final String FORMAT_SM2 = "sm2";
+    /** 签名块格式：CMS/PKCS#7 SignedData，.SF 文件同时包含逐条目的段摘要 */
+    public static final String FORMAT_CMS = "cms";
+
+    /**
+     * 签名结果：签名过程中在内存中生成的 MANIFEST、.SF、签名块以及摘要表，用于签名后的快速验证
+     */
+    public static class SignResult {
+        private String sfName;
+        private String sigName;
+        private byte[] manifestBytes;
+        private byte[] sfBytes;
+        private byte[] sigBlockData;
+        private String indexName;
+        private byte[] indexBytes;
+        private String digestIndexName;
+        private byte[] digestIndexBytes;
+        private List<X509Certificate> certChain;
+        private final Map<String, String> digests = new LinkedHashMap<>();
+        private final Map<String, ZipArchiveReader.Record> copiedEntries = new LinkedHashMap<>();
+        private final Map<String, SignResult> nestedResults = new LinkedHashMap<>();
+        private final Set<String> cachedEntries = new TreeSet<>();
+
+        public String getSfName() {
+            return sfName;
+        }
+
+        public String getSigName() {
+            return sigName;
+        }
+
+        public byte[] getManifestBytes() {
+            return manifestBytes;
+        }
+
+        public byte[] getSfBytes() {
+            return sfBytes;
+        }
+
+        public byte[] getSigBlockData() {
+            return sigBlockData;
+        }
+
+        /**
+         * Merkle 索引的条目名称（未启用时为 null）
+         */
+        public String getIndexName() {
+            return indexName;
+        }
+
+        public byte[] getIndexBytes() {
+            return indexBytes;
+        }
+
+        /**
+         * 摘要索引的条目名称（未启用时为 null）
+         */
+        public String getDigestIndexName() {
+            return digestIndexName;
+        }
+
+        public byte[] getDigestIndexBytes() {
+            return digestIndexBytes;
+        }
+
+        public List<X509Certificate> getCertChain() {
+            return certChain;
+        }
+
+        /**
+         * 条目名称到 SM3 摘要（Base64）的映射
+         */
+        public Map<String, String> getDigests() {
+            return digests;
+        }
+
+        /**
+         * 按原始压缩数据复制的条目（来自输入 JAR 的中央目录）
+         */
+        public Map<String, ZipArchiveReader.Record> getCopiedEntries() {
+            return copiedEntries;
+        }
+
+        /**
+         * 内嵌 JAR 的签名结果（条目名称到签名结果的映射）
+         */
+        public Map<String, SignResult> getNestedResults() {
+            return nestedResults;
+        }
+
+        /**
+         * 摘要复用增量缓存（未重新计算）的条目名称
+         */
+        public Set<String> getCachedEntries() {
+            return cachedEntries;
+        }
+    }
+
+    /**
+     * 已签名的内嵌 JAR
+     */
+    private static class NestedArchive {
+        private File file;
+        private byte[] digest;
+        private byte[][] chunkDigests;
+        private SignResult result;
+    }
+
+    private final Log log;
+
+    private int threads;
+
+    private String signatureFormat = FORMAT_SM2;
+
+    private boolean signNested;
+
+    private IncrementalDigestCache digestCache;
+
+    private boolean inPlace;
+
+    private boolean merkleIndex;
+
+    private boolean digestIndex;
+
+    private ChunkedDigest chunkedDigest;
+
+    private long outputTimestamp = -1;
+
+    private boolean deterministicSignature;
+
+    private SignerProvider signerProvider;
+
+    private BatchSignature.Participant batchParticipant;
+
+    public SM2JarSigner(Log log) {
+        this.log = log;
+    }
+
+    /**
+     * 设置计算摘要的线程数，小于等于 0 时使用 CPU 核数
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * 设置签名块格式（{@link #FORMAT_SM2} 或 {@link #FORMAT_CMS}）
+     */
+    public void setSignatureFormat(String signatureFormat) {
+        if (!FORMAT_SM2.equalsIgnoreCase(signatureFormat) && !FORMAT_CMS.equalsIgnoreCase(signatureFormat)) {
+            throw new IllegalArgumentException("不支持的签名格式: " + signatureFormat);
+        }
+        this.signatureFormat = signatureFormat.toLowerCase();
+    }
+
+    /**
+     * 设置是否先签名内嵌的 JAR（BOOT-INF/lib/ 和 WEB-INF/lib/ 下的 JAR），签名后的内嵌 JAR 按不压缩方式写入
+     */
+    public void setSignNested(boolean signNested) {
+        this.signNested = signNested;
+    }
+
+    /**
+     * 设置增量签名的摘要缓存（为 null 时不使用缓存），签名过程中会记录本次的摘要，由调用方在签名完成后保存
+     */
+    public void setDigestCache(IncrementalDigestCache digestCache) {
+        this.digestCache = digestCache;
+    }
+
+    /**
+     * 设置是否原地签名：输出文件就是输入文件时，保留原有条目的本地文件头和数据不动，
+     * 只在原中央目录的位置追加 MANIFEST.MF、.SF、签名块和新的中央目录（不满足条件时自动改为重写整个 JAR）
+     */
+    public void setInPlace(boolean inPlace) {
+        this.inPlace = inPlace;
+    }
+
+    /**
+     * 设置是否生成 Merkle 索引（META-INF/别名.SMT，见 {@link MerkleIndex}），树根写入 .SF 文件，
+     * 验证时可以不解析 MANIFEST.MF 而单独验证任意条目
+     */
+    public void setMerkleIndex(boolean merkleIndex) {
+        this.merkleIndex = merkleIndex;
+    }
+
+    /**
+     * 设置是否生成摘要索引（META-INF/别名.SMI，见 {@link DigestIndex}），索引的摘要写入 .SF 文件，
+     * 运行时验证按索引查找条目摘要，不再解析 MANIFEST.MF 的每个段
+     */
+    public void setDigestIndex(boolean digestIndex) {
+        this.digestIndex = digestIndex;
+    }
+
+    /**
+     * 设置大条目的分块摘要规则（为 null 时不分块，见 {@link ChunkedDigest}）：原始大小达到阈值的条目按块并行计算摘要，
+     * MANIFEST 中写入各块的摘要和树根，阈值和分块大小写入 .SF 文件，验证时可以边读边逐块验证
+     */
+    public void setChunkedDigest(ChunkedDigest chunkedDigest) {
+        this.chunkedDigest = chunkedDigest;
+    }
+
+    /**
+     * 设置可重现签名的时间戳（毫秒，小于 0 时不启用）：新生成的条目和重写的条目都使用该时间（按 UTC 写入），
+     * 条目按名称排序写出，MANIFEST.MF 的各段按名称排序，MANIFEST.MF 和 .SF 固定使用 CRLF 换行，CMS 签名块不写入签名时间；
+     * 相同的输入 JAR 和密钥得到字节完全相同的输出（签名值除外，见 {@link #setDeterministicSignature(boolean)}）
+     */
+    public void setOutputTimestamp(long outputTimestamp) {
+        this.outputTimestamp = outputTimestamp;
+    }
+
+    /**
+     * 设置是否使用确定性 SM2 签名（见 {@link DeterministicSM2Signer}），相同的 .SF 文件和私钥总是得到相同的签名值
+     */
+    public void setDeterministicSignature(boolean deterministicSignature) {
+        this.deterministicSignature = deterministicSignature;
+    }
+
+    /**
+     * 设置签名提供者（为 null 时使用传入的私钥在进程内签名，见 {@link SignerProvider#local}），
+     * 设置后签名方法的 privateKey 参数不再使用，可以为 null
+     */
+    public void setSignerProvider(SignerProvider signerProvider) {
+        this.signerProvider = signerProvider;
+    }
+
+    /**
+     * 设置 Merkle 批量签名的参与者（仅 sm2 格式）：.SF 文件提交给批量签名，签名块中写入树根的签名和包含路径，
+     * 不再单独签名；内嵌 JAR 仍然单独签名。一个签名器只能签名一个 JAR
+     */
+    public void setBatchParticipant(BatchSignature.Participant batchParticipant) {
+        this.batchParticipant = batchParticipant;
+    }
+
+    /**
+     * 对 JAR 包签名
+     * 输出顺序: MANIFEST.MF、原有条目（保持原顺序）、.SF 签名文件、.SM2 签名块
+     *
+     * @param inputJar  输入 JAR
+     * @param outputJar 输出 JAR（可以与输入相同）
+     * @param privateKey 签名私钥
+     * @param certChain 证书链（叶子证书在前）
+     * @param alias     签名者别名（用于 .SF/.SM2 文件名）
+     * @return 签名结果（可用于 {@link #verifySignedJar(File, SignResult)}）
+     */
+    public SignResult sign(File inputJar, File outputJar, PrivateKey privateKey, List<X509Certificate> certChain,
+            String alias) throws Exception {
+        SignResult result = new SignResult();
+        String sfName = "META-INF/" + alias + ".SF";
+        String sigName = "META-INF/" + alias + ".SM2";
+        result.sfName = sfName;
+        result.sigName = sigName;
+        if (merkleIndex) {
+            result.indexName = "META-INF/" + alias + MerkleIndex.EXTENSION;
+        }
+        if (digestIndex) {
+            result.digestIndexName = "META-INF/" + alias + DigestIndex.EXTENSION;
+        }
+        result.certChain = certChain;
+
+        if (inPlace) {
+            if (signNested) {
+                log.info("需要替换内嵌JAR的数据，无法原地签名，改为重写整个JAR");
+            } else if (!inputJar.getCanonicalFile().equals(outputJar.getCanonicalFile())) {
+                log.info("输出文件与输入文件不同，无法原地签名，改为重写整个JAR");
+            } else if (signInPlace(inputJar, privateKey, certChain, result)) {
+                return result;
+            }
+        }
+
+        // 先写入同目录下的临时文件，完成后再替换目标文件（输出文件可能就是输入文件）
+        File parent = outputJar.getAbsoluteFile().getParentFile();
+        File tempJar = File.createTempFile(outputJar.getName(), ".sm2tmp", parent);
+        File nestedDir = null;
+
+        try {
+            try (JarFile jar = new JarFile(inputJar, false)) {
+                // 0. 先签名内嵌的 JAR
+                Map<String, NestedArchive> nested = Collections.emptyMap();
+                if (signNested) {
+                    nestedDir = Files.createTempDirectory(parent.toPath(), "sm2-nested").toFile();
+                    nested = signNestedArchives(jar, nestedDir, privateKey, certChain, alias, result);
+                }
+
+                // 1-2. 计算摘要，创建 MANIFEST.MF、.SF 文件和签名块
+                prepareSignature(jar, nested, privateKey, certChain, result);
+
+                // 3. 写出签名后的 JAR（未改动的条目按原始压缩数据直接复制）
+                log.info("写入签名后的JAR...");
+                long now = outputTimestamp >= 0 ? outputTimestamp : System.currentTimeMillis();
+                try (ZipArchiveReader reader = new ZipArchiveReader(inputJar);
+                        ZipArchiveWriter writer = new ZipArchiveWriter(tempJar)) {
+                    if (outputTimestamp >= 0) {
+                        writer.setFixedTime(outputTimestamp);
+                    }
+                    writer.writeEntry(MANIFEST_NAME, result.manifestBytes, now, true);
+                    int copied = copyEntries(reader, writer, nested, result);
+                    writer.writeEntry(sfName, result.sfBytes, now, true);
+                    writer.writeEntry(sigName, result.sigBlockData, now, true);
+                    writeIndexes(writer, result, now);
+                    writer.setComment(reader.getComment());
+                    log.info("已直接复制 " + copied + " 个原始条目（未重新压缩）");
+                }
+            }
+
+            Files.move(tempJar.toPath(), outputJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempJar.toPath());
+            if (nestedDir != null) {
+                File[] files = nestedDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        Files.deleteIfExists(file.toPath());
+                    }
+                }
+                Files.deleteIfExists(nestedDir.toPath());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 分离式签名：不修改 JAR，把签名写入独立的 .sm2sig 文件（见 {@link DetachedSignature}）
+     * 整个文件的 SM3 摘要按块内存映射顺序计算；签名块格式与 {@link #setSignatureFormat(String)} 一致
+     *
+     * @param jarFile      被签名的 JAR
+     * @param sigFile      输出的 .sm2sig 文件
+     * @param entryDigests 是否同时写入每个条目的 SM3 摘要（需要解压所有条目）
+     */
+    public void signDetached(File jarFile, File sigFile, PrivateKey privateKey, List<X509Certificate> certChain,
+            boolean entryDigests) throws Exception {
+        log.info("计算整个文件的 SM3 摘要...");
+        long size = jarFile.length();
+        byte[] fileDigest = DetachedSignature.digestFile(jarFile.toPath());
+
+        Map<String, String> digests = null;
+        if (entryDigests) {
+            log.info("计算文件摘要...");
+            try (JarFile jar = new JarFile(jarFile, false)) {
+                digests = DetachedSignature.digestEntries(jar, threads);
+            }
+            log.info("已添加 " + digests.size() + " 个文件的 SM3 摘要");
+        }
+
+        byte[] descriptor = DetachedSignature.createDescriptor(jarFile.getName(), size, fileDigest, digests,
+                CREATED_BY);
+        byte[] sigBlockData = createSignatureBlock(descriptor, privateKey, certChain);
+        File parent = sigFile.getAbsoluteFile().getParentFile();
+        File tempSig = File.createTempFile(sigFile.getName(), ".tmp", parent);
+        try {
+            Files.write(tempSig.toPath(), DetachedSignature.encode(descriptor, sigBlockData));
+            Files.move(tempSig.toPath(), sigFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempSig.toPath());
+        }
+        log.info("分离式签名已写入: " + sigFile.getAbsolutePath());
+    }
+
+    /**
+     * 读取原始 MANIFEST 并计算所有文件的 SM3 摘要，然后创建 .SF 文件和签名块（结果写入 result）
+     */
+    private void prepareSignature(JarFile jar, Map<String, NestedArchive> nested, PrivateKey privateKey,
+            List<X509Certificate> certChain, SignResult result) throws Exception {
+        log.info("计算文件摘要...");
+        Manifest manifest = readManifest(jar);
+        int fileCount = addFileDigests(jar, manifest, nested, result.digests, result.cachedEntries);
+        log.info("已为 " + fileCount + " 个文件添加 SM3 摘要");
+
+        result.manifestBytes = writeManifest(manifest);
+
+        // .SF 主属性中额外写入的分块规则和索引信息
+        Map<String, String> sfAttributes = new LinkedHashMap<>();
+        if (chunkedDigest != null) {
+            sfAttributes.put(ChunkedDigest.THRESHOLD_ATTRIBUTE, String.valueOf(chunkedDigest.getThreshold()));
+            sfAttributes.put(ChunkedDigest.CHUNK_SIZE_ATTRIBUTE, String.valueOf(chunkedDigest.getChunkSize()));
+        }
+        if (result.indexName != null || result.digestIndexName != null) {
+            Map<String, byte[]> entryDigests = new LinkedHashMap<>();
+            for (Map.Entry<String, String> digest : result.digests.entrySet()) {
+                entryDigests.put(digest.getKey(), Base64.getDecoder().decode(digest.getValue()));
+            }
+            if (result.indexName != null) {
+                result.indexBytes = MerkleIndex.encode(entryDigests);
+                byte[] merkleRoot = MerkleIndex.wrap(ByteBuffer.wrap(result.indexBytes)).getRoot();
+                sfAttributes.put("SM3-Merkle-Root", Base64.getEncoder().encodeToString(merkleRoot));
+                sfAttributes.put("SM3-Merkle-Leaves", String.valueOf(entryDigests.size()));
+                log.info("已生成 Merkle 索引（" + entryDigests.size() + " 个条目，" + result.indexBytes.length + " 字节）");
+            }
+            if (result.digestIndexName != null) {
+                result.digestIndexBytes = DigestIndex.encode(entryDigests);
+                sfAttributes.put("SM3-Digest-Index",
+                        Base64.getEncoder().encodeToString(SM3Digester.hash(result.digestIndexBytes)));
+                log.info("已生成摘要索引（" + entryDigests.size() + " 个条目，" + result.digestIndexBytes.length + " 字节）");
+            }
+        }
+
+        log.info("创建签名文件...");
+        result.sfBytes = createSignatureFile(result.manifestBytes, sfAttributes);
+        result.sigBlockData = batchParticipant != null ? createBatchSignatureBlock(result.sfBytes, certChain)
+                : createSignatureBlock(result.sfBytes, privateKey, certChain);
+    }
+
+    /**
+     * 原地签名：原有条目的本地文件头和数据保持不动，从原中央目录的位置开始追加 MANIFEST.MF、.SF 和签名块，
+     * 再写入新的中央目录（MANIFEST.MF 排在第一个，旧的 MANIFEST 和同名签名文件不再被引用）并截断文件
+     * 写入失败时恢复原来的中央目录
+     *
+     * @return 是否已完成签名，ZIP 格式不允许原地签名时返回 false（文件未被修改）
+     */
+    private boolean signInPlace(File jarFile, PrivateKey privateKey, List<X509Certificate> certChain,
+            SignResult result) throws Exception {
+        List<ZipArchiveReader.Record> records;
+        long cdOffset;
+        byte[] comment;
+        try (ZipArchiveReader reader = new ZipArchiveReader(jarFile)) {
+            records = reader.getRecords();
+            cdOffset = reader.getCentralDirectoryOffset();
+            comment = reader.getComment();
+        }
+        for (ZipArchiveReader.Record record : records) {
+            if (record.getSize() >= 0xFFFFFFFFL || record.getCompressedSize() >= 0xFFFFFFFFL) {
+                log.info("包含大于 4GB 的条目，无法原地签名，改为重写整个JAR: " + record.getName());
+                return false;
+            }
+        }
+
+        try (JarFile jar = new JarFile(jarFile, false)) {
+            prepareSignature(jar, Collections.<String, NestedArchive>emptyMap(), privateKey, certChain, result);
+        }
+
+        log.info("原地签名：保留原有条目的数据，只追加 META-INF 文件和中央目录...");
+        byte[] originalTail = readTail(jarFile, cdOffset);
+        long now = outputTimestamp >= 0 ? outputTimestamp : System.currentTimeMillis();
+        int kept = 0;
+        long keptBytes = 0;
+        try {
+            try (ZipArchiveWriter writer = ZipArchiveWriter.openForAppend(jarFile, cdOffset)) {
+                if (outputTimestamp >= 0) {
+                    writer.setFixedTime(outputTimestamp);
+                }
+                writer.writeEntry(MANIFEST_NAME, result.manifestBytes, now, true);
+                for (ZipArchiveReader.Record record : orderRecords(records)) {
+                    if (isReplacedEntry(record.getName(), result)) {
+                        continue;
+                    }
+                    writer.addExisting(record);
+                    result.copiedEntries.put(record.getName(), record);
+                    keptBytes += record.getCompressedSize();
+                    kept++;
+                }
+                writer.writeEntry(result.sfName, result.sfBytes, now, true);
+                writer.writeEntry(result.sigName, result.sigBlockData, now, true);
+                writeIndexes(writer, result, now);
+                writer.setComment(comment);
+                writer.finish();
+            }
+        } catch (IOException | RuntimeException e) {
+            restoreTail(jarFile, cdOffset, originalTail);
+            throw e;
+        }
+        log.info("已保留 " + kept + " 个原始条目（" + keptBytes / 1024 + " KB 数据未重写）");
+        return true;
+    }
+
+    /**
+     * 读取从中央目录开始到文件末尾的数据（中央目录和结束记录）
+     */
+    private static byte[] readTail(File file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("读取中央目录失败: " + file);
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * 恢复原来的中央目录和结束记录
+     */
+    private void restoreTail(File file, long position, byte[] tail) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(tail);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+            channel.truncate(position + tail.length);
+        } catch (IOException e) {
+            log.error("恢复原始中央目录失败，JAR文件可能已损坏: " + file, e);
+        }
+    }
+
+    /**
+     * 并发签名内嵌的 JAR（使用同一个私钥），每个内嵌 JAR 解压到临时文件后签名
+     *
+     * @return 条目名称到已签名内嵌 JAR 的映射
+     */
+    private Map<String, NestedArchive> signNestedArchives(final JarFile jar, final File nestedDir,
+            final PrivateKey privateKey, final List<X509Certificate> certChain, final String alias,
+            SignResult result) throws Exception {
+        List<JarEntry> archives = new ArrayList<>();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && JarSignatureVerifier.isNestedArchive(entry.getName())) {
+                archives.add(entry);
+            }
+        }
+        if (archives.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        int poolSize = Math.min(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), archives.size());
+        log.info("签名 " + archives.size() + " 个内嵌JAR（" + poolSize + " 个线程）...");
+        final Log nestedLog = new QuietLog(log);
+
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        Map<String, NestedArchive> nested = new LinkedHashMap<>();
+        try {
+            List<Future<NestedArchive>> futures = new ArrayList<>();
+            for (int i = 0; i < archives.size(); i++) {
+                final JarEntry entry = archives.get(i);
+                final File source = new File(nestedDir, i + ".jar");
+                final File signed = new File(nestedDir, i + "-signed.jar");
+                futures.add(pool.submit(() -> {
+                    try (InputStream is = jar.getInputStream(entry)) {
+                        Files.copy(is, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    SM2JarSigner signer = new SM2JarSigner(nestedLog);
+                    signer.threads = 1;
+                    signer.signatureFormat = signatureFormat;
+                    signer.chunkedDigest = chunkedDigest;
+                    signer.outputTimestamp = outputTimestamp;
+                    signer.deterministicSignature = deterministicSignature;
+                    signer.signerProvider = signerProvider;
+                    NestedArchive archive = new NestedArchive();
+                    archive.result = signer.sign(source, signed, privateKey, certChain, alias);
+                    archive.file = signed;
+                    Files.delete(source.toPath());
+                    try (InputStream is = new FileInputStream(signed)) {
+                        // 签名后的内嵌 JAR 不压缩存储，条目大小就是文件大小
+                        if (chunkedDigest != null && chunkedDigest.applies(signed.length())) {
+                            archive.chunkDigests = chunkedDigest.digestChunks(is);
+                            archive.digest = chunkedDigest.root(archive.chunkDigests);
+                        } else {
+                            archive.digest = SM3Digester.hash(is);
+                        }
+                    }
+                    return archive;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                String name = archives.get(i).getName();
+                try {
+                    NestedArchive archive = futures.get(i).get();
+                    nested.put(name, archive);
+                    result.nestedResults.put(name, archive.result);
+                } catch (ExecutionException e) {
+                    throw new IOException("内嵌JAR签名失败: " + name + " - " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("已签名 " + nested.size() + " 个内嵌JAR");
+        return nested;
+    }
+
+    /**
+     * 签名后的快速验证：不重新解压和计算所有条目的摘要，而是使用签名过程中得到的摘要表进行检查
+     * 1. 中央目录：MANIFEST.MF 是第一个条目，所有复制的条目存在且 CRC、大小与输入一致
+     * 2. MANIFEST.MF、.SF、签名块与内存中生成的内容一致，MANIFEST 中的摘要与摘要表一致
+     * 3. 密码学检查：.SF 中的 MANIFEST 摘要正确，签名块中的签名可以用叶子证书公钥验证
+     *
+     * @return 验证是否通过（失败原因写入日志）
+     */
+    public boolean verifySignedJar(File signedJar, SignResult signResult) {
+        try (ZipArchiveReader reader = new ZipArchiveReader(signedJar);
+                JarFile jar = new JarFile(signedJar, false)) {
+            // 1. 检查中央目录
+            List<ZipArchiveReader.Record> records = reader.getRecords();
+            if (records.isEmpty() || !MANIFEST_NAME.equals(records.get(0).getName())) {
+                log.error("MANIFEST.MF 不是第一个条目");
+                return false;
+            }
+
+            Map<String, ZipArchiveReader.Record> outputRecords = new HashMap<>();
+            for (ZipArchiveReader.Record record : records) {
+                outputRecords.put(record.getName(), record);
+            }
+
+            for (ZipArchiveReader.Record expected : signResult.copiedEntries.values()) {
+                ZipArchiveReader.Record actual = outputRecords.get(expected.getName());
+                if (actual == null) {
+                    log.error("签名后的JAR缺少条目: " + expected.getName());
+                    return false;
+                }
+                if (actual.getCrc() != expected.getCrc() || actual.getSize() != expected.getSize()
+                        || actual.getCompressedSize() != expected.getCompressedSize()
+                        || actual.getMethod() != expected.getMethod()) {
+                    log.error("条目的 CRC 或大小与签名时不一致: " + expected.getName());
+                    return false;
+                }
+            }
+            for (String name : signResult.digests.keySet()) {
+                if (!signResult.copiedEntries.containsKey(name) && !signResult.nestedResults.containsKey(name)) {
+                    log.error("已计算摘要的条目未写入: " + name);
+                    return false;
+                }
+            }
+
+            // 替换后的内嵌 JAR：不压缩，且内容摘要与摘要表一致
+            for (String name : signResult.nestedResults.keySet()) {
+                ZipArchiveReader.Record actual = outputRecords.get(name);
+                if (actual == null || actual.getMethod() != ZipEntry.STORED) {
+                    log.error("内嵌JAR缺失或未按不压缩方式写入: " + name);
+                    return false;
+                }
+                String digest = Base64.getEncoder().encodeToString(
+                        JarDigestEngine.digestEntry(jar, jar.getJarEntry(name), chunkedDigest));
+                if (!digest.equals(signResult.digests.get(name))) {
+                    log.error("内嵌JAR的内容与签名时不一致: " + name);
+                    return false;
+                }
+            }
+
+            // 复用增量缓存的摘要没有在本次签名中计算过，CRC 和大小一致不能说明缓存的摘要正确，需要重新计算
+            if (!signResult.cachedEntries.isEmpty()) {
+                List<JarEntry> cached = new ArrayList<>();
+                for (String name : signResult.cachedEntries) {
+                    cached.add(jar.getJarEntry(name));
+                }
+                log.info("重新计算复用缓存的 " + cached.size() + " 个条目的摘要...");
+                try (JarDigestEngine engine = new JarDigestEngine(threads)) {
+                    byte[][] cachedDigests = engine.digest(jar, cached);
+                    for (int i = 0; i < cachedDigests.length; i++) {
+                        String name = cached.get(i).getName();
+                        if (!Base64.getEncoder().encodeToString(cachedDigests[i])
+                                .equals(signResult.digests.get(name))) {
+                            log.error("摘要缓存中的摘要与条目内容不一致: " + name);
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            // 2. 检查签名相关文件内容
+            byte[] manifestBytes = readEntry(jar, MANIFEST_NAME);
+            byte[] sfBytes = readEntry(jar, signResult.sfName);
+            byte[] sigBlockData = readEntry(jar, signResult.sigName);
+            if (!Arrays.equals(manifestBytes, signResult.manifestBytes)
+                    || !Arrays.equals(sfBytes, signResult.sfBytes)
+                    || !Arrays.equals(sigBlockData, signResult.sigBlockData)) {
+                log.error("MANIFEST.MF 或签名文件内容与签名时不一致");
+                return false;
+            }
+
+            if (signResult.indexName != null) {
+                ZipArchiveReader.Record indexRecord = outputRecords.get(signResult.indexName);
+                if (indexRecord == null || indexRecord.getMethod() != ZipEntry.STORED
+                        || !Arrays.equals(readEntry(jar, signResult.indexName), signResult.indexBytes)) {
+                    log.error("Merkle 索引缺失、被压缩或内容与签名时不一致");
+                    return false;
+                }
+                String root = Base64.getEncoder().encodeToString(
+                        MerkleIndex.wrap(ByteBuffer.wrap(signResult.indexBytes)).getRoot());
+                if (!root.equals(ManifestSections.parse(sfBytes).getMainAttribute("SM3-Merkle-Root"))) {
+                    log.error(".SF 文件中的 Merkle 树根不正确");
+                    return false;
+                }
+            }
+
+            if (signResult.digestIndexName != null) {
+                ZipArchiveReader.Record indexRecord = outputRecords.get(signResult.digestIndexName);
+                String indexDigest = Base64.getEncoder().encodeToString(SM3Digester.hash(signResult.digestIndexBytes));
+                if (indexRecord == null || indexRecord.getMethod() != ZipEntry.STORED
+                        || !Arrays.equals(readEntry(jar, signResult.digestIndexName), signResult.digestIndexBytes)
+                        || !indexDigest.equals(ManifestSections.parse(sfBytes).getMainAttribute("SM3-Digest-Index"))) {
+                    log.error("摘要索引缺失、被压缩或与 .SF 文件不一致");
+                    return false;
+                }
+            }
+
+            Manifest manifest = new Manifest(new ByteArrayInputStream(manifestBytes));
+            for (Map.Entry<String, String> digest : signResult.digests.entrySet()) {
+                Attributes attrs = manifest.getAttributes(digest.getKey());
+                if (attrs == null || !digest.getValue().equals(attrs.getValue("SM3-Digest"))) {
+                    log.error("MANIFEST.MF 中的摘要与摘要表不一致: " + digest.getKey());
+                    return false;
+                }
+            }
+
+            // 3. 密码学检查
+            String manifestDigest = Base64.getEncoder().encodeToString(SM3Digester.hash(manifestBytes));
+            Manifest sf = new Manifest(new ByteArrayInputStream(sfBytes));
+            if (!manifestDigest.equals(sf.getMainAttributes().getValue("SM3-Digest-Manifest"))) {
+                log.error(".SF 文件中的 MANIFEST 摘要不正确");
+                return false;
+            }
+
+            SignatureBlock block = SignatureBlock.parse(sigBlockData);
+            List<X509Certificate> certChain = block.getCertChain();
+            if (!certChain.equals(signResult.certChain)) {
+                log.error("签名块中的证书链与签名时使用的证书链不一致");
+                return false;
+            }
+
+            if (FORMAT_CMS.equals(signatureFormat)) {
+                ManifestSections manifestSections = ManifestSections.parse(manifestBytes);
+                ManifestSections sfSections = ManifestSections.parse(sfBytes);
+                for (String name : manifestSections.getNames()) {
+                    String sectionDigest = Base64.getEncoder().encodeToString(manifestSections.digestSection(name));
+                    if (!sectionDigest.equals(sfSections.getAttribute(name, "SM3-Digest"))) {
+                        log.error(".SF 文件中的段摘要不正确: " + name);
+                        return false;
+                    }
+                }
+            }
+
+            if (!block.verify(sfBytes)) {
+                log.error("签名块中的签名验证失败");
+                return false;
+            }
+
+            log.info("中央目录条目数: " + records.size());
+            log.info("摘要表中的文件数: " + signResult.digests.size());
+            if (!signResult.nestedResults.isEmpty()) {
+                log.info("已签名的内嵌JAR数: " + signResult.nestedResults.size());
+            }
+            log.info("✓ .SF 签名验证通过（叶子证书: " + certChain.get(0).getSubjectDN() + "）");
+            return true;
+
+        } catch (Exception e) {
+            log.error("验证签名时出错: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 读取原始 MANIFEST.MF，不存在或解析失败时创建新的
+     */
+    private Manifest readManifest(JarFile jar) {
+        Manifest manifest = new Manifest();
+        JarEntry manifestEntry = jar.getJarEntry(MANIFEST_NAME);
+
+        if (manifestEntry != null) {
+            try (InputStream is = jar.getInputStream(manifestEntry)) {
+                // 读取原始 MANIFEST
+                manifest = new Manifest(is);
+
+                // 确保必要的版本信息
+                if (manifest.getMainAttributes().getValue("Manifest-Version") == null) {
+                    manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+                }
+
+                // 更新 Created-By 属性
+                manifest.getMainAttributes().putValue("Created-By", CREATED_BY);
+
+                log.info("成功读取原始 MANIFEST.MF，包含 " + manifest.getMainAttributes().size() + " 个主属性，"
+                        + manifest.getEntries().size() + " 个条目");
+                return manifest;
+
+            } catch (Exception e) {
+                log.warn("读取原始 MANIFEST.MF 失败: " + e.getMessage() + "，创建新的");
+                manifest = new Manifest();
+            }
+        }
+
+        // 如果没有原始 MANIFEST，创建新的
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Created-By", CREATED_BY);
+        return manifest;
+    }
+
+    /**
+     * 为所有文件添加 SM3 摘要（跳过目录和签名相关的文件）
+     * 摘要并发计算，但按 JAR 中的条目顺序写入 MANIFEST，输出与顺序计算完全一致
+     *
+     * @param cachedEntries 记录摘要来自增量缓存的条目名称
+     * @return 处理的文件数量
+     */
+    private int addFileDigests(JarFile jar, Manifest manifest, Map<String, NestedArchive> nested,
+            Map<String, String> digestTable, Set<String> cachedEntries) throws IOException {
+        List<JarEntry> files = new ArrayList<>();
+        List<JarEntry> unchanged = new ArrayList<>();
+        Map<String, byte[][]> chunked = new HashMap<>();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && !JarSignatureVerifier.isSignatureRelated(entry.getName())) {
+                files.add(entry);
+                if (chunkedDigest != null && chunkedDigest.applies(entry) && !nested.containsKey(entry.getName())) {
+                    chunked.put(entry.getName(), null);
+                } else if (!nested.containsKey(entry.getName())) {
+                    unchanged.add(entry);
+                }
+            }
+        }
+
+        // 大条目按块并行计算摘要（不使用增量缓存）
+        if (!chunked.isEmpty()) {
+            try (JarDigestEngine engine = new JarDigestEngine(threads)) {
+                for (JarEntry entry : files) {
+                    if (chunked.containsKey(entry.getName())) {
+                        log.info("分块计算大条目的摘要（" + entry.getSize() + " 字节）: " + entry.getName());
+                        chunked.put(entry.getName(), engine.digestChunks(jar, entry, chunkedDigest));
+                    }
+                }
+            }
+        }
+
+        // 增量签名：CRC32 和大小都未变化的条目复用上次的摘要，只计算其余条目
+        byte[][] unchangedDigests = new byte[unchanged.size()][];
+        List<JarEntry> changed = unchanged;
+        List<Integer> changedIndexes = null;
+        if (digestCache != null) {
+            changed = new ArrayList<>();
+            changedIndexes = new ArrayList<>();
+            for (int i = 0; i < unchanged.size(); i++) {
+                unchangedDigests[i] = digestCache.lookup(unchanged.get(i));
+                if (unchangedDigests[i] == null) {
+                    changed.add(unchanged.get(i));
+                    changedIndexes.add(i);
+                } else {
+                    cachedEntries.add(unchanged.get(i).getName());
+                }
+            }
+            log.info("摘要缓存命中 " + digestCache.getHits() + " 个条目，未命中 " + digestCache.getMisses() + " 个条目");
+        }
+
+        if (!changed.isEmpty()) {
+            byte[][] changedDigests;
+            try (JarDigestEngine engine = new JarDigestEngine(threads)) {
+                log.info("使用 " + engine.getThreads() + " 个线程计算摘要");
+                changedDigests = engine.digest(jar, changed);
+            }
+            for (int i = 0; i < changedDigests.length; i++) {
+                unchangedDigests[changedIndexes != null ? changedIndexes.get(i) : i] = changedDigests[i];
+            }
+        }
+        if (digestCache != null) {
+            for (int i = 0; i < unchanged.size(); i++) {
+                digestCache.put(unchanged.get(i), unchangedDigests[i]);
+            }
+        }
+
+        int unchangedIndex = 0;
+        for (int i = 0; i < files.size(); i++) {
+            String name = files.get(i).getName();
+            NestedArchive archive = nested.get(name);
+            // 已签名的内嵌 JAR 使用签名后内容的摘要，分块的大条目使用各块摘要的树根
+            byte[][] chunkDigests = archive != null ? archive.chunkDigests : chunked.get(name);
+            byte[] digest;
+            if (archive != null) {
+                digest = archive.digest;
+            } else if (chunkDigests != null) {
+                digest = chunkedDigest.root(chunkDigests);
+            } else {
+                digest = unchangedDigests[unchangedIndex++];
+            }
+
+            // 获取或创建该文件的属性
+            Attributes attrs = manifest.getEntries().get(name);
+            if (attrs == null) {
+                attrs = new Attributes();
+                manifest.getEntries().put(name, attrs);
+            }
+
+            // 添加 SM3 摘要（不覆盖现有的其他摘要）
+            String digestBase64 = Base64.getEncoder().encodeToString(digest);
+            attrs.putValue("SM3-Digest", digestBase64);
+            if (chunkDigests != null) {
+                attrs.putValue(ChunkedDigest.CHUNKS_ATTRIBUTE, ChunkedDigest.encodeChunks(chunkDigests));
+            } else {
+                attrs.remove(new Attributes.Name(ChunkedDigest.CHUNKS_ATTRIBUTE));
+            }
+            digestTable.put(name, digestBase64);
+        }
+        return files.size();
+    }
+
+    /**
+     * 创建 .SF 文件
+     * CMS 格式时额外写入 MANIFEST 主属性段的摘要和每个条目段的摘要，验证单个条目时只需校验其所在的段；
+     * 启用分块摘要、Merkle 索引或摘要索引时写入分块规则、树根、叶子数和索引的摘要
+     */
+    private byte[] createSignatureFile(byte[] manifestBytes, Map<String, String> sfAttributes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] lineSeparator = outputTimestamp >= 0 ? CRLF : System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        writeHeader(out, "Signature-Version", "1.0", lineSeparator);
+        writeHeader(out, "Created-By", CREATED_BY, lineSeparator);
+        byte[] manifestDigest = SM3Digester.hash(manifestBytes);
+        writeHeader(out, "SM3-Digest-Manifest", Base64.getEncoder().encodeToString(manifestDigest), lineSeparator);
+        for (Map.Entry<String, String> attribute : sfAttributes.entrySet()) {
+            writeHeader(out, attribute.getKey(), attribute.getValue(), lineSeparator);
+        }
+
+        if (FORMAT_CMS.equals(signatureFormat)) {
+            ManifestSections sections = ManifestSections.parse(manifestBytes);
+            writeHeader(out, "SM3-Digest-Manifest-Main-Attributes",
+                    Base64.getEncoder().encodeToString(sections.digestMain()), lineSeparator);
+            out.write(lineSeparator);
+            for (String name : sections.getNames()) {
+                writeHeader(out, "Name", name, lineSeparator);
+                writeHeader(out, "SM3-Digest", Base64.getEncoder().encodeToString(sections.digestSection(name)),
+                        lineSeparator);
+                out.write(lineSeparator);
+            }
+        } else {
+            out.write(lineSeparator);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 序列化 MANIFEST.MF
+     * 可重现签名时不使用 Manifest.write（条目段按 HashMap 的顺序写出，折行方式随 JDK 版本不同）：
+     * 主属性段在前（Manifest-Version 第一个），各条目段按名称排序，使用 CRLF 换行
+     */
+    private byte[] writeManifest(Manifest manifest) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (outputTimestamp < 0) {
+            manifest.write(out);
+            return out.toByteArray();
+        }
+        Attributes main = manifest.getMainAttributes();
+        String version = main.getValue(Attributes.Name.MANIFEST_VERSION);
+        if (version != null) {
+            writeHeader(out, Attributes.Name.MANIFEST_VERSION.toString(), version, CRLF);
+        }
+        writeAttributes(out, main, CRLF);
+        out.write(CRLF);
+        for (String name : new TreeSet<>(manifest.getEntries().keySet())) {
+            writeHeader(out, "Name", name, CRLF);
+            writeAttributes(out, manifest.getEntries().get(name), CRLF);
+            out.write(CRLF);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeAttributes(ByteArrayOutputStream out, Attributes attributes, byte[] lineSeparator) {
+        for (Map.Entry<Object, Object> attribute : attributes.entrySet()) {
+            if (!Attributes.Name.MANIFEST_VERSION.equals(attribute.getKey())) {
+                writeHeader(out, attribute.getKey().toString(), (String) attribute.getValue(), lineSeparator);
+            }
+        }
+    }
+
+    /**
+     * 写出条目的顺序：可重现签名时按名称排序，否则保持输入 JAR 中的顺序
+     */
+    private List<ZipArchiveReader.Record> orderRecords(List<ZipArchiveReader.Record> records) {
+        if (outputTimestamp < 0) {
+            return records;
+        }
+        List<ZipArchiveReader.Record> ordered = new ArrayList<>(records);
+        ordered.sort(Comparator.comparing(ZipArchiveReader.Record::getName));
+        return ordered;
+    }
+
+    /**
+     * 写入一行属性，超过 72 字节时按 MANIFEST 规范折行（续行以空格开头）
+     */
+    private static void writeHeader(ByteArrayOutputStream out, String name, String value, byte[] lineSeparator) {
+        byte[] line = (name + ": " + value).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(line.length, 72);
+        out.write(line, 0, length);
+        out.write(lineSeparator, 0, lineSeparator.length);
+        for (int offset = length; offset < line.length; offset += 71) {
+            out.write(' ');
+            out.write(line, offset, Math.min(71, line.length - offset));
+            out.write(lineSeparator, 0, lineSeparator.length);
+        }
+    }
+
+    /**
+     * 写入 Merkle 索引和摘要索引（不压缩，验证时直接内存映射）
+     */
+    private static void writeIndexes(ZipArchiveWriter writer, SignResult result, long now) throws IOException {
+        if (result.indexBytes != null) {
+            writer.writeEntry(result.indexName, result.indexBytes, now, false);
+        }
+        if (result.digestIndexBytes != null) {
+            writer.writeEntry(result.digestIndexName, result.digestIndexBytes, now, false);
+        }
+    }
+
+    private byte[] createSignatureBlock(byte[] sfBytes, PrivateKey privateKey, List<X509Certificate> certChain)
+            throws Exception {
+        log.info("创建包含证书链的签名块（" + certChain.size() + " 个证书，格式: " + signatureFormat + "）");
+        SignerProvider provider = signerProvider != null ? signerProvider
+                : SignerProvider.local(privateKey, deterministicSignature);
+        // 签名代理或签名服务持有的可能是其他私钥
+        byte[] publicPoint = provider.getPublicPoint();
+        if (publicPoint != null
+                && !Arrays.equals(publicPoint, DeterministicSM2Signer.publicPoint(certChain.get(0).getPublicKey()))) {
+            throw new IllegalStateException("签名使用的私钥与签名证书不匹配: " + certChain.get(0).getSubjectDN());
+        }
+        byte[] sigBlockData;
+        if (FORMAT_CMS.equals(signatureFormat)) {
+            sigBlockData = CmsSignatureBlock.create(sfBytes, provider.asContentSigner(), certChain,
+                    outputTimestamp < 0);
+        } else {
+            // 创建签名，使用新格式创建签名块（包含证书链）
+            sigBlockData = CertificateChainUtil.createSignatureBlockWithChain(certChain, provider.sign(sfBytes));
+        }
+        log.info("签名块大小: " + sigBlockData.length + " 字节");
+        return sigBlockData;
+    }
+
+    /**
+     * 提交 .SF 文件并等待同一批的其他 JAR，创建包含树根签名和包含路径的签名块
+     */
+    private byte[] createBatchSignatureBlock(byte[] sfBytes, List<X509Certificate> certChain) throws Exception {
+        if (!FORMAT_SM2.equals(signatureFormat)) {
+            throw new IllegalStateException("Merkle 批量签名只支持 sm2 格式: " + signatureFormat);
+        }
+        log.info("提交 .SF 文件，等待同一批的其他 JAR...");
+        BatchSignature.Signed signed = batchParticipant.sign(sfBytes);
+        BatchSignature.Proof proof = signed.getProof();
+        byte[] sigBlockData = SignatureBlock.encodeBatch(certChain, signed.getSignature(), proof);
+        log.info("批量签名: 第 " + (proof.getIndex() + 1) + "/" + proof.getLeafCount() + " 个，包含路径 "
+                + proof.getPathLength() + " 个节点，签名块大小: " + sigBlockData.length + " 字节");
+        return sigBlockData;
+    }
+
+    /**
+     * 按原顺序复制输入 JAR 的条目（原始压缩字节、CRC 和大小保持不变），跳过旧的 MANIFEST.MF 和将被重新生成的签名文件；
+     * 已签名的内嵌 JAR 替换为签名后的内容（不压缩）
+     *
+     * @return 复制的条目数量
+     */
+    private int copyEntries(ZipArchiveReader reader, ZipArchiveWriter writer, Map<String, NestedArchive> nested,
+            SignResult result) throws IOException {
+        int count = 0;
+        for (ZipArchiveReader.Record record : orderRecords(reader.getRecords())) {
+            if (isReplacedEntry(record.getName(), result)) {
+                continue;
+            }
+            NestedArchive archive = nested.get(record.getName());
+            if (archive != null) {
+                writer.writeStored(record, archive.file);
+                continue;
+            }
+            writer.writeRaw(reader, record);
+            result.copiedEntries.put(record.getName(), record);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 是否是签名时重新生成的条目（MANIFEST.MF 和同名的 .SF、签名块、Merkle 索引、摘要索引）
+     */
+    private static boolean isReplacedEntry(String name, SignResult result) {
+        String prefix = result.sfName.substring(0, result.sfName.length() - 3);
+        return name.equalsIgnoreCase(MANIFEST_NAME) || name.equalsIgnoreCase(result.sfName)
+                || name.equalsIgnoreCase(result.sigName) || name.equalsIgnoreCase(prefix + MerkleIndex.EXTENSION)
+                || name.equalsIgnoreCase(prefix + DigestIndex.EXTENSION);
+    }
+
+    private static byte[] readEntry(JarFile jar, String name) throws IOException {
+        JarEntry entry = jar.getJarEntry(name);
+        if (entry == null) {
+            throw new IOException("签名后的JAR缺少条目: " + name);
+        }
+        try (InputStream is = jar.getInputStream(entry)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, len);
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    /**
+     * 内嵌 JAR 签名使用的日志：只输出警告和错误，避免并发签名时输出大量信息
+     */
+    private static class QuietLog implements Log {
+        private final Log delegate;
+
+        QuietLog(Log delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        @Override
+        public void debug(CharSequence content) {
+        }
+
+        @Override
+        public void debug(CharSequence content, Throwable error) {
+        }
+
+        @Override
+        public void debug(Throwable error) {
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return false;
+        }
+
+        @Override
+        public void info(CharSequence content) {
+        }
+
+        @Override
+        public void info(CharSequence content, Throwable error) {
+        }
+
+        @Override
+        public void info(Throwable error) {
+        }
+
+        @Override
+        public boolean isWarnEnabled() {
+            return delegate.isWarnEnabled();
+        }
+
+        @Override
+        public void warn(CharSequence content) {
+            delegate.warn(content);
+        }
+
+        @Override
+        public void warn(CharSequence content, Throwable error) {
+            delegate.warn(content, error);
+        }
+
+        @Override
+        public void warn(Throwable error) {
+            delegate.warn(error);
+        }
+
+        @Override
+        public boolean isErrorEnabled() {
+            return delegate.isErrorEnabled();
+        }
+
+        @Override
+        public void error(CharSequence content) {
+            delegate.error(content);
+        }
+
+        @Override
+        public void error(CharSequence content, Throwable error) {
+            delegate.error(content, error);
+        }
+
+        @Override
+        public void error(Throwable error) {
+            delegate.error(error);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.github.xsluck;
+
+import java.io.File;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.github.xsluck.utils.BatchSignature;
+import com.github.xsluck.utils.SignerProvider;
+
+/**
+ * Maven插件：使用SM2算法对项目的所有构建产物签名（主 artifact 和附加的 -tests、-shaded、-sources 等 JAR/WAR）
+ * 私钥和证书链只加载、验证一次，各个 JAR 并发签名，每个 JAR 的日志带有文件名前缀；
+ * 配置 merkleBatch 时所有 JAR 共用一次签名（见 {@link BatchSignature}）
+ */
+@Mojo(name = "sign-all", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
+public class SM2SignAllMojo extends AbstractSM2SignMojo {
+
+    /**
+     * 是否签名主 artifact
+     */
+    @Parameter(property = "signMainArtifact", defaultValue = "true")
+    private boolean signMainArtifact;
+
+    /**
+     * 只签名这些 classifier 的附加 artifact（为空时签名所有附加 artifact）
+     */
+    @Parameter(property = "includeClassifiers")
+    private List<String> includeClassifiers;
+
+    /**
+     * 不签名这些 classifier 的附加 artifact
+     */
+    @Parameter(property = "excludeClassifiers")
+    private List<String> excludeClassifiers;
+
+    /**
+     * 同时签名的 JAR 数，0 表示使用 CPU 核数（每个 JAR 计算摘要的线程数由 threads 参数决定）
+     */
+    @Parameter(property = "artifactThreads", defaultValue = "0")
+    private int artifactThreads;
+
+    /**
+     * Merkle 批量签名（仅 sm2 格式）：所有构建产物的 .SF 文件组成一棵 Merkle 树，只对树根签名一次，
+     * 每个 JAR 的签名块中写入树根的签名和该 JAR 的包含路径；所有 JAR 同时签名（忽略 artifactThreads）
+     */
+    @Parameter(property = "merkleBatch", defaultValue = "false")
+    private boolean merkleBatch;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("跳过JAR包签名");
+            return;
+        }
+        if (project == null) {
+            throw new MojoExecutionException("无法获取 Maven 项目对象");
+        }
+        checkKeyFile();
+        if (!certChainFile.exists()) {
+            throw new MojoExecutionException("证书链文件不存在: " + certChainFile);
+        }
+        if (merkleBatch && !SM2JarSigner.FORMAT_SM2.equalsIgnoreCase(signatureFormat)) {
+            throw new MojoExecutionException("Merkle 批量签名只支持 sm2 格式: " + signatureFormat);
+        }
+
+        Map<File, String> jars = collectArtifacts();
+        if (jars.isEmpty()) {
+            getLog().warn("没有需要签名的构建产物");
+            return;
+        }
+
+        getLog().info("========================================");
+        getLog().info("开始使用SM2算法签名 " + jars.size() + " 个构建产物");
+        for (File jar : jars.keySet()) {
+            getLog().info("  " + jar.getAbsolutePath());
+        }
+        getLog().info(isLocalSigner() ? "私钥文件: " + keyFile.getAbsolutePath() : "签名提供者: " + signerProvider);
+        getLog().info("证书链文件: " + certChainFile.getAbsolutePath());
+        getLog().info("严格证书验证: " + strictCertValidation);
+        if (merkleBatch) {
+            getLog().info("Merkle 批量签名: 只对树根签名一次");
+        }
+        getLog().info("========================================");
+
+        // 私钥和证书链只加载一次，所有 JAR 共用
+        final PrivateKey privateKey;
+        final List<X509Certificate> certChain;
+        BatchSignature.Collector batch = null;
+        try {
+            getLog().info("加载私钥和证书链...");
+            privateKey = loadPrivateKey(keyFile);
+            certChain = loadCertificateChain(certChainFile);
+            if (merkleBatch) {
+                SignerProvider provider = getSignerProvider();
+                batch = new BatchSignature.Collector(
+                        provider != null ? provider : SignerProvider.local(privateKey, deterministicSignature));
+            }
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("加载私钥或证书链失败", e);
+        }
+
+        // 批量签名时每个 JAR 提交 .SF 文件后等待其他 JAR，所有 JAR 必须同时在签名
+        int poolSize = merkleBatch ? jars.size()
+                : Math.min(artifactThreads > 0 ? artifactThreads : Runtime.getRuntime().availableProcessors(),
+                        jars.size());
+        getLog().info("并发签名（" + poolSize + " 个线程）...");
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        List<String> failures = new ArrayList<>();
+        try {
+            // 批量签名的参与者在开始签名之前全部创建，先完成的 JAR 才会等待其他 JAR
+            Map<File, BatchSignature.Participant> participants = new LinkedHashMap<>();
+            if (batch != null) {
+                for (File file : jars.keySet()) {
+                    participants.put(file, batch.participant());
+                }
+            }
+            Map<File, Future<?>> futures = new LinkedHashMap<>();
+            for (Map.Entry<File, String> jar : jars.entrySet()) {
+                final File file = jar.getKey();
+                final Log log = new PrefixLog(getLog(), "[" + jar.getValue() + "] ");
+                final BatchSignature.Participant participant = participants.get(file);
+                futures.put(file, pool.submit(() -> {
+                    try {
+                        signAndVerify(file, file, privateKey, certChain, log, participant);
+                    } finally {
+                        // 提交 .SF 文件之前失败时退出批量签名，其他 JAR 不再等待
+                        if (participant != null) {
+                            participant.leave();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Map.Entry<File, Future<?>> future : futures.entrySet()) {
+                String label = jars.get(future.getKey());
+                try {
+                    future.getValue().get();
+                    getLog().info("✓ " + label + " 签名完成");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    getLog().error("✗ " + label + " 签名失败: " + cause.getMessage(), cause);
+                    failures.add(label + ": " + cause.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("签名被中断", e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new MojoExecutionException("部分构建产物签名失败: " + failures);
+        }
+        getLog().info("========================================");
+        getLog().info("✓ 已签名 " + jars.size() + " 个构建产物" + (merkleBatch ? "（Merkle 批量签名，1 次签名）" : ""));
+        getLog().info("========================================");
+    }
+
+    /**
+     * 收集需要签名的构建产物（JAR/WAR 文件，按 classifier 过滤，同一个文件只签名一次）
+     *
+     * @return 文件到日志标签（文件名）的映射
+     */
+    private Map<File, String> collectArtifacts() {
+        Map<File, String> jars = new LinkedHashMap<>();
+        if (signMainArtifact) {
+            addArtifact(jars, project.getArtifact());
+        }
+        for (Artifact artifact : project.getAttachedArtifacts()) {
+            String classifier = artifact.getClassifier() != null ? artifact.getClassifier() : "";
+            if (includeClassifiers != null && !includeClassifiers.isEmpty()
+                    && !includeClassifiers.contains(classifier)) {
+                getLog().debug("classifier 不在 includeClassifiers 中，跳过: " + artifact);
+                continue;
+            }
+            if (excludeClassifiers != null && excludeClassifiers.contains(classifier)) {
+                getLog().debug("classifier 在 excludeClassifiers 中，跳过: " + artifact);
+                continue;
+            }
+            addArtifact(jars, artifact);
+        }
+        return jars;
+    }
+
+    private void addArtifact(Map<File, String> jars, Artifact artifact) {
+        File file = artifact != null ? artifact.getFile() : null;
+        if (file == null || !file.isFile()) {
+            getLog().debug("构建产物没有文件，跳过: " + artifact);
+            return;
+        }
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        if (!name.endsWith(".jar") && !name.endsWith(".war")) {
+            getLog().debug("不是 JAR/WAR 文件，跳过: " + file);
+            return;
+        }
+        jars.put(file.getAbsoluteFile(), file.getName());
+    }
+
+    /**
+     * 每行日志加上前缀的日志（并发签名时区分不同的 JAR）
+     */
+    private static class PrefixLog implements Log {
+        private final Log delegate;
+        private final String prefix;
+
+        PrefixLog(Log delegate, String prefix) {
+            this.delegate = delegate;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return delegate.isDebugEnabled();
+        }
+
+        @Override
+        public void debug(CharSequence content) {
+            delegate.debug(prefix + content);
+        }
+
+        @Override
+        public void debug(CharSequence content, Throwable error) {
+            delegate.debug(prefix + content, error);
+        }
+
+        @Override
+        public void debug(Throwable error) {
+            delegate.debug(prefix, error);
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return delegate.isInfoEnabled();
+        }
+
+        @Override
+        public void info(CharSequence content) {
+            delegate.info(prefix + content);
+        }
+
+        @Override
+        public void info(CharSequence content, Throwable error) {
+            delegate.info(prefix + content, error);
+        }
+
+        @Override
+        public void info(Throwable error) {
+            delegate.info(prefix, error);
+        }
+
+        @Override
+        public boolean isWarnEnabled() {
+            return delegate.isWarnEnabled();
+        }
+
+        @Override
+        public void warn(CharSequence content) {
+            delegate.warn(prefix + content);
+        }
+
+        @Override
+        public void warn(CharSequence content, Throwable error) {
+            delegate.warn(prefix + content, error);
+        }
+
+        @Override
+        public void warn(Throwable error) {
+            delegate.warn(prefix, error);
+        }
+
+        @Override
+        public boolean isErrorEnabled() {
+            return delegate.isErrorEnabled();
+        }
+
+        @Override
+        public void error(CharSequence content) {
+            delegate.error(prefix + content);
+        }
+
+        @Override
+        public void error(CharSequence content, Throwable error) {
+            delegate.error(prefix + content, error);
+        }
+
+        @Override
+        public void error(Throwable error) {
+            delegate.error(prefix, error);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.xsluck;
+
+import java.io.Console;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.github.xsluck.utils.DeterministicSM2Signer;
+import com.github.xsluck.utils.SigningAgent;
+import com.github.xsluck.utils.SigningAgentClient;
+
+/**
+ * Maven插件：启动本机签名代理（前台运行，Ctrl+C 或空闲超时后退出）
+ * 私钥只在启动时解密一次，之后配置了 useAgent 的 sign / sign-all 目标把签名委托给代理，不再解密私钥
+ *
+ * 用法: mvn com.github.xsluck:sm2-jar-sign-maven-plugin:agent -DkeyFile=... -DcertChainFile=...
+ * 未指定 password 而私钥已加密时，从控制台读取密码
+ */
+@Mojo(name = "agent", requiresProject = false)
+public class SM2SigningAgentMojo extends AbstractSM2SignMojo {
+
+    /**
+     * 代理监听的本机端口，0 表示自动选择
+     */
+    @Parameter(property = "agentPort", defaultValue = "0")
+    private int agentPort;
+
+    /**
+     * 空闲超时（分钟）：超过该时间没有请求时代理退出，0 表示不超时
+     */
+    @Parameter(property = "agentIdleTimeout", defaultValue = "480")
+    private long agentIdleTimeout;
+
+    /**
+     * 处理签名请求的线程数，0 表示使用 CPU 核数
+     */
+    @Parameter(property = "agentThreads", defaultValue = "0")
+    private int agentThreads;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("跳过启动签名代理");
+            return;
+        }
+        if (keyFile == null || !keyFile.exists()) {
+            throw new MojoExecutionException("私钥文件不存在: " + keyFile);
+        }
+        if (!certChainFile.exists()) {
+            throw new MojoExecutionException("证书链文件不存在: " + certChainFile);
+        }
+
+        File infoFile = agentFile != null ? agentFile : SigningAgent.defaultInfoFile();
+        final SigningAgent agent;
+        try {
+            if (infoFile.isFile() && isAgentRunning(infoFile)) {
+                throw new MojoExecutionException("签名代理已在运行: " + infoFile);
+            }
+            readPasswordFromConsole();
+            getLog().info("加载私钥和证书链...");
+            PrivateKey privateKey = loadLocalPrivateKey(keyFile);
+            List<X509Certificate> certChain = loadCertificateChain(certChainFile);
+
+            if (!Arrays.equals(new DeterministicSM2Signer(privateKey).getPublicPoint(),
+                    DeterministicSM2Signer.publicPoint(certChain.get(0).getPublicKey()))) {
+                throw new MojoExecutionException("私钥与签名证书不匹配: " + certChain.get(0).getSubjectDN());
+            }
+
+            int threads = agentThreads > 0 ? agentThreads : Runtime.getRuntime().availableProcessors();
+            agent = new SigningAgent(privateKey, SigningAgent.keyId(keyFile), infoFile, agentPort, threads);
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("启动签名代理失败", e);
+        }
+
+        Thread shutdownHook = new Thread(() -> {
+            try {
+                agent.close();
+            } catch (Exception e) {
+                // 退出时删除信息文件失败，忽略
+            }
+        }, "sm2-sign-agent-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        getLog().info("========================================");
+        getLog().info("签名代理已启动，监听 127.0.0.1:" + agent.getPort());
+        getLog().info("代理信息文件: " + infoFile.getAbsolutePath());
+        getLog().info("签名时添加 -DuseAgent=true"
+                + (agentFile != null ? " -DagentFile=" + infoFile.getAbsolutePath() : "") + " 即可使用代理");
+        getLog().info(agentIdleTimeout > 0 ? "空闲 " + agentIdleTimeout + " 分钟后自动退出，Ctrl+C 立即退出" : "Ctrl+C 退出");
+        getLog().info("========================================");
+        try {
+            agent.run(TimeUnit.MINUTES.toMillis(agentIdleTimeout));
+            getLog().info("签名代理已退出，共完成 " + agent.getSignatureCount() + " 次签名");
+        } catch (Exception e) {
+            throw new MojoExecutionException("签名代理异常退出", e);
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // 正在关闭 JVM
+            }
+        }
+    }
+
+    /**
+     * 信息文件对应的代理是否仍在运行（上次异常退出时信息文件可能残留）
+     */
+    private static boolean isAgentRunning(File infoFile) {
+        try {
+            SigningAgentClient.open(infoFile).getKey(new byte[SigningAgent.KEY_ID_SIZE]);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 私钥已加密且未指定密码时从控制台读取密码（避免密码出现在命令行和进程列表中）
+     */
+    private void readPasswordFromConsole() throws Exception {
+        if (password != null && !password.isEmpty()) {
+            return;
+        }
+        String keyContent = new String(Files.readAllBytes(keyFile.toPath()), StandardCharsets.US_ASCII);
+        Console console = System.console();
+        if (!keyContent.contains("ENCRYPTED") || console == null) {
+            return;
+        }
+        char[] input = console.readPassword("私钥密码: ");
+        if (input != null) {
+            password = new String(input);
+        }
+    }
+}
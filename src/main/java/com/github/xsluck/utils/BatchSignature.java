@@ -0,0 +1,324 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merkle 批量签名：多个 JAR 的 .SF 文件作为一棵 Merkle 树的叶子，只对树根签名一次，
+ * 每个 JAR 的签名块中写入树根的签名和该 JAR 的包含路径（{@link SignatureBlock#SECTION_BATCH_PROOF}）
+ * 验证时用 .SF 文件和路径计算出树根（log2(n) 次哈希），再验证树根的签名
+ *
+ * 叶子哈希 = SM3(0x00 || SM3(.SF))，内部节点 = SM3(0x01 || 左 || 右)，每层最后落单的节点直接提升到上一层（与 {@link MerkleIndex} 相同）；
+ * 被签名的数据 = "SM2-BATCH-ROOT" || 版本(1字节) || 叶子数(4字节) || 树根
+ *
+ * 路径格式（大端序）: [版本(1字节)] [叶子序号(4字节)] [叶子数(4字节)] [路径长度(1字节)] [路径上的兄弟节点，每个 32 字节]
+ */
+public class BatchSignature {
+
+    public static final int VERSION_1 = 1;
+
+    private static final byte[] ROOT_PREFIX = "SM2-BATCH-ROOT".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int HASH_SIZE = SM3Digester.DIGEST_LENGTH;
+    private static final int PROOF_HEADER_SIZE = 10;
+    /** 叶子数不超过 2^31，路径长度不超过 31 */
+    private static final int MAX_PATH_LENGTH = 31;
+
+    /** 等待其他 JAR 到达的超时（分钟） */
+    private static final long WAIT_TIMEOUT = 60;
+
+    /**
+     * 一个 JAR 的包含路径
+     */
+    public static class Proof {
+        private final int index;
+        private final int leafCount;
+        private final byte[][] path;
+
+        Proof(int index, int leafCount, byte[][] path) {
+            this.index = index;
+            this.leafCount = leafCount;
+            this.path = path;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getLeafCount() {
+            return leafCount;
+        }
+
+        public int getPathLength() {
+            return path.length;
+        }
+
+        public byte[] encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(PROOF_HEADER_SIZE + path.length * HASH_SIZE);
+            buffer.put((byte) VERSION_1);
+            buffer.putInt(index);
+            buffer.putInt(leafCount);
+            buffer.put((byte) path.length);
+            for (byte[] node : path) {
+                buffer.put(node);
+            }
+            return buffer.array();
+        }
+
+        public static Proof decode(byte[] data) throws IOException {
+            if (data.length < PROOF_HEADER_SIZE) {
+                throw new IOException("批量签名路径不完整");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION_1) {
+                throw new IOException("不支持的批量签名路径版本: " + version);
+            }
+            int index = buffer.getInt();
+            int leafCount = buffer.getInt();
+            int length = buffer.get() & 0xFF;
+            if (leafCount <= 0 || index < 0 || index >= leafCount || length > MAX_PATH_LENGTH
+                    || data.length != PROOF_HEADER_SIZE + length * HASH_SIZE) {
+                throw new IOException("批量签名路径无效");
+            }
+            byte[][] path = new byte[length][HASH_SIZE];
+            for (byte[] node : path) {
+                buffer.get(node);
+            }
+            return new Proof(index, leafCount, path);
+        }
+
+        /**
+         * 用被签名的数据（.SF 文件）和路径计算树根
+         *
+         * @throws IOException 路径长度与叶子序号、叶子数不一致
+         */
+        public byte[] computeRoot(byte[] signedData) throws IOException {
+            byte[] hash = leafHash(signedData);
+            int position = index;
+            int size = leafCount;
+            int used = 0;
+            while (size > 1) {
+                int sibling = position ^ 1;
+                if (sibling < size) {
+                    if (used == path.length) {
+                        throw new IOException("批量签名路径过短");
+                    }
+                    byte[] other = path[used++];
+                    hash = (position & 1) == 0 ? MerkleIndex.nodeHash(hash, other) : MerkleIndex.nodeHash(other, hash);
+                }
+                position >>>= 1;
+                size = (size + 1) / 2;
+            }
+            if (used != path.length) {
+                throw new IOException("批量签名路径过长");
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * 对树根签名的数据
+     */
+    public static byte[] rootMessage(byte[] root, int leafCount) {
+        return ByteBuffer.allocate(ROOT_PREFIX.length + 5 + root.length).put(ROOT_PREFIX).put((byte) VERSION_1)
+                .putInt(leafCount).put(root).array();
+    }
+
+    static byte[] leafHash(byte[] signedData) {
+        byte[] digest = SM3Digester.hash(signedData);
+        SM3Digester digester = new SM3Digester();
+        digester.update(new byte[] { 0 }, 0, 1);
+        digester.update(digest, 0, digest.length);
+        return digester.digest();
+    }
+
+    /**
+     * 构建 Merkle 树
+     *
+     * @param signedData 每个叶子被签名的数据（.SF 文件）
+     * @return 各层节点，第 0 层为叶子，最后一层为树根
+     */
+    static List<byte[][]> buildTree(List<byte[]> signedData) {
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = new byte[signedData.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHash(signedData.get(i));
+        }
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int j = 0; j < parent.length; j++) {
+                parent[j] = 2 * j + 1 < level.length ? MerkleIndex.nodeHash(level[2 * j], level[2 * j + 1])
+                        : level[2 * j];
+            }
+            levels.add(parent);
+            level = parent;
+        }
+        return levels;
+    }
+
+    static Proof proof(List<byte[][]> levels, int index) {
+        List<byte[]> path = new ArrayList<>();
+        int position = index;
+        for (int i = 0; i < levels.size() - 1; i++) {
+            byte[][] level = levels.get(i);
+            int sibling = position ^ 1;
+            if (sibling < level.length) {
+                path.add(level[sibling]);
+            }
+            position >>>= 1;
+        }
+        return new Proof(index, levels.get(0).length, path.toArray(new byte[0][]));
+    }
+
+    /**
+     * 树根的签名和一个 JAR 的包含路径
+     */
+    public static class Signed {
+        private final byte[] signature;
+        private final Proof proof;
+
+        Signed(byte[] signature, Proof proof) {
+            this.signature = signature;
+            this.proof = proof;
+        }
+
+        /**
+         * 树根的签名（DER 编码）
+         */
+        public byte[] getSignature() {
+            return signature;
+        }
+
+        public Proof getProof() {
+            return proof;
+        }
+    }
+
+    /**
+     * 收集一批 JAR 的 .SF 文件：每个 JAR 对应一个参与者，所有参与者都提交（或退出）后构建 Merkle 树，只对树根签名一次
+     * 参与者在不同的线程中并发签名，提交后等待其他参与者；叶子按参与者创建的顺序排列，与到达顺序无关
+     */
+    public static class Collector {
+
+        private final SignerProvider provider;
+        private final List<Participant> participants = new ArrayList<>();
+        private int pending;
+        private boolean completed;
+        private byte[] signature;
+        private List<byte[][]> levels;
+        private Exception error;
+
+        /**
+         * @param provider 对树根签名的签名提供者
+         */
+        public Collector(SignerProvider provider) {
+            this.provider = provider;
+        }
+
+        /**
+         * 创建参与者（在开始签名之前为每个 JAR 创建一个）
+         */
+        public synchronized Participant participant() {
+            if (completed) {
+                throw new IllegalStateException("批量签名已完成");
+            }
+            Participant participant = new Participant(this);
+            participants.add(participant);
+            pending++;
+            return participant;
+        }
+
+        private synchronized Signed submit(Participant participant, byte[] signedData) throws Exception {
+            if (participant.state != Participant.WAITING) {
+                throw new IllegalStateException("每个参与者只能提交一次");
+            }
+            participant.state = Participant.SUBMITTED;
+            participant.signedData = signedData;
+            arrive();
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(WAIT_TIMEOUT);
+            while (!completed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IOException("等待其他 JAR 提交批量签名超时");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            if (error != null) {
+                throw new IOException("批量签名失败: " + error.getMessage(), error);
+            }
+            return new Signed(signature, proof(levels, participant.leafIndex));
+        }
+
+        private synchronized void leave(Participant participant) {
+            if (participant.state == Participant.WAITING) {
+                participant.state = Participant.LEFT;
+                arrive();
+            }
+        }
+
+        /**
+         * 一个参与者提交或退出；全部到齐后构建 Merkle 树并对树根签名
+         */
+        private void arrive() {
+            if (--pending > 0) {
+                return;
+            }
+            List<byte[]> leaves = new ArrayList<>();
+            for (Participant p : participants) {
+                if (p.state == Participant.SUBMITTED) {
+                    p.leafIndex = leaves.size();
+                    leaves.add(p.signedData);
+                }
+            }
+            if (!leaves.isEmpty()) {
+                try {
+                    levels = buildTree(leaves);
+                    byte[] root = levels.get(levels.size() - 1)[0];
+                    signature = provider.sign(rootMessage(root, leaves.size()));
+                } catch (Exception e) {
+                    error = e;
+                }
+            }
+            completed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * 批量签名的参与者（一个 JAR）：调用一次 {@link #sign(byte[])}，或在签名之前失败时调用 {@link #leave()}
+     */
+    public static class Participant {
+        private static final int WAITING = 0;
+        private static final int SUBMITTED = 1;
+        private static final int LEFT = 2;
+
+        private final Collector collector;
+        private int state = WAITING;
+        private byte[] signedData;
+        private int leafIndex;
+
+        private Participant(Collector collector) {
+            this.collector = collector;
+        }
+
+        /**
+         * 提交 .SF 文件并等待其他参与者，返回树根的签名和包含路径
+         */
+        public Signed sign(byte[] signedData) throws Exception {
+            return collector.submit(this, signedData);
+        }
+
+        /**
+         * 退出批量签名（已提交时无作用），其他参与者不再等待
+         */
+        public void leave() {
+            collector.leave(this);
+        }
+    }
+}
@@ -11,7 +11,6 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -316,76 +315,20 @@ public class CertificateChainUtil {
     }
 
     /**
-     * 创建包含证书链和签名的签名块
-     * 格式: [证书链编码数据] [签名数据]
+     * 创建包含证书链和签名的签名块（v2 格式，见 {@link SignatureBlock}）
      */
     public static byte[] createSignatureBlockWithChain(List<X509Certificate> certChain, byte[] signatureBytes)
             throws Exception {
-        byte[] chainData = encodeCertificateChain(certChain);
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        baos.write(chainData);
-        baos.write(signatureBytes);
-
-        return baos.toByteArray();
+        return SignatureBlock.encode(certChain, signatureBytes);
     }
 
     /**
      * 从签名块中提取证书链
-     * 这个方法尝试解析新格式（包含证书链）和旧格式（单个证书）
+     * 支持 v2 格式和旧格式（v1 证书链格式、直接拼接的 DER 证书），格式先识别再解析，不做逐字节尝试
      */
     public static List<X509Certificate> extractCertificateChainFromSignatureBlock(byte[] sigBlockData)
             throws Exception {
-        List<X509Certificate> certChain = new ArrayList<>();
-
-        try {
-            // 尝试解析新格式（证书链）
-            certChain = decodeCertificateChain(sigBlockData);
-            if (!certChain.isEmpty()) {
-                return certChain;
-            }
-        } catch (Exception e) {
-            // 如果新格式解析失败，尝试旧格式（单个证书）
-        }
-
-        // 尝试旧格式：直接提取单个或多个证书
-        CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
-
-        // 扩大搜索范围，支持更大的证书链（最大到数据长度减去签名长度）
-        int maxSearchLength = Math.max(sigBlockData.length - 64, sigBlockData.length * 9 / 10);
-
-        // 尝试不同的分割点提取证书
-        for (int i = 300; i < maxSearchLength; i++) {
-            try {
-                byte[] certBytes = Arrays.copyOfRange(sigBlockData, 0, i);
-
-                // 尝试用 generateCertificates 提取多个证书
-                try {
-                    ByteArrayInputStream bais = new ByteArrayInputStream(certBytes);
-                    for (Certificate cert : cf.generateCertificates(bais)) {
-                        if (cert instanceof X509Certificate) {
-                            certChain.add((X509Certificate) cert);
-                        }
-                    }
-                    if (!certChain.isEmpty()) {
-                        return certChain;
-                    }
-                } catch (Exception ex) {
-                    // 继续尝试单证书方式
-                }
-
-                // 单证书方式
-                Certificate cert = cf.generateCertificate(new ByteArrayInputStream(certBytes));
-                if (cert instanceof X509Certificate) {
-                    certChain.add((X509Certificate) cert);
-                    return certChain;
-                }
-            } catch (Exception e) {
-                // 继续尝试下一个分割点
-            }
-        }
-
-        throw new Exception("无法从签名块中提取证书");
+        return SignatureBlock.parse(sigBlockData).getCertChain();
     }
 
     /**
@@ -0,0 +1,177 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 逐块验证的只读条目通道
+ * 每次读取时先把数据所在的整块读入缓冲区并验证其 SM3 摘要，只有验证通过的块才会被返回；
+ * 可以随机定位：向后定位时跳过中间的数据（不压缩的条目不需要读取），向前定位时重新打开条目
+ *
+ * 创建前调用方必须确认各块的摘要可信（树根与 MANIFEST 中已签名的 SM3-Digest 一致），见 {@link LazyJarVerifier#openChannel(String)}
+ * 非线程安全
+ */
+public class ChunkVerifyingChannel implements SeekableByteChannel {
+
+    private final ZipFile zip;
+    private final ZipEntry entry;
+    private final String name;
+    private final int chunkSize;
+    private final byte[][] chunkDigests;
+    private final long size;
+
+    /** 当前打开的条目输入流及其位置（总是块的起始位置） */
+    private InputStream in;
+    private long inPosition;
+
+    /** 当前缓冲的已验证块 */
+    private final byte[] chunk;
+    private int chunkIndex = -1;
+    private int chunkLength;
+
+    private long position;
+    private boolean open = true;
+
+    /**
+     * @param chunkDigests 各块的摘要（已验证）
+     * @throws SecurityException 条目大小与分块数不一致
+     */
+    public ChunkVerifyingChannel(ZipFile zip, ZipEntry entry, int chunkSize, byte[][] chunkDigests) {
+        this.zip = zip;
+        this.entry = entry;
+        this.name = entry.getName();
+        this.chunkSize = chunkSize;
+        this.chunkDigests = chunkDigests;
+        this.size = entry.getSize();
+        if (size < 0 || (size + chunkSize - 1) / chunkSize != chunkDigests.length) {
+            throw new SecurityException("JAR条目的大小与分块摘要不一致: " + name);
+        }
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            int index = (int) (position / chunkSize);
+            load(index);
+            int offset = (int) (position - (long) index * chunkSize);
+            int length = Math.min(dst.remaining(), chunkLength - offset);
+            dst.put(chunk, offset, length);
+            position += length;
+            total += length;
+        }
+        return total;
+    }
+
+    /**
+     * 把第 index 块读入缓冲区并验证
+     *
+     * @throws SecurityException 块的摘要不匹配或数据不完整
+     */
+    private void load(int index) throws IOException {
+        if (index == chunkIndex) {
+            return;
+        }
+        chunkIndex = -1;
+        long start = (long) index * chunkSize;
+        if (in == null || inPosition > start) {
+            closeStream();
+            in = zip.getInputStream(entry);
+            inPosition = 0;
+        }
+        while (inPosition < start) {
+            long skipped = in.skip(start - inPosition);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new SecurityException("JAR条目数据不完整: " + name);
+                }
+                skipped = 1;
+            }
+            inPosition += skipped;
+        }
+
+        int expected = (int) Math.min(chunkSize, size - start);
+        int length = 0;
+        int n;
+        while (length < expected && (n = in.read(chunk, length, expected - length)) != -1) {
+            length += n;
+        }
+        inPosition += length;
+        byte[] actual = SM3Digester.current().update(chunk, 0, length).digest();
+        if (length != expected || !MessageDigest.isEqual(actual, chunkDigests[index])) {
+            closeStream();
+            throw new SecurityException("JAR条目签名验证失败: " + name + "（第 " + index + " 块）");
+        }
+        chunkIndex = index;
+        chunkLength = length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("位置不能为负数: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        closeStream();
+    }
+
+    private void closeStream() throws IOException {
+        if (in != null) {
+            InputStream stream = in;
+            in = null;
+            stream.close();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+
+/**
+ * 大条目的分块摘要
+ * 原始大小不小于阈值的条目按固定大小分块，每块单独计算 SM3 摘要，条目的 SM3-Digest 为分块摘要的树根：
+ * 根 = SM3(0x02 || 分块大小(4字节) || 分块数(4字节) || 块 0 的摘要 || 块 1 的摘要 || ...)
+ * 各块的摘要按顺序拼接后以 Base64 写入 MANIFEST 中该条目的 SM3-Chunk-Digests 属性，验证时可以逐块验证而不必读完整个条目
+ *
+ * 阈值和分块大小写入 .SF 主属性（SM3-Chunk-Threshold、SM3-Chunk-Size）并被签名，所有验证方式都按同一规则计算条目摘要
+ */
+public class ChunkedDigest {
+
+    public static final String THRESHOLD_ATTRIBUTE = "SM3-Chunk-Threshold";
+
+    public static final String CHUNK_SIZE_ATTRIBUTE = "SM3-Chunk-Size";
+
+    public static final String CHUNKS_ATTRIBUTE = "SM3-Chunk-Digests";
+
+    /** 默认分块大小（4MB） */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final long threshold;
+    private final int chunkSize;
+
+    /**
+     * @param threshold 条目原始大小不小于此值时分块计算摘要
+     * @param chunkSize 分块大小
+     */
+    public ChunkedDigest(long threshold, int chunkSize) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("分块摘要的阈值必须大于 0: " + threshold);
+        }
+        if (chunkSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("分块大小不能小于 " + MIN_CHUNK_SIZE + ": " + chunkSize);
+        }
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 从 .SF 主属性读取分块规则
+     *
+     * @return 分块规则，签名时未启用分块摘要时返回 null
+     */
+    public static ChunkedDigest fromSignatureFile(ManifestSections sf) {
+        return fromAttributes(sf.getMainAttribute(THRESHOLD_ATTRIBUTE), sf.getMainAttribute(CHUNK_SIZE_ATTRIBUTE));
+    }
+
+    /**
+     * 由 .SF 主属性 SM3-Chunk-Threshold 和 SM3-Chunk-Size 的值创建分块规则
+     *
+     * @return 分块规则，两个属性都不存在时返回 null
+     */
+    public static ChunkedDigest fromAttributes(String threshold, String chunkSize) {
+        if (threshold == null && chunkSize == null) {
+            return null;
+        }
+        if (threshold == null || chunkSize == null) {
+            throw new SecurityException("签名文件中的分块摘要属性不完整");
+        }
+        try {
+            return new ChunkedDigest(Long.parseLong(threshold.trim()), Integer.parseInt(chunkSize.trim()));
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("签名文件中的分块摘要属性无效: " + e.getMessage());
+        }
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 条目是否按分块计算摘要
+     */
+    public boolean applies(ZipEntry entry) {
+        return entry.getSize() >= threshold;
+    }
+
+    /**
+     * 大小为 size 的条目是否按分块计算摘要
+     */
+    public boolean applies(long size) {
+        return size >= threshold;
+    }
+
+    /**
+     * 顺序计算各块的摘要
+     */
+    public byte[][] digestChunks(InputStream in) throws IOException {
+        List<byte[]> digests = new ArrayList<>();
+        byte[] buffer = new byte[chunkSize];
+        int length;
+        while ((length = readChunk(in, buffer)) > 0) {
+            digests.add(SM3Digester.current().update(buffer, 0, length).digest());
+        }
+        return digests.toArray(new byte[0][]);
+    }
+
+    /**
+     * 并行计算各块的摘要：调用线程顺序读取（解压）数据，各块的摘要提交到线程池计算
+     * 同时在途的块数受限，内存占用约为 2 * 线程数 * 分块大小
+     *
+     * @param pool    计算摘要的线程池（调用线程不能是该线程池的工作线程）
+     * @param threads 线程池的线程数
+     */
+    public byte[][] digestChunks(InputStream in, ExecutorService pool, int threads) throws IOException {
+        if (threads <= 1) {
+            return digestChunks(in);
+        }
+        int window = threads * 2;
+        List<byte[]> digests = new ArrayList<>();
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try {
+            while (true) {
+                final byte[] buffer = new byte[chunkSize];
+                final int length = readChunk(in, buffer);
+                if (length <= 0) {
+                    break;
+                }
+                pending.add(pool.submit(() -> SM3Digester.current().update(buffer, 0, length).digest()));
+                if (pending.size() >= window) {
+                    digests.add(await(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                digests.add(await(pending.poll()));
+            }
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(false);
+            }
+        }
+        return digests.toArray(new byte[0][]);
+    }
+
+    /**
+     * 顺序计算条目的分块摘要树根
+     */
+    public byte[] digest(InputStream in) throws IOException {
+        return root(digestChunks(in));
+    }
+
+    /**
+     * 由各块的摘要计算树根
+     */
+    public byte[] root(byte[][] chunkDigests) {
+        SM3Digester digester = new SM3Digester();
+        int count = chunkDigests.length;
+        digester.update(new byte[] { 2, (byte) (chunkSize >>> 24), (byte) (chunkSize >>> 16),
+                (byte) (chunkSize >>> 8), (byte) chunkSize, (byte) (count >>> 24), (byte) (count >>> 16),
+                (byte) (count >>> 8), (byte) count }, 0, 9);
+        for (byte[] chunkDigest : chunkDigests) {
+            digester.update(chunkDigest, 0, chunkDigest.length);
+        }
+        return digester.digest();
+    }
+
+    /**
+     * 各块的摘要按顺序拼接后的 Base64（MANIFEST 中 SM3-Chunk-Digests 属性的值）
+     */
+    public static String encodeChunks(byte[][] chunkDigests) {
+        byte[] joined = new byte[chunkDigests.length * SM3Digester.DIGEST_LENGTH];
+        for (int i = 0; i < chunkDigests.length; i++) {
+            System.arraycopy(chunkDigests[i], 0, joined, i * SM3Digester.DIGEST_LENGTH, SM3Digester.DIGEST_LENGTH);
+        }
+        return Base64.getEncoder().encodeToString(joined);
+    }
+
+    /**
+     * 解析 SM3-Chunk-Digests 属性
+     */
+    public static byte[][] decodeChunks(String value) {
+        byte[] joined;
+        try {
+            joined = Base64.getDecoder().decode(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("分块摘要无效: " + e.getMessage());
+        }
+        if (joined.length % SM3Digester.DIGEST_LENGTH != 0) {
+            throw new SecurityException("分块摘要的长度无效: " + joined.length);
+        }
+        byte[][] chunkDigests = new byte[joined.length / SM3Digester.DIGEST_LENGTH][];
+        for (int i = 0; i < chunkDigests.length; i++) {
+            chunkDigests[i] = new byte[SM3Digester.DIGEST_LENGTH];
+            System.arraycopy(joined, i * SM3Digester.DIGEST_LENGTH, chunkDigests[i], 0, SM3Digester.DIGEST_LENGTH);
+        }
+        return chunkDigests;
+    }
+
+    /**
+     * 读满一块（最后一块可能不足）
+     *
+     * @return 读取的字节数，已到末尾时返回 0
+     */
+    static int readChunk(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        int n;
+        while (length < buffer.length && (n = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += n;
+        }
+        return length;
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("摘要计算被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("摘要计算失败: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ChunkedDigest)) {
+            return false;
+        }
+        ChunkedDigest other = (ChunkedDigest) obj;
+        return threshold == other.threshold && chunkSize == other.chunkSize;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(threshold) * 31 + chunkSize;
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.SignatureException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.Store;
+
+/**
+ * CMS/PKCS#7 SignedData 格式的签名块
+ * 对 .SF 文件做分离式（detached）签名，签名算法 SM3withSM2，签名证书及证书链嵌入 SignedData，
+ * 与 jarsigner 生成的 .RSA/.EC 签名块结构相同，可以用标准 CMS 工具解析
+ */
+public class CmsSignatureBlock {
+
+    /** ContentInfo 中 signedData 类型的 OID (1.2.840.113549.1.7.2) 的 DER 编码 */
+    private static final byte[] SIGNED_DATA_OID = { 0x06, 0x09, 0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7,
+            0x0D, 0x01, 0x07, 0x02 };
+
+    static {
+        if (Security.getProvider("BC") == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    /**
+     * 是否为 CMS SignedData 格式：DER SEQUENCE 开头，紧跟 signedData 的 OID
+     */
+    public static boolean isCms(byte[] data) {
+        if (data.length < 2 + SIGNED_DATA_OID.length || data[0] != 0x30) {
+            return false;
+        }
+        int first = data[1] & 0xFF;
+        int offset = 2 + (first < 0x80 ? 0 : first & 0x7F);
+        if (offset + SIGNED_DATA_OID.length > data.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNED_DATA_OID.length; i++) {
+            if (data[offset + i] != SIGNED_DATA_OID[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 创建 CMS 签名块
+     *
+     * @param sfData     .SF 文件内容（不嵌入 SignedData）
+     * @param privateKey 签名私钥
+     * @param certChain  证书链（叶子证书在前）
+     * @return DER 编码的 ContentInfo
+     */
+    public static byte[] create(byte[] sfData, PrivateKey privateKey, List<X509Certificate> certChain)
+            throws Exception {
+        return create(sfData, privateKey, certChain, true, false);
+    }
+
+    /**
+     * 创建 CMS 签名块
+     *
+     * @param sfData        .SF 文件内容（不嵌入 SignedData）
+     * @param privateKey    签名私钥（也可以是签名代理持有的私钥，见 {@link SigningAgentClient.AgentKey}）
+     * @param certChain     证书链（叶子证书在前）
+     * @param signingTime   是否在签名属性中写入签名时间（当前时间）；可重现签名时不写入，
+     *                      否则每次签名的结果都不同，而且验证时会要求证书在该时间有效
+     * @param deterministic 是否使用确定性 SM2 签名（见 {@link DeterministicSM2Signer}）
+     * @return DER 编码的 ContentInfo
+     */
+    public static byte[] create(byte[] sfData, PrivateKey privateKey, List<X509Certificate> certChain,
+            boolean signingTime, boolean deterministic) throws Exception {
+        return create(sfData, SignerProvider.local(privateKey, deterministic).asContentSigner(), certChain,
+                signingTime);
+    }
+
+    /**
+     * 创建 CMS 签名块
+     *
+     * @param sfData        .SF 文件内容（不嵌入 SignedData）
+     * @param contentSigner 签名器（见 {@link SignerProvider#asContentSigner()}）
+     * @param certChain     证书链（叶子证书在前）
+     * @param signingTime   是否在签名属性中写入签名时间（当前时间）
+     * @return DER 编码的 ContentInfo
+     */
+    public static byte[] create(byte[] sfData, ContentSigner contentSigner, List<X509Certificate> certChain,
+            boolean signingTime) throws Exception {
+        JcaSignerInfoGeneratorBuilder signerInfoBuilder = new JcaSignerInfoGeneratorBuilder(
+                new JcaDigestCalculatorProviderBuilder().setProvider("BC").build());
+        if (!signingTime) {
+            signerInfoBuilder.setSignedAttributeGenerator(new DefaultSignedAttributeTableGenerator() {
+                @Override
+                @SuppressWarnings("rawtypes")
+                protected Hashtable createStandardAttributeTable(Map parameters) {
+                    Hashtable table = super.createStandardAttributeTable(parameters);
+                    table.remove(CMSAttributes.signingTime);
+                    return table;
+                }
+            });
+        }
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        generator.addSignerInfoGenerator(signerInfoBuilder.build(contentSigner, certChain.get(0)));
+        generator.addCertificates(new JcaCertStore(certChain));
+
+        CMSSignedData signedData = generator.generate(new CMSProcessableByteArray(sfData), false);
+        return signedData.getEncoded(ASN1Encoding.DER);
+    }
+
+    /**
+     * 提取签名块中的证书链，按签名证书、颁发者的顺序排列
+     */
+    public static List<X509Certificate> extractCertificateChain(byte[] data) throws Exception {
+        CMSSignedData signedData = new CMSSignedData(data);
+        return orderCertificateChain(signedData, getSigner(signedData));
+    }
+
+    /**
+     * 验证 .SF 文件的签名
+     *
+     * @return 证书链（签名证书在前）
+     * @throws SignatureException 签名无效
+     */
+    public static List<X509Certificate> verify(byte[] sfData, byte[] data) throws Exception {
+        CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(sfData), data);
+        SignerInformation signer = getSigner(signedData);
+        List<X509Certificate> certChain = orderCertificateChain(signedData, signer);
+
+        boolean valid = signer
+                .verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider("BC").build(certChain.get(0)));
+        if (!valid) {
+            throw new SignatureException("CMS 签名验证失败");
+        }
+        return certChain;
+    }
+
+    private static SignerInformation getSigner(CMSSignedData signedData) throws IOException {
+        Collection<SignerInformation> signers = signedData.getSignerInfos().getSigners();
+        if (signers.size() != 1) {
+            throw new IOException("CMS 签名块应包含且仅包含一个签名者，实际: " + signers.size());
+        }
+        return signers.iterator().next();
+    }
+
+    /**
+     * 从 SignedData 的证书集合中找到签名证书，再按颁发者依次连接成证书链
+     */
+    @SuppressWarnings("unchecked")
+    private static List<X509Certificate> orderCertificateChain(CMSSignedData signedData, SignerInformation signer)
+            throws Exception {
+        Store<X509CertificateHolder> store = signedData.getCertificates();
+        Collection<X509CertificateHolder> holders = store.getMatches(null);
+        JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider("BC");
+
+        X509CertificateHolder current = null;
+        for (X509CertificateHolder holder : holders) {
+            if (signer.getSID().match(holder)) {
+                current = holder;
+                break;
+            }
+        }
+        if (current == null) {
+            throw new IOException("CMS 签名块中缺少签名证书");
+        }
+
+        List<X509CertificateHolder> remaining = new ArrayList<>(holders);
+        remaining.remove(current);
+        List<X509Certificate> chain = new ArrayList<>();
+        chain.add(converter.getCertificate(current));
+        while (!current.getSubject().equals(current.getIssuer())) {
+            X509CertificateHolder issuer = null;
+            for (Iterator<X509CertificateHolder> it = remaining.iterator(); it.hasNext();) {
+                X509CertificateHolder candidate = it.next();
+                if (candidate.getSubject().equals(current.getIssuer())) {
+                    issuer = candidate;
+                    it.remove();
+                    break;
+                }
+            }
+            if (issuer == null) {
+                break;
+            }
+            chain.add(converter.getCertificate(issuer));
+            current = issuer;
+        }
+        return chain;
+    }
+}
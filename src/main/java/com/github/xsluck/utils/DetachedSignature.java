@@ -0,0 +1,198 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipException;
+
+/**
+ * 分离式签名（.sm2sig 文件）
+ * 不修改 JAR 本身，签名保存在旁边的独立文件中，只保证传输完整性（JAR 内部不包含签名，运行时无法自验证）
+ *
+ * 文件格式:
+ * [魔数 "SM2S"(4字节)] [版本(1字节)] [保留(3字节)] [描述长度(4字节)] [描述数据] [签名块长度(4字节)] [签名块]
+ *
+ * 描述数据为 MANIFEST 格式的文本，主属性包含整个文件的 SM3 摘要（SM3-Digest-File）、文件名和大小，
+ * 可选地包含每个条目的 SM3 摘要（见 {@link #digestEntries(JarFile, int)}）；签名块与 .SM2 文件相同（v2 格式或 CMS），对描述数据签名
+ * 验证时文件名、大小、整个文件的摘要和条目摘要（存在时）都必须与文件一致
+ */
+public class DetachedSignature {
+
+    public static final String EXTENSION = ".sm2sig";
+
+    public static final byte[] MAGIC = { 'S', 'M', '2', 'S' };
+
+    public static final int VERSION_1 = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    /** 内存映射的分块大小 */
+    private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private final byte[] descriptor;
+    private final byte[] signatureBlock;
+
+    private DetachedSignature(byte[] descriptor, byte[] signatureBlock) {
+        this.descriptor = descriptor;
+        this.signatureBlock = signatureBlock;
+    }
+
+    /**
+     * 被签名的描述数据
+     */
+    public byte[] getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * 签名块（格式见 {@link SignatureBlock}）
+     */
+    public byte[] getSignatureBlock() {
+        return signatureBlock;
+    }
+
+    /**
+     * 解析描述数据
+     */
+    public Manifest getDescriptorManifest() throws IOException {
+        return new Manifest(new ByteArrayInputStream(descriptor));
+    }
+
+    /**
+     * 顺序读取整个文件计算 SM3 摘要（按块内存映射，内存占用与文件大小无关）
+     */
+    public static byte[] digestFile(Path file) throws IOException {
+        SM3Digester digester = new SM3Digester();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += CHUNK_SIZE) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(CHUNK_SIZE, size - position));
+                digester.update(chunk);
+            }
+        }
+        return digester.digest();
+    }
+
+    /**
+     * 计算所有文件条目（跳过目录和签名相关的文件）解压后内容的 SM3 摘要，按 JAR 中的条目顺序返回
+     * 签名和验证使用同一规则：不分块，不使用增量缓存
+     *
+     * @param threads 计算摘要的线程数，0 表示使用 CPU 核数
+     * @return 条目名称到 SM3 摘要（Base64）的映射
+     */
+    public static Map<String, String> digestEntries(JarFile jar, int threads) throws IOException {
+        List<JarEntry> files = new ArrayList<>();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && !JarSignatureVerifier.isSignatureRelated(entry.getName())) {
+                files.add(entry);
+            }
+        }
+        byte[][] digests;
+        try (JarDigestEngine engine = new JarDigestEngine(threads)) {
+            digests = engine.digest(jar, files);
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            result.put(files.get(i).getName(), Base64.getEncoder().encodeToString(digests[i]));
+        }
+        return result;
+    }
+
+    /**
+     * 创建描述数据
+     *
+     * @param fileName     文件名（不含路径）
+     * @param size         文件大小
+     * @param fileDigest   整个文件的 SM3 摘要
+     * @param entryDigests 条目名称到 SM3 摘要（Base64）的映射，为空时不写入条目摘要
+     */
+    public static byte[] createDescriptor(String fileName, long size, byte[] fileDigest,
+            Map<String, String> entryDigests, String createdBy) throws IOException {
+        Manifest manifest = new Manifest();
+        Attributes main = manifest.getMainAttributes();
+        main.putValue("Signature-Version", "1.0");
+        main.putValue("Created-By", createdBy);
+        main.putValue("File-Name", fileName);
+        main.putValue("File-Size", String.valueOf(size));
+        main.putValue("SM3-Digest-File", Base64.getEncoder().encodeToString(fileDigest));
+        if (entryDigests != null) {
+            for (Map.Entry<String, String> entry : entryDigests.entrySet()) {
+                Attributes attrs = new Attributes();
+                attrs.putValue("SM3-Digest", entry.getValue());
+                manifest.getEntries().put(entry.getKey(), attrs);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 编码分离式签名文件
+     */
+    public static byte[] encode(byte[] descriptor, byte[] signatureBlock) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 + descriptor.length + 4 + signatureBlock.length);
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION_1);
+        buffer.put(new byte[3]);
+        buffer.putInt(descriptor.length);
+        buffer.put(descriptor);
+        buffer.putInt(signatureBlock.length);
+        buffer.put(signatureBlock);
+        return buffer.array();
+    }
+
+    /**
+     * 解析分离式签名文件
+     */
+    public static DetachedSignature parse(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE + 8 || !Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC)) {
+            throw new ZipException("不是有效的分离式签名文件");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.position(MAGIC.length);
+        int version = buffer.get() & 0xFF;
+        if (version != VERSION_1) {
+            throw new IOException("不支持的分离式签名版本: " + version);
+        }
+        buffer.position(HEADER_SIZE);
+        byte[] descriptor = readBlock(buffer);
+        byte[] signatureBlock = readBlock(buffer);
+        if (buffer.hasRemaining()) {
+            throw new IOException("分离式签名文件末尾有多余数据");
+        }
+        return new DetachedSignature(descriptor, signatureBlock);
+    }
+
+    private static byte[] readBlock(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 4) {
+            throw new IOException("分离式签名文件不完整");
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("分离式签名文件长度无效: " + length);
+        }
+        byte[] block = new byte[length];
+        buffer.get(block);
+        return block;
+    }
+}
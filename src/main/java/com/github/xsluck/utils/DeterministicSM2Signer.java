@@ -0,0 +1,97 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.security.InvalidKeyException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.function.Function;
+
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.RuntimeOperatorException;
+
+/**
+ * 确定性 SM2 签名（SM3withSM2）
+ * 随机数 k 按 RFC 6979 的方式由私钥和消息摘要 e 经 HMAC-SM3 派生，相同的私钥和数据总是得到相同的签名值，
+ * 用于可重现签名；签名值与 BouncyCastle 的 SM3withSM2 相同（DER 编码的 r、s），验证方不需要任何改动
+ * 用户标识使用 GM/T 0009 的默认值 1234567812345678；签名过程见 {@link PrecomputedSM2Signer}
+ *
+ * 也可以只对消息摘要 e = SM3(Z_A || M) 签名（{@link #signDigest(byte[])}），调用方用公钥自行计算 e（{@link #messageDigest(byte[], byte[])}），
+ * 签名代理使用这种方式，私钥不离开代理进程
+ */
+public class DeterministicSM2Signer extends PrecomputedSM2Signer {
+
+    /**
+     * @param privateKey SM2 私钥
+     * @throws InvalidKeyException 不是 EC 私钥
+     */
+    public DeterministicSM2Signer(PrivateKey privateKey) throws InvalidKeyException {
+        super(privateKey, true);
+    }
+
+    /**
+     * 计算 SM2 签名的消息摘要 e = SM3(Z_A || data)（只需要公钥）
+     *
+     * @param publicPoint SM2 公钥点的编码（sm2p256v1 曲线，压缩或未压缩格式）
+     */
+    public static byte[] messageDigest(byte[] publicPoint, byte[] data) {
+        byte[] userHash = SM2Curve.userHash(SM2Curve.decodePoint(publicPoint).getEncoded(false));
+        SM3Digest digest = new SM3Digest();
+        digest.update(userHash, 0, userHash.length);
+        digest.update(data, 0, data.length);
+        byte[] e = new byte[digest.getDigestSize()];
+        digest.doFinal(e, 0);
+        return e;
+    }
+
+    /**
+     * 公钥点的编码（未压缩格式）
+     *
+     * @throws InvalidKeyException 不是 EC 公钥
+     */
+    public static byte[] publicPoint(PublicKey publicKey) throws InvalidKeyException {
+        AsymmetricKeyParameter key = ECUtil.generatePublicKeyParameter(publicKey);
+        if (!(key instanceof ECPublicKeyParameters)) {
+            throw new InvalidKeyException("不是 SM2 公钥: " + publicKey.getAlgorithm());
+        }
+        return ((ECPublicKeyParameters) key).getQ().getEncoded(false);
+    }
+
+    /**
+     * 用签名函数（数据到 DER 编码的签名值）构造 SM3withSM2 的 ContentSigner
+     */
+    static ContentSigner contentSigner(final Function<byte[], byte[]> signer) {
+        final AlgorithmIdentifier algorithm = new DefaultSignatureAlgorithmIdentifierFinder().find("SM3withSM2");
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        return new ContentSigner() {
+            @Override
+            public AlgorithmIdentifier getAlgorithmIdentifier() {
+                return algorithm;
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                return buffer;
+            }
+
+            @Override
+            public byte[] getSignature() {
+                try {
+                    return signer.apply(buffer.toByteArray());
+                } catch (RuntimeOperatorException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw new RuntimeOperatorException("SM2 签名失败: " + e.getMessage(), e);
+                } finally {
+                    buffer.reset();
+                }
+            }
+        };
+    }
+}
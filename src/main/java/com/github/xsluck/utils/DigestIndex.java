@@ -0,0 +1,218 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * 条目摘要的二进制索引（META-INF/别名.SMI）
+ * 运行时验证不再需要把 MANIFEST.MF 的每个段解析为 Attributes 对象：索引按名称哈希排序、记录定长，
+ * 可以直接在内存映射的缓冲区上二分查找，查找和比较摘要时不为每个条目分配对象。索引整体的 SM3 摘要写入 .SF 文件并被签名
+ *
+ * 格式（大端序）:
+ * [魔数 "SM3I"(4字节)] [版本(1字节)] [保留(3字节)] [条目数 n(4字节)] [名称表长度(4字节)]
+ * [记录: n 个 (名称哈希(8字节), 名称偏移(4字节), 名称长度(4字节), SM3 摘要(32字节))，按 (名称哈希, 名称) 排序]
+ * [名称表: UTF-8 名称]
+ *
+ * 名称哈希为名称 UTF-8 字节的 64 位 FNV-1a 哈希（只用于定位，命中后再比较名称本身）
+ */
+public class DigestIndex {
+
+    public static final String EXTENSION = ".SMI";
+
+    public static final byte[] MAGIC = { 'S', 'M', '3', 'I' };
+
+    public static final int VERSION_1 = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int DIGEST_SIZE = SM3Digester.DIGEST_LENGTH;
+    private static final int RECORD_SIZE = 16 + DIGEST_SIZE;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 创建索引时的一条记录
+     */
+    private static class Item {
+        private final byte[] name;
+        private final long hash;
+        private final byte[] digest;
+
+        Item(byte[] name, byte[] digest) {
+            this.name = name;
+            this.hash = hash(name);
+            this.digest = digest;
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int count;
+    private final int namesOffset;
+    private final int namesLength;
+
+    private DigestIndex(ByteBuffer data, int count, int namesLength) {
+        this.data = data;
+        this.count = count;
+        this.namesOffset = HEADER_SIZE + count * RECORD_SIZE;
+        this.namesLength = namesLength;
+    }
+
+    /**
+     * 创建索引
+     *
+     * @param entryDigests 条目名称到 SM3 摘要的映射
+     */
+    public static byte[] encode(Map<String, byte[]> entryDigests) {
+        List<Item> items = new ArrayList<>(entryDigests.size());
+        int namesLength = 0;
+        for (Map.Entry<String, byte[]> entry : entryDigests.entrySet()) {
+            Item item = new Item(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+            items.add(item);
+            namesLength += item.name.length;
+        }
+        Collections.sort(items, (a, b) -> {
+            int cmp = Long.compareUnsigned(a.hash, b.hash);
+            return cmp != 0 ? cmp : compareBytes(a.name, b.name);
+        });
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + items.size() * RECORD_SIZE + namesLength);
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION_1);
+        buffer.put(new byte[3]);
+        buffer.putInt(items.size());
+        buffer.putInt(namesLength);
+        int nameOffset = 0;
+        for (Item item : items) {
+            buffer.putLong(item.hash);
+            buffer.putInt(nameOffset);
+            buffer.putInt(item.name.length);
+            buffer.put(item.digest);
+            nameOffset += item.name.length;
+        }
+        for (Item item : items) {
+            buffer.put(item.name);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 读取索引（可以是内存映射的缓冲区），只检查结构；内容的完整性由调用方用 .SF 中的摘要验证
+     */
+    public static DigestIndex wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.slice();
+        if (data.remaining() < HEADER_SIZE) {
+            throw new ZipException("摘要索引不完整");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.get(i) != MAGIC[i]) {
+                throw new ZipException("不是有效的摘要索引");
+            }
+        }
+        if (data.get(4) != VERSION_1) {
+            throw new IOException("不支持的摘要索引版本: " + data.get(4));
+        }
+        int count = data.getInt(8);
+        int namesLength = data.getInt(12);
+        if (count < 0 || namesLength < 0
+                || data.remaining() != HEADER_SIZE + (long) count * RECORD_SIZE + namesLength) {
+            throw new ZipException("摘要索引长度无效");
+        }
+        return new DigestIndex(data, count, namesLength);
+    }
+
+    /**
+     * 条目数
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 查找条目
+     *
+     * @return 记录序号，不存在时返回 -1
+     */
+    public int find(String name) {
+        byte[] raw = name.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(raw);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = HEADER_SIZE + mid * RECORD_SIZE;
+            int cmp = Long.compareUnsigned(data.getLong(record), hash);
+            if (cmp == 0) {
+                cmp = compareName(record, raw);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 记录中的摘要是否与实际摘要相同（直接在缓冲区上比较，不复制）
+     */
+    public boolean digestEquals(int index, byte[] actual) {
+        if (actual.length != DIGEST_SIZE) {
+            return false;
+        }
+        int position = HEADER_SIZE + index * RECORD_SIZE + 16;
+        int diff = 0;
+        for (int i = 0; i < DIGEST_SIZE; i++) {
+            diff |= data.get(position + i) ^ actual[i];
+        }
+        return diff == 0;
+    }
+
+    /**
+     * 比较记录中的名称与给定名称（字节序）
+     */
+    private int compareName(int record, byte[] name) {
+        int offset = data.getInt(record + 8);
+        int length = data.getInt(record + 12);
+        if (offset < 0 || length < 0 || (long) offset + length > namesLength) {
+            throw new SecurityException("摘要索引的名称表无效");
+        }
+        int position = namesOffset + offset;
+        int common = Math.min(length, name.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (data.get(position + i) & 0xFF) - (name[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - name.length;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    static long hash(byte[] name) {
+        long hash = FNV_OFFSET;
+        for (byte b : name) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
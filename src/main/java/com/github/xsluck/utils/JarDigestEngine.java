@@ -0,0 +1,282 @@
+package com.github.xsluck.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * JAR 条目 SM3 摘要计算引擎
+ * 使用固定大小的线程池并发计算摘要，结果按输入条目的顺序返回，与顺序计算的结果完全一致
+ * 签名插件和运行时验证工具共用此引擎
+ *
+ * 设置了分块规则（{@link ChunkedDigest}）时，大条目的摘要为分块摘要的树根：
+ * 大条目由单独的读取线程逐个顺序解压，各块的摘要提交到单独的分块线程池并行计算，
+ * 不排在整体计算的条目之后，也不阻塞其他条目的结果；工作线程从不等待其他任务，不会死锁
+ */
+public class JarDigestEngine implements Closeable {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final int threads;
+    private ExecutorService executor;
+    /** 计算大条目各块摘要的线程池 */
+    private ExecutorService chunkExecutor;
+    /** 顺序读取（解压）大条目的线程，同时只读取一个大条目，内存占用约为 2 * 线程数 * 分块大小 */
+    private ExecutorService readerExecutor;
+    private ChunkedDigest chunking;
+
+    /**
+     * @param threads 工作线程数，小于等于 0 时使用 CPU 核数，等于 1 时在调用线程中顺序计算
+     */
+    public JarDigestEngine(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 设置大条目的分块规则，为 null 时所有条目都按整体计算摘要
+     */
+    public void setChunkedDigest(ChunkedDigest chunking) {
+        this.chunking = chunking;
+    }
+
+    /**
+     * 计算大条目各块的摘要（块在调用线程中顺序读取，摘要在分块线程池中并行计算）
+     */
+    public byte[][] digestChunks(ZipFile zip, ZipEntry entry, ChunkedDigest chunking) throws IOException {
+        try (InputStream is = zip.getInputStream(entry)) {
+            return threads == 1 ? chunking.digestChunks(is) : chunking.digestChunks(is, getChunkExecutor(), threads);
+        }
+    }
+
+    /**
+     * 计算条目的 SM3 摘要
+     *
+     * @param zip     条目所在的 ZIP/JAR 文件
+     * @param entries 要计算摘要的条目
+     * @return 摘要数组，顺序与 entries 一致
+     */
+    public byte[][] digest(final ZipFile zip, List<? extends ZipEntry> entries) throws IOException {
+        byte[][] digests = new byte[entries.size()][];
+
+        if (threads == 1 || entries.size() < 2 && !isChunked(entries)) {
+            for (int i = 0; i < entries.size(); i++) {
+                digests[i] = digestEntry(zip, entries.get(i), chunking);
+            }
+            return digests;
+        }
+
+        // 大条目提交给读取线程，与其他条目的任务同时进行
+        List<Future<byte[]>> futures = new ArrayList<>(entries.size());
+        for (final ZipEntry entry : entries) {
+            futures.add(isChunked(entry) ? getReaderExecutor().submit(() -> digestChunked(zip, entry))
+                    : getExecutor().submit(() -> digestEntry(zip, entry)));
+        }
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                digests[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("摘要计算被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("摘要计算失败: " + cause.getMessage(), cause);
+        } finally {
+            // 正在读取的大条目需要中断，否则会继续读完整个条目
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).cancel(isChunked(entries.get(i)));
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * 按完成顺序回调的摘要计算
+     * 条目按列表顺序提交（排在前面的条目先被计算），每个条目完成后立即在调用线程中回调；
+     * 回调抛出异常时取消尚未完成的计算
+     *
+     * @param zip      条目所在的 ZIP/JAR 文件
+     * @param entries  要计算摘要的条目（按优先级排序）
+     * @param callback 每个条目完成时的回调
+     */
+    public void digest(final ZipFile zip, List<? extends ZipEntry> entries, DigestCallback callback)
+            throws IOException {
+        if (threads == 1 || entries.size() < 2 && !isChunked(entries)) {
+            for (int i = 0; i < entries.size(); i++) {
+                callback.digested(i, digestEntry(zip, entries.get(i), chunking));
+            }
+            return;
+        }
+
+        // 大条目由读取线程计算，完成结果与其他条目进入同一个队列，按完成顺序回调
+        BlockingQueue<Future<Integer>> done = new LinkedBlockingQueue<>();
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(getExecutor(), done);
+        CompletionService<Integer> chunkedCompletion = null;
+        final byte[][] digests = new byte[entries.size()][];
+        List<Future<Integer>> futures = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final int index = i;
+            final ZipEntry entry = entries.get(i);
+            if (isChunked(entry)) {
+                if (chunkedCompletion == null) {
+                    chunkedCompletion = new ExecutorCompletionService<>(getReaderExecutor(), done);
+                }
+                futures.add(chunkedCompletion.submit(() -> {
+                    digests[index] = digestChunked(zip, entry);
+                    return index;
+                }));
+            } else {
+                futures.add(completion.submit(() -> {
+                    digests[index] = digestEntry(zip, entry);
+                    return index;
+                }));
+            }
+        }
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                int index = completion.take().get();
+                callback.digested(index, digests[index]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("摘要计算被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("摘要计算失败: " + cause.getMessage(), cause);
+        } finally {
+            // 正在读取的大条目需要中断，否则会继续读完整个条目
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).cancel(isChunked(entries.get(i)));
+            }
+        }
+    }
+
+    /**
+     * 单个条目摘要计算完成的回调
+     */
+    public interface DigestCallback {
+        /**
+         * @param index  条目在列表中的位置
+         * @param digest SM3 摘要
+         */
+        void digested(int index, byte[] digest) throws IOException;
+    }
+
+    /**
+     * 流式计算单个条目的 SM3 摘要（内存占用与条目大小无关）
+     */
+    public static byte[] digestEntry(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream is = zip.getInputStream(entry)) {
+            return SM3Digester.hash(is);
+        }
+    }
+
+    /**
+     * 流式计算单个条目的摘要，按分块规则需要分块的条目返回分块摘要的树根（顺序计算）
+     *
+     * @param chunking 分块规则，为 null 时按整体计算
+     */
+    public static byte[] digestEntry(ZipFile zip, ZipEntry entry, ChunkedDigest chunking) throws IOException {
+        if (chunking == null || !chunking.applies(entry)) {
+            return digestEntry(zip, entry);
+        }
+        try (InputStream is = zip.getInputStream(entry)) {
+            return chunking.digest(is);
+        }
+    }
+
+    /**
+     * 在读取线程中顺序读取大条目，各块的摘要在分块线程池中并行计算
+     */
+    private byte[] digestChunked(ZipFile zip, ZipEntry entry) throws IOException {
+        return chunking.root(digestChunks(zip, entry, chunking));
+    }
+
+    private boolean isChunked(ZipEntry entry) {
+        return chunking != null && chunking.applies(entry);
+    }
+
+    private boolean isChunked(List<? extends ZipEntry> entries) {
+        for (ZipEntry entry : entries) {
+            if (isChunked(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        executor = shutdown(executor);
+        chunkExecutor = shutdown(chunkExecutor);
+        readerExecutor = shutdown(readerExecutor);
+    }
+
+    private static ExecutorService shutdown(ExecutorService pool) {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        return null;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = newPool("sm3-digest-", threads);
+        }
+        return executor;
+    }
+
+    private synchronized ExecutorService getChunkExecutor() {
+        if (chunkExecutor == null) {
+            chunkExecutor = newPool("sm3-chunk-", threads);
+        }
+        return chunkExecutor;
+    }
+
+    private synchronized ExecutorService getReaderExecutor() {
+        if (readerExecutor == null) {
+            readerExecutor = newPool("sm3-chunk-reader-", 1);
+        }
+        return readerExecutor;
+    }
+
+    private static ExecutorService newPool(final String prefix, int size) {
+        final int poolId = POOL_COUNTER.incrementAndGet();
+        return Executors.newFixedThreadPool(size, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + poolId + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -1,34 +1,49 @@
 package com.github.xsluck.utils;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
-import java.security.PublicKey;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.Security;
-import java.security.Signature;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.stream.Stream;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.zz.gmhelper.SM3Util;
-
 /**
  * JAR包SM2签名运行时验证工具 用于在应用启动时验证JAR包的完整性和签名
  */
 
 public class JarSignatureVerifier {
 
+    /** 提前结束内嵌JAR验证时等待正在执行的任务结束的超时（秒） */
+    private static final long NESTED_SHUTDOWN_TIMEOUT = 30;
+
     static {
         // 添加 BouncyCastle Provider 以支持国密算法
         if (Security.getProvider("BC") == null) {
@@ -41,6 +56,7 @@ public class JarSignatureVerifier {
      */
     public static class VerificationResult {
         private boolean valid;
+        private boolean unsigned;
         private String message;
         private List<String> details = new ArrayList<>();
         private String signerAlias;
@@ -48,6 +64,9 @@ public class JarSignatureVerifier {
         private List<X509Certificate> certificateChain = new ArrayList<>();
         private int totalFiles;
         private int verifiedFiles;
+        private int cacheHits;
+        private int cacheMisses;
+        private Map<String, VerificationResult> nestedResults = new LinkedHashMap<>();
 
         public boolean isValid() {
             return valid;
@@ -57,6 +76,17 @@ public class JarSignatureVerifier {
             this.valid = valid;
         }
 
+        /**
+         * JAR包是否未签名（没有任何签名文件），此时 {@link #isValid()} 为 false
+         */
+        public boolean isUnsigned() {
+            return unsigned;
+        }
+
+        public void setUnsigned(boolean unsigned) {
+            this.unsigned = unsigned;
+        }
+
         public String getMessage() {
             return message;
         }
@@ -117,6 +147,35 @@ public class JarSignatureVerifier {
             this.verifiedFiles = verifiedFiles;
         }
 
+        /**
+         * 验证结果缓存命中次数
+         */
+        public int getCacheHits() {
+            return cacheHits;
+        }
+
+        public void setCacheHits(int cacheHits) {
+            this.cacheHits = cacheHits;
+        }
+
+        /**
+         * 验证结果缓存未命中次数
+         */
+        public int getCacheMisses() {
+            return cacheMisses;
+        }
+
+        public void setCacheMisses(int cacheMisses) {
+            this.cacheMisses = cacheMisses;
+        }
+
+        /**
+         * 内嵌 JAR 的验证结果（条目名称到验证结果的映射）
+         */
+        public Map<String, VerificationResult> getNestedResults() {
+            return nestedResults;
+        }
+
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
@@ -179,6 +238,19 @@ public class JarSignatureVerifier {
                 sb.append("已验证文件数: ").append(verifiedFiles).append("\n");
             }
 
+            if (!nestedResults.isEmpty()) {
+                sb.append("\n内嵌JAR (共 ").append(nestedResults.size()).append(" 个):\n");
+                for (Map.Entry<String, VerificationResult> nested : nestedResults.entrySet()) {
+                    VerificationResult nestedResult = nested.getValue();
+                    sb.append("  ").append(nestedResult.isValid() ? "✓ " : "✗ ").append(nested.getKey()).append(": ")
+                            .append(nestedResult.getMessage()).append("\n");
+                }
+            }
+
+            if (cacheHits > 0 || cacheMisses > 0) {
+                sb.append("验证缓存: 命中 ").append(cacheHits).append(" 次，未命中 ").append(cacheMisses).append(" 次\n");
+            }
+
             if (!details.isEmpty()) {
                 sb.append("\n详细信息:\n");
                 for (String detail : details) {
@@ -192,12 +264,37 @@ public class JarSignatureVerifier {
     }
 
     /**
-     * 验证指定JAR包的签名
+     * 验证指定JAR包的签名（使用 CPU 核数个线程计算摘要）
+     * 设置了系统属性 {@value VerificationCache#CACHE_DIR_PROPERTY} 时启用验证结果缓存
      * 
      * @param jarPath JAR包路径
      * @return 验证结果
      */
     public static VerificationResult verifyJarSignature(String jarPath) {
+        return verifyJarSignature(jarPath, 0);
+    }
+
+    /**
+     * 验证指定JAR包的签名
+     * 设置了系统属性 {@value VerificationCache#CACHE_DIR_PROPERTY} 时启用验证结果缓存
+     * 
+     * @param jarPath JAR包路径
+     * @param threads 计算摘要的线程数，0 表示使用 CPU 核数，1 表示顺序计算
+     * @return 验证结果
+     */
+    public static VerificationResult verifyJarSignature(String jarPath, int threads) {
+        return verifyJarSignature(jarPath, threads, VerificationCache.fromSystemProperty());
+    }
+
+    /**
+     * 验证指定JAR包的签名
+     * 
+     * @param jarPath JAR包路径
+     * @param threads 计算摘要的线程数，0 表示使用 CPU 核数，1 表示顺序计算
+     * @param cache   验证结果缓存，为 null 时不使用缓存；缓存命中时跳过逐文件的摘要验证，签名仍然重新验证
+     * @return 验证结果
+     */
+    public static VerificationResult verifyJarSignature(String jarPath, int threads, VerificationCache cache) {
         VerificationResult result = new VerificationResult();
         File jarFile = new File(jarPath);
         if (!jarFile.exists()) {
@@ -206,40 +303,41 @@ public class JarSignatureVerifier {
             return result;
         }
         try (JarFile jar = new JarFile(jarFile, true)) {
-            // 1. 查找签名文件
-            Map<String, String> signatureFiles = findSignatureFiles(jar);
-            if (signatureFiles.isEmpty()) {
-                result.setValid(false);
-                result.setMessage("未找到签名文件");
-                result.addDetail("JAR包未签名");
+            // 1-3. 验证签名者
+            Map<String, byte[]> sfFiles = new HashMap<>();
+            byte[] manifestData = verifySigners(jar, sfFiles, result);
+            if (manifestData == null) {
                 return result;
             }
-            result.addDetail("找到 " + signatureFiles.size() + " 个签名");
-            // 2. 获取MANIFEST.MF
-            Manifest manifest = jar.getManifest();
-            if (manifest == null) {
-                result.setValid(false);
-                result.setMessage("未找到MANIFEST.MF文件");
-                return result;
-            }
-            // 3. 验证每个签名
-            for (Map.Entry<String, String> entry : signatureFiles.entrySet()) {
-                String alias = entry.getKey();
-                String sfFileName = entry.getValue();
-
-                result.setSignerAlias(alias);
-                result.addDetail("验证签名: " + alias);
-                // 验证签名文件和提取证书
-                if (!verifySignatureFile(jar, sfFileName, alias, result)) {
+            // 4. 验证所有文件的完整性（缓存命中时跳过）
+            Map<String, String> cacheKey = null;
+            if (cache != null) {
+                cacheKey = VerificationCache.key(jarFile, VerificationCache.contentDigest(manifestData, sfFiles));
+                if (cache.lookup(cacheKey, result)) {
+                    result.setCacheHits(result.getCacheHits() + 1);
+                    result.addDetail("验证缓存命中，跳过文件完整性验证");
+                    result.setValid(true);
+                    result.setMessage("签名验证通过");
                     return result;
                 }
+                result.setCacheMisses(result.getCacheMisses() + 1);
             }
-            // 4. 验证所有文件的完整性
-            if (!verifyAllFiles(jar, manifest, result)) {
+            // 有摘要索引时按索引查找条目摘要，不解析 MANIFEST.MF 的每个段
+            ChunkedDigest chunking = chunkedDigest(sfFiles);
+            DigestIndex digestIndex = openDigestIndex(jarFile, sfFiles, result);
+            if (digestIndex != null) {
+                if (!verifyAllFiles(jar, digestIndex, chunking, threads, result)) {
+                    return result;
+                }
+            } else if (!verifyAllFiles(jar, new Manifest(new ByteArrayInputStream(manifestData)), chunking, threads,
+                    result)) {
                 return result;
             }
             result.setValid(true);
             result.setMessage("签名验证通过");
+            if (cache != null) {
+                cache.store(cacheKey, result);
+            }
             return result;
 
         } catch (Exception e) {
@@ -252,10 +350,450 @@ public class JarSignatureVerifier {
 
     }
 
+    /**
+     * 验证分离式签名（.sm2sig 文件，见 {@link DetachedSignature}）
+     * 先验证签名文件中描述数据的签名，再顺序读取一遍 JAR 计算整个文件的 SM3 摘要；
+     * 文件名和大小必须与签名时一致，描述数据包含条目摘要时再解压所有条目逐一比较
+     *
+     * @param jar 被签名的文件
+     * @param sig 分离式签名文件
+     * @return 验证结果
+     */
+    public static VerificationResult verifyDetached(Path jar, Path sig) {
+        VerificationResult result = new VerificationResult();
+        try {
+            DetachedSignature signature = DetachedSignature.parse(Files.readAllBytes(sig));
+            Attributes main = signature.getDescriptorManifest().getMainAttributes();
+            result.setSignerAlias(main.getValue("File-Name"));
+            result.addDetail("分离式签名文件: " + sig);
+
+            String fileName = jar.getFileName().toString();
+            if (!fileName.equals(main.getValue("File-Name"))) {
+                result.setValid(false);
+                result.setMessage("文件名与分离式签名不一致: " + fileName + " / " + main.getValue("File-Name"));
+                return result;
+            }
+            long size = Files.size(jar);
+            if (!String.valueOf(size).equals(main.getValue("File-Size"))) {
+                result.setValid(false);
+                result.setMessage("文件大小与分离式签名不一致: " + size + " / " + main.getValue("File-Size"));
+                return result;
+            }
+
+            // 分离式签名只使用 v2 或 CMS 格式的签名块，不接受旧格式的宽松验证
+            if (SignatureBlock.parse(signature.getSignatureBlock()).isLegacy()) {
+                result.setValid(false);
+                result.setMessage("分离式签名的签名块格式无效");
+                return result;
+            }
+            if (!verifySignatureBlock(signature.getDescriptor(), signature.getSignatureBlock(), result)
+                    || result.getCertificateChain().isEmpty()) {
+                result.setValid(false);
+                if (result.getMessage() == null) {
+                    result.setMessage("分离式签名验证失败：无法提取证书链");
+                }
+                return result;
+            }
+
+            String actual = Base64.getEncoder().encodeToString(DetachedSignature.digestFile(jar));
+            String expected = main.getValue("SM3-Digest-File");
+            if (expected == null || !expected.trim().equals(actual)) {
+                result.setValid(false);
+                result.setMessage("文件摘要与分离式签名不一致: " + jar);
+                return result;
+            }
+            result.addDetail("整个文件的 SM3 摘要验证通过（" + size + " 字节）");
+            result.setTotalFiles(1);
+            result.setVerifiedFiles(1);
+
+            // 条目摘要：签名时的条目集合和每个条目的摘要都必须与文件一致
+            Map<String, Attributes> signedEntries = signature.getDescriptorManifest().getEntries();
+            if (!signedEntries.isEmpty()) {
+                Map<String, String> entryDigests;
+                try (JarFile jarFile = new JarFile(jar.toFile(), false)) {
+                    entryDigests = DetachedSignature.digestEntries(jarFile, 0);
+                }
+                for (Map.Entry<String, Attributes> entry : signedEntries.entrySet()) {
+                    String digest = entryDigests.get(entry.getKey());
+                    if (digest == null || !digest.equals(entry.getValue().getValue("SM3-Digest"))) {
+                        result.setValid(false);
+                        result.setMessage("条目摘要与分离式签名不一致: " + entry.getKey());
+                        return result;
+                    }
+                }
+                if (entryDigests.size() != signedEntries.size()) {
+                    result.setValid(false);
+                    result.setMessage("文件包含分离式签名之外的条目");
+                    return result;
+                }
+                result.addDetail("条目的 SM3 摘要验证通过（" + entryDigests.size() + " 个条目）");
+            }
+            result.setValid(true);
+            result.setMessage("分离式签名验证通过");
+            return result;
+
+        } catch (Exception e) {
+            result.setValid(false);
+            result.setMessage("验证分离式签名出错: " + e.getMessage());
+            return result;
+        }
+    }
+
+    /**
+     * 验证JAR包及其内嵌JAR（BOOT-INF/lib/、WEB-INF/lib/ 下的 JAR）的签名
+     * 先验证外层 JAR，再并发验证每个内嵌 JAR；已签名的内嵌 JAR 验证失败时整体失败，未签名的内嵌 JAR 只记录在详细信息中
+     *
+     * @param jarPath JAR包路径
+     * @param threads 并发验证内嵌JAR的线程数（外层 JAR 计算摘要也使用此线程数），0 表示使用 CPU 核数
+     * @return 验证结果，内嵌 JAR 的结果见 {@link VerificationResult#getNestedResults()}
+     */
+    public static VerificationResult verifyJarSignatureWithNested(String jarPath, int threads) {
+        VerificationResult result = verifyJarSignature(jarPath, threads);
+        if (!result.isValid()) {
+            return result;
+        }
+
+        File tempDir = null;
+        ExecutorService pool = null;
+        try (JarFile jar = new JarFile(jarPath, false)) {
+            List<JarEntry> archives = new ArrayList<>();
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && isNestedArchive(entry.getName())) {
+                    archives.add(entry);
+                }
+            }
+            if (archives.isEmpty()) {
+                return result;
+            }
+
+            tempDir = Files.createTempDirectory("sm2-nested-verify").toFile();
+            int poolSize = Math.min(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                    archives.size());
+            pool = Executors.newFixedThreadPool(poolSize);
+            List<Future<VerificationResult>> futures = new ArrayList<>();
+            try {
+                for (int i = 0; i < archives.size(); i++) {
+                    final JarEntry entry = archives.get(i);
+                    final File file = new File(tempDir, i + ".jar");
+                    futures.add(pool.submit(() -> {
+                        try (InputStream is = jar.getInputStream(entry)) {
+                            Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                        try {
+                            return verifyJarSignature(file.getPath(), 1, null);
+                        } finally {
+                            Files.deleteIfExists(file.toPath());
+                        }
+                    }));
+                }
+
+                int signed = 0;
+                for (int i = 0; i < futures.size(); i++) {
+                    String name = archives.get(i).getName();
+                    VerificationResult nested = futures.get(i).get();
+                    result.getNestedResults().put(name, nested);
+                    if (nested.isValid()) {
+                        signed++;
+                    } else if (nested.isUnsigned()) {
+                        result.addDetail("内嵌JAR未签名（由外层签名保护）: " + name);
+                    } else {
+                        result.setValid(false);
+                        result.setMessage("内嵌JAR签名验证失败: " + name + " - " + nested.getMessage());
+                        return result;
+                    }
+                }
+                result.addDetail("内嵌JAR签名验证通过: " + signed + "/" + archives.size());
+                return result;
+            } finally {
+                // 提前结束时取消剩余的任务，并在关闭外层 JAR、删除临时目录之前等待正在复制或验证的任务结束
+                cancelAll(pool, futures);
+            }
+
+        } catch (Exception e) {
+            result.setValid(false);
+            result.setMessage("内嵌JAR验证过程出错: " + e.getMessage());
+            return result;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            if (tempDir != null) {
+                deleteRecursively(tempDir.toPath());
+            }
+        }
+    }
+
+    /**
+     * 取消所有未完成的任务并等待线程池中的任务结束
+     */
+    private static void cancelAll(ExecutorService pool, List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(NESTED_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 删除目录及其中的所有文件（删除失败时忽略，不影响验证结果）
+     */
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            dir.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * 异步验证JAR包的签名
+     * 签名块、.SF 的签名和 MANIFEST 摘要在调用线程中同步验证（开销很小），文件摘要在后台线程中计算；
+     * Main-Class/Start-Class 所在包和 META-INF/services 下的文件优先验证，发现摘要不匹配时立即结束
+     *
+     * @param jarPath JAR包路径
+     * @param threads 计算摘要的线程数，0 表示使用 CPU 核数
+     * @param cache   验证结果缓存，为 null 时不使用缓存
+     * @return 验证结果的 Future；签名者验证失败或缓存命中时返回已完成的 Future
+     */
+    public static CompletableFuture<VerificationResult> verifyJarSignatureAsync(String jarPath, int threads,
+            VerificationCache cache) {
+        final VerificationResult result = new VerificationResult();
+        File jarFile = new File(jarPath);
+        if (!jarFile.exists()) {
+            result.setValid(false);
+            result.setMessage("JAR文件不存在: " + jarPath);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        final JarFile jar;
+        final List<JarEntry> digestEntries = new ArrayList<>();
+        final List<String> expectedDigests = new ArrayList<>();
+        final Map<String, String> cacheKey;
+        final int totalFiles;
+        final ChunkedDigest chunking;
+        try {
+            jar = new JarFile(jarFile, true);
+        } catch (IOException e) {
+            result.setValid(false);
+            result.setMessage("验证过程出错: " + e.getMessage());
+            return CompletableFuture.completedFuture(result);
+        }
+        try {
+            Map<String, byte[]> sfFiles = new HashMap<>();
+            byte[] manifestData = verifySigners(jar, sfFiles, result);
+            if (manifestData == null) {
+                jar.close();
+                return CompletableFuture.completedFuture(result);
+            }
+            if (cache != null) {
+                cacheKey = VerificationCache.key(jarFile, VerificationCache.contentDigest(manifestData, sfFiles));
+                if (cache.lookup(cacheKey, result)) {
+                    jar.close();
+                    result.setCacheHits(result.getCacheHits() + 1);
+                    result.addDetail("验证缓存命中，跳过文件完整性验证");
+                    result.setValid(true);
+                    result.setMessage("签名验证通过");
+                    return CompletableFuture.completedFuture(result);
+                }
+                result.setCacheMisses(result.getCacheMisses() + 1);
+            } else {
+                cacheKey = null;
+            }
+
+            chunking = chunkedDigest(sfFiles);
+            Manifest manifest = new Manifest(new ByteArrayInputStream(manifestData));
+            totalFiles = collectDigestEntries(jar, manifest, digestEntries, expectedDigests);
+            List<String> priorities = priorityPrefixes(manifest);
+            prioritize(digestEntries, expectedDigests, priorities);
+            result.addDetail("签名者验证通过，文件完整性在后台验证（优先: " + priorities + "）");
+        } catch (Exception e) {
+            try {
+                jar.close();
+            } catch (IOException ignored) {
+                // 忽略
+            }
+            result.setValid(false);
+            result.setMessage("验证过程出错: " + e.getMessage());
+            return CompletableFuture.completedFuture(result);
+        }
+
+        final CompletableFuture<VerificationResult> future = new CompletableFuture<>();
+        Thread worker = new Thread(() -> {
+            try (JarFile closeable = jar; JarDigestEngine engine = new JarDigestEngine(threads)) {
+                engine.setChunkedDigest(chunking);
+                final int[] verifiedFiles = { 0 };
+                engine.digest(jar, digestEntries, (index, digest) -> {
+                    if (!expectedDigests.get(index).equals(Base64.getEncoder().encodeToString(digest))) {
+                        throw new IOException("文件摘要不匹配: " + digestEntries.get(index).getName());
+                    }
+                    verifiedFiles[0]++;
+                });
+                result.setTotalFiles(totalFiles);
+                result.setVerifiedFiles(verifiedFiles[0]);
+                if (verifiedFiles[0] == 0) {
+                    result.setValid(false);
+                    result.setMessage("没有文件被验证");
+                } else {
+                    result.addDetail("所有文件完整性验证通过");
+                    result.setValid(true);
+                    result.setMessage("签名验证通过");
+                    if (cache != null) {
+                        cache.store(cacheKey, result);
+                    }
+                }
+            } catch (Exception e) {
+                result.setValid(false);
+                result.setMessage(e.getMessage());
+            }
+            future.complete(result);
+        }, "sm2-jar-verify");
+        worker.setDaemon(true);
+        worker.start();
+        return future;
+    }
+
+    /**
+     * 验证签名者：签名块和 .SF 的签名，以及 .SF 中记录的 MANIFEST 摘要
+     *
+     * @param sfFiles 输出：.SF 文件名到文件内容的映射
+     * @return MANIFEST.MF 的原始内容，验证失败时返回 null（原因写入 result）
+     */
+    private static byte[] verifySigners(JarFile jar, Map<String, byte[]> sfFiles, VerificationResult result)
+            throws IOException {
+        // 1. 查找签名文件
+        Map<String, String> signatureFiles = findSignatureFiles(jar);
+        if (signatureFiles.isEmpty()) {
+            result.setValid(false);
+            result.setUnsigned(true);
+            result.setMessage("未找到签名文件");
+            result.addDetail("JAR包未签名");
+            return null;
+        }
+        result.addDetail("找到 " + signatureFiles.size() + " 个签名");
+        // 2. 获取MANIFEST.MF
+        JarEntry manifestEntry = jar.getJarEntry(JarFile.MANIFEST_NAME);
+        if (manifestEntry == null) {
+            result.setValid(false);
+            result.setMessage("未找到MANIFEST.MF文件");
+            return null;
+        }
+        byte[] manifestData = readEntryData(jar, manifestEntry);
+        // 3. 验证每个签名以及 .SF 中的 MANIFEST 摘要
+        for (Map.Entry<String, String> entry : signatureFiles.entrySet()) {
+            String alias = entry.getKey();
+            String sfFileName = entry.getValue();
+
+            result.setSignerAlias(alias);
+            result.addDetail("验证签名: " + alias);
+            byte[] sfData = readEntryData(jar, jar.getJarEntry(sfFileName));
+            sfFiles.put(sfFileName, sfData);
+            // 验证签名文件和提取证书
+            if (!verifySignatureFile(jar, sfData, alias, result)
+                    || !verifyManifestDigest(manifestData, sfData, alias, result)) {
+                return null;
+            }
+        }
+        return manifestData;
+    }
+
+    /**
+     * 优先验证的路径前缀：Main-Class、Start-Class（Spring Boot）所在的包和 META-INF/services/
+     */
+    private static List<String> priorityPrefixes(Manifest manifest) {
+        List<String> prefixes = new ArrayList<>();
+        for (String attribute : new String[] { "Main-Class", "Start-Class" }) {
+            String className = manifest.getMainAttributes().getValue(attribute);
+            if (className != null && className.lastIndexOf('.') > 0) {
+                String prefix = className.substring(0, className.lastIndexOf('.')).replace('.', '/') + "/";
+                if (!prefixes.contains(prefix)) {
+                    prefixes.add(prefix);
+                }
+            }
+        }
+        prefixes.add("META-INF/services/");
+        return prefixes;
+    }
+
+    /**
+     * 把匹配优先前缀的条目移到列表前面（保持相对顺序）
+     */
+    private static void prioritize(List<JarEntry> entries, List<String> expected, List<String> prefixes) {
+        List<JarEntry> firstEntries = new ArrayList<>();
+        List<String> firstExpected = new ArrayList<>();
+        List<JarEntry> restEntries = new ArrayList<>();
+        List<String> restExpected = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            boolean priority = false;
+            for (String prefix : prefixes) {
+                if (entries.get(i).getName().startsWith(prefix)) {
+                    priority = true;
+                    break;
+                }
+            }
+            (priority ? firstEntries : restEntries).add(entries.get(i));
+            (priority ? firstExpected : restExpected).add(expected.get(i));
+        }
+        entries.clear();
+        entries.addAll(firstEntries);
+        entries.addAll(restEntries);
+        expected.clear();
+        expected.addAll(firstExpected);
+        expected.addAll(restExpected);
+    }
+
+    /**
+     * 是否为内嵌的 JAR（Spring Boot 的 BOOT-INF/lib/、WAR 的 WEB-INF/lib/ 下的 JAR）
+     */
+    public static boolean isNestedArchive(String name) {
+        return (name.startsWith("BOOT-INF/lib/") || name.startsWith("WEB-INF/lib/"))
+                && name.toLowerCase(Locale.ROOT).endsWith(".jar");
+    }
+
+    /**
+     * 是否为签名相关的文件（MANIFEST.MF、.SF、签名块、Merkle 索引和摘要索引），这些文件不计算摘要
+     */
+    public static boolean isSignatureRelated(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        if (!upper.startsWith("META-INF/") || upper.indexOf('/', 9) >= 0) {
+            return false;
+        }
+        return upper.equals(JarFile.MANIFEST_NAME) || upper.startsWith("META-INF/SIG-") || upper.endsWith(".SF")
+                || upper.endsWith(".SM2") || upper.endsWith(".RSA") || upper.endsWith(".DSA")
+                || upper.endsWith(".EC") || upper.endsWith(MerkleIndex.EXTENSION)
+                || upper.endsWith(DigestIndex.EXTENSION);
+    }
+
+    /**
+     * 以按需验证模式打开JAR包：立即验证签名，文件条目在首次访问时才验证（见 {@link LazyJarVerifier}）
+     *
+     * @param jarPath JAR包路径
+     * @throws SecurityException JAR 未签名或签名无效
+     */
+    public static LazyJarVerifier openLazy(String jarPath) throws IOException {
+        return LazyJarVerifier.open(new File(jarPath));
+    }
+
+    /**
+     * 以 Merkle 索引模式打开JAR包：只验证 .SF 的签名，不解析 MANIFEST.MF，
+     * 之后每个条目通过 Merkle 索引用 log2(n) 次哈希单独验证（见 {@link MerkleJarVerifier}）
+     *
+     * @param jarPath JAR包路径（签名时需启用 Merkle 索引）
+     * @throws SecurityException JAR 未签名、签名无效或不包含 Merkle 索引
+     */
+    public static MerkleJarVerifier openMerkle(String jarPath) throws IOException {
+        return MerkleJarVerifier.open(new File(jarPath));
+    }
+
     /**
      * 查找所有签名文件
      */
-    private static Map<String, String> findSignatureFiles(JarFile jar) {
+    static Map<String, String> findSignatureFiles(JarFile jar) {
         Map<String, String> signatureFiles = new HashMap<>();
         Enumeration<JarEntry> entries = jar.entries();
 
@@ -272,48 +810,57 @@ public class JarSignatureVerifier {
     }
 
     /**
-     * 验证签名文件并提取证书（包含公钥）
+     * 查找签名者的签名块文件（按 .SM2、.RSA、.DSA、.EC 的顺序取第一个存在的）
+     *
+     * @return 签名块文件名，不存在时返回 null
      */
-    private static boolean verifySignatureFile(JarFile jar, String sfFileName, String alias,
-            VerificationResult result) {
-        try {
-            // 读取.SF文件
-            JarEntry sfEntry = jar.getJarEntry(sfFileName);
-            if (sfEntry == null) {
-                result.setValid(false);
-                result.setMessage("签名文件不存在: " + sfFileName);
-                return false;
+    static String findSignatureBlock(JarFile jar, String alias) {
+        for (String ext : new String[] { ".SM2", ".RSA", ".DSA", ".EC" }) {
+            String fileName = "META-INF/" + alias + ext;
+            if (jar.getJarEntry(fileName) != null) {
+                return fileName;
             }
+        }
+        return null;
+    }
 
-            byte[] sfData = readEntryData(jar, sfEntry);
-
+    /**
+     * 验证 .SF 文件的签名并提取证书（包含公钥）
+     */
+    static boolean verifySignatureFile(JarFile jar, byte[] sfData, String alias, VerificationResult result) {
+        try {
             // 查找签名块文件（包含证书和签名）
-            String[] extensions = { ".SM2", ".RSA", ".DSA", ".EC" };
-            byte[] sigBlockData = null;
-
-            for (String ext : extensions) {
-                String fileName = "META-INF/" + alias + ext;
-                JarEntry sigEntry = jar.getJarEntry(fileName);
-                if (sigEntry != null) {
-                    sigBlockData = readEntryData(jar, sigEntry);
-                    result.addDetail("找到签名块文件: " + fileName);
-                    break;
-                }
-            }
-
-            if (sigBlockData == null) {
+            String fileName = findSignatureBlock(jar, alias);
+            if (fileName == null) {
                 result.setValid(false);
                 result.setMessage("未找到签名块文件");
                 return false;
             }
+            byte[] sigBlockData = readEntryData(jar, jar.getJarEntry(fileName));
+            result.addDetail("找到签名块文件: " + fileName);
+            return verifySignatureBlock(sfData, sigBlockData, result);
 
+        } catch (Exception e) {
+            result.setValid(false);
+            result.setMessage("签名文件验证失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 解析签名块，提取并验证证书链，再用叶子证书公钥验证被签名数据（.SF 文件或分离式签名的描述数据）
+     */
+    private static boolean verifySignatureBlock(byte[] sfData, byte[] sigBlockData, VerificationResult result) {
+        try {
             result.addDetail("签名块大小: " + sigBlockData.length + " 字节");
 
-            // 从签名块中提取证书链（公钥在叶子证书中）
-            List<X509Certificate> certChain = extractCertificateChainFromSignatureBlock(sigBlockData, result);
-            if (certChain != null && !certChain.isEmpty()) {
+            // 解析签名块（格式先识别再解析，一次得到证书链和签名值）
+            // 无法解析或没有证书的签名块一律判定签名无效（以 SM2B 魔数开头的块只按 v2 格式解析，不回退到旧格式）
+            SignatureBlock block = parseSignatureBlock(sigBlockData, result);
+            if (block != null && !block.getCertChain().isEmpty()) {
+                List<X509Certificate> certChain = block.getCertChain();
                 result.setCertificateChain(certChain);
-                result.addDetail("成功提取证书链（共 " + certChain.size() + " 个证书）");
+                result.addDetail("成功提取证书链（共 " + certChain.size() + " 个证书，签名块格式 " + block.getFormatName() + "）");
 
                 // 验证证书链
                 if (certChain.size() > 1) {
@@ -336,12 +883,14 @@ public class JarSignatureVerifier {
                 }
 
                 // 使用叶子证书中的公钥验证签名
-                return verifySignatureWithPublicKey(sfData, sigBlockData, certChain, result);
+                return verifySignatureWithPublicKey(sfData, block, result);
             }
 
-            // 证书提取失败，但文件完整性仍然可以验证
-            result.addDetail("警告: 无法提取证书，跳过签名数据验证");
-            return true;
+            result.setValid(false);
+            if (block != null) {
+                result.setMessage("签名块无效：无法提取证书链");
+            }
+            return false;
 
         } catch (Exception e) {
             result.setValid(false);
@@ -351,132 +900,205 @@ public class JarSignatureVerifier {
     }
 
     /**
-     * 从签名块中提取证书链（证书包含公钥）
+     * 验证 .SF 文件中记录的 MANIFEST.MF 摘要
      */
-    private static List<X509Certificate> extractCertificateChainFromSignatureBlock(byte[] sigBlockData,
+    private static boolean verifyManifestDigest(byte[] manifestData, byte[] sfData, String alias,
             VerificationResult result) {
-        try {
-            // 使用 CertificateChainUtil 提取证书链
-            List<X509Certificate> certChain = CertificateChainUtil
-                    .extractCertificateChainFromSignatureBlock(sigBlockData);
-            if (!certChain.isEmpty()) {
-                return certChain;
-            }
-
-            result.addDetail("警告: 无法提取证书链");
-            return null;
+        String expected = ManifestSections.parse(sfData).getMainAttribute("SM3-Digest-Manifest");
+        String actual = Base64.getEncoder().encodeToString(SM3Digester.hash(manifestData));
+        if (expected == null || !expected.trim().equals(actual)) {
+            result.setValid(false);
+            result.setMessage("MANIFEST.MF 的摘要与签名文件不一致: " + alias);
+            return false;
+        }
+        result.addDetail("MANIFEST.MF 摘要验证通过");
+        return true;
+    }
 
+    /**
+     * 解析签名块（证书包含公钥）
+     */
+    private static SignatureBlock parseSignatureBlock(byte[] sigBlockData, VerificationResult result) {
+        try {
+            return SignatureBlock.parse(sigBlockData);
         } catch (Exception e) {
             result.addDetail("提取证书链失败: " + e.getMessage());
+            result.setMessage("签名块无效: " + e.getMessage());
             return null;
         }
     }
 
     /**
-     * 使用公钥验证签名
+     * 使用叶子证书公钥验证签名
+     * 签名块中的签名位置是确定的，只做一次验证；任何格式（包括旧格式）验证失败或无法验证都判定签名无效
      */
-    private static boolean verifySignatureWithPublicKey(byte[] sfData, byte[] sigBlockData,
-            List<X509Certificate> certChain, VerificationResult result) {
+    private static boolean verifySignatureWithPublicKey(byte[] sfData, SignatureBlock block,
+            VerificationResult result) {
         try {
-            // 使用叶子证书的公钥验证签名
-            X509Certificate leafCert = certChain.get(0);
-            PublicKey publicKey = leafCert.getPublicKey();
+            if (block.verify(sfData)) {
+                BatchSignature.Proof proof = block.getBatchProof();
+                if (proof != null) {
+                    result.addDetail("Merkle 批量签名: 第 " + (proof.getIndex() + 1) + "/" + proof.getLeafCount()
+                            + " 个，包含路径 " + proof.getPathLength() + " 个节点验证通过");
+                }
+                result.addDetail("签名验证成功（使用叶子证书公钥）");
+                return true;
+            }
 
-            // 计算证书链编码数据的长度，以便定位签名数据
-            byte[] chainData = CertificateChainUtil.encodeCertificateChain(certChain);
-            int signatureOffset = chainData.length;
+            result.setValid(false);
+            result.setMessage("签名验证失败：.SF 文件的签名无效" + (block.isLegacy() ? "（旧格式签名块）" : ""));
+            return false;
 
-            if (signatureOffset < sigBlockData.length) {
-                byte[] signatureBytes = new byte[sigBlockData.length - signatureOffset];
-                System.arraycopy(sigBlockData, signatureOffset, signatureBytes, 0, signatureBytes.length);
+        } catch (Exception e) {
+            result.setValid(false);
+            result.setMessage("签名验证失败: " + e.getMessage());
+            return false;
+        }
+    }
 
-                Signature signature = Signature.getInstance("SM3withSM2", "BC");
-                signature.initVerify(publicKey);
-                signature.update(sfData);
+    /**
+     * 验证所有文件的完整性（摘要并发计算，按条目顺序比较）
+     */
+    private static boolean verifyAllFiles(JarFile jar, Manifest manifest, ChunkedDigest chunking, int threads,
+            VerificationResult result) {
+        try {
+            List<JarEntry> digestEntries = new ArrayList<>();
+            List<String> expectedDigests = new ArrayList<>();
+            int totalFiles = collectDigestEntries(jar, manifest, digestEntries, expectedDigests);
+
+            byte[][] actualDigests;
+            try (JarDigestEngine engine = new JarDigestEngine(threads)) {
+                engine.setChunkedDigest(chunking);
+                actualDigests = engine.digest(jar, digestEntries);
+            }
 
-                if (signature.verify(signatureBytes)) {
-                    result.addDetail("签名验证成功（使用叶子证书公钥）");
-                    return true;
+            int verifiedFiles = 0;
+            for (int i = 0; i < actualDigests.length; i++) {
+                String actualDigestBase64 = Base64.getEncoder().encodeToString(actualDigests[i]);
+
+                if (expectedDigests.get(i).equals(actualDigestBase64)) {
+                    verifiedFiles++;
+                } else {
+                    result.setValid(false);
+                    result.setMessage("文件摘要不匹配: " + digestEntries.get(i).getName());
+                    return false;
                 }
             }
 
-            // 如果精确偏移失败，尝试不同的分割点
-            for (int i = 300; i < Math.min(sigBlockData.length - 64, 5000); i++) {
-                try {
-                    byte[] signatureBytes = new byte[sigBlockData.length - i];
-                    System.arraycopy(sigBlockData, i, signatureBytes, 0, signatureBytes.length);
-
-                    Signature signature = Signature.getInstance("SM3withSM2", "BC");
-                    signature.initVerify(publicKey);
-                    signature.update(sfData);
+            result.setTotalFiles(totalFiles);
+            result.setVerifiedFiles(verifiedFiles);
 
-                    if (signature.verify(signatureBytes)) {
-                        result.addDetail("签名验证成功（使用叶子证书公钥）");
-                        return true;
-                    }
-                } catch (Exception e) {
-                    // 继续尝试
-                }
+            if (verifiedFiles == 0) {
+                result.setValid(false);
+                result.setMessage("没有文件被验证");
+                return false;
             }
 
-            result.addDetail("警告: 无法验证签名数据");
+            result.addDetail("所有文件完整性验证通过");
             return true;
 
         } catch (Exception e) {
-            result.addDetail("签名验证失败: " + e.getMessage());
+            result.setValid(false);
+            result.setMessage("文件完整性验证失败: " + e.getMessage());
             return false;
         }
     }
 
     /**
-     * 验证所有文件的完整性
+     * 读取 .SF 主属性中的分块摘要规则（见 {@link ChunkedDigest}），有多个签名者时规则必须一致
+     *
+     * @return 分块规则，签名时未启用分块摘要时返回 null
+     */
+    private static ChunkedDigest chunkedDigest(Map<String, byte[]> sfFiles) {
+        ChunkedDigest chunking = null;
+        boolean first = true;
+        for (byte[] sfData : sfFiles.values()) {
+            ChunkedDigest current = ChunkedDigest.fromSignatureFile(ManifestSections.parse(sfData));
+            if (!first && !Objects.equals(chunking, current)) {
+                throw new SecurityException("各签名者的分块摘要规则不一致");
+            }
+            chunking = current;
+            first = false;
+        }
+        return chunking;
+    }
+
+    /**
+     * 打开摘要索引（只有一个签名者且 .SF 中有索引摘要时）：内存映射索引条目并用 .SF 中已签名的摘要验证其内容
+     *
+     * @return 摘要索引，未使用摘要索引时返回 null
+     * @throws SecurityException 索引缺失、被压缩或摘要不匹配
      */
-    private static boolean verifyAllFiles(JarFile jar, Manifest manifest, VerificationResult result) {
+    private static DigestIndex openDigestIndex(File jarFile, Map<String, byte[]> sfFiles, VerificationResult result)
+            throws IOException {
+        if (sfFiles.size() != 1) {
+            return null;
+        }
+        Map.Entry<String, byte[]> sf = sfFiles.entrySet().iterator().next();
+        String expected = ManifestSections.parse(sf.getValue()).getMainAttribute("SM3-Digest-Index");
+        if (expected == null) {
+            return null;
+        }
+        String indexName = sf.getKey().substring(0, sf.getKey().length() - 3) + DigestIndex.EXTENSION;
+        try (ZipArchiveReader reader = new ZipArchiveReader(jarFile)) {
+            for (ZipArchiveReader.Record record : reader.getRecords()) {
+                if (record.getName().equals(indexName)) {
+                    MappedByteBuffer data = reader.map(record);
+                    byte[] actual = new SM3Digester().update(data.duplicate()).digest();
+                    if (!Base64.getEncoder().encodeToString(actual).equals(expected.trim())) {
+                        throw new SecurityException("摘要索引与签名文件不一致: " + indexName);
+                    }
+                    result.addDetail("使用摘要索引验证文件: " + indexName);
+                    return DigestIndex.wrap(data);
+                }
+            }
+        }
+        throw new SecurityException("未找到摘要索引: " + indexName);
+    }
+
+    /**
+     * 按摘要索引验证所有文件的完整性：逐条目在内存映射的索引中查找并直接比较摘要
+     */
+    private static boolean verifyAllFiles(JarFile jar, DigestIndex index, ChunkedDigest chunking, int threads,
+            VerificationResult result) {
         try {
+            List<JarEntry> digestEntries = new ArrayList<>();
+            int[] records = new int[jar.size()];
             int totalFiles = 0;
-            int verifiedFiles = 0;
-
             Enumeration<JarEntry> entries = jar.entries();
-
             while (entries.hasMoreElements()) {
                 JarEntry entry = entries.nextElement();
-                String name = entry.getName();
-
-                if (entry.isDirectory() || name.startsWith("META-INF/")) {
+                if (entry.isDirectory() || isSignatureRelated(entry.getName())) {
                     continue;
                 }
-
                 totalFiles++;
+                int record = index.find(entry.getName());
+                if (record >= 0) {
+                    records[digestEntries.size()] = record;
+                    digestEntries.add(entry);
+                }
+            }
 
-                Attributes attrs = manifest.getAttributes(name);
-                if (attrs != null) {
-                    String expectedDigest = attrs.getValue("SM3-Digest");
-                    if (expectedDigest != null) {
-                        byte[] fileData = readEntryData(jar, entry);
-
-                        byte[] actualDigest = SM3Util.hash(fileData);
-                        String actualDigestBase64 = Base64.getEncoder().encodeToString(actualDigest);
-
-                        if (expectedDigest.equals(actualDigestBase64)) {
-                            verifiedFiles++;
-                        } else {
-                            result.setValid(false);
-                            result.setMessage("文件摘要不匹配: " + name);
-                            return false;
-                        }
-                    }
+            byte[][] actualDigests;
+            try (JarDigestEngine engine = new JarDigestEngine(threads)) {
+                engine.setChunkedDigest(chunking);
+                actualDigests = engine.digest(jar, digestEntries);
+            }
+            for (int i = 0; i < actualDigests.length; i++) {
+                if (!index.digestEquals(records[i], actualDigests[i])) {
+                    result.setValid(false);
+                    result.setMessage("文件摘要不匹配: " + digestEntries.get(i).getName());
+                    return false;
                 }
             }
 
             result.setTotalFiles(totalFiles);
-            result.setVerifiedFiles(verifiedFiles);
-
-            if (verifiedFiles == 0) {
+            result.setVerifiedFiles(actualDigests.length);
+            if (actualDigests.length == 0) {
                 result.setValid(false);
                 result.setMessage("没有文件被验证");
                 return false;
             }
-
             result.addDetail("所有文件完整性验证通过");
             return true;
 
@@ -488,10 +1110,44 @@ public class JarSignatureVerifier {
     }
 
     /**
-     * 读取JAR条目数据
+     * 收集需要验证的条目及其期望的摘要（跳过目录和签名相关的文件）
+     *
+     * @return 文件总数
      */
-    private static byte[] readEntryData(JarFile jar, JarEntry entry) throws IOException {
-        try (InputStream is = jar.getInputStream(entry); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+    private static int collectDigestEntries(JarFile jar, Manifest manifest, List<JarEntry> digestEntries,
+            List<String> expectedDigests) {
+        int totalFiles = 0;
+        Enumeration<JarEntry> entries = jar.entries();
+
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+
+            if (entry.isDirectory() || isSignatureRelated(name)) {
+                continue;
+            }
+
+            totalFiles++;
+
+            Attributes attrs = manifest.getAttributes(name);
+            if (attrs != null) {
+                String expectedDigest = attrs.getValue("SM3-Digest");
+                if (expectedDigest != null) {
+                    digestEntries.add(entry);
+                    expectedDigests.add(expectedDigest);
+                }
+            }
+        }
+        return totalFiles;
+    }
+
+    /**
+     * 读取JAR条目数据（仅用于 .SF、签名块等较小的元数据文件，文件摘要通过 SM3Digester 流式计算）
+     */
+    static byte[] readEntryData(JarFile jar, JarEntry entry) throws IOException {
+        long size = entry.getSize();
+        try (InputStream is = jar.getInputStream(entry);
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(size > 0 ? (int) size : 8192)) {
 
             byte[] buffer = new byte[8192];
             int len;
@@ -546,6 +1202,88 @@ public class JarSignatureVerifier {
 
     }
 
+    /**
+     * 默认的严格模式失败处理：立即终止进程（不执行关闭钩子）
+     */
+    public static final Consumer<VerificationResult> HALT_ON_FAILURE = result -> {
+        System.err.println("JAR包签名验证失败，终止进程！");
+        System.err.flush();
+        Runtime.getRuntime().halt(1);
+    };
+
+    /**
+     * 在应用启动时异步检查签名，严格模式下验证失败时调用 {@link #HALT_ON_FAILURE}
+     *
+     * @see #checkSignatureOnStartupAsync(boolean, Class, Consumer)
+     */
+    public static CompletableFuture<VerificationResult> checkSignatureOnStartupAsync(boolean strictMode,
+            Class<?> clazz) {
+        return checkSignatureOnStartupAsync(strictMode, clazz, HALT_ON_FAILURE);
+    }
+
+    /**
+     * 在应用启动时异步检查签名
+     * 签名者在调用线程中同步验证，失败时与 {@link #checkSignatureOnStartup(boolean, Class)} 一样抛出异常；
+     * 文件完整性在后台验证，应用可以立即继续启动
+     *
+     * @param strictMode 严格模式：后台验证发现文件被篡改时调用 onFailure
+     * @param clazz      启动类（用于定位 JAR 包）
+     * @param onFailure  严格模式下后台验证失败的处理（在后台线程中调用）
+     * @return 验证结果的 Future
+     */
+    public static CompletableFuture<VerificationResult> checkSignatureOnStartupAsync(final boolean strictMode,
+            Class<?> clazz, final Consumer<VerificationResult> onFailure) {
+        System.out.println("========================================");
+        System.out.println("JAR包签名检测（后台验证）");
+        System.out.println("========================================");
+
+        CompletableFuture<VerificationResult> future;
+        try {
+            if (clazz != null) {
+                System.out.println("验证指定的启动类: " + clazz.getName());
+                String jarPath = clazz.getProtectionDomain().getCodeSource().getLocation().toURI().getPath();
+                System.out.println("验证指定启动类所在JAR：" + jarPath);
+                future = verifyJarSignatureAsync(jarPath, 0, VerificationCache.fromSystemProperty());
+            } else {
+                VerificationResult result = new VerificationResult();
+                result.setValid(false);
+                result.setMessage("指定的启动类为空");
+                future = CompletableFuture.completedFuture(result);
+            }
+        } catch (URISyntaxException e) {
+            e.printStackTrace();
+            VerificationResult result = new VerificationResult();
+            result.setValid(false);
+            result.setMessage("获取指定启动类所在JAR路径异常：" + e.getMessage());
+            future = CompletableFuture.completedFuture(result);
+        }
+
+        // 同步阶段已失败
+        if (future.isDone() && !future.join().isValid()) {
+            System.out.println(future.join());
+            System.err.println("警告: JAR包签名验证失败！");
+            System.err.println("程序可能已被篡改。");
+            if (strictMode) {
+                throw new SecurityException("JAR包签名验证失败，拒绝启动！");
+            }
+            return future;
+        }
+
+        return future.thenApply(result -> {
+            System.out.println(result);
+            if (!result.isValid()) {
+                System.err.println("警告: JAR包签名验证失败！");
+                System.err.println("程序可能已被篡改。");
+                if (strictMode) {
+                    onFailure.accept(result);
+                }
+            } else {
+                System.out.println("JAR包签名验证通过，程序可以安全运行。");
+            }
+            return result;
+        });
+    }
+
     /**
      * 主函数 - 用于测试
      */
@@ -0,0 +1,398 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 按需验证的 JAR 签名验证器
+ * 打开时只验证签名块和 .SF 文件的签名以及 MANIFEST 与 .SF 的对应关系（不读取任何文件条目），
+ * 之后在首次访问某个条目时才计算该条目的 SM3 摘要，验证结果按 MANIFEST 段序号缓存在并发位图中
+ *
+ * 如果 .SF 文件包含逐条目的段摘要（CMS 格式签名时生成），只需校验 MANIFEST 主属性段和被访问条目所在的段；
+ * 否则在打开时校验整个 MANIFEST 的摘要
+ *
+ * 按分块计算摘要的大条目（见 {@link ChunkedDigest}）可以通过 {@link #openChannel(String)} 或 {@link #getInputStream(String)}
+ * 边读边逐块验证，不必先读完整个条目
+ */
+public class LazyJarVerifier implements Closeable {
+
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    private final JarFile jar;
+    private final JarSignatureVerifier.VerificationResult result;
+    private final ManifestSections manifest;
+    private final ManifestSections sf;
+    private final boolean perEntrySections;
+    private final ChunkedDigest chunking;
+    /** 本签名者的签名相关文件（MANIFEST.MF、.SF、签名块和索引） */
+    private final Set<String> signatureFiles;
+    /** 已验证通过的条目（按 MANIFEST 段序号） */
+    private final AtomicLongArray verifiedBits;
+    /** 已验证失败的条目（按 MANIFEST 段序号） */
+    private final AtomicLongArray failedBits;
+
+    private LazyJarVerifier(JarFile jar, JarSignatureVerifier.VerificationResult result, ManifestSections manifest,
+            ManifestSections sf, boolean perEntrySections, ChunkedDigest chunking, Set<String> signatureFiles) {
+        this.jar = jar;
+        this.result = result;
+        this.manifest = manifest;
+        this.sf = sf;
+        this.perEntrySections = perEntrySections;
+        this.chunking = chunking;
+        this.signatureFiles = signatureFiles;
+        int words = (manifest.size() + 63) >>> 6;
+        this.verifiedBits = new AtomicLongArray(words);
+        this.failedBits = new AtomicLongArray(words);
+    }
+
+    /**
+     * 打开 JAR 并验证签名
+     *
+     * @throws SecurityException JAR 未签名或签名无效
+     */
+    public static LazyJarVerifier open(File jarFile) throws IOException {
+        JarSignatureVerifier.VerificationResult result = new JarSignatureVerifier.VerificationResult();
+        JarFile jar = new JarFile(jarFile, false);
+        try {
+            Map<String, String> signatureFiles = JarSignatureVerifier.findSignatureFiles(jar);
+            if (signatureFiles.size() != 1) {
+                throw new SecurityException("JAR包应包含且仅包含一个签名，实际: " + signatureFiles.size());
+            }
+            Map.Entry<String, String> signature = signatureFiles.entrySet().iterator().next();
+            result.setSignerAlias(signature.getKey());
+
+            JarEntry manifestEntry = jar.getJarEntry(MANIFEST_NAME);
+            if (manifestEntry == null) {
+                throw new SecurityException("未找到MANIFEST.MF文件");
+            }
+            byte[] manifestData = JarSignatureVerifier.readEntryData(jar, manifestEntry);
+            byte[] sfData = JarSignatureVerifier.readEntryData(jar, jar.getJarEntry(signature.getValue()));
+
+            if (!JarSignatureVerifier.verifySignatureFile(jar, sfData, signature.getKey(), result)
+                    || result.getCertificateChain().isEmpty()) {
+                throw new SecurityException("签名验证失败: " + result.getMessage());
+            }
+
+            ManifestSections manifest = ManifestSections.parse(manifestData);
+            ManifestSections sf = ManifestSections.parse(sfData);
+            String mainDigest = sf.getMainAttribute("SM3-Digest-Manifest-Main-Attributes");
+            boolean perEntrySections = mainDigest != null;
+            if (perEntrySections) {
+                if (!digestEquals(mainDigest, manifest.digestMain())) {
+                    throw new SecurityException("MANIFEST.MF 主属性的摘要与 .SF 文件不一致");
+                }
+            } else if (!digestEquals(sf.getMainAttribute("SM3-Digest-Manifest"), SM3Digester.hash(manifestData))) {
+                throw new SecurityException("MANIFEST.MF 的摘要与 .SF 文件不一致");
+            }
+
+            String alias = signature.getKey();
+            Set<String> signerFiles = new HashSet<>();
+            signerFiles.add(MANIFEST_NAME);
+            signerFiles.add(signature.getValue());
+            signerFiles.add(JarSignatureVerifier.findSignatureBlock(jar, alias));
+            signerFiles.add("META-INF/" + alias + MerkleIndex.EXTENSION);
+            signerFiles.add("META-INF/" + alias + DigestIndex.EXTENSION);
+
+            result.setValid(true);
+            result.setMessage("签名验证通过（条目在首次访问时验证）");
+            return new LazyJarVerifier(jar, result, manifest, sf, perEntrySections,
+                    ChunkedDigest.fromSignatureFile(sf), Collections.unmodifiableSet(signerFiles));
+        } catch (IOException | RuntimeException e) {
+            jar.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 签名验证结果（签名者、证书链等）
+     */
+    public JarSignatureVerifier.VerificationResult getResult() {
+        return result;
+    }
+
+    public JarFile getJarFile() {
+        return jar;
+    }
+
+    /**
+     * 是否是已验证的签名者自己的签名相关文件：MANIFEST.MF、.SF 和签名块（打开时已验证），
+     * 以及 Merkle 索引和摘要索引（由 .SF 中的摘要保护）；
+     * 这些文件不在 MANIFEST 中，其他签名者或无主的签名块等文件不包括在内
+     */
+    public boolean isSignatureFile(String name) {
+        return signatureFiles.contains(name);
+    }
+
+    /**
+     * 条目是否受签名保护（MANIFEST 中有该条目的 SM3 摘要）
+     */
+    public boolean isSigned(String name) {
+        return manifest.getAttribute(name, "SM3-Digest") != null;
+    }
+
+    /**
+     * 条目是否已验证通过
+     */
+    public boolean isVerified(String name) {
+        int index = manifest.indexOf(name);
+        return index >= 0 && testBit(verifiedBits, index);
+    }
+
+    /**
+     * 验证条目（首次调用时计算摘要，之后直接返回缓存的结果）
+     *
+     * @throws SecurityException 条目未签名、不存在或摘要不匹配
+     */
+    public void verifyEntry(String name) throws IOException {
+        int index = checkState(name);
+        if (index < 0) {
+            return;
+        }
+        JarEntry entry = jar.getJarEntry(name);
+        if (entry == null || entry.isDirectory()) {
+            fail(index, name);
+        }
+        complete(index, name, JarDigestEngine.digestEntry(jar, entry, chunking));
+    }
+
+    /**
+     * 读取条目的全部数据，并对读取到的这份数据做验证（已验证过的条目不再计算摘要）
+     * 用于类加载：定义类所用的字节就是被验证的字节
+     *
+     * @return 条目数据，条目不存在时返回 null
+     * @throws SecurityException 条目未签名或摘要不匹配
+     */
+    public byte[] readEntry(String name) throws IOException {
+        JarEntry entry = jar.getJarEntry(name);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        int index = checkState(name);
+
+        long size = entry.getSize();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int) size : 8192);
+        try (InputStream is = jar.getInputStream(entry)) {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        }
+        byte[] data = out.toByteArray();
+        if (index >= 0) {
+            complete(index, name, chunking != null && chunking.applies(entry)
+                    ? chunking.digest(new ByteArrayInputStream(data)) : SM3Digester.hash(data));
+        }
+        return data;
+    }
+
+    /**
+     * 打开条目的输入流：未验证过的条目边读边计算摘要，读到末尾或提前关闭时完成验证，摘要不匹配时抛出 SecurityException；
+     * 分块计算摘要的大条目逐块验证（见 {@link #openChannel(String)}）
+     *
+     * @return 输入流，条目不存在时返回 null
+     * @throws SecurityException 条目未签名或已验证失败
+     */
+    public InputStream getInputStream(String name) throws IOException {
+        JarEntry entry = jar.getJarEntry(name);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        if (chunking != null && chunking.applies(entry)) {
+            return Channels.newInputStream(openChannel(name));
+        }
+        int index = checkState(name);
+        InputStream is = jar.getInputStream(entry);
+        return index < 0 ? is : new VerifyingInputStream(is, index, name);
+    }
+
+    /**
+     * 打开分块计算摘要的大条目的只读通道：先用 MANIFEST 中已签名的树根验证各块的摘要，
+     * 之后每次读取都只验证数据所在的块，可以随机定位
+     *
+     * @return 通道，条目不存在时返回 null
+     * @throws SecurityException        条目未签名、已验证失败或分块摘要与树根不一致
+     * @throws IllegalArgumentException 条目签名时没有分块计算摘要
+     */
+    public SeekableByteChannel openChannel(String name) {
+        JarEntry entry = jar.getJarEntry(name);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        checkState(name);
+        String chunks = manifest.getAttribute(name, ChunkedDigest.CHUNKS_ATTRIBUTE);
+        if (chunking == null || !chunking.applies(entry) || chunks == null) {
+            throw new IllegalArgumentException("JAR条目签名时没有分块计算摘要: " + name);
+        }
+        byte[][] chunkDigests = ChunkedDigest.decodeChunks(chunks);
+        if (!digestEquals(manifest.getAttribute(name, "SM3-Digest"), chunking.root(chunkDigests))) {
+            fail(manifest.indexOf(name), name);
+        }
+        return new ChunkVerifyingChannel(jar, entry, chunking.getChunkSize(), chunkDigests);
+    }
+
+    /**
+     * 检查条目的缓存状态
+     *
+     * @return 需要验证时返回段序号，已验证通过时返回 -1
+     * @throws SecurityException 条目未签名、段摘要不匹配或已验证失败
+     */
+    private int checkState(String name) {
+        int index = manifest.indexOf(name);
+        if (index >= 0 && testBit(verifiedBits, index)) {
+            return -1;
+        }
+        if (index < 0 || manifest.getAttribute(name, "SM3-Digest") == null) {
+            throw new SecurityException("JAR条目未签名: " + name);
+        }
+        if (testBit(failedBits, index)) {
+            throw new SecurityException("JAR条目签名验证失败: " + name);
+        }
+        if (perEntrySections && !digestEquals(sf.getAttribute(name, "SM3-Digest"), manifest.digestSection(name))) {
+            fail(index, name);
+        }
+        return index;
+    }
+
+    /**
+     * 用计算出的摘要完成验证并记录结果
+     */
+    private void complete(int index, String name, byte[] actual) {
+        if (!digestEquals(manifest.getAttribute(name, "SM3-Digest"), actual)) {
+            fail(index, name);
+        }
+        setBit(verifiedBits, index);
+    }
+
+    private void fail(int index, String name) {
+        setBit(failedBits, index);
+        throw new SecurityException("JAR条目签名验证失败: " + name);
+    }
+
+    private static boolean testBit(AtomicLongArray bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+        } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * 边读边计算摘要的输入流，读到末尾时验证
+     */
+    private class VerifyingInputStream extends FilterInputStream {
+        private final SM3Digester digester = new SM3Digester();
+        private final int index;
+        private final String name;
+        private boolean done;
+
+        VerifyingInputStream(InputStream in, int index, String name) {
+            super(in);
+            this.index = index;
+            this.name = name;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                finish();
+            } else {
+                digester.update(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n == -1) {
+                finish();
+            } else {
+                digester.update(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 跳过的数据也要计入摘要
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int len = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (len == -1) {
+                    break;
+                }
+                skipped += len;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * 未读到末尾就关闭时，读完剩余数据并验证：已读取的部分被篡改时最迟在关闭时抛出 SecurityException
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!done) {
+                    byte[] buffer = new byte[8192];
+                    while (read(buffer, 0, buffer.length) != -1) {
+                        // 剩余数据只计入摘要
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        private void finish() {
+            if (!done) {
+                done = true;
+                complete(index, name, digester.digest());
+            }
+        }
+    }
+
+    private static boolean digestEquals(String expectedBase64, byte[] actual) {
+        if (expectedBase64 == null) {
+            return false;
+        }
+        try {
+            return Arrays.equals(Base64.getDecoder().decode(expectedBase64.trim()), actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        jar.close();
+    }
+}
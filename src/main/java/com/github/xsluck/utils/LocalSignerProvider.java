@@ -0,0 +1,40 @@
+package com.github.xsluck.utils;
+
+import java.security.PrivateKey;
+
+import org.bouncycastle.operator.ContentSigner;
+
+/**
+ * 进程内签名（默认的签名提供者）：SM3withSM2 或确定性 SM2 签名
+ * 使用按私钥缓存的 {@link PrecomputedSM2Signer}（共享的基点预计算表和 Z_A），签名值与 BouncyCastle 的 SM3withSM2 相同
+ */
+public class LocalSignerProvider implements SignerProvider {
+
+    private final PrivateKey privateKey;
+    private final boolean deterministic;
+
+    public LocalSignerProvider(PrivateKey privateKey, boolean deterministic) {
+        this.privateKey = privateKey;
+        this.deterministic = deterministic;
+    }
+
+    @Override
+    public byte[] sign(byte[] data) throws Exception {
+        return PrecomputedSM2Signer.forKey(privateKey, deterministic).sign(data);
+    }
+
+    @Override
+    public byte[] getPublicPoint() {
+        try {
+            return PrecomputedSM2Signer.forKey(privateKey, deterministic).getPublicPoint();
+        } catch (Exception e) {
+            // 不是 SM2 私钥，签名时报错
+            return null;
+        }
+    }
+
+    @Override
+    public ContentSigner asContentSigner() throws Exception {
+        return PrecomputedSM2Signer.forKey(privateKey, deterministic).asContentSigner();
+    }
+}
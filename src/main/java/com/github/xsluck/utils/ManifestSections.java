@@ -0,0 +1,172 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MANIFEST.MF / .SF 原始字节的分段索引
+ * 只记录每个段（主属性段和各 Name 段）在原始字节中的位置，按需解析单个段的属性，
+ * 避免 java.util.jar.Manifest 为所有条目创建 Attributes 对象；段的原始字节可用于计算段摘要
+ */
+public class ManifestSections {
+
+    private final byte[] data;
+    private int mainLength;
+    private final Map<String, int[]> sections = new LinkedHashMap<>();
+
+    private ManifestSections(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * 建立分段索引
+     */
+    public static ManifestSections parse(byte[] data) {
+        ManifestSections result = new ManifestSections(data);
+        int position = 0;
+        boolean main = true;
+        while (position < data.length) {
+            int start = position;
+            // 读到空行（段结束）或数据末尾
+            while (position < data.length) {
+                int lineEnd = lineEnd(data, position);
+                int next = nextLine(data, lineEnd);
+                boolean blank = lineEnd == position;
+                position = next;
+                if (blank) {
+                    break;
+                }
+            }
+            if (main) {
+                result.mainLength = position;
+                main = false;
+                continue;
+            }
+            String name = readAttribute(data, start, position, "Name");
+            if (name != null && !result.sections.containsKey(name)) {
+                result.sections.put(name, new int[] { start, position - start, result.sections.size() });
+            }
+        }
+        return result;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * 所有 Name 段的名称（按出现顺序）
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(sections.keySet());
+    }
+
+    public boolean hasSection(String name) {
+        return sections.containsKey(name);
+    }
+
+    /**
+     * Name 段的数量
+     */
+    public int size() {
+        return sections.size();
+    }
+
+    /**
+     * Name 段的序号（从 0 开始，按出现顺序），段不存在时返回 -1
+     */
+    public int indexOf(String name) {
+        int[] range = sections.get(name);
+        return range != null ? range[2] : -1;
+    }
+
+    public String getMainAttribute(String attribute) {
+        return readAttribute(data, 0, mainLength, attribute);
+    }
+
+    /**
+     * 读取指定 Name 段中的属性值，段不存在或属性不存在时返回 null
+     */
+    public String getAttribute(String name, String attribute) {
+        int[] range = sections.get(name);
+        if (range == null) {
+            return null;
+        }
+        return readAttribute(data, range[0], range[0] + range[1], attribute);
+    }
+
+    /**
+     * 主属性段（含结尾空行）的 SM3 摘要
+     */
+    public byte[] digestMain() {
+        return SM3Digester.current().update(data, 0, mainLength).digest();
+    }
+
+    /**
+     * 指定 Name 段（含结尾空行）的 SM3 摘要，段不存在时返回 null
+     */
+    public byte[] digestSection(String name) {
+        int[] range = sections.get(name);
+        if (range == null) {
+            return null;
+        }
+        return SM3Digester.current().update(data, range[0], range[1]).digest();
+    }
+
+    /**
+     * 在 [start, end) 范围内读取属性值（处理以空格开头的续行）
+     */
+    private static String readAttribute(byte[] data, int start, int end, String attribute) {
+        byte[] prefix = (attribute + ": ").getBytes(StandardCharsets.UTF_8);
+        int position = start;
+        while (position < end) {
+            int lineEnd = Math.min(lineEnd(data, position), end);
+            if (lineEnd - position >= prefix.length && startsWithIgnoreCase(data, position, prefix)) {
+                ByteArrayOutputStream value = new ByteArrayOutputStream();
+                value.write(data, position + prefix.length, lineEnd - position - prefix.length);
+                position = nextLine(data, lineEnd);
+                // 续行
+                while (position < end && data[position] == ' ') {
+                    int continuationEnd = Math.min(lineEnd(data, position), end);
+                    value.write(data, position + 1, continuationEnd - position - 1);
+                    position = nextLine(data, continuationEnd);
+                }
+                return new String(value.toByteArray(), StandardCharsets.UTF_8);
+            }
+            position = nextLine(data, lineEnd);
+        }
+        return null;
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] data, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            byte a = data[offset + i];
+            byte b = prefix[i];
+            if (a != b && Character.toLowerCase((char) (a & 0xFF)) != Character.toLowerCase((char) (b & 0xFF))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lineEnd(byte[] data, int position) {
+        while (position < data.length && data[position] != '\r' && data[position] != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private static int nextLine(byte[] data, int lineEnd) {
+        if (lineEnd < data.length && data[lineEnd] == '\r') {
+            lineEnd++;
+        }
+        if (lineEnd < data.length && data[lineEnd] == '\n') {
+            lineEnd++;
+        }
+        return lineEnd;
+    }
+}
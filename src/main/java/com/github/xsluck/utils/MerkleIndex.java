@@ -0,0 +1,283 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipException;
+
+/**
+ * 条目摘要的 Merkle 树索引（META-INF/别名.SMT）
+ * 叶子为按名称排序的 (条目名称, SM3 摘要)，只有树根写入 .SF 文件并被签名；
+ * 验证单个条目只需在索引中二分查找该条目，再沿路径计算 log2(n) 次哈希得到树根，不需要解析 MANIFEST.MF
+ *
+ * 格式（大端序，定长记录，可直接内存映射）:
+ * [魔数 "SM3M"(4字节)] [版本(1字节)] [保留(3字节)] [叶子数 n(4字节)] [名称表长度(4字节)]
+ * [叶子表: n 个 (名称偏移(4字节), 名称长度(4字节))] [名称表: UTF-8 名称]
+ * [摘要表: n 个 32 字节的条目摘要] [内部节点: 第 1 层到树根逐层存储，每个 32 字节]
+ *
+ * 叶子哈希 = SM3(0x00 || 名称长度(4字节) || 名称 || 摘要)，内部节点 = SM3(0x01 || 左 || 右)，
+ * 每层最后落单的节点直接提升到上一层
+ */
+public class MerkleIndex {
+
+    public static final String EXTENSION = ".SMT";
+
+    public static final byte[] MAGIC = { 'S', 'M', '3', 'M' };
+
+    public static final int VERSION_1 = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int LEAF_RECORD_SIZE = 8;
+    private static final int HASH_SIZE = SM3Digester.DIGEST_LENGTH;
+
+    private final ByteBuffer data;
+    private final int leafCount;
+    private final int namesOffset;
+    private final int digestsOffset;
+    /** 第 1 层起每层内部节点的起始位置和节点数 */
+    private final int[] levelOffsets;
+    private final int[] levelSizes;
+
+    private MerkleIndex(ByteBuffer data, int leafCount, int namesLength) {
+        this.data = data;
+        this.leafCount = leafCount;
+        this.namesOffset = HEADER_SIZE + leafCount * LEAF_RECORD_SIZE;
+        this.digestsOffset = namesOffset + namesLength;
+        this.levelSizes = levelSizes(leafCount);
+        this.levelOffsets = new int[levelSizes.length];
+        int offset = digestsOffset + leafCount * HASH_SIZE;
+        for (int i = 0; i < levelSizes.length; i++) {
+            levelOffsets[i] = offset;
+            offset += levelSizes[i] * HASH_SIZE;
+        }
+    }
+
+    /**
+     * 创建索引
+     *
+     * @param entryDigests 条目名称到 SM3 摘要的映射
+     */
+    public static byte[] encode(Map<String, byte[]> entryDigests) {
+        TreeMap<String, byte[]> sorted = new TreeMap<>(entryDigests);
+        int n = sorted.size();
+        List<byte[]> names = new ArrayList<>(n);
+        int namesLength = 0;
+        for (String name : sorted.keySet()) {
+            byte[] raw = name.getBytes(StandardCharsets.UTF_8);
+            names.add(raw);
+            namesLength += raw.length;
+        }
+        int[] sizes = levelSizes(n);
+        int nodeCount = 0;
+        for (int size : sizes) {
+            nodeCount += size;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_SIZE + n * LEAF_RECORD_SIZE + namesLength + (n + nodeCount) * HASH_SIZE);
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION_1);
+        buffer.put(new byte[3]);
+        buffer.putInt(n);
+        buffer.putInt(namesLength);
+        int nameOffset = 0;
+        for (byte[] raw : names) {
+            buffer.putInt(nameOffset);
+            buffer.putInt(raw.length);
+            nameOffset += raw.length;
+        }
+        for (byte[] raw : names) {
+            buffer.put(raw);
+        }
+
+        byte[][] level = new byte[n][];
+        int i = 0;
+        for (byte[] digest : sorted.values()) {
+            buffer.put(digest);
+            level[i] = leafHash(names.get(i), digest);
+            i++;
+        }
+        for (int size : sizes) {
+            byte[][] parent = new byte[size][];
+            for (int j = 0; j < size; j++) {
+                parent[j] = 2 * j + 1 < level.length ? nodeHash(level[2 * j], level[2 * j + 1]) : level[2 * j];
+                buffer.put(parent[j]);
+            }
+            level = parent;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 读取索引（可以是内存映射的缓冲区），只检查结构，不验证内容
+     */
+    public static MerkleIndex wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate();
+        if (data.remaining() < HEADER_SIZE) {
+            throw new ZipException("Merkle 索引不完整");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.get(i) != MAGIC[i]) {
+                throw new ZipException("不是有效的 Merkle 索引");
+            }
+        }
+        if (data.get(4) != VERSION_1) {
+            throw new IOException("不支持的 Merkle 索引版本: " + data.get(4));
+        }
+        int leafCount = data.getInt(8);
+        int namesLength = data.getInt(12);
+        if (leafCount < 0 || namesLength < 0) {
+            throw new ZipException("Merkle 索引头无效");
+        }
+        long nodeCount = 0;
+        for (int size : levelSizes(leafCount)) {
+            nodeCount += size;
+        }
+        long expected = HEADER_SIZE + (long) leafCount * LEAF_RECORD_SIZE + namesLength
+                + (leafCount + nodeCount) * HASH_SIZE;
+        if (data.remaining() != expected) {
+            throw new ZipException("Merkle 索引长度无效: " + data.remaining() + " / " + expected);
+        }
+        return new MerkleIndex(data.slice(), leafCount, namesLength);
+    }
+
+    /**
+     * 叶子数（条目数）
+     */
+    public int size() {
+        return leafCount;
+    }
+
+    /**
+     * 树根（索引本身未签名，验证时应使用 .SF 文件中的树根）
+     */
+    public byte[] getRoot() {
+        if (leafCount == 0) {
+            return new byte[HASH_SIZE];
+        }
+        if (levelSizes.length == 0) {
+            return leafHash(rawName(0), getDigest(0));
+        }
+        return node(levelSizes.length - 1, 0);
+    }
+
+    /**
+     * 二分查找条目
+     *
+     * @return 叶子序号，不存在时返回 -1
+     */
+    public int find(String name) {
+        int low = 0;
+        int high = leafCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getName(mid).compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String getName(int leaf) {
+        return new String(rawName(leaf), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 索引中记录的条目摘要
+     */
+    public byte[] getDigest(int leaf) {
+        return read(digestsOffset + leaf * HASH_SIZE, HASH_SIZE);
+    }
+
+    /**
+     * 验证条目：用实际计算出的摘要作为叶子，沿路径计算到树根并与签名的树根比较
+     *
+     * @param name         条目名称
+     * @param actualDigest 条目内容的 SM3 摘要
+     * @param expectedRoot .SF 文件中已签名的树根
+     * @return 是否通过（条目不在索引中时返回 false）
+     */
+    public boolean verify(String name, byte[] actualDigest, byte[] expectedRoot) {
+        int index = find(name);
+        if (index < 0) {
+            return false;
+        }
+        byte[] hash = leafHash(rawName(index), actualDigest);
+        int size = leafCount;
+        for (int level = 0; size > 1; level++) {
+            int sibling = index ^ 1;
+            if (sibling < size) {
+                byte[] other = level == 0 ? leafHash(rawName(sibling), getDigest(sibling)) : node(level - 1, sibling);
+                hash = (index & 1) == 0 ? nodeHash(hash, other) : nodeHash(other, hash);
+            }
+            index >>>= 1;
+            size = (size + 1) / 2;
+        }
+        return MessageDigest.isEqual(hash, expectedRoot);
+    }
+
+    /**
+     * 第 level 层（从第 1 层开始存储，level 为 0 表示第 1 层）的节点
+     */
+    private byte[] node(int level, int index) {
+        return read(levelOffsets[level] + index * HASH_SIZE, HASH_SIZE);
+    }
+
+    private byte[] rawName(int leaf) {
+        int record = HEADER_SIZE + leaf * LEAF_RECORD_SIZE;
+        int offset = data.getInt(record);
+        int length = data.getInt(record + 4);
+        if (offset < 0 || length < 0 || namesOffset + (long) offset + length > digestsOffset) {
+            throw new SecurityException("Merkle 索引的名称表无效");
+        }
+        return read(namesOffset + offset, length);
+    }
+
+    private byte[] read(int position, int length) {
+        byte[] result = new byte[length];
+        ByteBuffer view = data.duplicate();
+        view.position(position);
+        view.get(result);
+        return result;
+    }
+
+    private static int[] levelSizes(int leafCount) {
+        List<Integer> sizes = new ArrayList<>();
+        for (int size = leafCount; size > 1;) {
+            size = (size + 1) / 2;
+            sizes.add(size);
+        }
+        int[] result = new int[sizes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sizes.get(i);
+        }
+        return result;
+    }
+
+    static byte[] leafHash(byte[] rawName, byte[] digest) {
+        SM3Digester digester = new SM3Digester();
+        digester.update(new byte[] { 0, (byte) (rawName.length >>> 24), (byte) (rawName.length >>> 16),
+                (byte) (rawName.length >>> 8), (byte) rawName.length }, 0, 5);
+        digester.update(rawName, 0, rawName.length);
+        digester.update(digest, 0, digest.length);
+        return digester.digest();
+    }
+
+    static byte[] nodeHash(byte[] left, byte[] right) {
+        SM3Digester digester = new SM3Digester();
+        digester.update(new byte[] { 1 }, 0, 1);
+        digester.update(left, 0, left.length);
+        digester.update(right, 0, right.length);
+        return digester.digest();
+    }
+}
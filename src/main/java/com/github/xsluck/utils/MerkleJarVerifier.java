@@ -0,0 +1,135 @@
+package com.github.xsluck.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 基于 Merkle 索引的单条目验证器
+ * 打开时只验证签名块和 .SF 文件的签名（不读取 MANIFEST.MF），并内存映射 Merkle 索引；
+ * 之后验证任意一个条目只需计算该条目的 SM3 摘要和 log2(n) 次路径哈希，适合对大 JAR 做抽查
+ */
+public class MerkleJarVerifier implements Closeable {
+
+    private final JarFile jar;
+    private final JarSignatureVerifier.VerificationResult result;
+    private final MerkleIndex index;
+    private final byte[] root;
+    private final ChunkedDigest chunking;
+
+    private MerkleJarVerifier(JarFile jar, JarSignatureVerifier.VerificationResult result, MerkleIndex index,
+            byte[] root, ChunkedDigest chunking) {
+        this.jar = jar;
+        this.result = result;
+        this.index = index;
+        this.root = root;
+        this.chunking = chunking;
+    }
+
+    /**
+     * 打开 JAR 并验证签名
+     *
+     * @throws SecurityException JAR 未签名、签名无效或不包含 Merkle 索引
+     */
+    public static MerkleJarVerifier open(File jarFile) throws IOException {
+        JarSignatureVerifier.VerificationResult result = new JarSignatureVerifier.VerificationResult();
+        JarFile jar = new JarFile(jarFile, false);
+        try {
+            Map<String, String> signatureFiles = JarSignatureVerifier.findSignatureFiles(jar);
+            if (signatureFiles.size() != 1) {
+                throw new SecurityException("JAR包应包含且仅包含一个签名，实际: " + signatureFiles.size());
+            }
+            Map.Entry<String, String> signature = signatureFiles.entrySet().iterator().next();
+            String alias = signature.getKey();
+            result.setSignerAlias(alias);
+
+            byte[] sfData = JarSignatureVerifier.readEntryData(jar, jar.getJarEntry(signature.getValue()));
+            if (!JarSignatureVerifier.verifySignatureFile(jar, sfData, alias, result)
+                    || result.getCertificateChain().isEmpty()) {
+                throw new SecurityException("签名验证失败: " + result.getMessage());
+            }
+
+            ManifestSections sf = ManifestSections.parse(sfData);
+            String rootValue = sf.getMainAttribute("SM3-Merkle-Root");
+            String leavesValue = sf.getMainAttribute("SM3-Merkle-Leaves");
+            if (rootValue == null || leavesValue == null) {
+                throw new SecurityException("签名文件中没有 Merkle 树根（签名时未启用 Merkle 索引）");
+            }
+            byte[] root = Base64.getDecoder().decode(rootValue.trim());
+
+            String indexName = "META-INF/" + alias + MerkleIndex.EXTENSION;
+            MerkleIndex index;
+            try (ZipArchiveReader reader = new ZipArchiveReader(jarFile)) {
+                ZipArchiveReader.Record record = null;
+                for (ZipArchiveReader.Record candidate : reader.getRecords()) {
+                    if (candidate.getName().equals(indexName)) {
+                        record = candidate;
+                    }
+                }
+                if (record == null) {
+                    throw new SecurityException("未找到 Merkle 索引: " + indexName);
+                }
+                index = MerkleIndex.wrap(reader.map(record));
+            }
+            if (index.size() != Integer.parseInt(leavesValue.trim())) {
+                throw new SecurityException("Merkle 索引的条目数与签名文件不一致");
+            }
+            result.setTotalFiles(index.size());
+            result.setValid(true);
+            result.setMessage("签名验证通过（条目通过 Merkle 索引单独验证）");
+            return new MerkleJarVerifier(jar, result, index, root, ChunkedDigest.fromSignatureFile(sf));
+        } catch (IOException | RuntimeException e) {
+            jar.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 签名验证结果（签名者、证书链等）
+     */
+    public JarSignatureVerifier.VerificationResult getResult() {
+        return result;
+    }
+
+    public JarFile getJarFile() {
+        return jar;
+    }
+
+    /**
+     * 签名覆盖的条目数
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 条目是否受签名保护（在 Merkle 索引中）
+     */
+    public boolean isSigned(String name) {
+        return index.find(name) >= 0;
+    }
+
+    /**
+     * 验证单个条目：计算条目的 SM3 摘要，再沿 Merkle 路径计算到树根并与签名的树根比较
+     *
+     * @throws SecurityException 条目未签名、不存在或摘要不匹配
+     */
+    public void verifyEntry(String name) throws IOException {
+        JarEntry entry = jar.getJarEntry(name);
+        if (entry == null || entry.isDirectory()) {
+            throw new SecurityException("JAR条目不存在: " + name);
+        }
+        if (!index.verify(name, JarDigestEngine.digestEntry(jar, entry, chunking), root)) {
+            throw new SecurityException("JAR条目签名验证失败: " + name);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        jar.close();
+    }
+}
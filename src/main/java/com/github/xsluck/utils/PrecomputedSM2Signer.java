@@ -0,0 +1,184 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.DSAKCalculator;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.crypto.signers.RandomDSAKCalculator;
+import org.bouncycastle.crypto.signers.SM2Signer;
+import org.bouncycastle.crypto.signers.StandardDSAEncoding;
+import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.util.BigIntegers;
+
+/**
+ * SM3withSM2 签名（签名值与 BouncyCastle 的 SM3withSM2 相同，DER 编码的 r、s）
+ *
+ * 与私钥有关的数据只计算一次：公钥点、Z_A、(1 + d)^-1 mod n；k·G 使用 {@link SM2Curve} 中每个 JVM 共享的基点预计算表。
+ * {@link #forKey(PrivateKey, boolean)} 按私钥缓存实例，第一次创建时用 BouncyCastle 的 SM2Signer 验证一次签名结果。
+ * 实例是线程安全的
+ *
+ * 随机数 k 由 SecureRandom 生成，或按 RFC 6979 的方式由私钥和消息摘要经 HMAC-SM3 派生（确定性签名，见 {@link DeterministicSM2Signer}）
+ */
+public class PrecomputedSM2Signer {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final byte[] SELF_TEST_DATA = "SM2 signer self-test".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Map<PrivateKey, PrecomputedSM2Signer> RANDOM_SIGNERS = Collections
+            .synchronizedMap(new WeakHashMap<PrivateKey, PrecomputedSM2Signer>());
+    private static final Map<PrivateKey, PrecomputedSM2Signer> DETERMINISTIC_SIGNERS = Collections
+            .synchronizedMap(new WeakHashMap<PrivateKey, PrecomputedSM2Signer>());
+
+    private final ECDomainParameters params;
+    /** params 是否为 sm2p256v1（使用共享的基点预计算表） */
+    private final boolean sm2Curve;
+    private final BigInteger d;
+    private final ECPoint publicPoint;
+    private final byte[] z;
+    /** (1 + d)^-1 mod n，只与私钥有关，每个实例只计算一次 */
+    private final BigInteger dPlus1Inverse;
+    private final boolean deterministic;
+
+    /**
+     * @param privateKey    SM2 私钥
+     * @param deterministic 是否由私钥和消息摘要派生随机数 k
+     * @throws InvalidKeyException 不是 EC 私钥
+     */
+    public PrecomputedSM2Signer(PrivateKey privateKey, boolean deterministic) throws InvalidKeyException {
+        AsymmetricKeyParameter key = ECUtil.generatePrivateKeyParameter(privateKey);
+        if (!(key instanceof ECPrivateKeyParameters)) {
+            throw new InvalidKeyException("不是 SM2 私钥: " + privateKey.getAlgorithm());
+        }
+        ECDomainParameters keyParams = ((ECPrivateKeyParameters) key).getParameters();
+        this.sm2Curve = SM2Curve.isSM2(keyParams);
+        this.params = sm2Curve ? SM2Curve.getDomain() : keyParams;
+        this.d = ((ECPrivateKeyParameters) key).getD();
+        this.deterministic = deterministic;
+        this.publicPoint = multiplyBase(d);
+        this.z = sm2Curve ? SM2Curve.userHash(publicPoint.getEncoded(false)) : SM2Curve.userHash(params, publicPoint);
+        this.dPlus1Inverse = BigIntegers.modOddInverse(params.getN(), d.add(BigInteger.ONE));
+    }
+
+    /**
+     * 该私钥的签名器（按私钥缓存，私钥对象不再使用后随之释放）
+     *
+     * @throws InvalidKeyException 不是 EC 私钥，或签名结果未通过 BouncyCastle 的验证
+     */
+    public static PrecomputedSM2Signer forKey(PrivateKey privateKey, boolean deterministic)
+            throws InvalidKeyException {
+        Map<PrivateKey, PrecomputedSM2Signer> cache = deterministic ? DETERMINISTIC_SIGNERS : RANDOM_SIGNERS;
+        PrecomputedSM2Signer signer = cache.get(privateKey);
+        if (signer == null) {
+            signer = deterministic ? new DeterministicSM2Signer(privateKey)
+                    : new PrecomputedSM2Signer(privateKey, false);
+            signer.selfTest();
+            cache.put(privateKey, signer);
+        }
+        return signer;
+    }
+
+    /**
+     * 公钥点的编码（未压缩格式）
+     */
+    public byte[] getPublicPoint() {
+        return publicPoint.getEncoded(false);
+    }
+
+    /**
+     * 签名
+     *
+     * @return DER 编码的签名值
+     */
+    public byte[] sign(byte[] data) {
+        SM3Digest digest = new SM3Digest();
+        digest.update(z, 0, z.length);
+        digest.update(data, 0, data.length);
+        byte[] eBytes = new byte[digest.getDigestSize()];
+        digest.doFinal(eBytes, 0);
+        return signDigest(eBytes);
+    }
+
+    /**
+     * 对消息摘要签名
+     *
+     * @param eBytes e = SM3(Z_A || M)，32 字节
+     * @return DER 编码的签名值
+     */
+    public byte[] signDigest(byte[] eBytes) {
+        if (eBytes.length != 32) {
+            throw new IllegalArgumentException("SM2 消息摘要必须为 32 字节: " + eBytes.length);
+        }
+        BigInteger n = params.getN();
+        BigInteger e = new BigInteger(1, eBytes);
+        DSAKCalculator kCalculator;
+        if (deterministic) {
+            kCalculator = new HMacDSAKCalculator(new SM3Digest());
+            kCalculator.init(n, d, eBytes);
+        } else {
+            kCalculator = new RandomDSAKCalculator();
+            kCalculator.init(n, RANDOM);
+        }
+
+        // GB/T 32918.2: r = (e + x1) mod n, s = (1 + d)^-1 * (k - r * d) mod n
+        BigInteger r;
+        BigInteger s;
+        do {
+            BigInteger k;
+            do {
+                k = kCalculator.nextK();
+                ECPoint p = multiplyBase(k);
+                r = e.add(p.getAffineXCoord().toBigInteger()).mod(n);
+            } while (r.signum() == 0 || r.add(k).equals(n));
+            s = dPlus1Inverse.multiply(k.subtract(r.multiply(d))).mod(n);
+        } while (s.signum() == 0);
+
+        try {
+            return StandardDSAEncoding.INSTANCE.encode(n, r, s);
+        } catch (IOException ex) {
+            throw new IllegalStateException("SM2 签名值编码失败", ex);
+        }
+    }
+
+    /**
+     * 供 CMS 签名块使用的 ContentSigner（算法标识与 JcaContentSignerBuilder("SM3withSM2") 相同）
+     */
+    public ContentSigner asContentSigner() {
+        return DeterministicSM2Signer.contentSigner(this::sign);
+    }
+
+    private ECPoint multiplyBase(BigInteger k) {
+        if (sm2Curve) {
+            return SM2Curve.multiplyBase(k);
+        }
+        return new FixedPointCombMultiplier().multiply(params.getG(), k).normalize();
+    }
+
+    /**
+     * 用 BouncyCastle 的 SM2Signer 验证一次签名结果（每个私钥只做一次）
+     */
+    private void selfTest() throws InvalidKeyException {
+        SM2Signer verifier = new SM2Signer();
+        verifier.init(false, new ECPublicKeyParameters(publicPoint, params));
+        verifier.update(SELF_TEST_DATA, 0, SELF_TEST_DATA.length);
+        if (!verifier.verifySignature(sign(SELF_TEST_DATA))) {
+            throw new InvalidKeyException("SM2 签名自检失败：签名值未通过 BouncyCastle 的验证");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.xsluck.utils;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.StandardDSAEncoding;
+import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * SM3withSM2 验证（与 BouncyCastle 的 SM3withSM2 结果相同）
+ *
+ * 按公钥（SubjectPublicKeyInfo 的 SM3 摘要）缓存：公钥点 Q 和 Z_A 每个公钥只计算一次；
+ * s·G + t·Q 用交错的 wNAF 多点乘（Shamir 技巧）一次计算，G 和 Q 的预计算表保存在共享的点对象上，
+ * 同一个公钥验证大量 JAR 时两张表都只构建一次。用于大量 JAR 由少数几个密钥签名的场景（如应用启动时验证所有插件）
+ *
+ * 实例是线程安全的
+ */
+public class PrecomputedSM2Verifier {
+
+    /** 缓存的最大公钥数，超过时清空 */
+    private static final int MAX_CACHED_KEYS = 256;
+
+    private static final Map<ByteBuffer, PrecomputedSM2Verifier> VERIFIERS = new ConcurrentHashMap<>();
+
+    private final ECPoint publicPoint;
+    private final byte[] z;
+
+    private PrecomputedSM2Verifier(ECPoint publicPoint) {
+        this.publicPoint = publicPoint;
+        this.z = SM2Curve.userHash(publicPoint.getEncoded(false));
+    }
+
+    /**
+     * 该公钥的验证器（按 SubjectPublicKeyInfo 的摘要缓存）
+     *
+     * @return 不是 sm2p256v1 曲线的 EC 公钥时返回 null（由调用方使用 java.security.Signature 验证）
+     */
+    public static PrecomputedSM2Verifier forKey(PublicKey publicKey) {
+        byte[] encoded = publicKey.getEncoded();
+        if (encoded == null) {
+            return null;
+        }
+        ByteBuffer fingerprint = ByteBuffer.wrap(SM3Digester.hash(encoded));
+        PrecomputedSM2Verifier verifier = VERIFIERS.get(fingerprint);
+        if (verifier == null) {
+            ECPoint q = decode(publicKey);
+            if (q == null) {
+                return null;
+            }
+            verifier = new PrecomputedSM2Verifier(q);
+            if (VERIFIERS.size() >= MAX_CACHED_KEYS) {
+                VERIFIERS.clear();
+            }
+            VERIFIERS.put(fingerprint, verifier);
+        }
+        return verifier;
+    }
+
+    /**
+     * 公钥点（sm2p256v1 曲线上的点对象，规范化），不是 sm2p256v1 曲线的 EC 公钥时返回 null
+     */
+    private static ECPoint decode(PublicKey publicKey) {
+        AsymmetricKeyParameter key;
+        try {
+            key = ECUtil.generatePublicKeyParameter(publicKey);
+        } catch (InvalidKeyException e) {
+            return null;
+        }
+        if (!(key instanceof ECPublicKeyParameters) || !SM2Curve.isSM2(((ECPublicKeyParameters) key).getParameters())) {
+            return null;
+        }
+        // 在共享的曲线对象上重新解码，使多点乘的预计算表保存在缓存的点对象上
+        return SM2Curve.decodePoint(((ECPublicKeyParameters) key).getQ().getEncoded(false));
+    }
+
+    /**
+     * 验证签名
+     *
+     * @param data      被签名的数据
+     * @param signature DER 编码的签名值
+     * @return 签名是否有效（签名值格式错误时返回 false）
+     */
+    public boolean verify(byte[] data, byte[] signature) {
+        BigInteger n = SM2Curve.getDomain().getN();
+        BigInteger r;
+        BigInteger s;
+        try {
+            BigInteger[] rs = StandardDSAEncoding.INSTANCE.decode(n, signature);
+            r = rs[0];
+            s = rs[1];
+        } catch (Exception e) {
+            return false;
+        }
+        // GB/T 32918.2: r、s ∈ [1, n-1]，t = (r + s) mod n ≠ 0，(x1, y1) = s·G + t·Q，R = (e + x1) mod n = r
+        if (r.signum() <= 0 || r.compareTo(n) >= 0 || s.signum() <= 0 || s.compareTo(n) >= 0) {
+            return false;
+        }
+        BigInteger t = r.add(s).mod(n);
+        if (t.signum() == 0) {
+            return false;
+        }
+
+        SM3Digest digest = new SM3Digest();
+        digest.update(z, 0, z.length);
+        digest.update(data, 0, data.length);
+        byte[] eBytes = new byte[digest.getDigestSize()];
+        digest.doFinal(eBytes, 0);
+        BigInteger e = new BigInteger(1, eBytes);
+
+        ECPoint point = ECAlgorithms.sumOfTwoMultiplies(SM2Curve.getDomain().getG(), s, publicPoint, t).normalize();
+        if (point.isInfinity()) {
+            return false;
+        }
+        return e.add(point.getAffineXCoord().toBigInteger()).mod(n).equals(r);
+    }
+}
@@ -0,0 +1,351 @@
+package com.github.xsluck.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * 远程签名服务的签名提供者：私钥由签名服务持有（协议与 {@link SigningAgent} 相同），本地只计算消息摘要 e = SM3(Z_A || M)
+ *
+ * 并发的签名请求合并成批：第一个请求到达后等待 batchDelay 收集其他请求，然后一次发送队列中所有的摘要；
+ * 同时最多有 maxInFlight 个批次在途（流水线），在途批次占满时新的请求继续排队，下一批一次发送。
+ * 签名服务每个请求的延迟较高（几十毫秒）时，并发签名几十个 JAR 只需要一两次往返
+ */
+public class RemoteSignerProvider implements SignerProvider, Closeable {
+
+    /** 在 signerProvider 参数中使用的名称 */
+    public static final String NAME = "remote";
+
+    /** 等待签名结果的默认超时（秒） */
+    private static final long SIGN_TIMEOUT = 300;
+
+    private static final byte[][] EMPTY = new byte[0][];
+
+    /**
+     * 等待签名的请求
+     */
+    private static class Pending {
+        private final byte[] digest;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        Pending(byte[] digest) {
+            this.digest = digest;
+        }
+    }
+
+    private final SigningAgentClient client;
+    private final byte[] keyId;
+    private final byte[] publicPoint;
+    private final long batchDelay;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService senders;
+    private final Thread dispatcher;
+    /** 已交给发送线程、尚未完成的批次 */
+    private final Set<List<Pending>> sending = ConcurrentHashMap.newKeySet();
+    private volatile long signTimeout = TimeUnit.SECONDS.toMillis(SIGN_TIMEOUT);
+    private volatile boolean closed;
+
+    /**
+     * @param client      签名服务的客户端
+     * @param keyId       私钥标识（见 {@link SigningAgent#keyId(File)}）
+     * @param batchDelay  收集一批请求的等待时间（毫秒），0 表示不等待
+     * @param maxInFlight 同时在途的批次数
+     * @throws IOException 无法连接签名服务，或签名服务未持有该私钥
+     */
+    public RemoteSignerProvider(SigningAgentClient client, byte[] keyId, long batchDelay, int maxInFlight)
+            throws IOException {
+        SigningAgentClient.AgentKey key = client.getKey(keyId);
+        if (key == null) {
+            throw new IOException("签名服务未持有该私钥");
+        }
+        this.client = client;
+        this.keyId = keyId.clone();
+        this.publicPoint = key.getPublicPoint();
+        this.batchDelay = batchDelay;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.senders = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "sm2-remote-signer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "sm2-remote-signer-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 等待签名结果的超时（毫秒），默认 300 秒
+     */
+    public void setSignTimeout(long signTimeout) {
+        this.signTimeout = signTimeout;
+    }
+
+    @Override
+    public byte[] getPublicPoint() {
+        return publicPoint.clone();
+    }
+
+    @Override
+    public byte[] sign(byte[] data) throws Exception {
+        return sign(new byte[][] { data })[0];
+    }
+
+    /**
+     * 批量签名（作为同一批发送）
+     *
+     * @return 与 data 顺序相同的 DER 编码签名值
+     */
+    public byte[][] sign(byte[]... data) throws Exception {
+        if (data.length == 0) {
+            return EMPTY;
+        }
+        List<Pending> pending = new ArrayList<>(data.length);
+        for (byte[] d : data) {
+            pending.add(new Pending(DeterministicSM2Signer.messageDigest(publicPoint, d)));
+        }
+        if (closed) {
+            throw new IOException("远程签名已关闭");
+        }
+        queue.addAll(pending);
+        // 入队之后再检查一次：close() 可能在上面的检查之后、入队之前已经清空了队列
+        if (closed) {
+            failQueued();
+        }
+        byte[][] signatures = new byte[data.length][];
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(signTimeout);
+        try {
+            for (int i = 0; i < signatures.length; i++) {
+                signatures[i] = pending.get(i).result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } catch (TimeoutException e) {
+            throw new IOException("等待签名服务超时", e);
+        }
+        return signatures;
+    }
+
+    /**
+     * 关闭：所有未完成的请求（排队中、分发线程已取出的和正在发送的）立即失败，不等待超时
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        senders.shutdownNow();
+        for (List<Pending> batch : sending) {
+            fail(batch, new IOException("远程签名已关闭"));
+        }
+        failQueued();
+    }
+
+    /**
+     * 关闭后队列中剩余的请求立即失败
+     */
+    private void failQueued() {
+        IOException error = new IOException("远程签名已关闭");
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 分批发送：取到第一个请求后等待 batchDelay，并等到有空闲的在途名额，再取出队列中所有的请求作为一批
+     */
+    private void dispatch() {
+        List<Pending> batch = null;
+        try {
+            while (!closed) {
+                Pending first = queue.take();
+                batch = new ArrayList<>();
+                batch.add(first);
+                if (batchDelay > 0) {
+                    Thread.sleep(batchDelay);
+                }
+                inFlight.acquire();
+                queue.drainTo(batch, SigningAgent.MAX_BATCH - 1);
+                final List<Pending> ready = batch;
+                batch = null;
+                // 先登记再提交：close() 中 shutdownNow 丢弃的任务也能由 close() 置为失败
+                sending.add(ready);
+                try {
+                    senders.execute(() -> send(ready));
+                } catch (RuntimeException e) {
+                    sending.remove(ready);
+                    inFlight.release();
+                    fail(ready, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() 中断：已取出但还没有发送的请求失败
+            if (batch != null) {
+                fail(batch, new IOException("远程签名已关闭"));
+            }
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        try {
+            List<byte[]> digests = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                digests.add(pending.digest);
+            }
+            List<byte[]> signatures = client.signDigests(keyId, digests);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(signatures.get(i));
+            }
+        } catch (Exception e) {
+            fail(batch, e);
+        } finally {
+            sending.remove(batch);
+            inFlight.release();
+        }
+    }
+
+    private static void fail(List<Pending> batch, Exception e) {
+        for (Pending pending : batch) {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * signerProvider = remote 的工厂，signerProperties:
+     * <ul>
+     * <li>host、port、token（Base64）：签名服务的地址和访问令牌；或 agentFile：签名代理的信息文件（本机）</li>
+     * <li>tls、trustStore、trustStorePassword、trustStoreType：TLS 连接和校验服务端证书的信任库（未指定信任库时使用 JVM 默认的信任库）；
+     * 非本机回环地址的签名服务必须使用 TLS</li>
+     * <li>keyStore、keyStorePassword、keyStoreType：TLS 客户端证书</li>
+     * <li>keyId（Base64）或 keyFile：签名服务持有的私钥的标识（私钥文件内容的 SM3 摘要）</li>
+     * <li>batchDelay：收集一批请求的等待时间（毫秒），默认 10</li>
+     * <li>maxInFlight：同时在途的批次数，默认 2</li>
+     * <li>signTimeout：等待签名结果的超时（毫秒），默认 300000</li>
+     * </ul>
+     */
+    public static class Factory implements SignerProviderFactory {
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public SignerProvider create(Map<String, String> properties) throws Exception {
+            SigningAgentClient client;
+            if (properties.get("agentFile") != null) {
+                client = SigningAgentClient.open(new File(properties.get("agentFile")));
+            } else {
+                String host = required(properties, "host");
+                int port = Integer.parseInt(required(properties, "port"));
+                byte[] token = Base64.getDecoder().decode(required(properties, "token"));
+                SSLSocketFactory sslSocketFactory = sslSocketFactory(properties);
+                if (sslSocketFactory == null && !isLoopback(host)) {
+                    throw new IllegalArgumentException("签名服务 " + host + " 不在本机，必须使用 TLS（配置 tls=true 或 trustStore）");
+                }
+                client = SigningAgentClient.connect(host, port, token, sslSocketFactory);
+            }
+
+            byte[] keyId;
+            if (properties.get("keyId") != null) {
+                keyId = Base64.getDecoder().decode(properties.get("keyId"));
+            } else {
+                keyId = SigningAgent.keyId(new File(required(properties, "keyFile")));
+            }
+
+            long batchDelay = Long.parseLong(properties.getOrDefault("batchDelay", "10"));
+            int maxInFlight = Integer.parseInt(properties.getOrDefault("maxInFlight", "2"));
+            RemoteSignerProvider provider = new RemoteSignerProvider(client, keyId, batchDelay, maxInFlight);
+            if (properties.get("signTimeout") != null) {
+                provider.setSignTimeout(Long.parseLong(properties.get("signTimeout").trim()));
+            }
+            return provider;
+        }
+
+        /**
+         * 按 signerProperties 创建 TLS 连接工厂，未配置 TLS 时返回 null
+         */
+        private static SSLSocketFactory sslSocketFactory(Map<String, String> properties) throws Exception {
+            String trustStore = properties.get("trustStore");
+            String keyStore = properties.get("keyStore");
+            if (!Boolean.parseBoolean(properties.get("tls")) && trustStore == null && keyStore == null) {
+                return null;
+            }
+            TrustManager[] trustManagers = null;
+            if (trustStore != null) {
+                TrustManagerFactory factory = TrustManagerFactory
+                        .getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                factory.init(loadKeyStore(trustStore, properties.get("trustStoreType"),
+                        properties.get("trustStorePassword")));
+                trustManagers = factory.getTrustManagers();
+            }
+            KeyManager[] keyManagers = null;
+            if (keyStore != null) {
+                String password = properties.get("keyStorePassword");
+                KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+                factory.init(loadKeyStore(keyStore, properties.get("keyStoreType"), password),
+                        password != null ? password.toCharArray() : new char[0]);
+                keyManagers = factory.getKeyManagers();
+            }
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers, trustManagers, null);
+            return context.getSocketFactory();
+        }
+
+        private static KeyStore loadKeyStore(String file, String type, String password) throws Exception {
+            KeyStore keyStore = KeyStore.getInstance(type != null ? type : KeyStore.getDefaultType());
+            try (InputStream in = new FileInputStream(file)) {
+                keyStore.load(in, password != null ? password.toCharArray() : null);
+            }
+            return keyStore;
+        }
+
+        /**
+         * 主机名解析出的所有地址都是回环地址
+         */
+        private static boolean isLoopback(String host) throws UnknownHostException {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (!address.isLoopbackAddress()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String required(Map<String, String> properties, String name) {
+            String value = properties.get(name);
+            if (value == null || value.trim().isEmpty()) {
+                throw new IllegalArgumentException("signerProperties 缺少 " + name);
+            }
+            return value.trim();
+        }
+    }
+}
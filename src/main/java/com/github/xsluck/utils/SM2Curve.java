@@ -0,0 +1,120 @@
+package com.github.xsluck.utils;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.asn1.gm.GMNamedCurves;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.math.ec.ECFieldElement;
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointUtil;
+
+/**
+ * sm2p256v1 曲线参数（每个 JVM 一份）
+ *
+ * 基点 G 的固定基点梳状预计算表在类加载时构建一次，保存在共享的 G 上，所有线程的 k·G 都使用这张表；
+ * BouncyCastle 的 SM3withSM2 每次签名都从私钥的参数重新构造曲线和基点，预计算表无法复用
+ *
+ * Z_A（用户标识杂凑值）按公钥点缓存
+ */
+public final class SM2Curve {
+
+    private static final byte[] DEFAULT_USER_ID = "1234567812345678".getBytes(StandardCharsets.US_ASCII);
+
+    /** Z_A 缓存的最大条目数（公钥数），超过时清空 */
+    private static final int MAX_CACHED_USER_HASHES = 64;
+
+    private static final ECDomainParameters DOMAIN;
+
+    private static final ECMultiplier BASE_MULTIPLIER = new FixedPointCombMultiplier();
+
+    private static final Map<ByteBuffer, byte[]> USER_HASHES = new ConcurrentHashMap<>();
+
+    static {
+        X9ECParameters x9 = GMNamedCurves.getByName("sm2p256v1");
+        DOMAIN = new ECDomainParameters(x9.getCurve(), x9.getG(), x9.getN(), x9.getH());
+        FixedPointUtil.precompute(DOMAIN.getG());
+    }
+
+    private SM2Curve() {
+    }
+
+    /**
+     * sm2p256v1 的曲线参数（基点带有预计算表）
+     */
+    public static ECDomainParameters getDomain() {
+        return DOMAIN;
+    }
+
+    /**
+     * 是否为 sm2p256v1 曲线（与其他来源的参数对象比较）
+     */
+    public static boolean isSM2(ECDomainParameters params) {
+        return params == DOMAIN
+                || (DOMAIN.getCurve().equals(params.getCurve()) && DOMAIN.getG().equals(params.getG()));
+    }
+
+    /**
+     * k·G（使用共享的预计算表），返回规范化的点
+     */
+    public static ECPoint multiplyBase(BigInteger k) {
+        return BASE_MULTIPLIER.multiply(DOMAIN.getG(), k).normalize();
+    }
+
+    /**
+     * 解码公钥点（压缩或未压缩格式）
+     */
+    public static ECPoint decodePoint(byte[] encoded) {
+        return DOMAIN.getCurve().decodePoint(encoded).normalize();
+    }
+
+    /**
+     * 公钥点的 Z_A（默认用户标识），按公钥点缓存
+     *
+     * @param publicPoint 公钥点的编码（未压缩格式）
+     */
+    public static byte[] userHash(byte[] publicPoint) {
+        ByteBuffer key = ByteBuffer.wrap(publicPoint.clone());
+        byte[] z = USER_HASHES.get(key);
+        if (z == null) {
+            z = userHash(DOMAIN, decodePoint(publicPoint));
+            if (USER_HASHES.size() >= MAX_CACHED_USER_HASHES) {
+                USER_HASHES.clear();
+            }
+            USER_HASHES.put(key, z);
+        }
+        return z;
+    }
+
+    /**
+     * Z_A = SM3(ENTL || ID || a || b || xG || yG || xA || yA)，用户标识使用 GM/T 0009 的默认值 1234567812345678
+     */
+    static byte[] userHash(ECDomainParameters params, ECPoint publicPoint) {
+        SM3Digest digest = new SM3Digest();
+        int bits = DEFAULT_USER_ID.length * 8;
+        digest.update((byte) (bits >>> 8));
+        digest.update((byte) bits);
+        digest.update(DEFAULT_USER_ID, 0, DEFAULT_USER_ID.length);
+        addFieldElement(digest, params.getCurve().getA());
+        addFieldElement(digest, params.getCurve().getB());
+        addFieldElement(digest, params.getG().getAffineXCoord());
+        addFieldElement(digest, params.getG().getAffineYCoord());
+        addFieldElement(digest, publicPoint.getAffineXCoord());
+        addFieldElement(digest, publicPoint.getAffineYCoord());
+        byte[] result = new byte[digest.getDigestSize()];
+        digest.doFinal(result, 0);
+        return result;
+    }
+
+    private static void addFieldElement(SM3Digest digest, ECFieldElement element) {
+        byte[] encoded = element.getEncoded();
+        digest.update(encoded, 0, encoded.length);
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.xsluck.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+
+/**
+ * 增量式 SM3 摘要计算器
+ * 数据按块流式输入，内存占用与数据大小无关；每个线程复用一个实例（含读缓冲区），避免重复分配
+ */
+public final class SM3Digester {
+
+    /** SM3 摘要长度（字节） */
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<SM3Digester> CURRENT = new ThreadLocal<SM3Digester>() {
+        @Override
+        protected SM3Digester initialValue() {
+            return new SM3Digester();
+        }
+    };
+
+    private final SM3Digest digest = new SM3Digest();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    public SM3Digester() {
+    }
+
+    /**
+     * 获取当前线程复用的实例（已重置）
+     * 注意：同一线程内不能嵌套使用，需要同时计算多个摘要时请 new 新实例
+     */
+    public static SM3Digester current() {
+        SM3Digester digester = CURRENT.get();
+        digester.reset();
+        return digester;
+    }
+
+    /**
+     * 计算数据的 SM3 摘要
+     */
+    public static byte[] hash(byte[] data) {
+        return current().update(data, 0, data.length).digest();
+    }
+
+    /**
+     * 流式计算输入流的 SM3 摘要（不会关闭输入流）
+     */
+    public static byte[] hash(InputStream is) throws IOException {
+        return current().update(is).digest();
+    }
+
+    public SM3Digester update(byte[] data, int offset, int length) {
+        digest.update(data, offset, length);
+        return this;
+    }
+
+    public SM3Digester update(ByteBuffer data) {
+        if (data.hasArray()) {
+            digest.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+        } else {
+            while (data.hasRemaining()) {
+                int length = Math.min(data.remaining(), buffer.length);
+                data.get(buffer, 0, length);
+                digest.update(buffer, 0, length);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 读取输入流直到结束并更新摘要（不会关闭输入流）
+     */
+    public SM3Digester update(InputStream is) throws IOException {
+        int len;
+        while ((len = is.read(buffer)) != -1) {
+            digest.update(buffer, 0, len);
+        }
+        return this;
+    }
+
+    /**
+     * 完成计算并返回摘要，计算器随后被重置
+     */
+    public byte[] digest() {
+        byte[] result = new byte[DIGEST_LENGTH];
+        digest.doFinal(result, 0);
+        return result;
+    }
+
+    /**
+     * 完成计算并把摘要写入指定数组，计算器随后被重置
+     */
+    public void digest(byte[] out, int offset) {
+        digest.doFinal(out, offset);
+    }
+
+    public void reset() {
+        digest.reset();
+    }
+}
@@ -0,0 +1,372 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 签名块（.SM2 文件）格式
+ *
+ * v2 格式（带版本和长度，单次解析）:
+ * [魔数 "SM2B"(4字节)] [版本(1字节)] [算法(1字节)] [段数量(2字节)]
+ * 之后每段: [类型(1字节)] [长度(4字节)] [数据]
+ * 段类型: 1 = 证书链（{@link CertificateChainUtil#encodeCertificateChain} 格式），2 = 签名值，
+ * 3 = 批量签名的包含路径（{@link BatchSignature.Proof} 格式，存在时签名值是 Merkle 树根的签名）
+ *
+ * CMS 格式: DER 编码的 CMS/PKCS#7 SignedData（见 {@link CmsSignatureBlock}）
+ *
+ * 兼容的旧格式（无版本标识，解析前先识别格式，避免逐字节尝试）:
+ * v1: [证书链编码数据] [签名数据]
+ * 更早的格式: [DER 证书 ...] [签名数据]
+ */
+public class SignatureBlock {
+
+    public static final byte[] MAGIC = { 'S', 'M', '2', 'B' };
+
+    public static final int VERSION_LEGACY_RAW = 0;
+    public static final int VERSION_1 = 1;
+    public static final int VERSION_2 = 2;
+
+    /** 签名算法: SM3withSM2 */
+    public static final int ALG_SM3_WITH_SM2 = 1;
+
+    public static final int SECTION_CERT_CHAIN = 1;
+    public static final int SECTION_SIGNATURE = 2;
+    public static final int SECTION_BATCH_PROOF = 3;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_CHAIN_LENGTH = 16;
+
+    private int version;
+    private boolean cms;
+    private byte[] encoded;
+    private int algorithm = ALG_SM3_WITH_SM2;
+    private List<X509Certificate> certChain = new ArrayList<>();
+    private byte[] signature;
+    private BatchSignature.Proof batchProof;
+    private final Map<Integer, byte[]> sections = new LinkedHashMap<>();
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isLegacy() {
+        return !cms && version < VERSION_2;
+    }
+
+    /**
+     * 是否为 CMS SignedData 格式
+     */
+    public boolean isCms() {
+        return cms;
+    }
+
+    /**
+     * 格式名称（用于日志和验证结果）
+     */
+    public String getFormatName() {
+        return cms ? "CMS" : "v" + version;
+    }
+
+    public int getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 签名算法名称（用于 java.security.Signature）
+     */
+    public String getAlgorithmName() throws IOException {
+        if (algorithm == ALG_SM3_WITH_SM2) {
+            return "SM3withSM2";
+        }
+        throw new IOException("不支持的签名算法: " + algorithm);
+    }
+
+    public List<X509Certificate> getCertChain() {
+        return certChain;
+    }
+
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    /**
+     * 是否为 Merkle 批量签名（签名值是树根的签名，验证时需要包含路径）
+     */
+    public boolean isBatch() {
+        return batchProof != null;
+    }
+
+    /**
+     * 批量签名的包含路径，不是批量签名时返回 null
+     */
+    public BatchSignature.Proof getBatchProof() {
+        return batchProof;
+    }
+
+    /**
+     * 获取指定类型的段数据（仅 v2 格式）
+     */
+    public byte[] getSection(int type) {
+        return sections.get(type);
+    }
+
+    /**
+     * 使用叶子证书公钥验证 .SF 文件的签名（SM2 公钥见 {@link PrecomputedSM2Verifier}）
+     * 批量签名先用包含路径计算树根（O(log n)），再验证树根的签名
+     */
+    public boolean verify(byte[] sfData) throws Exception {
+        if (cms) {
+            try {
+                CmsSignatureBlock.verify(sfData, encoded);
+                return true;
+            } catch (SignatureException e) {
+                return false;
+            }
+        }
+        byte[] signedData = sfData;
+        if (batchProof != null) {
+            signedData = BatchSignature.rootMessage(batchProof.computeRoot(sfData), batchProof.getLeafCount());
+        }
+        PublicKey publicKey = certChain.get(0).getPublicKey();
+        // SM2 公钥使用按公钥缓存的验证器（Z_A 和多点乘预计算表只计算一次）
+        PrecomputedSM2Verifier verifier = algorithm == ALG_SM3_WITH_SM2 ? PrecomputedSM2Verifier.forKey(publicKey)
+                : null;
+        if (verifier != null) {
+            return verifier.verify(signedData, signature);
+        }
+        Signature sig = Signature.getInstance(getAlgorithmName(), "BC");
+        sig.initVerify(publicKey);
+        sig.update(signedData);
+        return sig.verify(signature);
+    }
+
+    /**
+     * 创建 v2 格式的签名块
+     */
+    public static byte[] encode(List<X509Certificate> certChain, byte[] signature) throws Exception {
+        Map<Integer, byte[]> sections = new LinkedHashMap<>();
+        sections.put(SECTION_CERT_CHAIN, CertificateChainUtil.encodeCertificateChain(certChain));
+        sections.put(SECTION_SIGNATURE, signature);
+        return encode(ALG_SM3_WITH_SM2, sections);
+    }
+
+    /**
+     * 创建 v2 格式的批量签名块
+     *
+     * @param rootSignature Merkle 树根的签名
+     * @param proof         该 JAR 的包含路径
+     */
+    public static byte[] encodeBatch(List<X509Certificate> certChain, byte[] rootSignature,
+            BatchSignature.Proof proof) throws Exception {
+        Map<Integer, byte[]> sections = new LinkedHashMap<>();
+        sections.put(SECTION_CERT_CHAIN, CertificateChainUtil.encodeCertificateChain(certChain));
+        sections.put(SECTION_SIGNATURE, rootSignature);
+        sections.put(SECTION_BATCH_PROOF, proof.encode());
+        return encode(ALG_SM3_WITH_SM2, sections);
+    }
+
+    /**
+     * 创建 v2 格式的签名块
+     *
+     * @param algorithm 算法标识
+     * @param sections  段类型到段数据的映射（按顺序写入）
+     */
+    public static byte[] encode(int algorithm, Map<Integer, byte[]> sections) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(MAGIC);
+        baos.write(VERSION_2);
+        baos.write(algorithm);
+        baos.write(sections.size() >>> 8);
+        baos.write(sections.size());
+        for (Map.Entry<Integer, byte[]> section : sections.entrySet()) {
+            byte[] data = section.getValue();
+            baos.write(section.getKey());
+            baos.write(ByteBuffer.allocate(4).putInt(data.length).array());
+            baos.write(data);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * 是否为 v2 格式
+     */
+    public static boolean isV2(byte[] data) {
+        return data.length >= HEADER_SIZE && data[0] == MAGIC[0] && data[1] == MAGIC[1] && data[2] == MAGIC[2]
+                && data[3] == MAGIC[3] && data[4] == VERSION_2;
+    }
+
+    /**
+     * 解析签名块，先识别格式再按格式解析，不做逐偏移量的尝试
+     */
+    public static SignatureBlock parse(byte[] data) throws Exception {
+        if (CmsSignatureBlock.isCms(data)) {
+            SignatureBlock block = new SignatureBlock();
+            block.cms = true;
+            block.encoded = data;
+            block.certChain = CmsSignatureBlock.extractCertificateChain(data);
+            return block;
+        }
+        if (data.length >= 4 && data[0] == MAGIC[0] && data[1] == MAGIC[1] && data[2] == MAGIC[2]
+                && data[3] == MAGIC[3]) {
+            return parseV2(data);
+        }
+        if (looksLikeV1(data)) {
+            return parseV1(data);
+        }
+        return parseLegacyRaw(data);
+    }
+
+    private static SignatureBlock parseV2(byte[] data) throws Exception {
+        if (data.length < HEADER_SIZE) {
+            throw new IOException("签名块长度不足");
+        }
+        SignatureBlock block = new SignatureBlock();
+        block.version = data[4] & 0xFF;
+        if (block.version != VERSION_2) {
+            throw new IOException("不支持的签名块版本: " + block.version);
+        }
+        block.algorithm = data[5] & 0xFF;
+        int sectionCount = ((data[6] & 0xFF) << 8) | (data[7] & 0xFF);
+
+        ByteBuffer buffer = ByteBuffer.wrap(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        for (int i = 0; i < sectionCount; i++) {
+            if (buffer.remaining() < 5) {
+                throw new IOException("签名块段头不完整");
+            }
+            int type = buffer.get() & 0xFF;
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException("签名块段长度无效: " + length);
+            }
+            byte[] section = new byte[length];
+            buffer.get(section);
+            block.sections.put(type, section);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("签名块末尾有多余数据");
+        }
+
+        byte[] chainData = block.sections.get(SECTION_CERT_CHAIN);
+        block.signature = block.sections.get(SECTION_SIGNATURE);
+        if (chainData == null || block.signature == null) {
+            throw new IOException("签名块缺少证书链或签名");
+        }
+        block.certChain = CertificateChainUtil.decodeCertificateChain(chainData);
+        byte[] proofData = block.sections.get(SECTION_BATCH_PROOF);
+        if (proofData != null) {
+            block.batchProof = BatchSignature.Proof.decode(proofData);
+        }
+        return block;
+    }
+
+    /**
+     * v1 格式以 4 字节证书数量开头，随后是 4 字节长度和 DER 编码的证书（以 0x30 开头）
+     */
+    private static boolean looksLikeV1(byte[] data) {
+        if (data.length < 9) {
+            return false;
+        }
+        int count = readInt(data, 0);
+        int firstLength = readInt(data, 4);
+        return count > 0 && count <= MAX_CHAIN_LENGTH && firstLength > 0 && firstLength <= data.length - 8
+                && data[8] == 0x30;
+    }
+
+    private static SignatureBlock parseV1(byte[] data) throws Exception {
+        SignatureBlock block = new SignatureBlock();
+        block.version = VERSION_1;
+
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
+        int count = readInt(data, 0);
+        int offset = 4;
+        for (int i = 0; i < count; i++) {
+            if (offset + 4 > data.length) {
+                throw new IOException("无法读取证书 " + (i + 1) + " 的长度");
+            }
+            int length = readInt(data, offset);
+            offset += 4;
+            if (length <= 0 || length > data.length - offset) {
+                throw new IOException("无法读取证书 " + (i + 1) + " 的数据");
+            }
+            block.certChain.add(toX509(cf.generateCertificate(new ByteArrayInputStream(data, offset, length))));
+            offset += length;
+        }
+        block.signature = Arrays.copyOfRange(data, offset, data.length);
+        return block;
+    }
+
+    /**
+     * 更早的格式：DER 证书直接拼接后跟签名，按 DER 长度逐个读取证书，遇到无法解析为证书的结构即为签名
+     */
+    private static SignatureBlock parseLegacyRaw(byte[] data) throws Exception {
+        SignatureBlock block = new SignatureBlock();
+        block.version = VERSION_LEGACY_RAW;
+
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
+        int offset = 0;
+        while (offset < data.length && block.certChain.size() < MAX_CHAIN_LENGTH) {
+            int length = derLength(data, offset);
+            if (length <= 0 || length >= data.length - offset) {
+                break;
+            }
+            try {
+                block.certChain.add(toX509(cf.generateCertificate(new ByteArrayInputStream(data, offset, length))));
+            } catch (Exception e) {
+                break;
+            }
+            offset += length;
+        }
+        if (block.certChain.isEmpty()) {
+            throw new IOException("无法从签名块中提取证书");
+        }
+        block.signature = Arrays.copyOfRange(data, offset, data.length);
+        return block;
+    }
+
+    /**
+     * DER SEQUENCE 的总长度（含标签和长度字节），不是 SEQUENCE 时返回 -1
+     */
+    private static int derLength(byte[] data, int offset) {
+        if (offset + 2 > data.length || data[offset] != 0x30) {
+            return -1;
+        }
+        int first = data[offset + 1] & 0xFF;
+        if (first < 0x80) {
+            return 2 + first;
+        }
+        int lengthBytes = first & 0x7F;
+        if (lengthBytes == 0 || lengthBytes > 3 || offset + 2 + lengthBytes > data.length) {
+            return -1;
+        }
+        int length = 0;
+        for (int i = 0; i < lengthBytes; i++) {
+            length = (length << 8) | (data[offset + 2 + i] & 0xFF);
+        }
+        return 2 + lengthBytes + length;
+    }
+
+    private static X509Certificate toX509(Certificate cert) throws IOException {
+        if (cert instanceof X509Certificate) {
+            return (X509Certificate) cert;
+        }
+        throw new IOException("证书不是 X.509 格式");
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8)
+                | (data[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.xsluck.utils;
+
+import java.security.PrivateKey;
+
+import org.bouncycastle.operator.ContentSigner;
+
+/**
+ * 签名提供者（SPI）：对 .SF 文件（或分离式签名的描述数据）做 SM3withSM2 签名
+ * 默认为进程内的 BouncyCastle 签名（{@link LocalSignerProvider}），私钥由签名服务持有时使用 {@link RemoteSignerProvider}；
+ * 其他实现通过 {@link SignerProviderFactory} 按名称注册
+ *
+ * 实现必须是线程安全的：sign-all 目标和内嵌 JAR 签名会并发调用
+ */
+public interface SignerProvider {
+
+    /**
+     * SM3withSM2 签名
+     *
+     * @return DER 编码的签名值
+     */
+    byte[] sign(byte[] data) throws Exception;
+
+    /**
+     * 签名私钥对应的公钥点（未压缩格式），用于签名前检查与签名证书是否一致；未知时返回 null
+     */
+    default byte[] getPublicPoint() {
+        return null;
+    }
+
+    /**
+     * 供 CMS 签名块使用的 ContentSigner，默认通过 {@link #sign(byte[])} 签名
+     */
+    default ContentSigner asContentSigner() throws Exception {
+        return DeterministicSM2Signer.contentSigner(data -> {
+            try {
+                return sign(data);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 进程内签名
+     *
+     * @param privateKey    签名私钥（签名代理持有的私钥直接由代理签名）
+     * @param deterministic 是否使用确定性 SM2 签名（见 {@link DeterministicSM2Signer}）
+     */
+    static SignerProvider local(PrivateKey privateKey, boolean deterministic) {
+        if (privateKey instanceof SignerProvider) {
+            return (SignerProvider) privateKey;
+        }
+        return new LocalSignerProvider(privateKey, deterministic);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.xsluck.utils;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * 按名称创建 {@link SignerProvider} 的工厂，通过 {@link ServiceLoader} 注册
+ * （META-INF/services/com.github.xsluck.utils.SignerProviderFactory），作为插件的依赖加入即可在 signerProvider 参数中使用
+ */
+public interface SignerProviderFactory {
+
+    /**
+     * 名称（signerProvider 参数的值）
+     */
+    String getName();
+
+    /**
+     * 创建签名提供者
+     *
+     * @param properties signerProperties 参数中的配置
+     */
+    SignerProvider create(Map<String, String> properties) throws Exception;
+
+    /**
+     * 查找已注册的工厂
+     *
+     * @return 没有该名称的工厂时返回 null
+     */
+    static SignerProviderFactory find(String name, ClassLoader classLoader) {
+        for (SignerProviderFactory factory : ServiceLoader.load(SignerProviderFactory.class, classLoader)) {
+            if (factory.getName().equalsIgnoreCase(name)) {
+                return factory;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,335 @@
+package com.github.xsluck.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 签名代理：长期运行的进程，持有解密后的 SM2 私钥（及其预计算数据），按请求对 .SF 文件的消息摘要签名
+ * 类似 ssh-agent，私钥只在代理启动时解密一次（PBKDF2），之后的每次 Maven 构建通过 {@link SigningAgentClient} 委托代理签名
+ *
+ * 代理只监听本机回环地址（JDK 8 不支持 Unix domain socket），端口和随机生成的访问令牌写入代理信息文件，
+ * 信息文件只有当前用户可读；每个请求都必须携带令牌，代理退出时删除信息文件
+ *
+ * 请求格式:
+ * [魔数 "SM2A"(4字节)] [版本(1字节)] [操作(1字节)] [令牌(32字节)] [私钥标识(32字节)] [操作数据]
+ * 操作 1（查询公钥）: 无数据；响应 [状态(1字节)] [公钥点长度(2字节)] [公钥点]
+ * 操作 2（批量签名）: [数量(4字节)] 之后每个 [消息摘要 e(32字节)]；响应 [状态(1字节)] 之后每个 [签名长度(2字节)] [DER 签名值]
+ * 状态不为 0 时响应为 [状态(1字节)] [错误信息(UTF)]
+ *
+ * 私钥标识为私钥文件内容的 SM3 摘要（见 {@link #keyId(File)}），客户端不需要密码即可确认代理持有的是同一个私钥；
+ * 签名值为确定性 SM2 签名（见 {@link DeterministicSM2Signer}）
+ *
+ * 也可以在测试中作为签名服务的替身（{@link RemoteSignerProvider} 使用相同的协议），{@link #setResponseDelay(long)} 模拟服务的请求延迟
+ */
+public class SigningAgent implements Closeable {
+
+    public static final byte[] MAGIC = { 'S', 'M', '2', 'A' };
+
+    public static final int VERSION_1 = 1;
+
+    public static final int OP_PUBLIC_KEY = 1;
+    public static final int OP_SIGN = 2;
+
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERROR = 1;
+    public static final int STATUS_UNKNOWN_KEY = 2;
+
+    public static final int TOKEN_SIZE = 32;
+    public static final int KEY_ID_SIZE = 32;
+    public static final int DIGEST_SIZE = 32;
+
+    /** 一个批量签名请求最多包含的摘要数 */
+    public static final int MAX_BATCH = 4096;
+
+    /** 指定代理信息文件位置的环境变量 */
+    public static final String AGENT_FILE_ENV = "SM2_SIGN_AGENT";
+
+    /** 单个连接的读超时（毫秒） */
+    private static final int SO_TIMEOUT = 30000;
+
+    private final DeterministicSM2Signer signer;
+    private final byte[] keyId;
+    private final byte[] publicPoint;
+    private final File infoFile;
+    private final byte[] token = new byte[TOKEN_SIZE];
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final AtomicLong lastActivity = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong signatures = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long responseDelay;
+    private volatile boolean closed;
+
+    /**
+     * 启动代理：在本机回环地址上监听并写入代理信息文件（调用 {@link #run(long)} 开始处理请求）
+     *
+     * @param privateKey 解密后的 SM2 私钥
+     * @param keyId      私钥标识（见 {@link #keyId(File)}）
+     * @param infoFile   代理信息文件（已存在时覆盖）
+     * @param port       监听端口，0 表示自动选择
+     * @param threads    处理请求的线程数
+     */
+    public SigningAgent(PrivateKey privateKey, byte[] keyId, File infoFile, int port, int threads)
+            throws Exception {
+        this.signer = new DeterministicSM2Signer(privateKey);
+        this.keyId = keyId.clone();
+        this.publicPoint = signer.getPublicPoint();
+        this.infoFile = infoFile;
+        new SecureRandom().nextBytes(token);
+        // 预先签名一次，使基点的预计算表在第一个请求之前就绪
+        signer.signDigest(new byte[DIGEST_SIZE]);
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "sm2-sign-agent");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            writeInfoFile();
+        } catch (IOException e) {
+            serverSocket.close();
+            workers.shutdownNow();
+            throw e;
+        }
+    }
+
+    /**
+     * 默认的代理信息文件：环境变量 SM2_SIGN_AGENT 指定的文件，否则为 ~/.sm2-sign-agent/agent.info
+     */
+    public static File defaultInfoFile() {
+        String env = System.getenv(AGENT_FILE_ENV);
+        if (env != null && !env.trim().isEmpty()) {
+            return new File(env.trim());
+        }
+        return new File(new File(System.getProperty("user.home"), ".sm2-sign-agent"), "agent.info");
+    }
+
+    /**
+     * 私钥标识：私钥文件内容的 SM3 摘要（加密的私钥文件不需要密码即可计算）
+     */
+    public static byte[] keyId(File keyFile) throws IOException {
+        return SM3Digester.hash(Files.readAllBytes(keyFile.toPath()));
+    }
+
+    /**
+     * 监听的端口
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 公钥点的编码（未压缩格式）
+     */
+    public byte[] getPublicPoint() {
+        return publicPoint.clone();
+    }
+
+    /**
+     * 已完成的签名数
+     */
+    public long getSignatureCount() {
+        return signatures.get();
+    }
+
+    /**
+     * 已处理的批量签名请求数
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * 每个批量签名请求的额外延迟（毫秒），用于模拟远程签名服务
+     */
+    public void setResponseDelay(long responseDelay) {
+        this.responseDelay = responseDelay;
+    }
+
+    /**
+     * 处理请求，直到调用 {@link #close()} 或空闲时间超过 idleTimeout
+     *
+     * @param idleTimeout 空闲超时（毫秒），小于等于 0 表示不超时
+     */
+    public void run(long idleTimeout) throws IOException {
+        if (idleTimeout > 0) {
+            serverSocket.setSoTimeout((int) Math.min(idleTimeout, 60000));
+        }
+        try {
+            while (!closed) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    if (System.currentTimeMillis() - lastActivity.get() >= idleTimeout) {
+                        break;
+                    }
+                    continue;
+                } catch (SocketException e) {
+                    if (closed) {
+                        break;
+                    }
+                    throw e;
+                }
+                lastActivity.set(System.currentTimeMillis());
+                workers.execute(() -> handle(socket));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        workers.shutdownNow();
+        try {
+            serverSocket.close();
+        } finally {
+            Files.deleteIfExists(infoFile.toPath());
+        }
+    }
+
+    /**
+     * 处理一个连接（一个请求）
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(SO_TIMEOUT);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            try {
+                process(in, out);
+            } catch (IllegalArgumentException | SecurityException e) {
+                out.writeByte(STATUS_ERROR);
+                out.writeUTF(e.getMessage());
+            }
+            out.flush();
+        } catch (IOException e) {
+            // 客户端断开或请求格式错误，忽略该连接
+        } finally {
+            lastActivity.set(System.currentTimeMillis());
+        }
+    }
+
+    private void process(DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!MessageDigest.isEqual(magic, MAGIC)) {
+            throw new IOException("不是签名代理请求");
+        }
+        int version = in.readUnsignedByte();
+        int op = in.readUnsignedByte();
+        byte[] requestToken = new byte[TOKEN_SIZE];
+        in.readFully(requestToken);
+        if (!MessageDigest.isEqual(requestToken, token)) {
+            throw new SecurityException("访问令牌无效");
+        }
+        if (version != VERSION_1) {
+            throw new IllegalArgumentException("不支持的请求版本: " + version);
+        }
+        byte[] requestKeyId = new byte[KEY_ID_SIZE];
+        in.readFully(requestKeyId);
+        if (!MessageDigest.isEqual(requestKeyId, keyId)) {
+            out.writeByte(STATUS_UNKNOWN_KEY);
+            out.writeUTF("签名代理未持有该私钥");
+            return;
+        }
+
+        if (op == OP_PUBLIC_KEY) {
+            out.writeByte(STATUS_OK);
+            out.writeShort(publicPoint.length);
+            out.write(publicPoint);
+        } else if (op == OP_SIGN) {
+            int count = in.readInt();
+            if (count < 0 || count > MAX_BATCH) {
+                throw new IllegalArgumentException("批量签名的数量无效: " + count);
+            }
+            List<byte[]> digests = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] e = new byte[DIGEST_SIZE];
+                in.readFully(e);
+                digests.add(e);
+            }
+            List<byte[]> results = new ArrayList<>(count);
+            for (byte[] e : digests) {
+                results.add(signer.signDigest(e));
+            }
+            signatures.addAndGet(count);
+            requests.incrementAndGet();
+            if (responseDelay > 0) {
+                try {
+                    Thread.sleep(responseDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("签名代理正在退出", e);
+                }
+            }
+            out.writeByte(STATUS_OK);
+            for (byte[] signature : results) {
+                out.writeShort(signature.length);
+                out.write(signature);
+            }
+        } else {
+            throw new IllegalArgumentException("不支持的操作: " + op);
+        }
+    }
+
+    /**
+     * 写入代理信息文件（端口和令牌），文件只有当前用户可读写
+     */
+    private void writeInfoFile() throws IOException {
+        File dir = infoFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir);
+        }
+        Files.deleteIfExists(infoFile.toPath());
+        Files.createFile(infoFile.toPath());
+        PosixFileAttributeView posix = Files.getFileAttributeView(infoFile.toPath(), PosixFileAttributeView.class);
+        if (posix != null) {
+            posix.setPermissions(PosixFilePermissions.fromString("rw-------"));
+        } else {
+            infoFile.setReadable(false, false);
+            infoFile.setReadable(true, true);
+            infoFile.setWritable(false, false);
+            infoFile.setWritable(true, true);
+        }
+
+        Properties info = new Properties();
+        info.setProperty("port", String.valueOf(getPort()));
+        info.setProperty("token", Base64.getEncoder().encodeToString(token));
+        try (OutputStream out = Files.newOutputStream(infoFile.toPath(), StandardOpenOption.TRUNCATE_EXISTING)) {
+            info.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), "SM2 signing agent");
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.xsluck.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.bouncycastle.operator.ContentSigner;
+
+/**
+ * 签名代理（{@link SigningAgent}）或使用相同协议的签名服务的客户端
+ * 每个请求使用一个新的连接；{@link #signDigests(byte[], List)} 在一个请求中对多个消息摘要签名
+ *
+ * 请求中带有访问令牌：不使用 TLS 时只允许连接本机回环地址（每次连接时检查解析后的地址），
+ * 非本机的签名服务必须使用 TLS（校验服务端证书和主机名，可以同时提供客户端证书）
+ */
+public class SigningAgentClient {
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 60000;
+
+    private final InetSocketAddress address;
+    private final byte[] token;
+    private final SSLSocketFactory sslSocketFactory;
+
+    private SigningAgentClient(InetSocketAddress address, byte[] token, SSLSocketFactory sslSocketFactory) {
+        this.address = address;
+        this.token = token;
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    /**
+     * 以明文连接本机的签名服务（协议与签名代理相同），主机必须解析为回环地址
+     *
+     * @param host  主机名
+     * @param port  端口
+     * @param token 访问令牌（32 字节）
+     */
+    public static SigningAgentClient connect(String host, int port, byte[] token) {
+        return connect(host, port, token, null);
+    }
+
+    /**
+     * 连接签名服务（协议与签名代理相同）
+     *
+     * @param host             主机名
+     * @param port             端口
+     * @param token            访问令牌（32 字节）
+     * @param sslSocketFactory TLS 连接工厂（服务端证书的信任库和客户端证书），为 null 时以明文连接且只允许本机回环地址
+     */
+    public static SigningAgentClient connect(String host, int port, byte[] token, SSLSocketFactory sslSocketFactory) {
+        if (token.length != SigningAgent.TOKEN_SIZE) {
+            throw new IllegalArgumentException("访问令牌必须为 32 字节: " + token.length);
+        }
+        return new SigningAgentClient(InetSocketAddress.createUnresolved(host, port), token.clone(),
+                sslSocketFactory);
+    }
+
+    /**
+     * 读取代理信息文件
+     *
+     * @throws IOException 文件不存在或格式无效
+     */
+    public static SigningAgentClient open(File infoFile) throws IOException {
+        Properties info = new Properties();
+        try (InputStream in = Files.newInputStream(infoFile.toPath())) {
+            info.load(in);
+        }
+        try {
+            int port = Integer.parseInt(info.getProperty("port", "").trim());
+            byte[] token = Base64.getDecoder().decode(info.getProperty("token", "").trim());
+            if (port <= 0 || port > 0xFFFF || token.length != SigningAgent.TOKEN_SIZE) {
+                throw new IOException("签名代理信息文件格式无效: " + infoFile);
+            }
+            return new SigningAgentClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), token, null);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("签名代理信息文件格式无效: " + infoFile, e);
+        }
+    }
+
+    /**
+     * 查询代理持有的私钥
+     *
+     * @param keyId 私钥标识（见 {@link SigningAgent#keyId(File)}）
+     * @return 代理持有该私钥时返回可用于签名的私钥对象，否则返回 null
+     */
+    public AgentKey getKey(byte[] keyId) throws IOException {
+        try (Socket socket = connect()) {
+            DataOutputStream out = request(socket, SigningAgent.OP_PUBLIC_KEY, keyId);
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            int status = in.readUnsignedByte();
+            if (status == SigningAgent.STATUS_UNKNOWN_KEY) {
+                return null;
+            }
+            checkStatus(status, in);
+            byte[] publicPoint = new byte[in.readUnsignedShort()];
+            in.readFully(publicPoint);
+            return new AgentKey(this, keyId, publicPoint);
+        }
+    }
+
+    /**
+     * 批量签名
+     *
+     * @param keyId   私钥标识
+     * @param digests 消息摘要 e = SM3(Z_A || M)（见 {@link DeterministicSM2Signer#messageDigest(byte[], byte[])}）
+     * @return 与 digests 顺序相同的 DER 编码签名值
+     */
+    public List<byte[]> signDigests(byte[] keyId, List<byte[]> digests) throws IOException {
+        if (digests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> signatures = new ArrayList<>(digests.size());
+        for (int from = 0; from < digests.size(); from += SigningAgent.MAX_BATCH) {
+            List<byte[]> batch = digests.subList(from, Math.min(digests.size(), from + SigningAgent.MAX_BATCH));
+            try (Socket socket = connect()) {
+                DataOutputStream out = request(socket, SigningAgent.OP_SIGN, keyId);
+                out.writeInt(batch.size());
+                for (byte[] e : batch) {
+                    if (e.length != SigningAgent.DIGEST_SIZE) {
+                        throw new IllegalArgumentException("SM2 消息摘要必须为 32 字节: " + e.length);
+                    }
+                    out.write(e);
+                }
+                out.flush();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                checkStatus(in.readUnsignedByte(), in);
+                for (int i = 0; i < batch.size(); i++) {
+                    byte[] signature = new byte[in.readUnsignedShort()];
+                    in.readFully(signature);
+                    signatures.add(signature);
+                }
+            }
+        }
+        return signatures;
+    }
+
+    private Socket connect() throws IOException {
+        InetSocketAddress target = address.isUnresolved()
+                ? new InetSocketAddress(address.getHostString(), address.getPort())
+                : address;
+        if (target.isUnresolved()) {
+            throw new UnknownHostException(address.getHostString());
+        }
+        // 令牌不能以明文发往其他主机
+        if (sslSocketFactory == null && !target.getAddress().isLoopbackAddress()) {
+            throw new IOException("签名服务不在本机，必须使用 TLS: " + target);
+        }
+        Socket socket = new Socket();
+        try {
+            socket.connect(target, CONNECT_TIMEOUT);
+            socket.setSoTimeout(READ_TIMEOUT);
+            if (sslSocketFactory == null) {
+                return socket;
+            }
+            SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, address.getHostString(),
+                    address.getPort(), true);
+            try {
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.setSoTimeout(READ_TIMEOUT);
+                sslSocket.startHandshake();
+                return sslSocket;
+            } catch (IOException e) {
+                sslSocket.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private DataOutputStream request(Socket socket, int op, byte[] keyId) throws IOException {
+        if (keyId.length != SigningAgent.KEY_ID_SIZE) {
+            throw new IllegalArgumentException("私钥标识必须为 32 字节: " + keyId.length);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.write(SigningAgent.MAGIC);
+        out.writeByte(SigningAgent.VERSION_1);
+        out.writeByte(op);
+        out.write(token);
+        out.write(keyId);
+        return out;
+    }
+
+    private static void checkStatus(int status, DataInputStream in) throws IOException {
+        if (status != SigningAgent.STATUS_OK) {
+            throw new IOException("签名代理返回错误: " + in.readUTF());
+        }
+    }
+
+    /**
+     * 由签名代理持有的私钥：本地只有公钥，签名时在本地计算消息摘要，由代理签名
+     */
+    public static class AgentKey implements PrivateKey, SignerProvider {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient SigningAgentClient client;
+        private final byte[] keyId;
+        private final byte[] publicPoint;
+
+        private AgentKey(SigningAgentClient client, byte[] keyId, byte[] publicPoint) {
+            this.client = client;
+            this.keyId = keyId.clone();
+            this.publicPoint = publicPoint;
+        }
+
+        @Override
+        public byte[] getPublicPoint() {
+            return publicPoint.clone();
+        }
+
+        /**
+         * SM3withSM2 签名
+         *
+         * @return DER 编码的签名值
+         */
+        @Override
+        public byte[] sign(byte[] data) throws IOException {
+            byte[] e = DeterministicSM2Signer.messageDigest(publicPoint, data);
+            return client.signDigests(keyId, Collections.singletonList(e)).get(0);
+        }
+
+        /**
+         * 供 CMS 签名块使用的 ContentSigner
+         */
+        @Override
+        public ContentSigner asContentSigner() {
+            return DeterministicSM2Signer.contentSigner(data -> {
+                try {
+                    return sign(data);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "EC";
+        }
+
+        /**
+         * 私钥不离开代理进程，没有编码
+         */
+        @Override
+        public String getFormat() {
+            return null;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return null;
+        }
+    }
+}
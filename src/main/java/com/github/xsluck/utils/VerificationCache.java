@@ -0,0 +1,327 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * JAR 签名验证结果的磁盘缓存
+ * 同一个不可变的 JAR 在每次进程启动时都要重新计算所有条目的摘要，缓存命中时跳过逐条目验证，只重新验证 .SF 的签名
+ *
+ * 缓存键：JAR 的规范路径、大小、修改时间、文件标识（inode 等）、状态改变时间（支持时）以及 MANIFEST 和 .SF 内容的 SM3 摘要；
+ * 缓存文件使用本机密钥（缓存目录下权限为 600 的随机密钥文件）计算 HMAC-SM3，防止缓存文件被伪造；
+ * 缓存目录必须属于当前用户且权限为 700，否则不使用缓存
+ */
+public class VerificationCache {
+
+    /** 启用缓存的系统属性：缓存目录 */
+    public static final String CACHE_DIR_PROPERTY = "sm2.verification.cache.dir";
+
+    private static final String SECRET_FILE = ".secret";
+    private static final String CACHE_SUFFIX = ".cache";
+    private static final String FORMAT_VERSION = "1";
+    private static final int SECRET_LENGTH = 32;
+
+    /** 密钥文件的权限：600 */
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = Collections.unmodifiableSet(
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+    /** 缓存目录的权限：700 */
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = Collections.unmodifiableSet(
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE,
+                    PosixFilePermission.OWNER_EXECUTE));
+
+    private final File directory;
+    private byte[] secret;
+
+    public VerificationCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 根据系统属性 {@value #CACHE_DIR_PROPERTY} 创建缓存，未设置时返回 null
+     */
+    public static VerificationCache fromSystemProperty() {
+        String dir = System.getProperty(CACHE_DIR_PROPERTY);
+        return dir != null && !dir.trim().isEmpty() ? new VerificationCache(new File(dir.trim())) : null;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 计算缓存键中的内容摘要：MANIFEST 和所有 .SF 文件（按名称排序）的 SM3 摘要
+     */
+    public static byte[] contentDigest(byte[] manifestData, Map<String, byte[]> sfFiles) {
+        SM3Digester digester = new SM3Digester();
+        digester.update(manifestData, 0, manifestData.length);
+        for (byte[] sfData : new TreeMap<>(sfFiles).values()) {
+            digester.update(sfData, 0, sfData.length);
+        }
+        return digester.digest();
+    }
+
+    /**
+     * 查找缓存的验证结果，命中时把文件数写入 result
+     *
+     * @param key 验证开始前计算的缓存键（见 {@link #key(File, byte[])}）
+     * @return 是否命中（缓存文件不存在、键不匹配或 MAC 无效都视为未命中）
+     */
+    public boolean lookup(Map<String, String> key, JarSignatureVerifier.VerificationResult result) {
+        try {
+            Path cacheFile = cacheFile(key);
+            if (!Files.isRegularFile(cacheFile)) {
+                return false;
+            }
+            byte[] data = Files.readAllBytes(cacheFile);
+            int macStart = indexOfMac(data);
+            if (macStart < 0) {
+                return false;
+            }
+            byte[] expectedMac = mac(data, 0, macStart);
+            byte[] actualMac = Hex.decode(new String(data, macStart + 4, data.length - macStart - 4,
+                    StandardCharsets.UTF_8).trim());
+            if (!MessageDigest.isEqual(expectedMac, actualMac)) {
+                result.addDetail("警告: 验证缓存文件的 MAC 无效，已忽略");
+                return false;
+            }
+
+            Map<String, String> cached = parse(new String(data, 0, macStart, StandardCharsets.UTF_8));
+            for (Map.Entry<String, String> entry : key.entrySet()) {
+                if (!entry.getValue().equals(cached.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            result.setTotalFiles(Integer.parseInt(cached.get("totalFiles")));
+            result.setVerifiedFiles(Integer.parseInt(cached.get("verifiedFiles")));
+            return true;
+        } catch (Exception e) {
+            result.addDetail("警告: 读取验证缓存失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 保存验证通过的结果（写入失败不影响验证结果）
+     *
+     * @param key 验证开始前计算的缓存键，验证期间文件被修改时缓存键不会与修改后的文件匹配
+     */
+    public void store(Map<String, String> key, JarSignatureVerifier.VerificationResult result) {
+        try {
+            Map<String, String> values = new LinkedHashMap<>(key);
+            values.put("totalFiles", String.valueOf(result.getTotalFiles()));
+            values.put("verifiedFiles", String.valueOf(result.getVerifiedFiles()));
+
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+            }
+            byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(body);
+            out.write(("mac=" + Hex.toHexString(mac(body, 0, body.length)) + "\n").getBytes(StandardCharsets.UTF_8));
+
+            Path cacheFile = cacheFile(key);
+            Path tempFile = Files.createTempFile(directory.toPath(), cacheFile.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tempFile, out.toByteArray());
+                try {
+                    Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (Exception e) {
+            result.addDetail("警告: 写入验证缓存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存键：文件属性和内容摘要
+     *
+     * @param contentDigest 见 {@link #contentDigest(byte[], Map)}
+     */
+    public static Map<String, String> key(File jarFile, byte[] contentDigest) throws IOException {
+        Path path = jarFile.getCanonicalFile().toPath();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+
+        Map<String, String> key = new LinkedHashMap<>();
+        key.put("version", FORMAT_VERSION);
+        key.put("path", path.toString());
+        key.put("size", String.valueOf(attrs.size()));
+        key.put("mtime", String.valueOf(attrs.lastModifiedTime().toMillis()));
+        key.put("fileKey", String.valueOf(attrs.fileKey()));
+        key.put("ctime", changeTime(path));
+        key.put("content", Hex.toHexString(contentDigest));
+        return key;
+    }
+
+    /**
+     * 文件状态改变时间（修改时间可以被重设，状态改变时间不能），不支持时返回空字符串
+     */
+    private static String changeTime(Path path) {
+        try {
+            Object ctime = Files.getAttribute(path, "unix:ctime");
+            return ctime != null ? ctime.toString() : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private Path cacheFile(Map<String, String> key) {
+        byte[] pathDigest = SM3Digester.hash(key.get("path").getBytes(StandardCharsets.UTF_8));
+        return directory.toPath().resolve(Hex.toHexString(pathDigest) + CACHE_SUFFIX);
+    }
+
+    private byte[] mac(byte[] data, int offset, int length) throws IOException {
+        HMac hmac = new HMac(new SM3Digest());
+        hmac.init(new KeyParameter(getSecret()));
+        hmac.update(data, offset, length);
+        byte[] result = new byte[hmac.getMacSize()];
+        hmac.doFinal(result, 0);
+        return result;
+    }
+
+    /**
+     * 读取本机密钥，不存在时生成（仅所有者可读写）
+     * 缓存目录必须属于当前用户且权限为 700，否则拒绝使用缓存；密钥文件不属于当前用户或权限不是 600 时视为已泄露，重新生成
+     */
+    private synchronized byte[] getSecret() throws IOException {
+        if (secret != null) {
+            return secret;
+        }
+        Path dir = directory.toPath();
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            createOwnerOnlyDirectory(dir);
+        }
+        checkOwnerOnly(dir, OWNER_ONLY_DIRECTORY);
+        Path secretFile = dir.resolve(SECRET_FILE);
+        if (Files.exists(secretFile, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                checkOwnerOnly(secretFile, OWNER_ONLY_FILE);
+            } catch (IOException e) {
+                // 旧密钥可能已被其他用户读取或替换，重新生成（已有的缓存文件随之失效）
+                Files.delete(secretFile);
+            }
+        }
+        if (!Files.exists(secretFile, LinkOption.NOFOLLOW_LINKS)) {
+            byte[] generated = new byte[SECRET_LENGTH];
+            new SecureRandom().nextBytes(generated);
+            try {
+                createOwnerOnly(secretFile);
+                Files.write(secretFile, generated, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (FileAlreadyExistsException e) {
+                // 其他进程已生成
+            }
+        }
+        checkOwnerOnly(secretFile, OWNER_ONLY_FILE);
+        byte[] data = Files.readAllBytes(secretFile);
+        if (data.length != SECRET_LENGTH) {
+            throw new IOException("验证缓存密钥文件无效: " + secretFile);
+        }
+        secret = data;
+        return secret;
+    }
+
+    /**
+     * 检查文件（或目录）不是符号链接，且（支持 POSIX 权限时）属于当前用户、权限与 expected 相同
+     *
+     * @throws IOException 不满足以上条件
+     */
+    private static void checkOwnerOnly(Path path, Set<PosixFilePermission> expected) throws IOException {
+        if (Files.isSymbolicLink(path)) {
+            throw new IOException("验证缓存路径不能是符号链接: " + path);
+        }
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class,
+                LinkOption.NOFOLLOW_LINKS);
+        if (view == null) {
+            return;
+        }
+        PosixFileAttributes attributes = view.readAttributes();
+        UserPrincipal currentUser = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attributes.owner().equals(currentUser)) {
+            throw new IOException("验证缓存路径不属于当前用户: " + path + " (" + attributes.owner().getName() + ")");
+        }
+        if (!attributes.permissions().equals(expected)) {
+            throw new IOException("验证缓存路径的权限不安全: " + path + " ("
+                    + PosixFilePermissions.toString(attributes.permissions()) + ")，应为 "
+                    + PosixFilePermissions.toString(expected));
+        }
+    }
+
+    private static void createOwnerOnlyDirectory(Path dir) throws IOException {
+        try {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+        } catch (UnsupportedOperationException e) {
+            Files.createDirectories(dir);
+        }
+    }
+
+    private static void createOwnerOnly(Path file) throws IOException {
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(file);
+            File f = file.toFile();
+            f.setReadable(false, false);
+            f.setWritable(false, false);
+            f.setReadable(true, true);
+            f.setWritable(true, true);
+        }
+    }
+
+    private static int indexOfMac(byte[] data) {
+        byte[] marker = "\nmac=".getBytes(StandardCharsets.UTF_8);
+        outer: for (int i = data.length - marker.length; i >= 0; i--) {
+            for (int j = 0; j < marker.length; j++) {
+                if (data[i + j] != marker[j]) {
+                    continue outer;
+                }
+            }
+            return i + 1;
+        }
+        return -1;
+    }
+
+    private static Map<String, String> parse(String text) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String line : text.split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                values.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+        }
+        return values;
+    }
+}
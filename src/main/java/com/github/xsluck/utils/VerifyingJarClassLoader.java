@@ -0,0 +1,165 @@
+package com.github.xsluck.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+
+/**
+ * 按需验证签名的类加载器
+ * 创建时验证签名块、.SF 和 MANIFEST，之后每个类或资源在首次读取时才验证 SM3 摘要（见 {@link LazyJarVerifier}），
+ * 启动验证的开销与实际加载的类数量成正比，而不是与 JAR 中的条目总数成正比
+ *
+ * 类：读取条目字节后对这份字节做验证再定义类，摘要不匹配时抛出 SecurityException
+ * 资源：返回的输入流边读边计算摘要，读到末尾或关闭时验证；除签名者自己的签名文件（MANIFEST.MF、.SF、签名块、索引）外，
+ * META-INF 下的文件（如 services、spring.factories）同样必须已签名，未签名的条目抛出 SecurityException
+ */
+public class VerifyingJarClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final LazyJarVerifier verifier;
+    private final URL jarUrl;
+    private final CodeSource codeSource;
+    private final URLStreamHandler handler = new VerifyingHandler();
+
+    /**
+     * @param jarFile 已签名的 JAR
+     * @param parent  父类加载器（双亲委派，父加载器找不到的类才从 JAR 中加载并验证）
+     * @throws SecurityException JAR 未签名或签名无效
+     */
+    public VerifyingJarClassLoader(File jarFile, ClassLoader parent) throws IOException {
+        super(new URL[] { jarFile.toURI().toURL() }, parent);
+        this.jarUrl = jarFile.toURI().toURL();
+        this.codeSource = new CodeSource(jarUrl, (CodeSigner[]) null);
+        this.verifier = LazyJarVerifier.open(jarFile);
+    }
+
+    /**
+     * 底层的按需验证器（可查询签名者、证书链和条目的验证状态）
+     */
+    public LazyJarVerifier getVerifier() {
+        return verifier;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/').concat(".class");
+        byte[] bytes;
+        try {
+            bytes = verifier.readEntry(path);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        definePackageIfNeeded(name);
+        return defineClass(name, bytes, 0, bytes.length, codeSource);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        JarEntry entry = verifier.getJarFile().getJarEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return new URL("jar", "", -1, jarUrl + "!/" + name, handler);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) {
+        URL url = findResource(name);
+        return url != null ? Collections.enumeration(Collections.singletonList(url))
+                : Collections.<URL>emptyEnumeration();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            verifier.close();
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * 打开资源的输入流
+     */
+    private InputStream openResource(String name) throws IOException {
+        // 签名者自己的签名文件不在 MANIFEST 中（签名块和 .SF 已在打开时验证），
+        // 其他看似签名文件的条目（如无主的 .EC 文件）按普通条目验证，因未签名而失败
+        if (verifier.isSignatureFile(name)) {
+            JarEntry entry = verifier.getJarFile().getJarEntry(name);
+            if (entry == null) {
+                throw new IOException("资源不存在: " + name);
+            }
+            return verifier.getJarFile().getInputStream(entry);
+        }
+        InputStream is = verifier.getInputStream(name);
+        if (is == null) {
+            throw new IOException("资源不存在: " + name);
+        }
+        return is;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackageIfNeeded(String className) {
+        int lastDot = className.lastIndexOf('.');
+        if (lastDot < 0) {
+            return;
+        }
+        String packageName = className.substring(0, lastDot);
+        if (getPackage(packageName) == null) {
+            try {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            } catch (IllegalArgumentException e) {
+                // 其他线程已定义该包
+            }
+        }
+    }
+
+    /**
+     * 资源 URL 的处理器：通过验证器读取条目
+     */
+    private class VerifyingHandler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL url) {
+            String file = url.getFile();
+            final String name = file.substring(file.indexOf("!/") + 2);
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    connect();
+                    return openResource(name);
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    JarEntry entry = verifier.getJarFile().getJarEntry(name);
+                    return entry != null ? entry.getSize() : -1;
+                }
+            };
+        }
+    }
+}
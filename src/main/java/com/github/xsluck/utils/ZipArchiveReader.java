@@ -0,0 +1,356 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * ZIP 中央目录读取工具
+ * 只解析中央目录，条目数据按原始（压缩后的）字节读取，用于不解压直接复制条目
+ */
+public class ZipArchiveReader implements Closeable {
+
+    static final int LOCAL_HEADER_SIG = 0x04034b50;
+    static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    static final int END_SIG = 0x06054b50;
+    static final int ZIP64_END_SIG = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_SIZE = 22;
+    static final int ZIP64_LOCATOR_SIZE = 20;
+    static final int ZIP64_EXTRA_ID = 0x0001;
+
+    /**
+     * 中央目录中的一个条目
+     */
+    public static class Record {
+        private byte[] rawName;
+        private String name;
+        private int versionMadeBy;
+        private int versionNeeded;
+        private int flags;
+        private int method;
+        private int dosTime;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private byte[] extra;
+        private byte[] comment;
+        private int internalAttributes;
+        private long externalAttributes;
+        private long localHeaderOffset;
+        private long dataOffset = -1;
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getRawName() {
+            return rawName;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public int getVersionMadeBy() {
+            return versionMadeBy;
+        }
+
+        public int getVersionNeeded() {
+            return versionNeeded;
+        }
+
+        public int getFlags() {
+            return flags;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public int getDosTime() {
+            return dosTime;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 中央目录中的扩展字段（已去除 ZIP64 扩展）
+         */
+        public byte[] getExtra() {
+            return extra;
+        }
+
+        public byte[] getComment() {
+            return comment;
+        }
+
+        public int getInternalAttributes() {
+            return internalAttributes;
+        }
+
+        public long getExternalAttributes() {
+            return externalAttributes;
+        }
+
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<Record> records;
+    private long centralDirectoryOffset;
+    private byte[] comment;
+
+    public ZipArchiveReader(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.records = Collections.unmodifiableList(readCentralDirectory());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 按中央目录顺序返回所有条目
+     */
+    public List<Record> getRecords() {
+        return records;
+    }
+
+    /**
+     * 中央目录在文件中的起始位置（即最后一个条目数据之后的位置）
+     */
+    public long getCentralDirectoryOffset() {
+        return centralDirectoryOffset;
+    }
+
+    public byte[] getComment() {
+        return comment;
+    }
+
+    /**
+     * 条目压缩数据在文件中的起始位置（读取本地文件头得到）
+     */
+    public long getDataOffset(Record record) throws IOException {
+        if (record.dataOffset < 0) {
+            ByteBuffer header = read(record.localHeaderOffset, LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER_SIG) {
+                throw new ZipException("本地文件头无效: " + record.name);
+            }
+            int nameLength = header.getShort(26) & 0xFFFF;
+            int extraLength = header.getShort(28) & 0xFFFF;
+            record.dataOffset = record.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        }
+        return record.dataOffset;
+    }
+
+    /**
+     * 把条目的原始压缩数据直接复制到目标通道（零拷贝）
+     */
+    public void transferRaw(Record record, WritableByteChannel target) throws IOException {
+        long position = getDataOffset(record);
+        long remaining = record.compressedSize;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new EOFException("条目数据不完整: " + record.name);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    /**
+     * 内存映射不压缩（STORED）条目的数据，映射在读取器关闭后仍然有效
+     */
+    public MappedByteBuffer map(Record record) throws IOException {
+        if (record.method != ZipEntry.STORED) {
+            throw new ZipException("只能映射不压缩的条目: " + record.name);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, getDataOffset(record), record.compressedSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private List<Record> readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        long endPosition = findEndRecord(fileSize);
+        ByteBuffer end = read(endPosition, END_SIZE);
+
+        long entryCount = end.getShort(10) & 0xFFFF;
+        long cdSize = end.getInt(12) & 0xFFFFFFFFL;
+        long cdOffset = end.getInt(16) & 0xFFFFFFFFL;
+        int commentLength = end.getShort(20) & 0xFFFF;
+        comment = new byte[commentLength];
+        read(endPosition + END_SIZE, commentLength).get(comment);
+
+        long cdEnd = endPosition;
+        // ZIP64 结束记录
+        if (endPosition >= ZIP64_LOCATOR_SIZE) {
+            ByteBuffer locator = read(endPosition - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIG) {
+                long zip64EndPosition = locator.getLong(8);
+                ByteBuffer zip64End = read(zip64EndPosition, 56);
+                if (zip64End.getInt(0) != ZIP64_END_SIG) {
+                    throw new ZipException("ZIP64 结束记录无效");
+                }
+                entryCount = zip64End.getLong(32);
+                cdSize = zip64End.getLong(40);
+                cdOffset = zip64End.getLong(48);
+                cdEnd = zip64EndPosition;
+            }
+        }
+
+        // 文件头部可能有额外数据（例如可执行 JAR 的启动脚本），偏移量需要整体修正
+        long base = cdEnd - cdSize - cdOffset;
+        if (base < 0) {
+            throw new ZipException("中央目录位置无效");
+        }
+        centralDirectoryOffset = cdOffset + base;
+
+        ByteBuffer cd = read(centralDirectoryOffset, (int) cdSize);
+        List<Record> result = new ArrayList<>((int) Math.min(entryCount, 1 << 20));
+        while (cd.remaining() >= CENTRAL_HEADER_SIZE) {
+            int position = cd.position();
+            if (cd.getInt(position) != CENTRAL_HEADER_SIG) {
+                throw new ZipException("中央目录条目无效，位置: " + position);
+            }
+            Record record = new Record();
+            record.versionMadeBy = cd.getShort(position + 4) & 0xFFFF;
+            record.versionNeeded = cd.getShort(position + 6) & 0xFFFF;
+            record.flags = cd.getShort(position + 8) & 0xFFFF;
+            record.method = cd.getShort(position + 10) & 0xFFFF;
+            record.dosTime = cd.getInt(position + 12);
+            record.crc = cd.getInt(position + 16) & 0xFFFFFFFFL;
+            record.compressedSize = cd.getInt(position + 20) & 0xFFFFFFFFL;
+            record.size = cd.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = cd.getShort(position + 28) & 0xFFFF;
+            int extraLength = cd.getShort(position + 30) & 0xFFFF;
+            int commentLen = cd.getShort(position + 32) & 0xFFFF;
+            record.internalAttributes = cd.getShort(position + 36) & 0xFFFF;
+            record.externalAttributes = cd.getInt(position + 38) & 0xFFFFFFFFL;
+            record.localHeaderOffset = cd.getInt(position + 42) & 0xFFFFFFFFL;
+
+            cd.position(position + CENTRAL_HEADER_SIZE);
+            record.rawName = new byte[nameLength];
+            cd.get(record.rawName);
+            record.name = new String(record.rawName, StandardCharsets.UTF_8);
+            byte[] extra = new byte[extraLength];
+            cd.get(extra);
+            record.comment = new byte[commentLen];
+            cd.get(record.comment);
+
+            record.extra = readZip64Extra(record, extra);
+            record.localHeaderOffset += base;
+            result.add(record);
+        }
+        return result;
+    }
+
+    /**
+     * 解析 ZIP64 扩展字段并返回去除 ZIP64 扩展后的其余扩展字段
+     */
+    private static byte[] readZip64Extra(Record record, byte[] extra) throws ZipException {
+        ByteBuffer buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        ByteArrayOutputStream others = new ByteArrayOutputStream();
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int id = buffer.getShort() & 0xFFFF;
+            int length = buffer.getShort() & 0xFFFF;
+            if (length > buffer.remaining()) {
+                // 扩展字段格式不规范时原样保留剩余部分
+                others.write(extra, start, extra.length - start);
+                return others.toByteArray();
+            }
+            if (id == ZIP64_EXTRA_ID) {
+                int end = buffer.position() + length;
+                if (record.size == 0xFFFFFFFFL && buffer.position() + 8 <= end) {
+                    record.size = buffer.getLong();
+                }
+                if (record.compressedSize == 0xFFFFFFFFL && buffer.position() + 8 <= end) {
+                    record.compressedSize = buffer.getLong();
+                }
+                if (record.localHeaderOffset == 0xFFFFFFFFL && buffer.position() + 8 <= end) {
+                    record.localHeaderOffset = buffer.getLong();
+                }
+                buffer.position(end);
+            } else {
+                others.write(extra, start, 4 + length);
+                buffer.position(buffer.position() + length);
+            }
+        }
+        if (record.size < 0 || record.compressedSize < 0 || record.localHeaderOffset < 0) {
+            throw new ZipException("ZIP64 扩展字段无效: " + record.name);
+        }
+        return others.toByteArray();
+    }
+
+    /**
+     * 从文件末尾向前查找中央目录结束记录
+     */
+    private long findEndRecord(long fileSize) throws IOException {
+        if (fileSize < END_SIZE) {
+            throw new ZipException("不是有效的ZIP文件: " + file);
+        }
+        int searchLength = (int) Math.min(fileSize, END_SIZE + 0xFFFF);
+        long searchStart = fileSize - searchLength;
+        ByteBuffer tail = read(searchStart, searchLength);
+        for (int i = searchLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG && i + END_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= searchLength) {
+                return searchStart + i;
+            }
+        }
+        throw new ZipException("未找到ZIP中央目录: " + file);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("ZIP文件不完整: " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
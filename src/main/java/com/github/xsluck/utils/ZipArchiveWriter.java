@@ -0,0 +1,459 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * ZIP 写入工具
+ * 支持把其他 ZIP 中的条目按原始压缩字节直接复制（不解压、不重新压缩），以及写入新的条目
+ */
+public class ZipArchiveWriter implements Closeable {
+
+    /** 通用标志位：条目后带数据描述符 */
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    /** 通用标志位：文件名使用 UTF-8 编码 */
+    private static final int FLAG_UTF8 = 0x800;
+
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    /** 记录修改时间的扩展字段：NTFS、扩展时间戳、Info-ZIP Unix */
+    private static final int[] TIMESTAMP_EXTRA_IDS = { 0x000A, 0x5455, 0x5855 };
+
+    /**
+     * 已写入条目的中央目录信息
+     */
+    private static class CentralEntry {
+        byte[] rawName;
+        int versionMadeBy;
+        int versionNeeded;
+        int flags;
+        int method;
+        int dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        byte[] extra;
+        byte[] comment;
+        int internalAttributes;
+        long externalAttributes;
+        long localHeaderOffset;
+    }
+
+    private final FileChannel channel;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private byte[] comment = new byte[0];
+    private boolean finished;
+    private Integer fixedDosTime;
+
+    public ZipArchiveWriter(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    private ZipArchiveWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 打开已有的 ZIP 文件用于原地追加：从指定位置（通常是原中央目录的起始位置）开始写入新条目，
+     * 该位置之前的数据保持不变，关闭时写入新的中央目录并截断多余的数据
+     *
+     * @param file     已有的 ZIP 文件
+     * @param position 开始写入的位置
+     */
+    public static ZipArchiveWriter openForAppend(File file, long position) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        try {
+            if (position > channel.size()) {
+                throw new ZipException("追加位置超出文件大小: " + position);
+            }
+            channel.position(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ZipArchiveWriter(channel);
+    }
+
+    public void setComment(byte[] comment) {
+        this.comment = comment != null ? comment : new byte[0];
+    }
+
+    /**
+     * 可重现输出：之后写入的条目（包括按原始压缩字节复制的条目）都使用该时间，按 UTC 转换为 DOS 时间，与构建机器的时区无关；
+     * 复制的条目同时去除记录修改时间的扩展字段。{@link #addExisting} 加入的条目本地文件头不变，保持原来的时间
+     *
+     * @param time 时间（毫秒）
+     */
+    public void setFixedTime(long time) {
+        this.fixedDosTime = javaToDosTime(time, TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * 已写入的条目数
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * 按原始压缩字节复制条目，CRC、大小、压缩方式和时间保持不变
+     */
+    public void writeRaw(ZipArchiveReader reader, ZipArchiveReader.Record record) throws IOException {
+        checkSize(record.getName(), record.getCompressedSize());
+        checkSize(record.getName(), record.getSize());
+
+        CentralEntry entry = new CentralEntry();
+        entry.rawName = record.getRawName();
+        entry.versionMadeBy = record.getVersionMadeBy();
+        // ZIP64 扩展已去除，版本号按需在写入中央目录时重新确定
+        entry.versionNeeded = record.getVersionNeeded() == VERSION_ZIP64 ? VERSION_DEFAULT
+                : record.getVersionNeeded();
+        // 大小和 CRC 已写入本地文件头，不再需要数据描述符
+        entry.flags = record.getFlags() & ~FLAG_DATA_DESCRIPTOR;
+        entry.method = record.getMethod();
+        entry.dosTime = copiedDosTime(record);
+        entry.crc = record.getCrc();
+        entry.compressedSize = record.getCompressedSize();
+        entry.size = record.getSize();
+        entry.extra = copiedExtra(record);
+        entry.comment = record.getComment();
+        entry.internalAttributes = record.getInternalAttributes();
+        entry.externalAttributes = record.getExternalAttributes();
+
+        writeLocalHeader(entry);
+        reader.transferRaw(record, channel);
+        entries.add(entry);
+    }
+
+    /**
+     * 把文件中已有的条目加入中央目录，不写入任何数据（原地追加时使用，本地文件头和数据保持原样）
+     * 版本号和标志位保持不变：本地文件头未改动，原有的数据描述符仍然有效
+     */
+    public void addExisting(ZipArchiveReader.Record record) throws IOException {
+        checkSize(record.getName(), record.getCompressedSize());
+        checkSize(record.getName(), record.getSize());
+
+        CentralEntry entry = new CentralEntry();
+        entry.rawName = record.getRawName();
+        entry.versionMadeBy = record.getVersionMadeBy();
+        entry.versionNeeded = record.getVersionNeeded();
+        entry.flags = record.getFlags();
+        entry.method = record.getMethod();
+        entry.dosTime = record.getDosTime();
+        entry.crc = record.getCrc();
+        entry.compressedSize = record.getCompressedSize();
+        entry.size = record.getSize();
+        entry.extra = record.getExtra();
+        entry.comment = record.getComment();
+        entry.internalAttributes = record.getInternalAttributes();
+        entry.externalAttributes = record.getExternalAttributes();
+        entry.localHeaderOffset = record.getLocalHeaderOffset();
+        entries.add(entry);
+    }
+
+    /**
+     * 用文件内容替换条目的数据，按 STORED（不压缩）方式写入，保留原条目的名称、时间和属性
+     * 用于替换内嵌的 JAR（Spring Boot 要求 BOOT-INF/lib 下的 JAR 不压缩）
+     */
+    public void writeStored(ZipArchiveReader.Record record, File file) throws IOException {
+        long size = file.length();
+        checkSize(record.getName(), size);
+
+        CRC32 crc = new CRC32();
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                crc.update(buffer, 0, len);
+            }
+        }
+
+        CentralEntry entry = new CentralEntry();
+        entry.rawName = record.getRawName();
+        entry.versionMadeBy = record.getVersionMadeBy();
+        entry.versionNeeded = VERSION_DEFAULT;
+        entry.flags = record.getFlags() & ~FLAG_DATA_DESCRIPTOR;
+        entry.method = ZipEntry.STORED;
+        entry.dosTime = copiedDosTime(record);
+        entry.crc = crc.getValue();
+        entry.compressedSize = size;
+        entry.size = size;
+        entry.extra = copiedExtra(record);
+        entry.comment = record.getComment();
+        entry.internalAttributes = record.getInternalAttributes();
+        entry.externalAttributes = record.getExternalAttributes();
+
+        writeLocalHeader(entry);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, channel);
+            }
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * 写入新条目
+     *
+     * @param name    条目名称
+     * @param data    未压缩数据
+     * @param time    修改时间（毫秒）
+     * @param deflate 是否压缩
+     */
+    public void writeEntry(String name, byte[] data, long time, boolean deflate) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        byte[] stored = data;
+        int method = ZipEntry.STORED;
+        if (deflate && data.length > 0) {
+            stored = deflate(data);
+            method = ZipEntry.DEFLATED;
+        }
+
+        CentralEntry entry = new CentralEntry();
+        entry.rawName = name.getBytes(StandardCharsets.UTF_8);
+        entry.versionMadeBy = VERSION_DEFAULT;
+        entry.versionNeeded = VERSION_DEFAULT;
+        entry.flags = FLAG_UTF8;
+        entry.method = method;
+        entry.dosTime = fixedDosTime != null ? fixedDosTime : javaToDosTime(time);
+        entry.crc = crc.getValue();
+        entry.compressedSize = stored.length;
+        entry.size = data.length;
+        entry.extra = new byte[0];
+        entry.comment = new byte[0];
+
+        writeLocalHeader(entry);
+        writeFully(ByteBuffer.wrap(stored));
+        entries.add(entry);
+    }
+
+    /**
+     * 写入中央目录和结束记录
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        long cdOffset = channel.position();
+        ByteArrayOutputStream cd = new ByteArrayOutputStream();
+        for (CentralEntry entry : entries) {
+            ByteBuffer header = newBuffer(ZipArchiveReader.CENTRAL_HEADER_SIZE);
+            boolean zip64Offset = entry.localHeaderOffset >= 0xFFFFFFFFL;
+            byte[] extra = entry.extra;
+            if (zip64Offset) {
+                ByteBuffer zip64 = newBuffer(extra.length + 12);
+                zip64.putShort((short) ZipArchiveReader.ZIP64_EXTRA_ID);
+                zip64.putShort((short) 8);
+                zip64.putLong(entry.localHeaderOffset);
+                zip64.put(extra);
+                extra = zip64.array();
+            }
+            header.putInt(ZipArchiveReader.CENTRAL_HEADER_SIG);
+            header.putShort((short) entry.versionMadeBy);
+            header.putShort((short) (zip64Offset ? VERSION_ZIP64 : entry.versionNeeded));
+            header.putShort((short) entry.flags);
+            header.putShort((short) entry.method);
+            header.putInt(entry.dosTime);
+            header.putInt((int) entry.crc);
+            header.putInt((int) entry.compressedSize);
+            header.putInt((int) entry.size);
+            header.putShort((short) entry.rawName.length);
+            header.putShort((short) extra.length);
+            header.putShort((short) entry.comment.length);
+            header.putShort((short) 0);
+            header.putShort((short) entry.internalAttributes);
+            header.putInt((int) entry.externalAttributes);
+            header.putInt(zip64Offset ? 0xFFFFFFFF : (int) entry.localHeaderOffset);
+            cd.write(header.array());
+            cd.write(entry.rawName);
+            cd.write(extra);
+            cd.write(entry.comment);
+        }
+        writeFully(ByteBuffer.wrap(cd.toByteArray()));
+        long cdSize = cd.size();
+
+        boolean zip64 = entries.size() >= 0xFFFF || cdOffset >= 0xFFFFFFFFL || cdSize >= 0xFFFFFFFFL;
+        if (zip64) {
+            long zip64EndOffset = channel.position();
+            ByteBuffer zip64End = newBuffer(56 + ZipArchiveReader.ZIP64_LOCATOR_SIZE);
+            zip64End.putInt(ZipArchiveReader.ZIP64_END_SIG);
+            zip64End.putLong(44);
+            zip64End.putShort((short) VERSION_ZIP64);
+            zip64End.putShort((short) VERSION_ZIP64);
+            zip64End.putInt(0);
+            zip64End.putInt(0);
+            zip64End.putLong(entries.size());
+            zip64End.putLong(entries.size());
+            zip64End.putLong(cdSize);
+            zip64End.putLong(cdOffset);
+            zip64End.putInt(ZipArchiveReader.ZIP64_LOCATOR_SIG);
+            zip64End.putInt(0);
+            zip64End.putLong(zip64EndOffset);
+            zip64End.putInt(1);
+            zip64End.flip();
+            writeFully(zip64End);
+        }
+
+        ByteBuffer end = newBuffer(ZipArchiveReader.END_SIZE + comment.length);
+        end.putInt(ZipArchiveReader.END_SIG);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+        end.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+        end.putInt(zip64 ? 0xFFFFFFFF : (int) cdSize);
+        end.putInt(zip64 ? 0xFFFFFFFF : (int) cdOffset);
+        end.putShort((short) comment.length);
+        end.put(comment);
+        end.flip();
+        writeFully(end);
+
+        // 截断可能残留的旧数据
+        channel.truncate(channel.position());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeLocalHeader(CentralEntry entry) throws IOException {
+        entry.localHeaderOffset = channel.position();
+
+        ByteBuffer header = newBuffer(ZipArchiveReader.LOCAL_HEADER_SIZE + entry.rawName.length + entry.extra.length);
+        header.putInt(ZipArchiveReader.LOCAL_HEADER_SIG);
+        header.putShort((short) entry.versionNeeded);
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.rawName.length);
+        header.putShort((short) entry.extra.length);
+        header.put(entry.rawName);
+        header.put(entry.extra);
+        header.flip();
+        writeFully(header);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void checkSize(String name, long size) throws ZipException {
+        if (size >= 0xFFFFFFFFL) {
+            throw new ZipException("暂不支持大于 4GB 的条目: " + name);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buffer);
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int copiedDosTime(ZipArchiveReader.Record record) {
+        return fixedDosTime != null ? fixedDosTime : record.getDosTime();
+    }
+
+    /**
+     * 复制条目的扩展字段：可重现输出时去除记录修改时间的字段（格式无效时保持原样）
+     */
+    private byte[] copiedExtra(ZipArchiveReader.Record record) {
+        byte[] extra = record.getExtra();
+        if (fixedDosTime == null || extra.length == 0) {
+            return extra;
+        }
+        ByteBuffer in = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(extra.length);
+        while (in.remaining() >= 4) {
+            int id = in.getShort() & 0xFFFF;
+            int length = in.getShort() & 0xFFFF;
+            if (length > in.remaining()) {
+                return extra;
+            }
+            int start = in.position() - 4;
+            in.position(in.position() + length);
+            if (!isTimestampExtra(id)) {
+                out.write(extra, start, length + 4);
+            }
+        }
+        return in.hasRemaining() ? extra : out.toByteArray();
+    }
+
+    private static boolean isTimestampExtra(int id) {
+        for (int timestampId : TIMESTAMP_EXTRA_IDS) {
+            if (id == timestampId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Java 时间转换为 MS-DOS 时间格式（按本地时区）
+     */
+    static int javaToDosTime(long time) {
+        return javaToDosTime(time, TimeZone.getDefault());
+    }
+
+    /**
+     * Java 时间转换为 MS-DOS 时间格式
+     */
+    static int javaToDosTime(long time, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+}
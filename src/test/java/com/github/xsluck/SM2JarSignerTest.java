@@ -0,0 +1,1265 @@
+package com.github.xsluck;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.xsluck.utils.BatchSignature;
+import com.github.xsluck.utils.CertificateChainUtil;
+import com.github.xsluck.utils.ChunkedDigest;
+import com.github.xsluck.utils.DetachedSignature;
+import com.github.xsluck.utils.JarSignatureVerifier;
+import com.github.xsluck.utils.LazyJarVerifier;
+import com.github.xsluck.utils.MerkleJarVerifier;
+import com.github.xsluck.utils.SM2TestKeys;
+import com.github.xsluck.utils.SM3Digester;
+import com.github.xsluck.utils.SignatureBlock;
+import com.github.xsluck.utils.SignerProvider;
+import com.github.xsluck.utils.VerifyingJarClassLoader;
+import com.github.xsluck.utils.ZipArchiveReader;
+
+/**
+ * 签名后用 JarFile/ZipFile 读回和验证的往返测试
+ */
+public class SM2JarSignerTest {
+
+    private static final String ALIAS = "TEST";
+
+    private File dir;
+    private KeyPair keyPair;
+    private List<X509Certificate> certChain;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("sm2-jar-signer").toFile();
+        keyPair = SM2TestKeys.generateKeyPair();
+        certChain = Collections.singletonList(SM2TestKeys.selfSignedCertificate(keyPair, "sm2-jar-signer-test"));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void signedJarVerifiesAndReadsBack() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File output = new File(dir, "signed.jar");
+
+        SM2JarSigner signer = newSigner();
+        SM2JarSigner.SignResult result = signer.sign(input, output, keyPair.getPrivate(), certChain, ALIAS);
+
+        assertTrue(signer.verifySignedJar(output, result));
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignature(output.getPath());
+        assertTrue(verification.getMessage(), verification.isValid());
+        assertEquals(fileCount(entries), verification.getVerifiedFiles());
+        assertEntries(output, entries);
+    }
+
+    @Test
+    public void readsDataDescriptorsAndStoredEntries() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        boolean descriptor = false;
+        try (ZipArchiveReader reader = new ZipArchiveReader(input)) {
+            for (ZipArchiveReader.Record record : reader.getRecords()) {
+                descriptor |= (record.getFlags() & 0x08) != 0;
+            }
+        }
+        assertTrue("ZipOutputStream 写出的压缩条目应带数据描述符", descriptor);
+
+        File output = new File(dir, "signed.jar");
+        newSigner().sign(input, output, keyPair.getPrivate(), certChain, ALIAS);
+        try (ZipArchiveReader reader = new ZipArchiveReader(output)) {
+            for (ZipArchiveReader.Record record : reader.getRecords()) {
+                assertEquals(record.getName(), 0, record.getFlags() & 0x08);
+            }
+        }
+        assertTrue(JarSignatureVerifier.verifyJarSignature(output.getPath()).isValid());
+        assertEntries(output, entries);
+    }
+
+    @Test
+    public void copiesCompressedDataUnchanged() throws Exception {
+        File input = writeJar("input.jar", sampleEntries(), ZipEntry.DEFLATED);
+        File output = new File(dir, "signed.jar");
+        SM2JarSigner.SignResult result = newSigner().sign(input, output, keyPair.getPrivate(), certChain, ALIAS);
+
+        Map<String, byte[]> before = rawEntries(input);
+        Map<String, byte[]> after = rawEntries(output);
+        assertEquals(before.keySet(), result.getCopiedEntries().keySet());
+        for (Map.Entry<String, byte[]> entry : before.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), after.get(entry.getKey()));
+        }
+
+        // 重新签名：原有的签名文件被替换，其余条目的压缩数据仍然原样复制
+        File resigned = new File(dir, "resigned.jar");
+        newSigner().sign(output, resigned, keyPair.getPrivate(), certChain, ALIAS);
+        Map<String, byte[]> again = rawEntries(resigned);
+        for (Map.Entry<String, byte[]> entry : before.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), again.get(entry.getKey()));
+        }
+        try (ZipFile zip = new ZipFile(resigned)) {
+            assertEquals(before.size() + 3, zip.size());
+        }
+        assertTrue(JarSignatureVerifier.verifyJarSignature(resigned.getPath()).isValid());
+    }
+
+    @Test
+    public void parallelOutputMatchesSequential() throws Exception {
+        Random random = new Random(7);
+        Map<String, byte[]> entries = sampleEntries();
+        for (int i = 0; i < 500; i++) {
+            entries.put("pkg" + (i % 10) + "/Class" + i + ".class", randomText(random, random.nextInt(30000)));
+        }
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        long timestamp = 1700000000000L;
+
+        File sequential = new File(dir, "sequential.jar");
+        SM2JarSigner signer = newSigner();
+        signer.setThreads(1);
+        signer.setOutputTimestamp(timestamp);
+        signer.setDeterministicSignature(true);
+        SM2JarSigner.SignResult sequentialResult = signer.sign(input, sequential, keyPair.getPrivate(), certChain,
+                ALIAS);
+
+        File parallel = new File(dir, "parallel.jar");
+        signer = newSigner();
+        signer.setThreads(8);
+        signer.setOutputTimestamp(timestamp);
+        signer.setDeterministicSignature(true);
+        SM2JarSigner.SignResult parallelResult = signer.sign(input, parallel, keyPair.getPrivate(), certChain,
+                ALIAS);
+
+        assertArrayEquals(sequentialResult.getManifestBytes(), parallelResult.getManifestBytes());
+        assertArrayEquals(sequentialResult.getSfBytes(), parallelResult.getSfBytes());
+        assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+        assertTrue(JarSignatureVerifier.verifyJarSignature(parallel.getPath(), 8).isValid());
+    }
+
+    @Test
+    public void inPlaceMatchesFullRewrite() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File inPlace = new File(dir, "in-place.jar");
+        File rewritten = new File(dir, "rewritten.jar");
+        Files.copy(input.toPath(), inPlace.toPath());
+        Files.copy(input.toPath(), rewritten.toPath());
+        byte[] original = Files.readAllBytes(input.toPath());
+        long cdOffset;
+        try (ZipArchiveReader reader = new ZipArchiveReader(input)) {
+            cdOffset = reader.getCentralDirectoryOffset();
+        }
+
+        SM2JarSigner signer = newSigner();
+        signer.setInPlace(true);
+        signer.setOutputTimestamp(1700000000000L);
+        signer.setDeterministicSignature(true);
+        SM2JarSigner.SignResult inPlaceResult = signer.sign(inPlace, inPlace, keyPair.getPrivate(), certChain,
+                ALIAS);
+
+        signer = newSigner();
+        signer.setOutputTimestamp(1700000000000L);
+        signer.setDeterministicSignature(true);
+        SM2JarSigner.SignResult rewrittenResult = signer.sign(rewritten, rewritten, keyPair.getPrivate(),
+                certChain, ALIAS);
+
+        // 原有条目的本地文件头和数据保持不动
+        byte[] signed = Files.readAllBytes(inPlace.toPath());
+        assertArrayEquals(Arrays.copyOf(original, (int) cdOffset), Arrays.copyOf(signed, (int) cdOffset));
+
+        assertArrayEquals(rewrittenResult.getManifestBytes(), inPlaceResult.getManifestBytes());
+        assertArrayEquals(rewrittenResult.getSfBytes(), inPlaceResult.getSfBytes());
+        assertArrayEquals(rewrittenResult.getSigBlockData(), inPlaceResult.getSigBlockData());
+        assertTrue(JarSignatureVerifier.verifyJarSignature(inPlace.getPath()).isValid());
+        assertTrue(JarSignatureVerifier.verifyJarSignature(rewritten.getPath()).isValid());
+        assertEntries(inPlace, entries);
+        assertEntries(rewritten, entries);
+        Map<String, byte[]> inPlaceEntries = readEntries(inPlace);
+        Map<String, byte[]> rewrittenEntries = readEntries(rewritten);
+        assertEquals(rewrittenEntries.keySet(), inPlaceEntries.keySet());
+        for (Map.Entry<String, byte[]> entry : rewrittenEntries.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), inPlaceEntries.get(entry.getKey()));
+        }
+
+        // 再次原地签名：旧的签名文件从中央目录中去除
+        signer = newSigner();
+        signer.setInPlace(true);
+        signer.sign(inPlace, inPlace, keyPair.getPrivate(), certChain, ALIAS);
+        assertTrue(JarSignatureVerifier.verifyJarSignature(inPlace.getPath()).isValid());
+        assertEntries(inPlace, entries);
+        try (ZipFile zip = new ZipFile(inPlace)) {
+            assertEquals(entries.size() + 3, zip.size());
+        }
+    }
+
+    @Test
+    public void zip64EntryCount() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 0x10000 + 100; i++) {
+            entries.put("data/" + (i / 1000) + "/" + i + ".txt", String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+        }
+        File input = writeJar("zip64.jar", entries, ZipEntry.DEFLATED);
+        File output = new File(dir, "zip64-signed.jar");
+        newSigner().sign(input, output, keyPair.getPrivate(), certChain, ALIAS);
+
+        try (ZipFile zip = new ZipFile(output)) {
+            // MANIFEST.MF、.SF、.SM2
+            assertEquals(entries.size() + 3, zip.size());
+        }
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignature(output.getPath());
+        assertTrue(verification.getMessage(), verification.isValid());
+        assertEquals(entries.size(), verification.getVerifiedFiles());
+        assertEntries(output, entries);
+    }
+
+    @Test
+    public void tamperedEntryFailsVerification() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File signed = new File(dir, "signed.jar");
+        newSigner().sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+
+        // 保留签名文件，只修改一个条目的内容
+        Map<String, byte[]> tampered = readEntries(signed);
+        byte[] data = tampered.get("com/example/App.class").clone();
+        data[data.length / 2] ^= 1;
+        tampered.put("com/example/App.class", data);
+        File output = writeJar("tampered.jar", tampered, ZipEntry.DEFLATED);
+
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignature(output.getPath());
+        assertFalse(verification.isValid());
+        assertFalse(verification.isUnsigned());
+    }
+
+    /**
+     * 两次增量签名之间修改一个条目：该条目未命中缓存并重新计算，摘要与不使用缓存时一致
+     */
+    @Test
+    public void incrementalSigningRecomputesChangedEntry() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File cacheFile = new File(dir, "digests.cache");
+        File signed = new File(dir, "signed.jar");
+        IncrementalDigestCache cache = IncrementalDigestCache.load(cacheFile, newSignerLog());
+        SM2JarSigner signer = newSigner();
+        signer.setDigestCache(cache);
+        SM2JarSigner.SignResult result = signer.sign(writeJar("input.jar", entries, ZipEntry.DEFLATED), signed,
+                keyPair.getPrivate(), certChain, ALIAS);
+        assertEquals(0, cache.getHits());
+        assertEquals(fileCount(entries), cache.getMisses());
+        assertTrue(result.getCachedEntries().isEmpty());
+        assertTrue(signer.verifySignedJar(signed, result));
+        cache.save();
+
+        byte[] changed = entries.get("com/example/App.class").clone();
+        changed[changed.length / 2] ^= 1;
+        entries.put("com/example/App.class", changed);
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+
+        cache = IncrementalDigestCache.load(cacheFile, newSignerLog());
+        signer = newSigner();
+        signer.setDigestCache(cache);
+        result = signer.sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+        assertEquals(fileCount(entries) - 1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(fileCount(entries) - 1, result.getCachedEntries().size());
+        assertFalse(result.getCachedEntries().contains("com/example/App.class"));
+        assertEquals(Base64.getEncoder().encodeToString(SM3Digester.hash(changed)),
+                result.getDigests().get("com/example/App.class"));
+        assertTrue(signer.verifySignedJar(signed, result));
+
+        SM2JarSigner.SignResult plain = newSigner().sign(input, new File(dir, "plain.jar"), keyPair.getPrivate(),
+                certChain, ALIAS);
+        assertEquals(plain.getDigests(), result.getDigests());
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignature(signed.getPath());
+        assertTrue(verification.getMessage(), verification.isValid());
+    }
+
+    /**
+     * 缓存中的摘要与条目内容不一致（CRC 和大小仍然匹配）：签名后的快速验证必须重新计算并拒绝
+     */
+    @Test
+    public void staleCachedDigestFailsVerification() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File cacheFile = new File(dir, "digests.cache");
+        IncrementalDigestCache cache = IncrementalDigestCache.load(cacheFile, newSignerLog());
+        SM2JarSigner signer = newSigner();
+        signer.setDigestCache(cache);
+        signer.sign(input, new File(dir, "first.jar"), keyPair.getPrivate(), certChain, ALIAS);
+        cache.save();
+
+        // 把 App.class 的缓存摘要换成另一个条目的摘要
+        String stale = Base64.getEncoder().encodeToString(SM3Digester.hash(entries.get("com/example/random.bin")));
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            if (fields.length == 5 && fields[4].equals("com/example/App.class")) {
+                fields[3] = stale;
+                line = String.join("\t", fields);
+            }
+            lines.add(line);
+        }
+        Files.write(cacheFile.toPath(), lines, StandardCharsets.UTF_8);
+
+        cache = IncrementalDigestCache.load(cacheFile, newSignerLog());
+        signer = newSigner();
+        signer.setDigestCache(cache);
+        File signed = new File(dir, "signed.jar");
+        SM2JarSigner.SignResult result = signer.sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+        assertEquals(fileCount(entries), cache.getHits());
+        assertEquals(stale, result.getDigests().get("com/example/App.class"));
+        assertFalse(signer.verifySignedJar(signed, result));
+        assertFalse(JarSignatureVerifier.verifyJarSignature(signed.getPath()).isValid());
+    }
+
+    /**
+     * 修改条目并重新计算 MANIFEST 和 .SF，但签名块无效或是原签名的重放：必须拒绝
+     */
+    @Test
+    public void recomputedSignatureFileWithInvalidBlockIsRejected() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File signed = new File(dir, "signed.jar");
+        SM2JarSigner.SignResult original = newSigner().sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+        SignatureBlock originalBlock = SignatureBlock.parse(original.getSigBlockData());
+
+        // 用修改后的内容生成一致的 MANIFEST 和 .SF
+        byte[] data = entries.get("com/example/App.class").clone();
+        data[0] ^= 1;
+        entries.put("com/example/App.class", data);
+        KeyPair other = SM2TestKeys.generateKeyPair();
+        File recomputed = new File(dir, "recomputed.jar");
+        SM2JarSigner.SignResult result = newSigner().sign(writeJar("modified.jar", entries, ZipEntry.DEFLATED),
+                recomputed, other.getPrivate(),
+                Collections.singletonList(SM2TestKeys.selfSignedCertificate(other, "sm2-jar-signer-test")), ALIAS);
+
+        byte[] cert = certChain.get(0).getEncoded();
+        byte[] signature = originalBlock.getSignature();
+        Random random = new Random(13);
+        List<byte[]> blocks = Arrays.asList(randomBytes(random, 300),
+                concat(SignatureBlock.MAGIC, randomBytes(random, 300)),
+                concat(SignatureBlock.MAGIC, concat(cert, signature)),
+                concat(cert, signature),
+                concat(cert, randomBytes(random, 72)),
+                concat(CertificateChainUtil.encodeCertificateChain(certChain), signature),
+                SignatureBlock.encode(certChain, signature),
+                SignatureBlock.encode(Collections.<X509Certificate>emptyList(), signature));
+        Map<String, byte[]> tampered = readEntries(recomputed);
+        for (int i = 0; i < blocks.size(); i++) {
+            tampered.put(result.getSigName(), blocks.get(i));
+            File output = writeJar("tampered-" + i + ".jar", tampered, ZipEntry.DEFLATED);
+            JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                    .verifyJarSignature(output.getPath());
+            assertFalse("签名块 " + i, verification.isValid());
+            assertFalse("签名块 " + i, verification.isUnsigned());
+            try {
+                JarSignatureVerifier.openLazy(output.getPath()).close();
+                fail("签名块 " + i + " 应被拒绝");
+            } catch (SecurityException e) {
+                // 签名无效
+            }
+        }
+    }
+
+    /**
+     * 只读取条目的前一部分就关闭输入流：关闭时读完剩余数据并验证
+     */
+    @Test
+    public void lazyStreamClosedEarlyIsVerified() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File signed = new File(dir, "signed.jar");
+        newSigner().sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+
+        String name = "com/example/App.class";
+        try (LazyJarVerifier verifier = JarSignatureVerifier.openLazy(signed.getPath())) {
+            InputStream in = verifier.getInputStream(name);
+            assertTrue(in.read(new byte[100]) > 0);
+            in.close();
+            in.close();
+            assertTrue(verifier.isVerified(name));
+        }
+
+        // 被修改的字节在已读取的前缀之后
+        Map<String, byte[]> tampered = readEntries(signed);
+        byte[] data = tampered.get(name).clone();
+        data[data.length - 1] ^= 1;
+        tampered.put(name, data);
+        File output = writeJar("tampered.jar", tampered, ZipEntry.DEFLATED);
+        try (LazyJarVerifier verifier = JarSignatureVerifier.openLazy(output.getPath())) {
+            InputStream in = verifier.getInputStream(name);
+            assertTrue(in.read(new byte[100]) > 0);
+            try {
+                in.close();
+                fail("关闭时应验证剩余数据");
+            } catch (SecurityException e) {
+                // 摘要不匹配
+            }
+            assertFalse(verifier.isVerified(name));
+            try {
+                verifier.getInputStream(name);
+                fail("已验证失败的条目不能再次读取");
+            } catch (SecurityException e) {
+                // 已验证失败
+            }
+        }
+    }
+
+    /**
+     * 类加载器只直接提供签名者自己的签名文件，后加入的签名块类文件按未签名的条目拒绝
+     */
+    @Test
+    public void classLoaderRejectsForeignSignatureFiles() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File signed = new File(dir, "signed.jar");
+        SM2JarSigner signer = newSigner();
+        signer.setDigestIndex(true);
+        SM2JarSigner.SignResult result = signer.sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+
+        Map<String, byte[]> added = readEntries(signed);
+        for (String name : new String[] { "META-INF/app.EC", "META-INF/app.RSA", "META-INF/SIG-APP.SMT" }) {
+            added.put(name, "com.example.Evil\n".getBytes(StandardCharsets.UTF_8));
+        }
+        File output = writeJar("added.jar", added, ZipEntry.DEFLATED);
+        try (VerifyingJarClassLoader loader = new VerifyingJarClassLoader(output, null)) {
+            for (String name : new String[] { "META-INF/MANIFEST.MF", result.getSigName(),
+                    result.getDigestIndexName() }) {
+                try (InputStream in = loader.findResource(name).openStream()) {
+                    assertArrayEquals(name, added.get(name), readAll(in));
+                }
+            }
+            for (String name : new String[] { "META-INF/app.EC", "META-INF/app.RSA", "META-INF/SIG-APP.SMT" }) {
+                try {
+                    loader.findResource(name).openStream().close();
+                    fail("不属于签名者的签名文件不能直接读取: " + name);
+                } catch (SecurityException e) {
+                    // 未签名
+                }
+            }
+        }
+    }
+
+    @Test
+    public void merkleIndexVerifiesEachEntry() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File signed = new File(dir, "signed.jar");
+        SM2JarSigner signer = newSigner();
+        signer.setMerkleIndex(true);
+        signer.sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+        assertTrue(JarSignatureVerifier.verifyJarSignature(signed.getPath()).isValid());
+
+        try (MerkleJarVerifier verifier = JarSignatureVerifier.openMerkle(signed.getPath())) {
+            assertEquals(fileCount(entries), verifier.size());
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                if (entry.getValue() != null) {
+                    assertTrue(verifier.isSigned(entry.getKey()));
+                    verifier.verifyEntry(entry.getKey());
+                }
+            }
+            assertFalse(verifier.isSigned("com/example/Missing.class"));
+        }
+
+        // 保留签名文件和索引，只修改一个条目的内容
+        Map<String, byte[]> tampered = readEntries(signed);
+        byte[] data = tampered.get("com/example/App.class").clone();
+        data[0] ^= 1;
+        tampered.put("com/example/App.class", data);
+        File output = writeJar("tampered.jar", tampered, ZipEntry.STORED);
+        try (MerkleJarVerifier verifier = JarSignatureVerifier.openMerkle(output.getPath())) {
+            verifier.verifyEntry("com/example/random.bin");
+            try {
+                verifier.verifyEntry("com/example/App.class");
+                fail("被修改的条目不应验证通过");
+            } catch (SecurityException e) {
+                // 摘要不匹配
+            }
+        }
+    }
+
+    @Test
+    public void digestIndexVerifiesAndRejectsTampering() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File signed = new File(dir, "signed.jar");
+        SM2JarSigner signer = newSigner();
+        signer.setDigestIndex(true);
+        SM2JarSigner.SignResult result = signer.sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+        assertNotNull(result.getDigestIndexBytes());
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignature(signed.getPath());
+        assertTrue(verification.getMessage(), verification.isValid());
+        assertEquals(fileCount(entries), verification.getVerifiedFiles());
+        assertEntries(signed, entries);
+
+        // 修改一个条目，索引和签名文件不变
+        Map<String, byte[]> tampered = readEntries(signed);
+        byte[] data = tampered.get("com/example/App.class").clone();
+        data[data.length - 1] ^= 1;
+        tampered.put("com/example/App.class", data);
+        File tamperedEntry = writeJar("tampered-entry.jar", tampered, ZipEntry.STORED);
+        assertFalse(JarSignatureVerifier.verifyJarSignature(tamperedEntry.getPath()).isValid());
+
+        // 修改索引中的一个摘要，条目不变
+        tampered = readEntries(signed);
+        String indexName = result.getDigestIndexName();
+        byte[] index = tampered.get(indexName).clone();
+        index[index.length / 2] ^= 1;
+        tampered.put(indexName, index);
+        File tamperedIndex = writeJar("tampered-index.jar", tampered, ZipEntry.STORED);
+        verification = JarSignatureVerifier.verifyJarSignature(tamperedIndex.getPath());
+        assertFalse(verification.isValid());
+        assertFalse(verification.isUnsigned());
+    }
+
+    @Test
+    public void chunkedDigestChannelReadsLargeEntry() throws Exception {
+        Map<String, byte[]> entries = sampleEntries();
+        byte[] large = randomBytes(new Random(9), 5 * 65536 + 123);
+        entries.put("data/large.bin", large);
+        entries.put("data/large.txt", randomText(new Random(10), 3 * 65536));
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+
+        // 并行计算各块摘要与顺序计算的结果相同
+        byte[] manifest = null;
+        for (int threads : new int[] { 1, 4 }) {
+            File signed = new File(dir, "signed-" + threads + ".jar");
+            SM2JarSigner signer = newSigner();
+            signer.setThreads(threads);
+            signer.setChunkedDigest(new ChunkedDigest(100000, 65536));
+            SM2JarSigner.SignResult result = signer.sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+            if (manifest != null) {
+                assertArrayEquals(manifest, result.getManifestBytes());
+            }
+            manifest = result.getManifestBytes();
+            assertTrue(JarSignatureVerifier.verifyJarSignature(signed.getPath()).isValid());
+            assertEntries(signed, entries);
+        }
+
+        File signed = new File(dir, "signed-4.jar");
+        try (LazyJarVerifier verifier = JarSignatureVerifier.openLazy(signed.getPath());
+                SeekableByteChannel channel = verifier.openChannel("data/large.bin")) {
+            assertEquals(large.length, channel.size());
+            // 先读取末尾，再定位回前面
+            for (long position : new long[] { large.length - 10, 65536 * 2 + 1, 0 }) {
+                channel.position(position);
+                ByteBuffer buffer = ByteBuffer.allocate(10);
+                channel.read(buffer);
+                assertArrayEquals(Arrays.copyOfRange(large, (int) position, (int) position + 10), buffer.array());
+            }
+            assertArrayEquals(entries.get("data/large.txt"), readAll(verifier.getInputStream("data/large.txt")));
+            try {
+                verifier.openChannel("com/example/App.class");
+                fail("小于阈值的条目没有分块摘要");
+            } catch (IllegalArgumentException e) {
+                // 没有分块计算摘要
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void batchSignedJarsVerify() throws Exception {
+        int count = 3;
+        BatchSignature.Collector collector = new BatchSignature.Collector(
+                SignerProvider.local(keyPair.getPrivate(), false));
+        List<BatchSignature.Participant> participants = new ArrayList<>();
+        List<Map<String, byte[]>> contents = new ArrayList<>();
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            participants.add(collector.participant());
+            Map<String, byte[]> entries = sampleEntries();
+            entries.put("batch/" + i + ".txt", ("jar " + i).getBytes(StandardCharsets.UTF_8));
+            contents.add(entries);
+            inputs.add(writeJar("input-" + i + ".jar", entries, ZipEntry.DEFLATED));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(count);
+        List<SM2JarSigner.SignResult> results = new ArrayList<>();
+        try {
+            List<Future<SM2JarSigner.SignResult>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                futures.add(pool.submit(() -> {
+                    SM2JarSigner signer = newSigner();
+                    signer.setBatchParticipant(participants.get(index));
+                    return signer.sign(inputs.get(index), new File(dir, "signed-" + index + ".jar"),
+                            keyPair.getPrivate(), certChain, ALIAS);
+                }));
+            }
+            for (Future<SM2JarSigner.SignResult> future : futures) {
+                results.add(future.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int i = 0; i < count; i++) {
+            File signed = new File(dir, "signed-" + i + ".jar");
+            JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                    .verifyJarSignature(signed.getPath());
+            assertTrue(verification.getMessage(), verification.isValid());
+            assertEntries(signed, contents.get(i));
+        }
+
+        // 另一个 JAR 的签名块（同一树根的签名、其他叶子的路径）不能用于本 JAR
+        Map<String, byte[]> swapped = readEntries(new File(dir, "signed-0.jar"));
+        swapped.put(results.get(0).getSigName(), results.get(1).getSigBlockData());
+        File output = writeJar("swapped.jar", swapped, ZipEntry.DEFLATED);
+        assertFalse(JarSignatureVerifier.verifyJarSignature(output.getPath()).isValid());
+    }
+
+    @Test
+    public void detachedSignatureRoundTrip() throws Exception {
+        File jar = writeJar("app.jar", sampleEntries(), ZipEntry.DEFLATED);
+        byte[] original = Files.readAllBytes(jar.toPath());
+        for (boolean entryDigests : new boolean[] { false, true }) {
+            File sig = new File(dir, "app.jar" + DetachedSignature.EXTENSION);
+            newSigner().signDetached(jar, sig, keyPair.getPrivate(), certChain, entryDigests);
+            assertArrayEquals(original, Files.readAllBytes(jar.toPath()));
+
+            DetachedSignature signature = DetachedSignature.parse(Files.readAllBytes(sig.toPath()));
+            assertEquals("app.jar", signature.getDescriptorManifest().getMainAttributes().getValue("File-Name"));
+            assertEquals(entryDigests ? fileCount(sampleEntries()) : 0,
+                    signature.getDescriptorManifest().getEntries().size());
+            JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier.verifyDetached(jar.toPath(),
+                    sig.toPath());
+            assertTrue(verification.getMessage(), verification.isValid());
+            assertEquals(certChain, verification.getCertificateChain());
+        }
+    }
+
+    @Test
+    public void detachedSignatureRejectsModifiedFile() throws Exception {
+        File jar = writeJar("app.jar", sampleEntries(), ZipEntry.DEFLATED);
+        File sig = new File(dir, "app.jar" + DetachedSignature.EXTENSION);
+        newSigner().signDetached(jar, sig, keyPair.getPrivate(), certChain, true);
+        byte[] original = Files.readAllBytes(jar.toPath());
+
+        // 大小不一致
+        Files.write(jar.toPath(), concat(original, new byte[1]));
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier.verifyDetached(jar.toPath(),
+                sig.toPath());
+        assertFalse(verification.isValid());
+        assertTrue(verification.getMessage(), verification.getMessage().startsWith("文件大小与分离式签名不一致"));
+
+        // 大小相同但内容被修改
+        byte[] tampered = original.clone();
+        tampered[tampered.length / 2] ^= 1;
+        Files.write(jar.toPath(), tampered);
+        verification = JarSignatureVerifier.verifyDetached(jar.toPath(), sig.toPath());
+        assertFalse(verification.isValid());
+        assertTrue(verification.getMessage(), verification.getMessage().startsWith("文件摘要与分离式签名不一致"));
+
+        // 内容不变但文件名与签名时不同
+        File renamed = new File(dir, "renamed.jar");
+        Files.write(renamed.toPath(), original);
+        verification = JarSignatureVerifier.verifyDetached(renamed.toPath(), sig.toPath());
+        assertFalse(verification.isValid());
+        assertTrue(verification.getMessage(), verification.getMessage().startsWith("文件名与分离式签名不一致"));
+
+        // 签名文件本身被修改
+        Files.write(jar.toPath(), original);
+        assertTrue(JarSignatureVerifier.verifyDetached(jar.toPath(), sig.toPath()).isValid());
+        byte[] sigData = Files.readAllBytes(sig.toPath());
+        sigData[sigData.length - 10] ^= 1;
+        Files.write(sig.toPath(), sigData);
+        assertFalse(JarSignatureVerifier.verifyDetached(jar.toPath(), sig.toPath()).isValid());
+    }
+
+    /**
+     * 签名正确但使用旧格式签名块的分离式签名：必须拒绝
+     */
+    @Test
+    public void detachedSignatureRejectsLegacyBlock() throws Exception {
+        File jar = writeJar("app.jar", sampleEntries(), ZipEntry.DEFLATED);
+        byte[] descriptor = DetachedSignature.createDescriptor("app.jar", jar.length(),
+                DetachedSignature.digestFile(jar.toPath()), null, "test");
+        byte[] signature = SignerProvider.local(keyPair.getPrivate(), false).sign(descriptor);
+        File sig = new File(dir, "app.jar" + DetachedSignature.EXTENSION);
+
+        Files.write(sig.toPath(), DetachedSignature.encode(descriptor, SignatureBlock.encode(certChain, signature)));
+        assertTrue(JarSignatureVerifier.verifyDetached(jar.toPath(), sig.toPath()).isValid());
+
+        byte[] v1 = concat(CertificateChainUtil.encodeCertificateChain(certChain), signature);
+        byte[] raw = concat(certChain.get(0).getEncoded(), signature);
+        for (byte[] legacy : Arrays.asList(v1, raw)) {
+            assertTrue(SignatureBlock.parse(legacy).verify(descriptor));
+            Files.write(sig.toPath(), DetachedSignature.encode(descriptor, legacy));
+            JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                    .verifyDetached(jar.toPath(), sig.toPath());
+            assertFalse(verification.isValid());
+            assertEquals("分离式签名的签名块格式无效", verification.getMessage());
+        }
+    }
+
+    /**
+     * 已签名的条目摘要与文件不一致、缺少条目或多出条目：必须拒绝
+     */
+    @Test
+    public void detachedSignatureVerifiesEntryDigests() throws Exception {
+        File jar = writeJar("app.jar", sampleEntries(), ZipEntry.DEFLATED);
+        Map<String, String> digests;
+        try (JarFile jarFile = new JarFile(jar, false)) {
+            digests = DetachedSignature.digestEntries(jarFile, 1);
+        }
+        byte[] app = sampleEntries().get("com/example/App.class");
+        assertEquals(Base64.getEncoder().encodeToString(SM3Digester.hash(app)), digests.get("com/example/App.class"));
+        File sig = new File(dir, "app.jar" + DetachedSignature.EXTENSION);
+
+        writeDetached(jar, sig, digests);
+        assertTrue(JarSignatureVerifier.verifyDetached(jar.toPath(), sig.toPath()).isValid());
+
+        Map<String, String> wrong = new LinkedHashMap<>(digests);
+        wrong.put("com/example/App.class", digests.get("com/example/random.bin"));
+        writeDetached(jar, sig, wrong);
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier.verifyDetached(jar.toPath(),
+                sig.toPath());
+        assertFalse(verification.isValid());
+        assertEquals("条目摘要与分离式签名不一致: com/example/App.class", verification.getMessage());
+
+        Map<String, String> missing = new LinkedHashMap<>(digests);
+        missing.remove("com/example/empty.txt");
+        writeDetached(jar, sig, missing);
+        assertFalse(JarSignatureVerifier.verifyDetached(jar.toPath(), sig.toPath()).isValid());
+
+        Map<String, String> extra = new LinkedHashMap<>(digests);
+        extra.put("com/example/Other.class", digests.get("com/example/App.class"));
+        writeDetached(jar, sig, extra);
+        assertFalse(JarSignatureVerifier.verifyDetached(jar.toPath(), sig.toPath()).isValid());
+    }
+
+    /**
+     * 用测试密钥对描述数据签名并写出分离式签名文件（整个文件的摘要正确，条目摘要由调用方指定）
+     */
+    private void writeDetached(File jar, File sig, Map<String, String> entryDigests) throws Exception {
+        byte[] descriptor = DetachedSignature.createDescriptor(jar.getName(), jar.length(),
+                DetachedSignature.digestFile(jar.toPath()), entryDigests, "test");
+        byte[] signature = SignerProvider.local(keyPair.getPrivate(), false).sign(descriptor);
+        Files.write(sig.toPath(), DetachedSignature.encode(descriptor, SignatureBlock.encode(certChain, signature)));
+    }
+
+    @Test
+    public void unsignedJarIsReportedAsUnsigned() throws Exception {
+        File input = writeJar("input.jar", sampleEntries(), ZipEntry.DEFLATED);
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignature(input.getPath());
+        assertFalse(verification.isValid());
+        assertTrue(verification.isUnsigned());
+    }
+
+    /**
+     * 内嵌 JAR 先签名，替换后的内嵌 JAR 不压缩存储，外层和内嵌 JAR 都验证通过
+     */
+    @Test(timeout = 60000)
+    public void nestedJarsAreSignedAndStored() throws Exception {
+        Map<String, byte[]> entries = nestedEntries(3);
+        File input = writeJar("input.jar", entries, ZipEntry.DEFLATED);
+        File signed = new File(dir, "signed.jar");
+        SM2JarSigner signer = newSigner();
+        signer.setSignNested(true);
+        SM2JarSigner.SignResult result = signer.sign(input, signed, keyPair.getPrivate(), certChain, ALIAS);
+        assertTrue(signer.verifySignedJar(signed, result));
+        assertEquals(3, result.getNestedResults().size());
+        assertEquals(Collections.singletonList("signed.jar"), Arrays.asList(dir.list((d, name) -> !name
+                .equals("input.jar") && !name.startsWith("nested-"))));
+
+        try (ZipFile zip = new ZipFile(signed)) {
+            for (String name : result.getNestedResults().keySet()) {
+                ZipEntry entry = zip.getEntry(name);
+                assertEquals(name, ZipEntry.STORED, entry.getMethod());
+                File nested = new File(dir, "extracted.jar");
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, nested.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                        .verifyJarSignature(nested.getPath());
+                assertTrue(name, verification.isValid());
+                assertEquals(ALIAS, verification.getSignerAlias());
+                assertEntries(nested, sampleEntries());
+            }
+            // 其他条目仍按原方式压缩
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("com/example/App.class").getMethod());
+        }
+
+        Set<String> tempDirs = nestedTempDirs();
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignatureWithNested(signed.getPath(), 2);
+        assertTrue(verification.getMessage(), verification.isValid());
+        assertEquals(result.getNestedResults().keySet(), verification.getNestedResults().keySet());
+        for (JarSignatureVerifier.VerificationResult nested : verification.getNestedResults().values()) {
+            assertTrue(nested.isValid());
+        }
+        assertEquals(tempDirs, nestedTempDirs());
+    }
+
+    /**
+     * 外层签名有效，但已签名的内嵌 JAR 被修改：整体失败，提前结束后临时目录被删除
+     */
+    @Test(timeout = 60000)
+    public void tamperedNestedJarFailsOuterResult() throws Exception {
+        int count = 12;
+        File signed = new File(dir, "signed.jar");
+        SM2JarSigner signer = newSigner();
+        signer.setSignNested(true);
+        signer.sign(writeJar("input.jar", nestedEntries(count), ZipEntry.DEFLATED), signed, keyPair.getPrivate(),
+                certChain, ALIAS);
+
+        // 修改第一个内嵌 JAR 中的条目（保留其签名文件），再不签名内嵌 JAR 地重新签名外层
+        Map<String, byte[]> outer = readEntries(signed);
+        String tamperedName = "BOOT-INF/lib/nested-0.jar";
+        File nested = new File(dir, "nested-signed.jar");
+        Files.write(nested.toPath(), outer.get(tamperedName));
+        Map<String, byte[]> inner = readEntries(nested);
+        byte[] data = inner.get("com/example/App.class").clone();
+        data[data.length / 2] ^= 1;
+        inner.put("com/example/App.class", data);
+        outer.put(tamperedName, Files.readAllBytes(writeJar("nested-tampered.jar", inner, ZipEntry.DEFLATED)
+                .toPath()));
+        File resigned = new File(dir, "resigned.jar");
+        newSigner().sign(writeJar("outer.jar", outer, ZipEntry.DEFLATED), resigned, keyPair.getPrivate(), certChain,
+                ALIAS);
+        assertTrue(JarSignatureVerifier.verifyJarSignature(resigned.getPath()).isValid());
+
+        Set<String> tempDirs = nestedTempDirs();
+        for (int threads : new int[] { 1, 4 }) {
+            JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                    .verifyJarSignatureWithNested(resigned.getPath(), threads);
+            assertFalse(verification.isValid());
+            assertFalse(verification.isUnsigned());
+            assertTrue(verification.getMessage(), verification.getMessage().startsWith("内嵌JAR签名验证失败: "
+                    + tamperedName));
+            assertFalse(verification.getNestedResults().get(tamperedName).isValid());
+            // 提前结束：之后的内嵌 JAR 不再等待结果
+            assertEquals(1, verification.getNestedResults().size());
+            assertEquals(tempDirs, nestedTempDirs());
+        }
+    }
+
+    /**
+     * 未签名的内嵌 JAR 由外层签名保护：记录在结果中，不导致失败
+     */
+    @Test(timeout = 60000)
+    public void unsignedNestedJarIsReported() throws Exception {
+        File signed = new File(dir, "signed.jar");
+        newSigner().sign(writeJar("input.jar", nestedEntries(2), ZipEntry.DEFLATED), signed, keyPair.getPrivate(),
+                certChain, ALIAS);
+
+        Set<String> tempDirs = nestedTempDirs();
+        JarSignatureVerifier.VerificationResult verification = JarSignatureVerifier
+                .verifyJarSignatureWithNested(signed.getPath(), 2);
+        assertTrue(verification.getMessage(), verification.isValid());
+        assertEquals(2, verification.getNestedResults().size());
+        for (Map.Entry<String, JarSignatureVerifier.VerificationResult> nested : verification.getNestedResults()
+                .entrySet()) {
+            assertTrue(nested.getValue().isUnsigned());
+            assertTrue(verification.getDetails().contains("内嵌JAR未签名（由外层签名保护）: " + nested.getKey()));
+        }
+        assertEquals(tempDirs, nestedTempDirs());
+    }
+
+    /**
+     * 包含 count 个内嵌 JAR（内容为 {@link #sampleEntries()}）的外层 JAR 条目
+     */
+    private Map<String, byte[]> nestedEntries(int count) throws IOException {
+        byte[] nested = Files.readAllBytes(writeJar("nested-input.jar", sampleEntries(), ZipEntry.DEFLATED)
+                .toPath());
+        Map<String, byte[]> entries = sampleEntries();
+        for (int i = 0; i < count; i++) {
+            entries.put("BOOT-INF/lib/nested-" + i + ".jar", nested);
+        }
+        return entries;
+    }
+
+    /**
+     * 系统临时目录中内嵌 JAR 验证使用的临时目录
+     */
+    private static Set<String> nestedTempDirs() {
+        String[] names = new File(System.getProperty("java.io.tmpdir"))
+                .list((d, name) -> name.startsWith("sm2-nested-verify"));
+        return names != null ? new HashSet<>(Arrays.asList(names)) : Collections.<String>emptySet();
+    }
+
+    @Test(timeout = 60000)
+    public void asyncVerificationMatchesSync() throws Exception {
+        Map<String, byte[]> entries = startupEntries();
+        File signed = signStartupJar(entries);
+        JarSignatureVerifier.VerificationResult result = JarSignatureVerifier
+                .verifyJarSignatureAsync(signed.getPath(), 4, null).get();
+        assertTrue(result.getMessage(), result.isValid());
+        // MANIFEST.MF 不计入文件数
+        assertEquals(fileCount(entries) - 1, result.getTotalFiles());
+        assertEquals(result.getTotalFiles(), result.getVerifiedFiles());
+        assertEquals(JarSignatureVerifier.verifyJarSignature(signed.getPath()).getVerifiedFiles(),
+                result.getVerifiedFiles());
+    }
+
+    /**
+     * 在 JAR 中排在前面的条目和分块计算的大条目也被修改：最先报告的仍是 Main-Class 所在包中的条目
+     */
+    @Test(timeout = 60000)
+    public void asyncVerificationReportsPriorityEntryFirst() throws Exception {
+        File signed = signStartupJar(startupEntries());
+        for (String priority : new String[] { "com/example/app/Main.class", "META-INF/services/com.example.Plugin" }) {
+            Map<String, byte[]> tampered = readEntries(signed);
+            for (String name : new String[] { "a/First.class", "data/large.bin", priority }) {
+                byte[] data = tampered.get(name).clone();
+                data[data.length - 1] ^= 1;
+                tampered.put(name, data);
+            }
+            File output = writeJar("tampered.jar", tampered, ZipEntry.DEFLATED);
+            for (int threads : new int[] { 1, 4 }) {
+                JarSignatureVerifier.VerificationResult result = JarSignatureVerifier
+                        .verifyJarSignatureAsync(output.getPath(), threads, null).get();
+                assertFalse(result.isValid());
+                assertEquals("文件摘要不匹配: " + priority, result.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 严格模式下后台验证失败时调用传入的处理（而不是终止进程），非严格模式不调用
+     */
+    @Test(timeout = 60000)
+    public void startupAsyncInvokesFailureCallback() throws Exception {
+        File signed = signStartupJar(startupEntries());
+        final List<JarSignatureVerifier.VerificationResult> failures = new ArrayList<>();
+
+        JarSignatureVerifier.VerificationResult result = JarSignatureVerifier
+                .checkSignatureOnStartupAsync(true, loadMarker(signed), failures::add).get();
+        assertTrue(result.getMessage(), result.isValid());
+        assertTrue(failures.isEmpty());
+
+        Map<String, byte[]> tampered = readEntries(signed);
+        byte[] data = tampered.get("com/example/lib/C3.class").clone();
+        data[0] ^= 1;
+        tampered.put("com/example/lib/C3.class", data);
+        File output = writeJar("tampered.jar", tampered, ZipEntry.DEFLATED);
+
+        result = JarSignatureVerifier.checkSignatureOnStartupAsync(false, loadMarker(output), failures::add).get();
+        assertFalse(result.isValid());
+        assertTrue(failures.isEmpty());
+
+        result = JarSignatureVerifier.checkSignatureOnStartupAsync(true, loadMarker(output), failures::add).get();
+        assertFalse(result.isValid());
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) == result);
+        assertEquals("文件摘要不匹配: com/example/lib/C3.class", result.getMessage());
+    }
+
+    /**
+     * 签名者验证失败（未签名、MANIFEST 被修改）时同步失败：严格模式抛出异常，不调用后台失败处理
+     */
+    @Test(timeout = 60000)
+    public void startupAsyncFailsSynchronously() throws Exception {
+        Map<String, byte[]> entries = startupEntries();
+        File unsigned = writeJar("unsigned.jar", entries, ZipEntry.DEFLATED);
+        Map<String, byte[]> tampered = readEntries(signStartupJar(entries));
+        tampered.put("META-INF/MANIFEST.MF", concat("Manifest-Version: 1.0\r\nX-Extra: 1\r\n"
+                .getBytes(StandardCharsets.UTF_8), Arrays.copyOfRange(tampered.get("META-INF/MANIFEST.MF"),
+                        "Manifest-Version: 1.0\r\n".length(), tampered.get("META-INF/MANIFEST.MF").length)));
+        File manifestChanged = writeJar("manifest.jar", tampered, ZipEntry.DEFLATED);
+
+        final List<JarSignatureVerifier.VerificationResult> failures = new ArrayList<>();
+        for (File jar : new File[] { unsigned, manifestChanged }) {
+            Class<?> marker = loadMarker(jar);
+            try {
+                JarSignatureVerifier.checkSignatureOnStartupAsync(true, marker, failures::add);
+                fail("签名者验证失败时应同步抛出异常: " + jar.getName());
+            } catch (SecurityException e) {
+                // 拒绝启动
+            }
+            CompletableFuture<JarSignatureVerifier.VerificationResult> future = JarSignatureVerifier
+                    .checkSignatureOnStartupAsync(false, marker, failures::add);
+            assertTrue(future.isDone());
+            assertFalse(future.get().isValid());
+            assertEquals(jar == unsigned, future.get().isUnsigned());
+        }
+        assertTrue(failures.isEmpty());
+        try {
+            JarSignatureVerifier.checkSignatureOnStartupAsync(true, null, failures::add);
+            fail("启动类为空时应同步抛出异常");
+        } catch (SecurityException e) {
+            // 拒绝启动
+        }
+    }
+
+    /**
+     * 启动验证用的 JAR：Main-Class 在 com.example.app 包中，前面有其他条目和分块计算摘要的大条目，
+     * 包含可以从 JAR 中加载的 {@link Marker} 类
+     */
+    private Map<String, byte[]> startupEntries() throws IOException {
+        Random random = new Random(21);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("META-INF/MANIFEST.MF", ("Manifest-Version: 1.0\r\nMain-Class: com.example.app.Main\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+        entries.put("a/First.class", randomText(random, 3000));
+        entries.put("data/large.bin", randomBytes(random, 8 * 1024 * 1024));
+        for (int i = 0; i < 40; i++) {
+            entries.put("com/example/lib/C" + i + ".class", randomText(random, 1000 + random.nextInt(20000)));
+        }
+        entries.put("com/example/app/Main.class", randomText(random, 2000));
+        entries.put("META-INF/services/com.example.Plugin", "com.example.lib.C1\n".getBytes(StandardCharsets.UTF_8));
+        String marker = Marker.class.getName().replace('.', '/') + ".class";
+        try (InputStream in = Marker.class.getClassLoader().getResourceAsStream(marker)) {
+            entries.put(marker, readAll(in));
+        }
+        return entries;
+    }
+
+    private File signStartupJar(Map<String, byte[]> entries) throws Exception {
+        File signed = new File(dir, "startup.jar");
+        SM2JarSigner signer = newSigner();
+        signer.setChunkedDigest(new ChunkedDigest(1024 * 1024, 65536));
+        signer.sign(writeJar("startup-input.jar", entries, ZipEntry.DEFLATED), signed, keyPair.getPrivate(),
+                certChain, ALIAS);
+        return signed;
+    }
+
+    /**
+     * 从 JAR 中加载 {@link Marker}（用于定位启动类所在的 JAR）
+     */
+    private static Class<?> loadMarker(File jar) throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+        Class<?> marker = loader.loadClass(Marker.class.getName());
+        assertEquals(jar.toURI().toURL(), marker.getProtectionDomain().getCodeSource().getLocation());
+        return marker;
+    }
+
+    /**
+     * 放入测试 JAR 的启动类
+     */
+    public static class Marker {
+    }
+
+    static SM2JarSigner newSigner() {
+        return new SM2JarSigner(newSignerLog());
+    }
+
+    /**
+     * 不输出 info 日志的 Log
+     */
+    static Log newSignerLog() {
+        return new SystemStreamLog() {
+            @Override
+            public boolean isInfoEnabled() {
+                return false;
+            }
+
+            @Override
+            public void info(CharSequence content) {
+            }
+        };
+    }
+
+    static int fileCount(Map<String, byte[]> entries) {
+        int count = 0;
+        for (byte[] data : entries.values()) {
+            if (data != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 测试用的条目：压缩和不压缩的文件、空文件、目录、非 ASCII 名称和 META-INF 下的服务文件
+     */
+    static Map<String, byte[]> sampleEntries() {
+        Random random = new Random(42);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("com/example/", null);
+        entries.put("com/example/App.class", randomText(random, 20000));
+        entries.put("com/example/empty.txt", new byte[0]);
+        entries.put("com/example/random.bin", randomBytes(random, 5000));
+        entries.put("资源/说明.txt", "中文名称的条目".getBytes(StandardCharsets.UTF_8));
+        entries.put("META-INF/services/java.sql.Driver",
+                "com.example.Driver\n".getBytes(StandardCharsets.UTF_8));
+        return entries;
+    }
+
+    static byte[] randomText(Random random, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    static byte[] randomBytes(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * 用 ZipOutputStream 写出 JAR（压缩条目带数据描述符），名称以 .bin 结尾的条目不压缩，值为 null 的是目录
+     */
+    File writeJar(String name, Map<String, byte[]> entries, int method) throws IOException {
+        File file = new File(dir, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                ZipEntry entry = new ZipEntry(e.getKey());
+                byte[] data = e.getValue() != null ? e.getValue() : new byte[0];
+                if (e.getValue() == null || e.getKey().endsWith(".bin") || method == ZipEntry.STORED) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCompressedSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(entry);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 读取所有条目（目录的值为 null）
+     */
+    static Map<String, byte[]> readEntries(File file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                if (entry.isDirectory()) {
+                    entries.put(entry.getName(), null);
+                } else {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        entries.put(entry.getName(), readAll(in));
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 用 JarFile（验证模式）读回所有原始条目并比较内容，签名文件之外不能有多余的条目
+     */
+    static void assertEntries(File file, Map<String, byte[]> expected) throws IOException {
+        try (JarFile jar = new JarFile(file, true)) {
+            assertNotNull(jar.getManifest());
+            int count = 0;
+            Enumeration<JarEntry> e = jar.entries();
+            while (e.hasMoreElements()) {
+                JarEntry entry = e.nextElement();
+                if (JarSignatureVerifier.isSignatureRelated(entry.getName())) {
+                    continue;
+                }
+                count++;
+                assertTrue(entry.getName(), expected.containsKey(entry.getName()));
+                byte[] data = expected.get(entry.getName());
+                if (data == null) {
+                    assertTrue(entry.getName(), entry.isDirectory());
+                    continue;
+                }
+                try (InputStream in = jar.getInputStream(entry)) {
+                    assertArrayEquals(entry.getName(), data, readAll(in));
+                }
+            }
+            assertEquals(expected.size(), count);
+        }
+    }
+
+    /**
+     * 签名文件之外所有条目的压缩方式、CRC 和原始压缩数据
+     */
+    static Map<String, byte[]> rawEntries(File file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipArchiveReader reader = new ZipArchiveReader(file)) {
+            for (ZipArchiveReader.Record record : reader.getRecords()) {
+                if (JarSignatureVerifier.isSignatureRelated(record.getName())) {
+                    continue;
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                DataOutputStream header = new DataOutputStream(out);
+                header.writeShort(record.getMethod());
+                header.writeLong(record.getCrc());
+                header.writeLong(record.getSize());
+                reader.transferRaw(record, Channels.newChannel(out));
+                entries.put(record.getName(), out.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
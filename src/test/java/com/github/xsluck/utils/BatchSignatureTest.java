@@ -0,0 +1,287 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * BatchSignature 的树根签名、包含路径验证和被篡改路径的拒绝（叶子数 1、2、3 和 2^k+1）
+ */
+public class BatchSignatureTest {
+
+    private static final int[] SIZES = { 1, 2, 3, 5, 9, 17 };
+
+    private KeyPair keyPair;
+    private PrecomputedSM2Verifier verifier;
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() throws Exception {
+        keyPair = SM2TestKeys.generateKeyPair();
+        verifier = PrecomputedSM2Verifier.forKey(keyPair.getPublic());
+        pool = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void everyParticipantVerifies() throws Exception {
+        for (int size : SIZES) {
+            List<byte[]> data = signedData(size);
+            List<BatchSignature.Signed> signed = signConcurrently(
+                    new BatchSignature.Collector(SignerProvider.local(keyPair.getPrivate(), false)), data);
+            List<byte[][]> levels = BatchSignature.buildTree(data);
+            byte[] root = levels.get(levels.size() - 1)[0];
+            for (int i = 0; i < size; i++) {
+                BatchSignature.Proof proof = signed.get(i).getProof();
+                assertEquals(i, proof.getIndex());
+                assertEquals(size, proof.getLeafCount());
+                assertTrue(proof.getPathLength() <= 32 - Integer.numberOfLeadingZeros(size - 1));
+                // 只对树根签名一次
+                assertArrayEquals(signed.get(0).getSignature(), signed.get(i).getSignature());
+                assertArrayEquals(root, proof.computeRoot(data.get(i)));
+                assertTrue("叶子数 " + size + "，第 " + i + " 个",
+                        verifier.verify(BatchSignature.rootMessage(proof.computeRoot(data.get(i)), size),
+                                signed.get(i).getSignature()));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void rejectsTamperedDataAndProof() throws Exception {
+        for (int size : SIZES) {
+            List<byte[]> data = signedData(size);
+            List<BatchSignature.Signed> signed = signConcurrently(
+                    new BatchSignature.Collector(SignerProvider.local(keyPair.getPrivate(), false)), data);
+            for (int i = 0; i < size; i++) {
+                BatchSignature.Proof proof = signed.get(i).getProof();
+                byte[] signature = signed.get(i).getSignature();
+                byte[] tamperedData = PrecomputedSM2SignerTest.flip(data.get(i), 0);
+                assertFalse(verifier.verify(BatchSignature.rootMessage(proof.computeRoot(tamperedData), size),
+                        signature));
+                // 其他叶子的数据不能使用本叶子的路径
+                if (size > 1) {
+                    byte[] other = data.get((i + 1) % size);
+                    assertFalse(verifier.verify(BatchSignature.rootMessage(proof.computeRoot(other), size),
+                            signature));
+                }
+                // 叶子数不同
+                assertFalse(verifier.verify(
+                        BatchSignature.rootMessage(proof.computeRoot(data.get(i)), size + 1), signature));
+
+                // 修改路径上的每一个兄弟节点
+                byte[] encoded = proof.encode();
+                for (int node = 0; node < proof.getPathLength(); node++) {
+                    byte[] tampered = encoded.clone();
+                    tampered[10 + node * SM3Digester.DIGEST_LENGTH + 5] ^= 1;
+                    BatchSignature.Proof tamperedProof = BatchSignature.Proof.decode(tampered);
+                    assertFalse(verifier.verify(
+                            BatchSignature.rootMessage(tamperedProof.computeRoot(data.get(i)), size), signature));
+                }
+                // 修改叶子序号：路径顺序不再对应
+                if (size > 1) {
+                    byte[] tampered = encoded.clone();
+                    ByteBuffer.wrap(tampered).putInt(1, (i ^ 1) < size ? i ^ 1 : i - 1);
+                    try {
+                        BatchSignature.Proof tamperedProof = BatchSignature.Proof.decode(tampered);
+                        assertFalse(verifier.verify(
+                                BatchSignature.rootMessage(tamperedProof.computeRoot(data.get(i)), size),
+                                signature));
+                    } catch (IOException e) {
+                        // 路径长度与叶子序号不一致
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void proofRoundTrip() throws Exception {
+        for (int size : SIZES) {
+            List<byte[][]> levels = BatchSignature.buildTree(signedData(size));
+            for (int i = 0; i < size; i++) {
+                BatchSignature.Proof proof = BatchSignature.proof(levels, i);
+                BatchSignature.Proof decoded = BatchSignature.Proof.decode(proof.encode());
+                assertEquals(proof.getIndex(), decoded.getIndex());
+                assertEquals(proof.getLeafCount(), decoded.getLeafCount());
+                assertEquals(proof.getPathLength(), decoded.getPathLength());
+                assertArrayEquals(proof.encode(), decoded.encode());
+            }
+        }
+    }
+
+    @Test
+    public void decodeRejectsMalformedProof() throws Exception {
+        List<byte[]> data = signedData(5);
+        BatchSignature.Proof proof = BatchSignature.proof(BatchSignature.buildTree(data), 4);
+        byte[] encoded = proof.encode();
+
+        assertDecodeRejected(new byte[0]);
+        assertDecodeRejected(Arrays.copyOf(encoded, 9));
+        assertDecodeRejected(Arrays.copyOf(encoded, encoded.length - 1));
+        assertDecodeRejected(Arrays.copyOf(encoded, encoded.length + 1));
+        byte[] badVersion = encoded.clone();
+        badVersion[0] = 2;
+        assertDecodeRejected(badVersion);
+        byte[] indexOutOfRange = encoded.clone();
+        ByteBuffer.wrap(indexOutOfRange).putInt(1, 5);
+        assertDecodeRejected(indexOutOfRange);
+        byte[] negativeIndex = encoded.clone();
+        ByteBuffer.wrap(negativeIndex).putInt(1, -1);
+        assertDecodeRejected(negativeIndex);
+        byte[] noLeaves = encoded.clone();
+        ByteBuffer.wrap(noLeaves).putInt(5, 0);
+        assertDecodeRejected(noLeaves);
+        byte[] badLength = encoded.clone();
+        badLength[9]++;
+        assertDecodeRejected(badLength);
+    }
+
+    /**
+     * 路径长度与叶子序号、叶子数不一致时计算树根失败
+     */
+    @Test
+    public void computeRootRejectsWrongPathLength() throws Exception {
+        List<byte[]> data = signedData(5);
+        byte[] encoded = BatchSignature.proof(BatchSignature.buildTree(data), 0).encode();
+        // 叶子数 5、序号 0 的路径有 3 个节点；叶子数 2 只需要 1 个，叶子数 9 需要 4 个
+        for (int leafCount : new int[] { 2, 9 }) {
+            byte[] tampered = encoded.clone();
+            ByteBuffer.wrap(tampered).putInt(5, leafCount);
+            try {
+                BatchSignature.Proof.decode(tampered).computeRoot(data.get(0));
+                fail("叶子数 " + leafCount + " 时路径长度不一致");
+            } catch (IOException e) {
+                // 路径过长或过短
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void leftParticipantsAreExcluded() throws Exception {
+        BatchSignature.Collector collector = new BatchSignature.Collector(
+                SignerProvider.local(keyPair.getPrivate(), false));
+        List<BatchSignature.Participant> participants = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            participants.add(collector.participant());
+        }
+        List<byte[]> data = signedData(4);
+        Future<BatchSignature.Signed> first = submit(participants.get(0), data.get(0));
+        Future<BatchSignature.Signed> third = submit(participants.get(2), data.get(2));
+        participants.get(1).leave();
+        participants.get(3).leave();
+
+        BatchSignature.Signed firstSigned = first.get();
+        BatchSignature.Signed thirdSigned = third.get();
+        assertEquals(2, firstSigned.getProof().getLeafCount());
+        assertEquals(0, firstSigned.getProof().getIndex());
+        assertEquals(1, thirdSigned.getProof().getIndex());
+        for (BatchSignature.Signed signed : Arrays.asList(firstSigned, thirdSigned)) {
+            byte[] own = signed == firstSigned ? data.get(0) : data.get(2);
+            assertTrue(verifier.verify(BatchSignature.rootMessage(signed.getProof().computeRoot(own), 2),
+                    signed.getSignature()));
+        }
+
+        // 已提交后退出无作用，完成后不能再加入或再次提交
+        participants.get(0).leave();
+        try {
+            collector.participant();
+            fail("批量签名完成后不能再加入");
+        } catch (IllegalStateException e) {
+            // 已完成
+        }
+        try {
+            participants.get(0).sign(data.get(0));
+            fail("每个参与者只能提交一次");
+        } catch (IllegalStateException e) {
+            // 已提交
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void signerFailureFailsEveryParticipant() throws Exception {
+        BatchSignature.Collector collector = new BatchSignature.Collector(data -> {
+            throw new IOException("签名服务不可用");
+        });
+        List<byte[]> data = signedData(3);
+        List<Future<BatchSignature.Signed>> futures = new ArrayList<>();
+        List<BatchSignature.Participant> participants = new ArrayList<>();
+        for (int i = 0; i < data.size(); i++) {
+            participants.add(collector.participant());
+        }
+        for (int i = 0; i < data.size(); i++) {
+            futures.add(submit(participants.get(i), data.get(i)));
+        }
+        for (Future<BatchSignature.Signed> future : futures) {
+            try {
+                future.get();
+                fail("签名失败时每个参与者都应失败");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    /**
+     * 每个参与者在单独的线程中提交，返回结果按参与者创建的顺序排列
+     */
+    private List<BatchSignature.Signed> signConcurrently(BatchSignature.Collector collector, List<byte[]> data)
+            throws Exception {
+        List<BatchSignature.Participant> participants = new ArrayList<>();
+        for (int i = 0; i < data.size(); i++) {
+            participants.add(collector.participant());
+        }
+        List<Future<BatchSignature.Signed>> futures = new ArrayList<>();
+        // 倒序提交，叶子顺序仍按参与者创建的顺序
+        for (int i = data.size() - 1; i >= 0; i--) {
+            futures.add(0, submit(participants.get(i), data.get(i)));
+        }
+        List<BatchSignature.Signed> result = new ArrayList<>();
+        for (Future<BatchSignature.Signed> future : futures) {
+            result.add(future.get());
+        }
+        return result;
+    }
+
+    private Future<BatchSignature.Signed> submit(BatchSignature.Participant participant, byte[] data) {
+        return pool.submit(() -> participant.sign(data));
+    }
+
+    private static List<byte[]> signedData(int size) {
+        List<byte[]> data = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            data.add(("Signature-Version: 1.0\r\nJar: " + i + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return data;
+    }
+
+    private static void assertDecodeRejected(byte[] data) {
+        try {
+            BatchSignature.Proof.decode(data);
+            fail("应拒绝无效的路径");
+        } catch (IOException e) {
+            // 路径无效
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ChunkVerifyingChannel 的顺序读取、随机定位和被篡改块的拒绝（不压缩和压缩的条目）
+ */
+public class ChunkVerifyingChannelTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS = 6;
+    private static final int SIZE = (CHUNKS - 1) * CHUNK_SIZE + 123;
+
+    private static final String STORED = "stored.bin";
+    private static final String DEFLATED = "deflated.txt";
+
+    private final ChunkedDigest chunking = new ChunkedDigest(1, CHUNK_SIZE);
+
+    private File dir;
+    private File file;
+    private byte[] storedData;
+    private byte[] deflatedData;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("sm2-chunk-channel").toFile();
+        Random random = new Random(17);
+        storedData = PrecomputedSM2SignerTest.randomBytes(random, SIZE);
+        deflatedData = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            deflatedData[i] = (byte) ('a' + random.nextInt(4));
+        }
+        file = new File(dir, "chunks.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            ZipEntry stored = new ZipEntry(STORED);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(storedData);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(storedData);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry(DEFLATED));
+            out.write(deflatedData);
+            out.closeEntry();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void sequentialRead() throws Exception {
+        try (ZipFile zip = new ZipFile(file)) {
+            for (String name : new String[] { STORED, DEFLATED }) {
+                byte[] expected = name.equals(STORED) ? storedData : deflatedData;
+                // 读取大小与分块大小不对齐
+                for (int bufferSize : new int[] { 1000, CHUNK_SIZE, 3 * CHUNK_SIZE + 7 }) {
+                    try (ChunkVerifyingChannel channel = open(zip, name, expected)) {
+                        assertEquals(SIZE, channel.size());
+                        assertArrayEquals(expected, readFully(channel, bufferSize));
+                        assertEquals(SIZE, channel.position());
+                        assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void randomSeeks() throws Exception {
+        Random random = new Random(5);
+        try (ZipFile zip = new ZipFile(file)) {
+            for (String name : new String[] { STORED, DEFLATED }) {
+                byte[] expected = name.equals(STORED) ? storedData : deflatedData;
+                try (ChunkVerifyingChannel channel = open(zip, name, expected)) {
+                    // 向后、向前定位以及跨块的读取
+                    long[] positions = { 0, SIZE - 1, CHUNK_SIZE - 1, 2 * CHUNK_SIZE, 1, 4 * CHUNK_SIZE + 5,
+                            3 * CHUNK_SIZE - 10, SIZE - 123 };
+                    for (long position : positions) {
+                        assertRange(channel, expected, position, 100);
+                    }
+                    for (int i = 0; i < 50; i++) {
+                        assertRange(channel, expected, random.nextInt(SIZE), 1 + random.nextInt(2 * CHUNK_SIZE));
+                    }
+                    // 定位到末尾及末尾之后
+                    channel.position(SIZE);
+                    assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+                    channel.position(SIZE + 1000L);
+                    assertEquals(SIZE + 1000L, channel.position());
+                    assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+                    assertRange(channel, expected, 0, 10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tamperedChunkDigestIsRejected() throws Exception {
+        try (ZipFile zip = new ZipFile(file)) {
+            for (String name : new String[] { STORED, DEFLATED }) {
+                byte[] expected = name.equals(STORED) ? storedData : deflatedData;
+                byte[][] digests = chunking.digestChunks(new ByteArrayInputStream(expected));
+                digests[2] = PrecomputedSM2SignerTest.flip(digests[2], 0);
+                try (ChunkVerifyingChannel channel = new ChunkVerifyingChannel(zip, zip.getEntry(name), CHUNK_SIZE,
+                        digests)) {
+                    assertRejected(channel, 2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tamperedStoredDataIsRejected() throws Exception {
+        byte[][] digests = chunking.digestChunks(new ByteArrayInputStream(storedData));
+        // 直接修改文件中第 3 块内的数据（不修改中央目录）
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int start = indexOf(bytes, Arrays.copyOfRange(storedData, 2 * CHUNK_SIZE, 2 * CHUNK_SIZE + 64));
+        assertTrue(start > 0);
+        bytes[start + 1000] ^= 1;
+        Files.write(file.toPath(), bytes);
+
+        try (ZipFile zip = new ZipFile(file);
+                ChunkVerifyingChannel channel = new ChunkVerifyingChannel(zip, zip.getEntry(STORED), CHUNK_SIZE,
+                        digests)) {
+            assertRejected(channel, 2);
+        }
+    }
+
+    @Test
+    public void chunkCountMismatchIsRejected() throws Exception {
+        byte[][] digests = chunking.digestChunks(new ByteArrayInputStream(storedData));
+        try (ZipFile zip = new ZipFile(file)) {
+            for (byte[][] wrong : new byte[][][] { Arrays.copyOf(digests, CHUNKS - 1),
+                    Arrays.copyOf(digests, CHUNKS + 1) }) {
+                try {
+                    new ChunkVerifyingChannel(zip, zip.getEntry(STORED), CHUNK_SIZE, wrong);
+                    fail("分块数不一致时应拒绝");
+                } catch (SecurityException e) {
+                    // 分块数不一致
+                }
+            }
+        }
+    }
+
+    @Test
+    public void closedAndReadOnly() throws Exception {
+        try (ZipFile zip = new ZipFile(file)) {
+            ChunkVerifyingChannel channel = open(zip, STORED, storedData);
+            try {
+                channel.position(-1);
+                fail("负数位置应被拒绝");
+            } catch (IllegalArgumentException e) {
+                // 负数位置
+            }
+            try {
+                channel.write(ByteBuffer.allocate(1));
+                fail("通道应为只读");
+            } catch (NonWritableChannelException e) {
+                // 只读
+            }
+            try {
+                channel.truncate(0);
+                fail("通道应为只读");
+            } catch (NonWritableChannelException e) {
+                // 只读
+            }
+            assertTrue(channel.isOpen());
+            channel.close();
+            assertFalse(channel.isOpen());
+            try {
+                channel.read(ByteBuffer.allocate(1));
+                fail("关闭后读取应失败");
+            } catch (ClosedChannelException e) {
+                // 已关闭
+            }
+            try {
+                channel.position(0);
+                fail("关闭后定位应失败");
+            } catch (ClosedChannelException e) {
+                // 已关闭
+            }
+        }
+    }
+
+    @Test
+    public void parallelDigestMatchesSequential() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for (byte[] data : new byte[][] { storedData, deflatedData, new byte[0], new byte[CHUNK_SIZE],
+                    Arrays.copyOf(storedData, 20 * CHUNK_SIZE) }) {
+                byte[][] sequential = chunking.digestChunks(new ByteArrayInputStream(data));
+                byte[][] parallel = chunking.digestChunks(new ByteArrayInputStream(data), pool, 4);
+                assertEquals((data.length + CHUNK_SIZE - 1) / CHUNK_SIZE, sequential.length);
+                assertEquals(sequential.length, parallel.length);
+                for (int i = 0; i < sequential.length; i++) {
+                    assertArrayEquals(sequential[i], parallel[i]);
+                }
+                assertArrayEquals(chunking.root(sequential), chunking.root(parallel));
+                assertArrayEquals(chunking.root(sequential), chunking.digest(new ByteArrayInputStream(data)));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void encodedChunksRoundTrip() throws Exception {
+        byte[][] digests = chunking.digestChunks(new ByteArrayInputStream(storedData));
+        byte[][] decoded = ChunkedDigest.decodeChunks(ChunkedDigest.encodeChunks(digests));
+        assertEquals(digests.length, decoded.length);
+        for (int i = 0; i < digests.length; i++) {
+            assertArrayEquals(digests[i], decoded[i]);
+        }
+    }
+
+    private ChunkVerifyingChannel open(ZipFile zip, String name, byte[] data) throws IOException {
+        return new ChunkVerifyingChannel(zip, zip.getEntry(name), CHUNK_SIZE,
+                chunking.digestChunks(new ByteArrayInputStream(data)));
+    }
+
+    /**
+     * 读取被篡改的块失败，其他块（包括之后的块）仍然可以读取
+     */
+    private static void assertRejected(ChunkVerifyingChannel channel, int badChunk) throws IOException {
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < CHUNKS; i++) {
+                channel.position((long) i * CHUNK_SIZE + 10);
+                try {
+                    assertTrue(channel.read(ByteBuffer.allocate(100)) > 0);
+                    assertTrue("第 " + i + " 块", i != badChunk);
+                } catch (SecurityException e) {
+                    assertEquals(badChunk, i);
+                    assertTrue(e.getMessage(), e.getMessage().contains("第 " + badChunk + " 块"));
+                }
+            }
+        }
+    }
+
+    private static void assertRange(ChunkVerifyingChannel channel, byte[] expected, long position, int length)
+            throws IOException {
+        channel.position(position);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        int total = 0;
+        int n;
+        while (buffer.hasRemaining() && (n = channel.read(buffer)) != -1) {
+            total += n;
+        }
+        int expectedLength = (int) Math.min(length, SIZE - position);
+        assertEquals(expectedLength, total);
+        assertArrayEquals("位置 " + position,
+                Arrays.copyOfRange(expected, (int) position, (int) position + expectedLength),
+                Arrays.copyOf(buffer.array(), total));
+        assertEquals(position + total, channel.position());
+    }
+
+    private static byte[] readFully(ChunkVerifyingChannel channel, int bufferSize) throws IOException {
+        byte[] result = new byte[(int) channel.size()];
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        int offset = 0;
+        int n;
+        while ((n = channel.read(buffer)) != -1) {
+            buffer.flip();
+            buffer.get(result, offset, n);
+            offset += n;
+            buffer.clear();
+        }
+        assertEquals(result.length, offset);
+        return result;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer: for (int i = 0; i + pattern.length <= data.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+/**
+ * DigestIndex 的查找、摘要比较和被篡改索引的拒绝（条目数 1、2、3 和 2^k+1）
+ */
+public class DigestIndexTest {
+
+    private static final int[] SIZES = { 1, 2, 3, 4, 5, 9, 17, 33, 1025 };
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 48;
+
+    @Test
+    public void findsEveryEntry() throws Exception {
+        for (int size : SIZES) {
+            Map<String, byte[]> digests = MerkleIndexTest.entryDigests(size, size);
+            DigestIndex index = DigestIndex.wrap(ByteBuffer.wrap(DigestIndex.encode(digests)));
+            assertEquals(size, index.size());
+            Set<Integer> found = new HashSet<>();
+            for (Map.Entry<String, byte[]> entry : digests.entrySet()) {
+                int record = index.find(entry.getKey());
+                assertTrue(entry.getKey(), record >= 0);
+                assertTrue(found.add(record));
+                assertTrue(index.digestEquals(record, entry.getValue()));
+            }
+            assertEquals(-1, index.find("missing.class"));
+            assertEquals(-1, index.find(""));
+            // 名称的前缀和加长的名称都不应命中
+            String name = digests.keySet().iterator().next();
+            assertEquals(-1, index.find(name.substring(0, name.length() - 1)));
+            assertEquals(-1, index.find(name + "x"));
+        }
+    }
+
+    @Test
+    public void recordsSortedByNameHash() throws Exception {
+        for (int size : SIZES) {
+            byte[] encoded = DigestIndex.encode(MerkleIndexTest.entryDigests(size, size));
+            ByteBuffer data = ByteBuffer.wrap(encoded);
+            int namesOffset = HEADER_SIZE + size * RECORD_SIZE;
+            for (int i = 0; i < size; i++) {
+                int record = HEADER_SIZE + i * RECORD_SIZE;
+                byte[] name = Arrays.copyOfRange(encoded, namesOffset + data.getInt(record + 8),
+                        namesOffset + data.getInt(record + 8) + data.getInt(record + 12));
+                assertEquals(DigestIndex.hash(name), data.getLong(record));
+                if (i > 0) {
+                    assertTrue(Long.compareUnsigned(data.getLong(record - RECORD_SIZE), data.getLong(record)) < 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hashIsFnv1a() {
+        // 64 位 FNV-1a 的公开测试值
+        assertEquals(0xcbf29ce484222325L, DigestIndex.hash(new byte[0]));
+        assertEquals(0xaf63dc4c8601ec8cL, DigestIndex.hash("a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0x85944171f73967e8L, DigestIndex.hash("foobar".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void rejectsWrongDigest() throws Exception {
+        for (int size : SIZES) {
+            Map<String, byte[]> digests = MerkleIndexTest.entryDigests(size, size);
+            DigestIndex index = DigestIndex.wrap(ByteBuffer.wrap(DigestIndex.encode(digests)));
+            for (Map.Entry<String, byte[]> entry : digests.entrySet()) {
+                int record = index.find(entry.getKey());
+                assertFalse(index.digestEquals(record, PrecomputedSM2SignerTest.flip(entry.getValue(), 0)));
+                assertFalse(index.digestEquals(record, PrecomputedSM2SignerTest.flip(entry.getValue(), 31)));
+                assertFalse(index.digestEquals(record, Arrays.copyOf(entry.getValue(), 31)));
+                assertFalse(index.digestEquals(record, new byte[0]));
+            }
+        }
+    }
+
+    /**
+     * 修改索引中存储的摘要：只有该条目不再匹配
+     */
+    @Test
+    public void rejectsTamperedIndex() throws Exception {
+        for (int size : SIZES) {
+            Map<String, byte[]> digests = MerkleIndexTest.entryDigests(size, size);
+            byte[] encoded = DigestIndex.encode(digests);
+            for (int i = 0; i < size; i++) {
+                byte[] tampered = encoded.clone();
+                tampered[HEADER_SIZE + i * RECORD_SIZE + 16 + i % 32] ^= 1;
+                DigestIndex index = DigestIndex.wrap(ByteBuffer.wrap(tampered));
+                int failed = 0;
+                for (Map.Entry<String, byte[]> entry : digests.entrySet()) {
+                    int record = index.find(entry.getKey());
+                    if (!index.digestEquals(record, entry.getValue())) {
+                        assertEquals(i, record);
+                        failed++;
+                    }
+                }
+                assertEquals(1, failed);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsInvalidNameTable() throws Exception {
+        Map<String, byte[]> digests = MerkleIndexTest.entryDigests(5, 5);
+        byte[] encoded = DigestIndex.encode(digests);
+        // 名称长度超出名称表
+        ByteBuffer.wrap(encoded).putInt(HEADER_SIZE + 2 * RECORD_SIZE + 12, 1 << 20);
+        DigestIndex index = DigestIndex.wrap(ByteBuffer.wrap(encoded));
+        try {
+            for (String name : digests.keySet()) {
+                index.find(name);
+            }
+            fail("应拒绝无效的名称表");
+        } catch (SecurityException e) {
+            // 名称表无效
+        }
+    }
+
+    @Test
+    public void wrapRejectsMalformedInput() throws Exception {
+        byte[] encoded = DigestIndex.encode(MerkleIndexTest.entryDigests(5, 5));
+        assertRejected(new byte[8], ZipException.class);
+        byte[] badMagic = encoded.clone();
+        badMagic[3] = 'M';
+        assertRejected(badMagic, ZipException.class);
+        byte[] badVersion = encoded.clone();
+        badVersion[4] = 2;
+        assertRejected(badVersion, IOException.class);
+        assertRejected(Arrays.copyOf(encoded, encoded.length - 1), ZipException.class);
+        assertRejected(Arrays.copyOf(encoded, encoded.length + 1), ZipException.class);
+        byte[] badCount = encoded.clone();
+        badCount[8] = (byte) 0x80;
+        assertRejected(badCount, ZipException.class);
+    }
+
+    @Test
+    public void emptyIndex() throws Exception {
+        DigestIndex index = DigestIndex.wrap(ByteBuffer.wrap(DigestIndex.encode(new TreeMap<String, byte[]>())));
+        assertEquals(0, index.size());
+        assertEquals(-1, index.find("a"));
+    }
+
+    private static void assertRejected(byte[] data, Class<? extends IOException> type) {
+        try {
+            DigestIndex.wrap(ByteBuffer.wrap(data));
+            fail("应拒绝无效的索引");
+        } catch (IOException e) {
+            assertEquals(type, e.getClass());
+        }
+    }
+}
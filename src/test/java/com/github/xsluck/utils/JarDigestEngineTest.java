@@ -0,0 +1,133 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JarDigestEngine 的并发结果、回调顺序和大条目不阻塞其他条目
+ */
+public class JarDigestEngineTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String LARGE = "data/large.bin";
+    private static final int LARGE_SIZE = 32 * 1024 * 1024;
+
+    private final ChunkedDigest chunking = new ChunkedDigest(1024 * 1024, CHUNK_SIZE);
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("sm2-digest-engine").toFile();
+        file = new File(dir, "entries.jar");
+        Random random = new Random(11);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            // 第一个条目是优先验证的小条目，之后是分块计算的大条目和其他小条目
+            putEntry(out, "com/example/Main.class", PrecomputedSM2SignerTest.randomBytes(random, 2000));
+            byte[] large = PrecomputedSM2SignerTest.randomBytes(random, LARGE_SIZE);
+            ZipEntry entry = new ZipEntry(LARGE);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(large.length);
+            CRC32 crc = new CRC32();
+            crc.update(large);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(large);
+            out.closeEntry();
+            for (int i = 0; i < 50; i++) {
+                putEntry(out, "com/example/C" + i + ".class",
+                        PrecomputedSM2SignerTest.randomBytes(random, random.nextInt(20000)));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void parallelDigestsMatchSequential() throws Exception {
+        try (ZipFile zip = new ZipFile(file)) {
+            List<? extends ZipEntry> entries = Collections.list(zip.entries());
+            byte[][] expected = new byte[entries.size()][];
+            for (int i = 0; i < entries.size(); i++) {
+                expected[i] = JarDigestEngine.digestEntry(zip, entries.get(i), chunking);
+            }
+            for (int threads : new int[] { 1, 2, 8 }) {
+                try (JarDigestEngine engine = new JarDigestEngine(threads)) {
+                    engine.setChunkedDigest(chunking);
+                    byte[][] actual = engine.digest(zip, entries);
+                    final byte[][] called = new byte[entries.size()][];
+                    engine.digest(zip, entries, (index, digest) -> called[index] = digest);
+                    for (int i = 0; i < entries.size(); i++) {
+                        assertArrayEquals(entries.get(i).getName(), expected[i], actual[i]);
+                        assertArrayEquals(entries.get(i).getName(), expected[i], called[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 大条目分块计算时，排在前面的小条目先回调，其他小条目也不必等待大条目
+     */
+    @Test(timeout = 60000)
+    public void chunkedEntryDoesNotDelayCallbacks() throws Exception {
+        try (ZipFile zip = new ZipFile(file); JarDigestEngine engine = new JarDigestEngine(4)) {
+            engine.setChunkedDigest(chunking);
+            List<? extends ZipEntry> entries = Collections.list(zip.entries());
+            final List<String> order = new ArrayList<>();
+            engine.digest(zip, entries, (index, digest) -> order.add(entries.get(index).getName()));
+            assertEquals(entries.size(), order.size());
+            assertEquals("com/example/Main.class", order.get(0));
+            assertTrue("大条目的回调位置: " + order.indexOf(LARGE), order.indexOf(LARGE) > entries.size() / 2);
+        }
+    }
+
+    /**
+     * 第一个回调失败时立即返回，不等待大条目读完
+     */
+    @Test(timeout = 60000)
+    public void callbackFailureStopsChunkedEntry() throws Exception {
+        try (ZipFile zip = new ZipFile(file); JarDigestEngine engine = new JarDigestEngine(4)) {
+            engine.setChunkedDigest(chunking);
+            List<? extends ZipEntry> entries = Collections.list(zip.entries());
+            try {
+                engine.digest(zip, entries, (index, digest) -> {
+                    throw new IOException("摘要不匹配: " + entries.get(index).getName());
+                });
+                fail("回调失败时应抛出异常");
+            } catch (IOException e) {
+                assertEquals("摘要不匹配: com/example/Main.class", e.getMessage());
+            }
+        }
+    }
+
+    private static void putEntry(ZipOutputStream out, String name, byte[] data) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data);
+        out.closeEntry();
+    }
+}
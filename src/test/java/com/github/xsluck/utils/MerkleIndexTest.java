@@ -0,0 +1,194 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.ZipException;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.junit.Test;
+
+/**
+ * MerkleIndex 的树根、包含路径验证和被篡改索引的拒绝（叶子数 1、2、3 和 2^k+1）
+ */
+public class MerkleIndexTest {
+
+    private static final int[] SIZES = { 1, 2, 3, 4, 5, 9, 17, 33 };
+
+    @Test
+    public void rootMatchesReference() throws Exception {
+        for (int size : SIZES) {
+            Map<String, byte[]> digests = entryDigests(size, size);
+            MerkleIndex index = MerkleIndex.wrap(ByteBuffer.wrap(MerkleIndex.encode(digests)));
+            assertEquals(size, index.size());
+            assertArrayEquals("叶子数 " + size, referenceRoot(digests), index.getRoot());
+        }
+    }
+
+    @Test
+    public void everyLeafVerifies() throws Exception {
+        for (int size : SIZES) {
+            Map<String, byte[]> digests = entryDigests(size, size);
+            MerkleIndex index = MerkleIndex.wrap(ByteBuffer.wrap(MerkleIndex.encode(digests)));
+            byte[] root = referenceRoot(digests);
+            int leaf = 0;
+            for (Map.Entry<String, byte[]> entry : new TreeMap<>(digests).entrySet()) {
+                assertEquals(leaf, index.find(entry.getKey()));
+                assertEquals(entry.getKey(), index.getName(leaf));
+                assertArrayEquals(entry.getValue(), index.getDigest(leaf));
+                assertTrue(entry.getKey(), index.verify(entry.getKey(), entry.getValue(), root));
+                leaf++;
+            }
+        }
+    }
+
+    @Test
+    public void rejectsTamperedDigestAndWrongRoot() throws Exception {
+        for (int size : SIZES) {
+            Map<String, byte[]> digests = entryDigests(size, size);
+            MerkleIndex index = MerkleIndex.wrap(ByteBuffer.wrap(MerkleIndex.encode(digests)));
+            byte[] root = referenceRoot(digests);
+            byte[] otherRoot = referenceRoot(entryDigests(size, size + 100));
+            for (Map.Entry<String, byte[]> entry : digests.entrySet()) {
+                assertFalse(index.verify(entry.getKey(), PrecomputedSM2SignerTest.flip(entry.getValue(), 31), root));
+                assertFalse(index.verify(entry.getKey(), entry.getValue(), PrecomputedSM2SignerTest.flip(root, 0)));
+                assertFalse(index.verify(entry.getKey(), entry.getValue(), otherRoot));
+            }
+            assertEquals(-1, index.find("missing.class"));
+            assertFalse(index.verify("missing.class", new byte[SM3Digester.DIGEST_LENGTH], root));
+        }
+    }
+
+    /**
+     * 修改索引中存储的摘要或内部节点：以它为兄弟节点的条目不能再验证通过
+     */
+    @Test
+    public void rejectsTamperedIndex() throws Exception {
+        for (int size : SIZES) {
+            Map<String, byte[]> digests = entryDigests(size, size);
+            List<String> names = new ArrayList<>(new TreeMap<>(digests).keySet());
+            byte[] root = referenceRoot(digests);
+            byte[] encoded = MerkleIndex.encode(digests);
+            int offset = encoded.length - (size + nodeCount(size)) * SM3Digester.DIGEST_LENGTH;
+
+            // 第 0 层为叶子的摘要，之后逐层为内部节点
+            int levelSize = size;
+            for (int level = 0; levelSize > 1; level++) {
+                for (int node = 0; node < levelSize; node++) {
+                    int sibling = node ^ 1;
+                    if (sibling >= levelSize) {
+                        continue;
+                    }
+                    byte[] tampered = encoded.clone();
+                    tampered[offset + node * SM3Digester.DIGEST_LENGTH] ^= 1;
+                    MerkleIndex index = MerkleIndex.wrap(ByteBuffer.wrap(tampered));
+                    String name = names.get(sibling << level);
+                    assertFalse("叶子数 " + size + "，第 " + level + " 层节点 " + node,
+                            index.verify(name, digests.get(name), root));
+                }
+                offset += levelSize * SM3Digester.DIGEST_LENGTH;
+                levelSize = (levelSize + 1) / 2;
+            }
+        }
+    }
+
+    @Test
+    public void wrapRejectsMalformedInput() throws Exception {
+        byte[] encoded = MerkleIndex.encode(entryDigests(5, 5));
+        assertRejected(new byte[8], ZipException.class);
+        byte[] badMagic = encoded.clone();
+        badMagic[0] = 'X';
+        assertRejected(badMagic, ZipException.class);
+        byte[] badVersion = encoded.clone();
+        badVersion[4] = 2;
+        assertRejected(badVersion, IOException.class);
+        assertRejected(Arrays.copyOf(encoded, encoded.length - 1), ZipException.class);
+        assertRejected(Arrays.copyOf(encoded, encoded.length + 1), ZipException.class);
+        byte[] badCount = encoded.clone();
+        badCount[11]++;
+        assertRejected(badCount, ZipException.class);
+    }
+
+    @Test
+    public void emptyIndex() throws Exception {
+        MerkleIndex index = MerkleIndex.wrap(ByteBuffer.wrap(MerkleIndex.encode(new TreeMap<String, byte[]>())));
+        assertEquals(0, index.size());
+        assertEquals(-1, index.find("a"));
+        assertFalse(index.verify("a", new byte[SM3Digester.DIGEST_LENGTH], index.getRoot()));
+    }
+
+    private static void assertRejected(byte[] data, Class<? extends IOException> type) {
+        try {
+            MerkleIndex.wrap(ByteBuffer.wrap(data));
+            fail("应拒绝无效的索引");
+        } catch (IOException e) {
+            assertEquals(type, e.getClass());
+        }
+    }
+
+    /**
+     * 条目名称（含多字节字符）到随机摘要的映射，插入顺序与排序顺序不同
+     */
+    static Map<String, byte[]> entryDigests(int size, long seed) {
+        Random random = new Random(seed);
+        Map<String, byte[]> digests = new LinkedHashMap<>();
+        for (int i = size - 1; i >= 0; i--) {
+            String name = (i % 3 == 0 ? "资源/" : "com/example/") + "Entry" + i + (i % 2 == 0 ? ".class" : ".txt");
+            digests.put(name, PrecomputedSM2SignerTest.randomBytes(random, SM3Digester.DIGEST_LENGTH));
+        }
+        return digests;
+    }
+
+    private static int nodeCount(int leafCount) {
+        int count = 0;
+        for (int size = leafCount; size > 1;) {
+            size = (size + 1) / 2;
+            count += size;
+        }
+        return count;
+    }
+
+    /**
+     * 按格式说明独立计算的树根（直接使用 BouncyCastle 的 SM3Digest）
+     */
+    private static byte[] referenceRoot(Map<String, byte[]> digests) {
+        List<byte[]> level = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : new TreeMap<>(digests).entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            level.add(sm3(new byte[] { 0 }, ByteBuffer.allocate(4).putInt(name.length).array(), name,
+                    entry.getValue()));
+        }
+        while (level.size() > 1) {
+            List<byte[]> parent = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += 2) {
+                parent.add(i + 1 < level.size() ? sm3(new byte[] { 1 }, level.get(i), level.get(i + 1))
+                        : level.get(i));
+            }
+            level = parent;
+        }
+        return level.get(0);
+    }
+
+    private static byte[] sm3(byte[]... parts) {
+        SM3Digest digest = new SM3Digest();
+        for (byte[] part : parts) {
+            digest.update(part, 0, part.length);
+        }
+        byte[] result = new byte[digest.getDigestSize()];
+        digest.doFinal(result, 0);
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Random;
+
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.SM2Signer;
+import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Test;
+
+/**
+ * PrecomputedSM2Signer、DeterministicSM2Signer 与 BouncyCastle SM2Signer 的交叉验证
+ */
+public class PrecomputedSM2SignerTest {
+
+    /** GB/T 32918.2 示例中的私钥 */
+    private static final BigInteger D = new BigInteger(
+            "3945208F7B2144B13F36E38AC6D39F95889393692860B51A42FB81EF4DF7C5B8", 16);
+
+    private static final String PUBLIC_POINT = "04"
+            + "09F9DF311E5421A150DD7D161E4BC5C672179FAD1833FC076BB08FF356F35020"
+            + "CCEA490CE26775A52DC6EA718CC1AA600AED05FBF35E084A6632F6072DA9AD13";
+
+    private static final int KEYS = 8;
+    private static final int MESSAGES = 16;
+
+    @Test
+    public void randomSignaturesVerifyWithBouncyCastle() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < KEYS; i++) {
+            KeyPair keyPair = SM2TestKeys.generateKeyPair();
+            PrecomputedSM2Signer signer = new PrecomputedSM2Signer(keyPair.getPrivate(), false);
+            for (int j = 0; j < MESSAGES; j++) {
+                byte[] data = randomBytes(random, random.nextInt(512));
+                byte[] signature = signer.sign(data);
+                assertTrue(bcVerify(keyPair, data, signature));
+                assertTrue(jcaVerify(keyPair, data, signature));
+                data = data.length > 0 ? flip(data, random.nextInt(data.length)) : new byte[] { 1 };
+                assertFalse(bcVerify(keyPair, data, signature));
+            }
+        }
+    }
+
+    @Test
+    public void deterministicSignaturesVerifyWithBouncyCastle() throws Exception {
+        Random random = new Random(2);
+        for (int i = 0; i < KEYS; i++) {
+            KeyPair keyPair = SM2TestKeys.generateKeyPair();
+            DeterministicSM2Signer signer = new DeterministicSM2Signer(keyPair.getPrivate());
+            DeterministicSM2Signer other = new DeterministicSM2Signer(keyPair.getPrivate());
+            for (int j = 0; j < MESSAGES; j++) {
+                byte[] data = randomBytes(random, random.nextInt(512));
+                byte[] signature = signer.sign(data);
+                assertTrue(bcVerify(keyPair, data, signature));
+                assertArrayEquals(signature, signer.sign(data));
+                assertArrayEquals(signature, other.sign(data));
+            }
+        }
+    }
+
+    @Test
+    public void signDigestMatchesSign() throws Exception {
+        KeyPair keyPair = SM2TestKeys.generateKeyPair();
+        DeterministicSM2Signer signer = new DeterministicSM2Signer(keyPair.getPrivate());
+        byte[] data = "signDigest".getBytes(StandardCharsets.UTF_8);
+        byte[] e = DeterministicSM2Signer.messageDigest(signer.getPublicPoint(), data);
+        assertArrayEquals(signer.sign(data), signer.signDigest(e));
+        assertArrayEquals(DeterministicSM2Signer.publicPoint(keyPair.getPublic()), signer.getPublicPoint());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void signDigestRejectsWrongLength() throws Exception {
+        new PrecomputedSM2Signer(SM2TestKeys.generateKeyPair().getPrivate(), false).signDigest(new byte[31]);
+    }
+
+    /**
+     * 固定私钥的确定性签名值（由独立实现的 SM3、HMAC-SM3 和 RFC 6979 计算）
+     */
+    @Test
+    public void deterministicVectors() throws Exception {
+        PrivateKey privateKey = SM2TestKeys.privateKey(D);
+        DeterministicSM2Signer signer = new DeterministicSM2Signer(privateKey);
+        assertEquals(PUBLIC_POINT, Hex.toHexString(signer.getPublicPoint()).toUpperCase());
+
+        assertEquals("3044022024858ee71d63e687feefe41f5af80a59f0791eb1dabc2bbe71daf0e57f06c367"
+                + "02203d15550de52785a435004c937256ac715c0e04176ac57062c6722fa692f7a491",
+                Hex.toHexString(signer.sign("message digest".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals("3046022100d34655e6fc9d413a6aeca2c0600dbda01c696b261f28cf15cad43adcb7503d5c"
+                + "0221008d08f294f67f22c1e4f4f8f4696a5692d641f12d32f6bff237c07681bcc6ce22",
+                Hex.toHexString(signer.sign(new byte[0])));
+        assertEquals("3046022100a2947ba7e1a07f0d71d9f0dca0bcc64611bde5cf1fbbb81c7c3987c8aa156475"
+                + "022100d3d032501c06e009a04d8d4ed5bf10b1b6d36ddb62886fe8a409e35fdc4d1a22",
+                Hex.toHexString(signer.sign("abc".getBytes(StandardCharsets.US_ASCII))));
+        byte[] data = new byte[1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        assertEquals("3046022100b8d3890b6aeab5d37e860e4ea22b1e4e92e32b0a3bbd172fd9969103cbe77512"
+                + "022100bfcdc4a4d82bec3e5ccd79d2e7271d833b50616f3b7ffa1248dbdbe05b45f32f",
+                Hex.toHexString(signer.sign(data)));
+    }
+
+    @Test
+    public void forKeyCachesPerKeyAndMode() throws Exception {
+        PrivateKey privateKey = SM2TestKeys.generateKeyPair().getPrivate();
+        PrecomputedSM2Signer random = PrecomputedSM2Signer.forKey(privateKey, false);
+        PrecomputedSM2Signer deterministic = PrecomputedSM2Signer.forKey(privateKey, true);
+        assertSame(random, PrecomputedSM2Signer.forKey(privateKey, false));
+        assertSame(deterministic, PrecomputedSM2Signer.forKey(privateKey, true));
+        assertTrue(deterministic instanceof DeterministicSM2Signer);
+        assertFalse(random instanceof DeterministicSM2Signer);
+    }
+
+    static boolean bcVerify(KeyPair keyPair, byte[] data, byte[] signature) throws Exception {
+        SM2Signer verifier = new SM2Signer();
+        verifier.init(false, (ECPublicKeyParameters) ECUtil.generatePublicKeyParameter(keyPair.getPublic()));
+        verifier.update(data, 0, data.length);
+        return verifier.verifySignature(signature);
+    }
+
+    static boolean jcaVerify(KeyPair keyPair, byte[] data, byte[] signature) throws Exception {
+        Signature verifier = Signature.getInstance("SM3withSM2", "BC");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(data);
+        return verifier.verify(signature);
+    }
+
+    static byte[] randomBytes(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    static byte[] flip(byte[] data, int index) {
+        byte[] copy = data.clone();
+        copy[index] ^= 0x01;
+        return copy;
+    }
+}
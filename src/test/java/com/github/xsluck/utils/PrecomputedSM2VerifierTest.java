@@ -0,0 +1,156 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.params.ParametersWithRandom;
+import org.bouncycastle.crypto.signers.SM2Signer;
+import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
+import org.bouncycastle.util.Arrays;
+import org.junit.Test;
+
+/**
+ * PrecomputedSM2Verifier 与 BouncyCastle SM2Signer 的交叉验证，以及 r、s 越界的签名值
+ */
+public class PrecomputedSM2VerifierTest {
+
+    private static final BigInteger N = SM2Curve.getDomain().getN();
+
+    /** GB/T 32918.2 示例：私钥、消息 "message digest"、默认用户标识下的签名值 */
+    private static final BigInteger D = new BigInteger(
+            "3945208F7B2144B13F36E38AC6D39F95889393692860B51A42FB81EF4DF7C5B8", 16);
+    private static final BigInteger R = new BigInteger(
+            "F5A03B0648D2C4630EEAC513E1BB81A15944DA3827D5B74143AC7EACEEE720B3", 16);
+    private static final BigInteger S = new BigInteger(
+            "B1B6AA29DF212FD8763182BC0D421CA1BB9038FD1F7F42D4840B69C485BBC1AA", 16);
+
+    @Test
+    public void verifiesBouncyCastleSignatures() throws Exception {
+        Random random = new Random(3);
+        for (int i = 0; i < 8; i++) {
+            KeyPair keyPair = SM2TestKeys.generateKeyPair();
+            KeyPair otherKeyPair = SM2TestKeys.generateKeyPair();
+            PrecomputedSM2Verifier verifier = PrecomputedSM2Verifier.forKey(keyPair.getPublic());
+            PrecomputedSM2Verifier otherVerifier = PrecomputedSM2Verifier.forKey(otherKeyPair.getPublic());
+            for (int j = 0; j < 16; j++) {
+                byte[] data = PrecomputedSM2SignerTest.randomBytes(random, random.nextInt(512));
+                byte[] signature = j % 2 == 0 ? bcSign(keyPair, data) : jcaSign(keyPair, data);
+                assertTrue(verifier.verify(data, signature));
+                assertFalse(otherVerifier.verify(data, signature));
+                if (data.length > 0) {
+                    assertFalse(verifier.verify(PrecomputedSM2SignerTest.flip(data, random.nextInt(data.length)),
+                            signature));
+                }
+                assertFalse(verifier.verify(data, PrecomputedSM2SignerTest.flip(signature, signature.length - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void verifiesPrecomputedSignerSignatures() throws Exception {
+        KeyPair keyPair = SM2TestKeys.generateKeyPair();
+        PrecomputedSM2Verifier verifier = PrecomputedSM2Verifier.forKey(keyPair.getPublic());
+        byte[] data = "verify".getBytes(StandardCharsets.UTF_8);
+        assertTrue(verifier.verify(data, new PrecomputedSM2Signer(keyPair.getPrivate(), false).sign(data)));
+        assertTrue(verifier.verify(data, new DeterministicSM2Signer(keyPair.getPrivate()).sign(data)));
+    }
+
+    @Test
+    public void verifiesStandardExample() throws Exception {
+        PrecomputedSM2Verifier verifier = standardVerifier();
+        byte[] data = "message digest".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(verifier.verify(data, der(R, S)));
+        assertFalse(verifier.verify(data, der(S, R)));
+        assertFalse(verifier.verify(data, der(R.add(BigInteger.ONE), S)));
+    }
+
+    @Test
+    public void rejectsOutOfRangeValues() throws Exception {
+        PrecomputedSM2Verifier verifier = standardVerifier();
+        byte[] data = "message digest".getBytes(StandardCharsets.US_ASCII);
+        // r、s 必须在 [1, n-1] 内
+        assertFalse(verifier.verify(data, der(BigInteger.ZERO, S)));
+        assertFalse(verifier.verify(data, der(R, BigInteger.ZERO)));
+        assertFalse(verifier.verify(data, der(N, S)));
+        assertFalse(verifier.verify(data, der(R, N)));
+        assertFalse(verifier.verify(data, der(R.add(N), S)));
+        assertFalse(verifier.verify(data, der(R, S.add(N))));
+        assertFalse(verifier.verify(data, der(R.negate(), S)));
+        assertFalse(verifier.verify(data, der(R, S.subtract(N))));
+        // t = (r + s) mod n = 0
+        assertFalse(verifier.verify(data, der(R, N.subtract(R))));
+        assertFalse(verifier.verify(data, der(BigInteger.ONE, N.subtract(BigInteger.ONE))));
+    }
+
+    @Test
+    public void rejectsMalformedEncoding() throws Exception {
+        PrecomputedSM2Verifier verifier = standardVerifier();
+        byte[] data = "message digest".getBytes(StandardCharsets.US_ASCII);
+        byte[] signature = der(R, S);
+        assertFalse(verifier.verify(data, new byte[0]));
+        assertFalse(verifier.verify(data, Arrays.copyOf(signature, signature.length - 1)));
+        assertFalse(verifier.verify(data, Arrays.append(signature, (byte) 0)));
+        assertFalse(verifier.verify(data, Arrays.concatenate(R.toByteArray(), S.toByteArray())));
+    }
+
+    @Test
+    public void cachesPerPublicKey() throws Exception {
+        KeyPair keyPair = SM2TestKeys.generateKeyPair();
+        PrecomputedSM2Verifier verifier = PrecomputedSM2Verifier.forKey(keyPair.getPublic());
+        assertNotNull(verifier);
+        assertSame(verifier, PrecomputedSM2Verifier.forKey(keyPair.getPublic()));
+    }
+
+    @Test
+    public void returnsNullForOtherCurves() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", "BC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        assertNull(PrecomputedSM2Verifier.forKey(generator.generateKeyPair().getPublic()));
+    }
+
+    private static PrecomputedSM2Verifier standardVerifier() throws Exception {
+        DeterministicSM2Signer signer = new DeterministicSM2Signer(SM2TestKeys.privateKey(D));
+        return PrecomputedSM2Verifier.forKey(SM2TestKeys.publicKey(signer.getPublicPoint()));
+    }
+
+    private static byte[] bcSign(KeyPair keyPair, byte[] data) throws Exception {
+        SM2Signer signer = new SM2Signer();
+        signer.init(true, new ParametersWithRandom(
+                (ECPrivateKeyParameters) ECUtil.generatePrivateKeyParameter(keyPair.getPrivate())));
+        signer.update(data, 0, data.length);
+        return signer.generateSignature();
+    }
+
+    private static byte[] jcaSign(KeyPair keyPair, byte[] data) throws Exception {
+        Signature signer = Signature.getInstance("SM3withSM2", "BC");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(data);
+        return signer.sign();
+    }
+
+    /**
+     * DER 编码的 r、s（不检查取值范围）
+     */
+    private static byte[] der(BigInteger r, BigInteger s) throws Exception {
+        ASN1EncodableVector vector = new ASN1EncodableVector();
+        vector.add(new ASN1Integer(r));
+        vector.add(new ASN1Integer(s));
+        return new DERSequence(vector).getEncoded(ASN1Encoding.DER);
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * RemoteSignerProvider 的批量合并、错误、关闭和超时（签名代理作为签名服务的替身）
+ */
+public class RemoteSignerProviderTest {
+
+    /** 模拟的签名服务延迟（毫秒） */
+    private static final long RESPONSE_DELAY = 200;
+
+    private File dir;
+    private KeyPair keyPair;
+    private byte[] keyId;
+    private SigningAgent agent;
+    private SigningAgentClient client;
+    private RemoteSignerProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("sm2-remote-signer").toFile();
+        keyPair = SM2TestKeys.generateKeyPair();
+        keyId = SM3Digester.hash("test key".getBytes(StandardCharsets.UTF_8));
+        File infoFile = new File(dir, "agent.info");
+        agent = new SigningAgent(keyPair.getPrivate(), keyId, infoFile, 0, 4);
+        agent.setResponseDelay(RESPONSE_DELAY);
+        Thread thread = new Thread(() -> {
+            try {
+                agent.run(0);
+            } catch (IOException e) {
+                // 关闭
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        client = SigningAgentClient.open(infoFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (provider != null) {
+            provider.close();
+        }
+        agent.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentRequestsShareRoundTrips() throws Exception {
+        provider = new RemoteSignerProvider(client, keyId, 50, 2);
+        int count = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(count);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<byte[]> data = new ArrayList<>();
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final byte[] d = ("jar-" + i).getBytes(StandardCharsets.UTF_8);
+                data.add(d);
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return provider.sign(d);
+                }));
+            }
+            start.countDown();
+
+            DeterministicSM2Signer expected = new DeterministicSM2Signer(keyPair.getPrivate());
+            PrecomputedSM2Verifier verifier = PrecomputedSM2Verifier.forKey(keyPair.getPublic());
+            for (int i = 0; i < count; i++) {
+                byte[] signature = futures.get(i).get();
+                assertTrue(verifier.verify(data.get(i), signature));
+                assertArrayEquals(expected.sign(data.get(i)), signature);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(count, agent.getSignatureCount());
+        assertTrue("往返次数: " + agent.getRequestCount(), agent.getRequestCount() <= 2);
+    }
+
+    @Test(timeout = 30000)
+    public void batchSignUsesOneRoundTrip() throws Exception {
+        provider = new RemoteSignerProvider(client, keyId, 0, 1);
+        byte[][] data = new byte[10][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = ("entry-" + i).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] signatures = provider.sign(data);
+        PrecomputedSM2Verifier verifier = PrecomputedSM2Verifier.forKey(keyPair.getPublic());
+        for (int i = 0; i < data.length; i++) {
+            assertTrue(verifier.verify(data[i], signatures[i]));
+        }
+        assertEquals(1, agent.getRequestCount());
+        assertArrayEquals(DeterministicSM2Signer.publicPoint(keyPair.getPublic()), provider.getPublicPoint());
+    }
+
+    @Test(expected = IOException.class, timeout = 30000)
+    public void unknownKeyIsRejected() throws Exception {
+        new RemoteSignerProvider(client, SM3Digester.hash(new byte[1]), 0, 1);
+    }
+
+    @Test(timeout = 30000)
+    public void serviceErrorFailsRequest() throws Exception {
+        provider = new RemoteSignerProvider(client, keyId, 0, 1);
+        agent.close();
+        try {
+            provider.sign("data".getBytes(StandardCharsets.UTF_8));
+            fail("签名服务已关闭，签名应失败");
+        } catch (IOException e) {
+            // 连接被拒绝
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void closeFailsOutstandingRequests() throws Exception {
+        agent.setResponseDelay(20000);
+        provider = new RemoteSignerProvider(client, keyId, 0, 1);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            // 第一个请求在途，第二个由分发线程持有（等待在途名额），第三个在队列中
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                final byte[] d = ("pending-" + i).getBytes(StandardCharsets.UTF_8);
+                futures.add(pool.submit(() -> provider.sign(d)));
+                Thread.sleep(200);
+            }
+            long start = System.nanoTime();
+            provider.close();
+            for (Future<byte[]> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    fail("关闭后未完成的请求应失败");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        try {
+            provider.sign("closed".getBytes(StandardCharsets.UTF_8));
+            fail("关闭后的签名请求应失败");
+        } catch (IOException e) {
+            // 已关闭
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void slowServiceTimesOut() throws Exception {
+        agent.setResponseDelay(5000);
+        provider = new RemoteSignerProvider(client, keyId, 0, 1);
+        provider.setSignTimeout(300);
+        long start = System.nanoTime();
+        try {
+            provider.sign("slow".getBytes(StandardCharsets.UTF_8));
+            fail("签名服务超时，签名应失败");
+        } catch (IOException e) {
+            assertEquals("等待签名服务超时", e.getMessage());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.xsluck.utils;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertificate;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V3TBSCertificateGenerator;
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.jce.spec.ECPrivateKeySpec;
+import org.bouncycastle.jce.spec.ECPublicKeySpec;
+
+/**
+ * 测试用的 SM2 密钥和自签名证书
+ */
+public final class SM2TestKeys {
+
+    private static final ASN1ObjectIdentifier SM3_WITH_SM2 = new ASN1ObjectIdentifier("1.2.156.10197.1.501");
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    static {
+        if (Security.getProvider("BC") == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private SM2TestKeys() {
+    }
+
+    /**
+     * 随机生成 sm2p256v1 密钥对
+     */
+    public static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", "BC");
+        generator.initialize(new ECGenParameterSpec("sm2p256v1"));
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * 由私钥值 d 构造 sm2p256v1 私钥
+     */
+    public static PrivateKey privateKey(BigInteger d) throws Exception {
+        ECParameterSpec spec = ECNamedCurveTable.getParameterSpec("sm2p256v1");
+        return KeyFactory.getInstance("EC", "BC").generatePrivate(new ECPrivateKeySpec(d, spec));
+    }
+
+    /**
+     * 由公钥点的编码构造 sm2p256v1 公钥
+     */
+    public static PublicKey publicKey(byte[] publicPoint) throws Exception {
+        ECParameterSpec spec = ECNamedCurveTable.getParameterSpec("sm2p256v1");
+        return KeyFactory.getInstance("EC", "BC")
+                .generatePublic(new ECPublicKeySpec(spec.getCurve().decodePoint(publicPoint), spec));
+    }
+
+    /**
+     * 自签名证书（SM3withSM2，有效期从昨天起一年）
+     */
+    public static X509Certificate selfSignedCertificate(KeyPair keyPair, String commonName) throws Exception {
+        X500Name name = new X500Name("CN=" + commonName);
+        AlgorithmIdentifier algorithm = new AlgorithmIdentifier(SM3_WITH_SM2);
+        long now = System.currentTimeMillis();
+
+        V3TBSCertificateGenerator tbsGenerator = new V3TBSCertificateGenerator();
+        tbsGenerator.setSerialNumber(new ASN1Integer(now));
+        tbsGenerator.setSignature(algorithm);
+        tbsGenerator.setIssuer(name);
+        tbsGenerator.setSubject(name);
+        tbsGenerator.setStartDate(new Time(new Date(now - DAY)));
+        tbsGenerator.setEndDate(new Time(new Date(now + 365 * DAY)));
+        tbsGenerator.setSubjectPublicKeyInfo(SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded()));
+        TBSCertificate tbs = tbsGenerator.generateTBSCertificate();
+
+        Signature signature = Signature.getInstance("SM3withSM2", "BC");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(tbs.getEncoded(ASN1Encoding.DER));
+
+        ASN1EncodableVector certificate = new ASN1EncodableVector();
+        certificate.add(tbs);
+        certificate.add(algorithm);
+        certificate.add(new DERBitString(signature.sign()));
+        byte[] encoded = new DERSequence(certificate).getEncoded(ASN1Encoding.DER);
+        return (X509Certificate) CertificateFactory.getInstance("X.509", "BC")
+                .generateCertificate(new ByteArrayInputStream(encoded));
+    }
+}
@@ -0,0 +1,242 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * SignatureBlock 的 v2 编码往返、旧格式识别和无效段的拒绝
+ */
+public class SignatureBlockTest {
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte[] SF_DATA = "Signature-Version: 1.0\r\nSM3-Digest-Manifest: AAAA\r\n\r\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private KeyPair keyPair;
+    private List<X509Certificate> certChain;
+    private byte[] signature;
+
+    @Before
+    public void setUp() throws Exception {
+        keyPair = SM2TestKeys.generateKeyPair();
+        certChain = Collections.singletonList(SM2TestKeys.selfSignedCertificate(keyPair, "signature-block-test"));
+        signature = SignerProvider.local(keyPair.getPrivate(), false).sign(SF_DATA);
+    }
+
+    @Test
+    public void v2RoundTrip() throws Exception {
+        byte[] encoded = SignatureBlock.encode(certChain, signature);
+        assertTrue(SignatureBlock.isV2(encoded));
+        assertArrayEquals(SignatureBlock.MAGIC, Arrays.copyOf(encoded, 4));
+
+        SignatureBlock block = SignatureBlock.parse(encoded);
+        assertEquals(SignatureBlock.VERSION_2, block.getVersion());
+        assertFalse(block.isLegacy());
+        assertFalse(block.isCms());
+        assertFalse(block.isBatch());
+        assertEquals("v2", block.getFormatName());
+        assertEquals(SignatureBlock.ALG_SM3_WITH_SM2, block.getAlgorithm());
+        assertEquals("SM3withSM2", block.getAlgorithmName());
+        assertEquals(certChain, block.getCertChain());
+        assertArrayEquals(signature, block.getSignature());
+        assertArrayEquals(signature, block.getSection(SignatureBlock.SECTION_SIGNATURE));
+        assertArrayEquals(CertificateChainUtil.encodeCertificateChain(certChain),
+                block.getSection(SignatureBlock.SECTION_CERT_CHAIN));
+        assertNull(block.getSection(SignatureBlock.SECTION_BATCH_PROOF));
+
+        assertTrue(block.verify(SF_DATA));
+        assertFalse(block.verify(PrecomputedSM2SignerTest.flip(SF_DATA, 10)));
+        assertFalse(SignatureBlock.parse(SignatureBlock.encode(certChain, PrecomputedSM2SignerTest.flip(signature,
+                signature.length / 2))).verify(SF_DATA));
+    }
+
+    @Test
+    public void batchRoundTrip() throws Exception {
+        List<byte[]> data = Arrays.asList(SF_DATA, "Signature-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8),
+                "Signature-Version: 1.0\r\nJar: 3\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        List<byte[][]> levels = BatchSignature.buildTree(data);
+        BatchSignature.Proof proof = BatchSignature.proof(levels, 0);
+        byte[] rootSignature = SignerProvider.local(keyPair.getPrivate(), false)
+                .sign(BatchSignature.rootMessage(levels.get(levels.size() - 1)[0], data.size()));
+
+        SignatureBlock block = SignatureBlock.parse(SignatureBlock.encodeBatch(certChain, rootSignature, proof));
+        assertTrue(block.isBatch());
+        assertEquals(0, block.getBatchProof().getIndex());
+        assertEquals(3, block.getBatchProof().getLeafCount());
+        assertArrayEquals(proof.encode(), block.getSection(SignatureBlock.SECTION_BATCH_PROOF));
+        assertTrue(block.verify(SF_DATA));
+        // 其他 JAR 的 .SF 不能使用本 JAR 的路径
+        assertFalse(block.verify(data.get(1)));
+    }
+
+    /**
+     * 段的顺序和未知的段类型不影响解析
+     */
+    @Test
+    public void v2SectionsInAnyOrder() throws Exception {
+        Map<Integer, byte[]> sections = new LinkedHashMap<>();
+        sections.put(9, new byte[] { 1, 2, 3 });
+        sections.put(SignatureBlock.SECTION_SIGNATURE, signature);
+        sections.put(SignatureBlock.SECTION_CERT_CHAIN, CertificateChainUtil.encodeCertificateChain(certChain));
+        SignatureBlock block = SignatureBlock.parse(SignatureBlock.encode(SignatureBlock.ALG_SM3_WITH_SM2, sections));
+        assertEquals(certChain, block.getCertChain());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, block.getSection(9));
+        assertTrue(block.verify(SF_DATA));
+    }
+
+    @Test
+    public void detectsLegacyFormats() throws Exception {
+        // v1: 证书链编码数据之后直接是签名
+        byte[] v1 = concat(CertificateChainUtil.encodeCertificateChain(certChain), signature);
+        SignatureBlock block = SignatureBlock.parse(v1);
+        assertEquals(SignatureBlock.VERSION_1, block.getVersion());
+        assertTrue(block.isLegacy());
+        assertFalse(SignatureBlock.isV2(v1));
+        assertEquals(certChain, block.getCertChain());
+        assertArrayEquals(signature, block.getSignature());
+        assertTrue(block.verify(SF_DATA));
+
+        // 更早的格式: DER 证书之后直接是签名
+        byte[] raw = concat(certChain.get(0).getEncoded(), signature);
+        block = SignatureBlock.parse(raw);
+        assertEquals(SignatureBlock.VERSION_LEGACY_RAW, block.getVersion());
+        assertTrue(block.isLegacy());
+        assertEquals(certChain, block.getCertChain());
+        assertArrayEquals(signature, block.getSignature());
+        assertTrue(block.verify(SF_DATA));
+        assertFalse(block.verify(PrecomputedSM2SignerTest.flip(SF_DATA, 0)));
+    }
+
+    @Test
+    public void rejectsTruncatedAndOversizedSections() throws Exception {
+        byte[] encoded = SignatureBlock.encode(certChain, signature);
+        int chainLength = CertificateChainUtil.encodeCertificateChain(certChain).length;
+        int secondSection = HEADER_SIZE + 5 + chainLength;
+
+        assertRejected(Arrays.copyOf(encoded, HEADER_SIZE - 1));
+        assertRejected(Arrays.copyOf(encoded, HEADER_SIZE));
+        assertRejected(Arrays.copyOf(encoded, HEADER_SIZE + 3));
+        assertRejected(Arrays.copyOf(encoded, encoded.length - 1));
+        assertRejected(Arrays.copyOf(encoded, secondSection + 2));
+        assertRejected(Arrays.copyOf(encoded, encoded.length + 1));
+
+        // 段长度超出剩余数据、为负数或小于实际长度
+        byte[] oversized = encoded.clone();
+        ByteBuffer.wrap(oversized).putInt(secondSection + 1, signature.length + 1);
+        assertRejected(oversized);
+        byte[] negative = encoded.clone();
+        ByteBuffer.wrap(negative).putInt(HEADER_SIZE + 1, -1);
+        assertRejected(negative);
+        byte[] huge = encoded.clone();
+        ByteBuffer.wrap(huge).putInt(HEADER_SIZE + 1, Integer.MAX_VALUE);
+        assertRejected(huge);
+        byte[] undersized = encoded.clone();
+        ByteBuffer.wrap(undersized).putInt(secondSection + 1, signature.length - 1);
+        assertRejected(undersized);
+
+        // 段数量与实际的段不一致
+        byte[] moreSections = encoded.clone();
+        moreSections[7] = 3;
+        assertRejected(moreSections);
+        byte[] fewerSections = encoded.clone();
+        fewerSections[7] = 1;
+        assertRejected(fewerSections);
+    }
+
+    @Test
+    public void rejectsMalformedV2Block() throws Exception {
+        byte[] encoded = SignatureBlock.encode(certChain, signature);
+        byte[] badVersion = encoded.clone();
+        badVersion[4] = 3;
+        assertRejected(badVersion);
+        assertFalse(SignatureBlock.isV2(badVersion));
+
+        // 缺少证书链或签名
+        Map<Integer, byte[]> sections = new LinkedHashMap<>();
+        sections.put(SignatureBlock.SECTION_SIGNATURE, signature);
+        assertRejected(SignatureBlock.encode(SignatureBlock.ALG_SM3_WITH_SM2, sections));
+        sections.clear();
+        sections.put(SignatureBlock.SECTION_CERT_CHAIN, CertificateChainUtil.encodeCertificateChain(certChain));
+        assertRejected(SignatureBlock.encode(SignatureBlock.ALG_SM3_WITH_SM2, sections));
+
+        // 证书链段或批量签名路径段无法解析
+        sections.put(SignatureBlock.SECTION_CERT_CHAIN, new byte[] { 0, 0, 0, 1, 0, 0, 0, 4, 0x30, 2, 1, 0 });
+        sections.put(SignatureBlock.SECTION_SIGNATURE, signature);
+        assertRejected(SignatureBlock.encode(SignatureBlock.ALG_SM3_WITH_SM2, sections));
+        sections.put(SignatureBlock.SECTION_CERT_CHAIN, CertificateChainUtil.encodeCertificateChain(certChain));
+        sections.put(SignatureBlock.SECTION_BATCH_PROOF, new byte[] { 1, 2, 3 });
+        assertRejected(SignatureBlock.encode(SignatureBlock.ALG_SM3_WITH_SM2, sections));
+
+        // 不支持的算法：可以解析但无法验证
+        sections.remove(SignatureBlock.SECTION_BATCH_PROOF);
+        SignatureBlock block = SignatureBlock.parse(SignatureBlock.encode(7, sections));
+        try {
+            block.verify(SF_DATA);
+            fail("不支持的签名算法应被拒绝");
+        } catch (IOException e) {
+            // 不支持的算法
+        }
+    }
+
+    /**
+     * 以 SM2B 魔数开头的块只按 v2 格式解析，即使其余部分像旧格式的证书也不回退
+     */
+    @Test
+    public void magicPrefixIsNeverParsedAsLegacy() throws Exception {
+        Random random = new Random(3);
+        assertRejected(SignatureBlock.MAGIC);
+        assertRejected(concat(SignatureBlock.MAGIC, PrecomputedSM2SignerTest.randomBytes(random, 100)));
+        assertRejected(concat(SignatureBlock.MAGIC, concat(CertificateChainUtil.encodeCertificateChain(certChain),
+                signature)));
+        assertRejected(concat(SignatureBlock.MAGIC, concat(certChain.get(0).getEncoded(), signature)));
+        byte[] header = { 'S', 'M', '2', 'B', SignatureBlock.VERSION_2, SignatureBlock.ALG_SM3_WITH_SM2, 0, 2 };
+        assertRejected(concat(header, concat(certChain.get(0).getEncoded(), signature)));
+    }
+
+    @Test
+    public void rejectsGarbage() throws Exception {
+        Random random = new Random(5);
+        assertRejected(new byte[0]);
+        assertRejected(new byte[] { 0x30 });
+        assertRejected(PrecomputedSM2SignerTest.randomBytes(random, 200));
+        // 看似 DER 序列但不是证书
+        assertRejected(new byte[] { 0x30, 3, 2, 1, 0, 1, 2, 3 });
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            SignatureBlock.parse(data);
+            fail("应拒绝无效的签名块");
+        } catch (Exception e) {
+            // 签名块无效
+        }
+    }
+
+    static byte[] concat(byte[] a, byte[] b) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(a);
+        out.write(b);
+        return out.toByteArray();
+    }
+}
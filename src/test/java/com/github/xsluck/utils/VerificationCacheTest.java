@@ -0,0 +1,311 @@
+package com.github.xsluck.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.xsluck.SM2JarSigner;
+
+/**
+ * VerificationCache 的命中计数、被篡改或过期的缓存文件、密钥文件和缓存目录权限
+ * 缓存未命中时必须重新计算所有条目的摘要
+ */
+public class VerificationCacheTest {
+
+    private static final int FILES = 20;
+
+    private File dir;
+    private File cacheDir;
+    private File jar;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("sm2-verification-cache").toFile();
+        // 缓存目录由 VerificationCache 创建（权限 700）
+        cacheDir = new File(dir, "cache");
+        jar = signedJar("signed.jar", new Random(1));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        delete(dir);
+    }
+
+    @Test
+    public void secondVerificationHitsCache() throws Exception {
+        VerificationCache cache = new VerificationCache(cacheDir);
+        JarSignatureVerifier.VerificationResult first = verify(cache);
+        assertTrue(first.getMessage(), first.isValid());
+        assertEquals(0, first.getCacheHits());
+        assertEquals(1, first.getCacheMisses());
+        assertEquals(FILES, first.getVerifiedFiles());
+        assertNotNull(cacheFile());
+
+        // 新的实例（模拟下一次进程启动）读取同一个密钥
+        for (VerificationCache c : new VerificationCache[] { cache, new VerificationCache(cacheDir) }) {
+            JarSignatureVerifier.VerificationResult second = verify(c);
+            assertTrue(second.getMessage(), second.isValid());
+            assertEquals(1, second.getCacheHits());
+            assertEquals(0, second.getCacheMisses());
+            assertEquals(FILES, second.getTotalFiles());
+            assertEquals(FILES, second.getVerifiedFiles());
+        }
+        assumePosix();
+        assertEquals("rwx------", permissions(cacheDir.toPath()));
+        assertEquals("rw-------", permissions(cacheDir.toPath().resolve(".secret")));
+    }
+
+    @Test
+    public void tamperedCacheFileIsMiss() throws Exception {
+        assertEquals(1, verify(new VerificationCache(cacheDir)).getCacheMisses());
+        Path cacheFile = cacheFile();
+        String original = new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8);
+
+        // 修改记录的值、删除或修改 MAC、截断文件
+        String[] tampered = { original.replace("verifiedFiles=" + FILES, "verifiedFiles=" + (FILES + 1)),
+                original.replaceAll("\nmac=[0-9a-f]+\n", "\n"),
+                original.replaceAll("mac=[0-9a-f]", "mac=" + (original.contains("mac=0") ? "1" : "0")),
+                original.substring(0, original.length() / 2), "" };
+        for (String content : tampered) {
+            assertNotEquals(original, content);
+            Files.write(cacheFile, content.getBytes(StandardCharsets.UTF_8));
+            assertFullVerification(verify(new VerificationCache(cacheDir)));
+            // 重新验证后写入了有效的缓存
+            assertEquals(1, verify(new VerificationCache(cacheDir)).getCacheHits());
+        }
+    }
+
+    /**
+     * 用其他密钥计算 MAC 的缓存文件（伪造）视为未命中
+     */
+    @Test
+    public void forgedCacheFileIsMiss() throws Exception {
+        verify(new VerificationCache(cacheDir));
+        File otherDir = new File(dir, "other");
+        verify(new VerificationCache(otherDir));
+        Path forged = otherDir.toPath().resolve(cacheFile().getFileName());
+        assertTrue(Files.isRegularFile(forged));
+
+        Files.copy(forged, cacheFile(), StandardCopyOption.REPLACE_EXISTING);
+        JarSignatureVerifier.VerificationResult result = verify(new VerificationCache(cacheDir));
+        assertFullVerification(result);
+        assertTrue(result.getDetails().toString(), result.getDetails().toString().contains("MAC 无效"));
+    }
+
+    /**
+     * 缓存后修改条目（恢复修改时间）：状态改变时间不同，缓存未命中，重新验证发现篡改
+     */
+    @Test
+    public void modifiedJarIsMiss() throws Exception {
+        assertEquals(1, verify(new VerificationCache(cacheDir)).getCacheMisses());
+        FileTime mtime = Files.getLastModifiedTime(jar.toPath());
+        byte[] bytes = Files.readAllBytes(jar.toPath());
+        Thread.sleep(20);
+        // 条目不压缩，直接修改数据区中的一个字节（MANIFEST 和 .SF 不变）
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(jar.toPath(), bytes);
+        Files.setLastModifiedTime(jar.toPath(), mtime);
+
+        JarSignatureVerifier.VerificationResult result = verify(new VerificationCache(cacheDir));
+        assertFalse(result.isValid());
+        assertEquals(0, result.getCacheHits());
+        assertEquals(1, result.getCacheMisses());
+    }
+
+    @Test
+    public void insecureSecretIsRegenerated() throws Exception {
+        assumePosix();
+        verify(new VerificationCache(cacheDir));
+        Path secretFile = cacheDir.toPath().resolve(".secret");
+        byte[] secret = Files.readAllBytes(secretFile);
+
+        // 其他用户可读
+        Files.setPosixFilePermissions(secretFile, PosixFilePermissions.fromString("rw-r--r--"));
+        assertFullVerification(verify(new VerificationCache(cacheDir)));
+        assertEquals("rw-------", permissions(secretFile));
+        byte[] regenerated = Files.readAllBytes(secretFile);
+        assertFalse(Arrays.equals(secret, regenerated));
+        assertEquals(1, verify(new VerificationCache(cacheDir)).getCacheHits());
+
+        // 不属于当前用户（需要修改所有者的权限）
+        UserPrincipal other = otherUser();
+        if (other != null) {
+            Files.setOwner(secretFile, other);
+            assertFullVerification(verify(new VerificationCache(cacheDir)));
+            assertNotEquals(other, Files.getOwner(secretFile));
+            assertFalse(Arrays.equals(regenerated, Files.readAllBytes(secretFile)));
+        }
+    }
+
+    /**
+     * 缓存目录权限不是 700 或不属于当前用户时不使用缓存：每次都完整验证，也不写入缓存
+     */
+    @Test
+    public void insecureDirectoryIsNotUsed() throws Exception {
+        assumePosix();
+        verify(new VerificationCache(cacheDir));
+        Path cacheFile = cacheFile();
+        Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString("rwxr-xr-x"));
+        for (int i = 0; i < 2; i++) {
+            JarSignatureVerifier.VerificationResult result = verify(new VerificationCache(cacheDir));
+            assertFullVerification(result);
+            assertTrue(result.getDetails().toString(), result.getDetails().toString().contains("权限不安全"));
+        }
+        assertEquals("rwxr-xr-x", permissions(cacheDir.toPath()));
+
+        Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString("rwx------"));
+        UserPrincipal other = otherUser();
+        if (other != null) {
+            Files.setOwner(cacheDir.toPath(), other);
+            assertFullVerification(verify(new VerificationCache(cacheDir)));
+            Files.setOwner(cacheDir.toPath(), Files.getOwner(dir.toPath()));
+        }
+        assertTrue(Files.isRegularFile(cacheFile));
+        assertEquals(1, verify(new VerificationCache(cacheDir)).getCacheHits());
+    }
+
+    @Test
+    public void symlinkDirectoryIsNotUsed() throws Exception {
+        File target = new File(dir, "target");
+        verify(new VerificationCache(target));
+        File link = new File(dir, "link");
+        try {
+            Files.createSymbolicLink(link.toPath(), target.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            return;
+        }
+        for (int i = 0; i < 2; i++) {
+            assertFullVerification(verify(new VerificationCache(link)));
+        }
+    }
+
+    @Test
+    public void contentDigestDependsOnSignatureFiles() {
+        byte[] manifest = "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+        byte[] a = VerificationCache.contentDigest(manifest,
+                Collections.singletonMap("META-INF/A.SF", new byte[] { 1 }));
+        byte[] b = VerificationCache.contentDigest(manifest,
+                Collections.singletonMap("META-INF/A.SF", new byte[] { 2 }));
+        assertFalse(Arrays.equals(a, b));
+        assertArrayEquals(a, VerificationCache.contentDigest(manifest,
+                Collections.singletonMap("META-INF/A.SF", new byte[] { 1 })));
+    }
+
+    private JarSignatureVerifier.VerificationResult verify(VerificationCache cache) {
+        return JarSignatureVerifier.verifyJarSignature(jar.getPath(), 2, cache);
+    }
+
+    /**
+     * 缓存未命中，所有条目都重新验证
+     */
+    private static void assertFullVerification(JarSignatureVerifier.VerificationResult result) {
+        assertTrue(result.getMessage(), result.isValid());
+        assertEquals(0, result.getCacheHits());
+        assertEquals(1, result.getCacheMisses());
+        assertEquals(FILES, result.getVerifiedFiles());
+        assertTrue(result.getDetails().toString(), result.getDetails().toString().contains("所有文件完整性验证通过"));
+    }
+
+    private Path cacheFile() throws IOException {
+        File[] files = cacheDir.listFiles((d, name) -> name.endsWith(".cache"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0].toPath();
+    }
+
+    private File signedJar(String name, Random random) throws Exception {
+        File input = new File(dir, "input-" + name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            out.setMethod(ZipOutputStream.STORED);
+            for (int i = 0; i < FILES; i++) {
+                byte[] data = PrecomputedSM2SignerTest.randomBytes(random, 1000 + random.nextInt(5000));
+                ZipEntry entry = new ZipEntry("com/example/C" + i + ".class");
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                entry.setSize(data.length);
+                entry.setCrc(crc.getValue());
+                out.putNextEntry(entry);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        KeyPair keyPair = SM2TestKeys.generateKeyPair();
+        File output = new File(dir, name);
+        new SM2JarSigner(new SystemStreamLog() {
+            @Override
+            public boolean isInfoEnabled() {
+                return false;
+            }
+
+            @Override
+            public void info(CharSequence content) {
+            }
+        }).sign(input, output, keyPair.getPrivate(),
+                Collections.singletonList(SM2TestKeys.selfSignedCertificate(keyPair, "verification-cache-test")),
+                "TEST");
+        return output;
+    }
+
+    private static String permissions(Path path) throws IOException {
+        return PosixFilePermissions.toString(Files.getPosixFilePermissions(path));
+    }
+
+    private void assumePosix() {
+        assumeNotNull(Files.getFileAttributeView(dir.toPath(), PosixFileAttributeView.class));
+    }
+
+    /**
+     * 其他用户（只有以 root 运行时才能修改所有者），不可用时返回 null
+     */
+    private UserPrincipal otherUser() {
+        if (!"root".equals(System.getProperty("user.name"))) {
+            return null;
+        }
+        try {
+            return dir.toPath().getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName("nobody");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void delete(File file) throws IOException {
+        if (Files.isDirectory(file.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    delete(f);
+                }
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}